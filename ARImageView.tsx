@@ -11,6 +11,8 @@ import {
   Easing,
   Platform,
   TouchableOpacity,
+  UIManager,
+  findNodeHandle,
 } from 'react-native';
 
 // Design System Constants
@@ -60,11 +62,63 @@ interface NativeARImageProps {
   style?: ViewStyle;
   imageSource?: string | null;
   imageUrl?: string | null;
+  // Placements closer than this (meters) share one ARCore anchor
+  anchorGroupRadius?: number;
+  // Oldest/farthest/least-recently-visible image is evicted past this count (0 = unlimited)
+  maxAnchors?: number;
+  anchorEvictionPolicy?: AnchorEvictionPolicy;
+  // Place at an estimated depth before a surface is found (ARCore Instant Placement)
+  instantPlacement?: boolean;
+  // ARCore session profile and per-field overrides, applied without recreating the session
+  sessionConfig?: SessionConfig;
+  // Pause plane finding once placed content settles; the next touch resumes it
+  autoDisablePlaneFinding?: boolean;
+  // Seconds without touches before plane finding pauses (0 = only after placement)
+  planeFindingIdleTimeout?: number;
+  // Milliseconds between METRICS events (0 = off)
+  metricsInterval?: number;
+  // EGL setup, read once when the view mounts. Opaque skips compositor blending.
+  opaqueSurface?: boolean;
+  msaaSamples?: number;
+  preferGles3?: boolean;
+}
+
+export type AnchorEvictionPolicy = 'oldest' | 'farthest' | 'notVisibleLongest';
+
+export interface SessionConfig {
+  // lowPower: no depth/light, fixed focus; balanced (default): no depth; quality: depth, HDR light
+  profile?: 'lowPower' | 'balanced' | 'quality';
+  depthMode?: 'disabled' | 'automatic' | 'rawDepthOnly';
+  planeFindingMode?: 'disabled' | 'horizontal' | 'vertical' | 'horizontalAndVertical';
+  focusMode?: 'fixed' | 'auto';
+  lightEstimationMode?: 'disabled' | 'ambientIntensity' | 'environmentalHdr';
+  updateMode?: 'blocking' | 'latestCameraImage';
 }
 
 const NativeARImage =
   requireNativeComponent<NativeARImageProps>('NativeARImage');
 
+// Commands handled by NativeARImageViewManager.receiveCommand
+const dispatchCommand = (
+  ref: React.RefObject<any>,
+  command: string,
+  args: any[] = [],
+) => {
+  const handle = findNodeHandle(ref.current);
+  if (handle != null) {
+    UIManager.dispatchViewManagerCommand(handle, command, args);
+  }
+};
+
+export const ARImageCommands = {
+  removeAnchor: (ref: React.RefObject<any>, anchorId: number) =>
+    dispatchCommand(ref, 'removeAnchor', [anchorId]),
+  clearAnchors: (ref: React.RefObject<any>) =>
+    dispatchCommand(ref, 'clearAnchors'),
+  enablePlaneFinding: (ref: React.RefObject<any>) =>
+    dispatchCommand(ref, 'enablePlaneFinding'),
+};
+
 // AR State interface
 interface ARState {
   type: string;
@@ -72,6 +126,12 @@ interface ARState {
   arSessionReady: boolean;
   imageLoaded: boolean;
   planeDetected: boolean;
+  // Present on IMAGE_PLACED, ANCHOR_REMOVED and ANCHOR_EVICTED
+  anchorId?: number;
+  // Present on PLACEMENT_VISIBLE and PLACEMENT_PROMOTED, measured from the tap
+  latencyMs?: number;
+  // Present on METRICS, e.g. sessionUpdateMs and planeFindingCpuSavedMs
+  metrics?: {[key: string]: number};
 }
 
 interface ARImageViewProps {
@@ -79,6 +139,22 @@ interface ARImageViewProps {
   imageUrl?: string | null;
   style?: ViewStyle;
   onBack?: () => void;
+  anchorGroupRadius?: number;
+  maxAnchors?: number;
+  anchorEvictionPolicy?: AnchorEvictionPolicy;
+  instantPlacement?: boolean;
+  sessionConfig?: SessionConfig;
+  autoDisablePlaneFinding?: boolean;
+  planeFindingIdleTimeout?: number;
+  metricsInterval?: number;
+  opaqueSurface?: boolean;
+  msaaSamples?: number;
+  preferGles3?: boolean;
+  onMetrics?: (metrics: {[key: string]: number}) => void;
+  // Tap-to-visible and instant placement promotion timings
+  onPlacementTiming?: (event: ARState) => void;
+  // Pass to ARImageCommands to remove placed images
+  nativeRef?: React.RefObject<any>;
 }
 
 const ARImageView: React.FC<ARImageViewProps> = ({
@@ -86,7 +162,25 @@ const ARImageView: React.FC<ARImageViewProps> = ({
   imageUrl,
   style,
   onBack,
+  anchorGroupRadius,
+  maxAnchors,
+  anchorEvictionPolicy,
+  instantPlacement,
+  sessionConfig,
+  autoDisablePlaneFinding,
+  planeFindingIdleTimeout,
+  metricsInterval,
+  opaqueSurface,
+  msaaSamples,
+  preferGles3,
+  onMetrics,
+  onPlacementTiming,
+  nativeRef,
 }) => {
+  const onPlacementTimingRef = useRef(onPlacementTiming);
+  onPlacementTimingRef.current = onPlacementTiming;
+  const onMetricsRef = useRef(onMetrics);
+  onMetricsRef.current = onMetrics;
   const [arState, setArState] = useState<ARState>({
     type: 'INITIALIZING',
     message: 'Initializing AR...',
@@ -156,6 +250,21 @@ const ARImageView: React.FC<ARImageViewProps> = ({
     const subscription = eventEmitter.addListener(
       'onARStateChange',
       (event: ARState) => {
+        if (
+          event.type === 'PLACEMENT_VISIBLE' ||
+          event.type === 'PLACEMENT_PROMOTED'
+        ) {
+          // Timing only, keep the overlay state as it is
+          onPlacementTimingRef.current?.(event);
+          return;
+        }
+        if (event.type === 'METRICS') {
+          if (event.metrics) {
+            onMetricsRef.current?.(event.metrics);
+          }
+          return;
+        }
+
         console.log('AR Image State Update:', event);
         setArState(event);
 
@@ -248,9 +357,21 @@ const ARImageView: React.FC<ARImageViewProps> = ({
     <View style={[styles.container, style]}>
       {/* Native AR View */}
       <NativeARImage
+        ref={nativeRef}
         style={styles.arView}
         imageSource={imageSource}
         imageUrl={imageUrl}
+        anchorGroupRadius={anchorGroupRadius}
+        maxAnchors={maxAnchors}
+        anchorEvictionPolicy={anchorEvictionPolicy}
+        instantPlacement={instantPlacement}
+        sessionConfig={sessionConfig}
+        autoDisablePlaneFinding={autoDisablePlaneFinding}
+        planeFindingIdleTimeout={planeFindingIdleTimeout}
+        metricsInterval={metricsInterval}
+        opaqueSurface={opaqueSurface}
+        msaaSamples={msaaSamples}
+        preferGles3={preferGles3}
       />
 
       {/* Always Visible Back Button */}
@@ -11,6 +11,8 @@ import {
   Easing,
   Platform,
   TouchableOpacity,
+  UIManager,
+  findNodeHandle,
 } from 'react-native';
 
 // Design System Constants
@@ -59,10 +61,62 @@ const RADIUS = {
 interface NativeARTextProps {
   style?: ViewStyle;
   text: string;
+  // Placements closer than this (meters) share one ARCore anchor
+  anchorGroupRadius?: number;
+  // Oldest/farthest/least-recently-visible text is evicted past this count (0 = unlimited)
+  maxAnchors?: number;
+  anchorEvictionPolicy?: AnchorEvictionPolicy;
+  // Place at an estimated depth before a surface is found (ARCore Instant Placement)
+  instantPlacement?: boolean;
+  // ARCore session profile and per-field overrides, applied without recreating the session
+  sessionConfig?: SessionConfig;
+  // Pause plane finding once placed content settles; the next touch resumes it
+  autoDisablePlaneFinding?: boolean;
+  // Seconds without touches before plane finding pauses (0 = only after placement)
+  planeFindingIdleTimeout?: number;
+  // Milliseconds between METRICS events (0 = off)
+  metricsInterval?: number;
+  // EGL setup, read once when the view mounts. Opaque skips compositor blending.
+  opaqueSurface?: boolean;
+  msaaSamples?: number;
+  preferGles3?: boolean;
+}
+
+export type AnchorEvictionPolicy = 'oldest' | 'farthest' | 'notVisibleLongest';
+
+export interface SessionConfig {
+  // lowPower: no depth/light, fixed focus; balanced (default): no depth; quality: depth, HDR light
+  profile?: 'lowPower' | 'balanced' | 'quality';
+  depthMode?: 'disabled' | 'automatic' | 'rawDepthOnly';
+  planeFindingMode?: 'disabled' | 'horizontal' | 'vertical' | 'horizontalAndVertical';
+  focusMode?: 'fixed' | 'auto';
+  lightEstimationMode?: 'disabled' | 'ambientIntensity' | 'environmentalHdr';
+  updateMode?: 'blocking' | 'latestCameraImage';
 }
 
 const NativeARText = requireNativeComponent<NativeARTextProps>('NativeARText');
 
+// Commands handled by NativeARTextViewManager.receiveCommand
+const dispatchCommand = (
+  ref: React.RefObject<any>,
+  command: string,
+  args: any[] = [],
+) => {
+  const handle = findNodeHandle(ref.current);
+  if (handle != null) {
+    UIManager.dispatchViewManagerCommand(handle, command, args);
+  }
+};
+
+export const ARTextCommands = {
+  removeAnchor: (ref: React.RefObject<any>, anchorId: number) =>
+    dispatchCommand(ref, 'removeAnchor', [anchorId]),
+  clearAnchors: (ref: React.RefObject<any>) =>
+    dispatchCommand(ref, 'clearAnchors'),
+  enablePlaneFinding: (ref: React.RefObject<any>) =>
+    dispatchCommand(ref, 'enablePlaneFinding'),
+};
+
 // AR State interface
 interface ARTextState {
   type: string;
@@ -70,15 +124,59 @@ interface ARTextState {
   arSessionReady: boolean;
   textRendererReady: boolean;
   planeDetected: boolean;
+  // Present on TEXT_PLACED, ANCHOR_REMOVED and ANCHOR_EVICTED
+  anchorId?: number;
+  // Present on PLACEMENT_VISIBLE and PLACEMENT_PROMOTED, measured from the tap
+  latencyMs?: number;
+  // Present on METRICS, e.g. sessionUpdateMs and planeFindingCpuSavedMs
+  metrics?: {[key: string]: number};
 }
 
 interface ARTextViewProps {
   text: string;
   style?: ViewStyle;
   onBack?: () => void;
+  anchorGroupRadius?: number;
+  maxAnchors?: number;
+  anchorEvictionPolicy?: AnchorEvictionPolicy;
+  instantPlacement?: boolean;
+  sessionConfig?: SessionConfig;
+  autoDisablePlaneFinding?: boolean;
+  planeFindingIdleTimeout?: number;
+  metricsInterval?: number;
+  opaqueSurface?: boolean;
+  msaaSamples?: number;
+  preferGles3?: boolean;
+  onMetrics?: (metrics: {[key: string]: number}) => void;
+  // Tap-to-visible and instant placement promotion timings
+  onPlacementTiming?: (event: ARTextState) => void;
+  // Pass to ARTextCommands to remove placed text
+  nativeRef?: React.RefObject<any>;
 }
 
-const ARTextView: React.FC<ARTextViewProps> = ({text, style, onBack}) => {
+const ARTextView: React.FC<ARTextViewProps> = ({
+  text,
+  style,
+  onBack,
+  anchorGroupRadius,
+  maxAnchors,
+  anchorEvictionPolicy,
+  instantPlacement,
+  sessionConfig,
+  autoDisablePlaneFinding,
+  planeFindingIdleTimeout,
+  metricsInterval,
+  opaqueSurface,
+  msaaSamples,
+  preferGles3,
+  onMetrics,
+  onPlacementTiming,
+  nativeRef,
+}) => {
+  const onPlacementTimingRef = useRef(onPlacementTiming);
+  onPlacementTimingRef.current = onPlacementTiming;
+  const onMetricsRef = useRef(onMetrics);
+  onMetricsRef.current = onMetrics;
   const [arState, setArState] = useState<ARTextState>({
     type: 'INITIALIZING',
     message: 'Initializing AR...',
@@ -148,6 +246,21 @@ const ARTextView: React.FC<ARTextViewProps> = ({text, style, onBack}) => {
     const subscription = eventEmitter.addListener(
       'onARTextStateChange',
       (event: ARTextState) => {
+        if (
+          event.type === 'PLACEMENT_VISIBLE' ||
+          event.type === 'PLACEMENT_PROMOTED'
+        ) {
+          // Timing only, keep the overlay state as it is
+          onPlacementTimingRef.current?.(event);
+          return;
+        }
+        if (event.type === 'METRICS') {
+          if (event.metrics) {
+            onMetricsRef.current?.(event.metrics);
+          }
+          return;
+        }
+
         console.log('AR Text State Update:', event);
         setArState(event);
 
@@ -246,7 +359,22 @@ const ARTextView: React.FC<ARTextViewProps> = ({text, style, onBack}) => {
   return (
     <View style={[styles.container, style]}>
       {/* Native AR View */}
-      <NativeARText style={styles.arView} text={text} />
+      <NativeARText
+        ref={nativeRef}
+        style={styles.arView}
+        text={text}
+        anchorGroupRadius={anchorGroupRadius}
+        maxAnchors={maxAnchors}
+        anchorEvictionPolicy={anchorEvictionPolicy}
+        instantPlacement={instantPlacement}
+        sessionConfig={sessionConfig}
+        autoDisablePlaneFinding={autoDisablePlaneFinding}
+        planeFindingIdleTimeout={planeFindingIdleTimeout}
+        metricsInterval={metricsInterval}
+        opaqueSurface={opaqueSurface}
+        msaaSamples={msaaSamples}
+        preferGles3={preferGles3}
+      />
 
       {/* Always Visible Back Button */}
       {onBack && (
@@ -0,0 +1,98 @@
+package com.visionar;
+
+import java.util.List;
+
+// Caps the number of live placements per view. When a new placement pushes the count over
+// the limit, one victim is chosen by the configured policy and evicted by the caller.
+class AnchorBudget {
+  static final int DEFAULT_MAX_ANCHORS = 32;
+
+  enum Policy {
+    OLDEST,
+    FARTHEST,
+    NOT_VISIBLE_LONGEST;
+
+    static Policy fromString(String value) {
+      if (value == null) return OLDEST;
+      switch (value) {
+        case "farthest":
+          return FARTHEST;
+        case "notVisibleLongest":
+          return NOT_VISIBLE_LONGEST;
+        default:
+          return OLDEST;
+      }
+    }
+  }
+
+  private volatile int maxAnchors = DEFAULT_MAX_ANCHORS;
+  private volatile Policy policy = Policy.OLDEST;
+
+  // 0 or less means unlimited
+  void setMaxAnchors(int maxAnchors) {
+    this.maxAnchors = maxAnchors;
+  }
+
+  void setPolicy(Policy policy) {
+    this.policy = policy != null ? policy : Policy.OLDEST;
+  }
+
+  Policy getPolicy() {
+    return policy;
+  }
+
+  boolean isOverBudget(int count) {
+    int max = maxAnchors;
+    return max > 0 && count > max;
+  }
+
+  // Returns the index of the placement to evict. The newest placement (last index) is never
+  // chosen so the item the user just placed always survives.
+  int selectVictim(List<AnchorGroupManager.Placement> placements, float[] model,
+                   float cameraX, float cameraY, float cameraZ) {
+    int candidates = placements.size() - 1;
+    if (candidates <= 0) return -1;
+
+    Policy current = policy;
+    int victim = 0;
+    // Timestamps stay longs: a float cannot tell apart epoch millis minutes apart
+    float farthest = -Float.MAX_VALUE;
+    long earliest = Long.MAX_VALUE;
+    for (int i = 0; i < candidates; i++) {
+      AnchorGroupManager.Placement placement = placements.get(i);
+      switch (current) {
+        case FARTHEST:
+          placement.getModelMatrix(model);
+          float dx = model[12] - cameraX;
+          float dy = model[13] - cameraY;
+          float dz = model[14] - cameraZ;
+          float distance = dx * dx + dy * dy + dz * dz;
+          if (distance > farthest) {
+            farthest = distance;
+            victim = i;
+          }
+          break;
+        case NOT_VISIBLE_LONGEST:
+        case OLDEST:
+        default:
+          long time = current == Policy.NOT_VISIBLE_LONGEST ? placement.lastVisibleMs : placement.createdAtMs;
+          if (time < earliest) {
+            earliest = time;
+            victim = i;
+          }
+          break;
+      }
+    }
+    return victim;
+  }
+
+  // True when the model origin projects inside the viewport
+  static boolean isInView(float[] viewProj, float[] model) {
+    float x = model[12], y = model[13], z = model[14];
+    float clipX = viewProj[0] * x + viewProj[4] * y + viewProj[8] * z + viewProj[12];
+    float clipY = viewProj[1] * x + viewProj[5] * y + viewProj[9] * z + viewProj[13];
+    float clipW = viewProj[3] * x + viewProj[7] * y + viewProj[11] * z + viewProj[15];
+    if (clipW <= 0.0001f) return false;
+    return Math.abs(clipX) <= clipW && Math.abs(clipY) <= clipW;
+  }
+}
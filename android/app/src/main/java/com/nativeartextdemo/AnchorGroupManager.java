@@ -0,0 +1,236 @@
+package com.visionar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Shares ARCore anchors between nearby content items. Every placement keeps a local
+// transform relative to its group anchor, so a table full of labels costs one anchor
+// instead of one per tap. Poses are column-major matrices and times come from the caller's
+// frame clock, so this runs against FakeArSession as well. All methods must be called on
+// the GL thread.
+class AnchorGroupManager {
+  static final float DEFAULT_GROUP_RADIUS = 0.5f; // meters
+  // Assumed depth for instant placement hits, ARCore's suggested default
+  static final float INSTANT_PLACEMENT_DISTANCE = 1.0f; // meters
+
+  private final List<Group> groups = new ArrayList<>();
+  private volatile float groupRadius = DEFAULT_GROUP_RADIUS;
+  private int nextPlacementId = 1;
+
+  // A radius of 0 disables grouping (one anchor per placement, the old behaviour)
+  void setGroupRadius(float radius) {
+    groupRadius = Math.max(0f, radius);
+  }
+
+  int getLiveAnchorCount() {
+    return groups.size();
+  }
+
+  // Refresh every group pose once per frame, placements only compose against the cached matrix.
+  // Instant placement groups are promoted here once ARCore switches them to full tracking.
+  void updateGroupPoses() {
+    for (int i = 0; i < groups.size(); i++) {
+      Group group = groups.get(i);
+      if (group.instant && !group.anchor.isApproximate()) {
+        group.instant = false;
+      }
+      group.refresh();
+    }
+  }
+
+  Placement place(ArSession.Hit hit, long nowMs) {
+    float[] hitPose = new float[16];
+    hit.getPoseMatrix(hitPose, 0);
+    return attach(groupFor(hitPose, hit, null), hitPose, nextPlacementId++, nowMs);
+  }
+
+  // Instant placement hits get their own anchor: its pose is only an estimate until ARCore
+  // converges, so nothing else may join the group before it is promoted
+  Placement placeInstant(ArSession.Hit hit, long nowMs) {
+    float[] hitPose = new float[16];
+    hit.getPoseMatrix(hitPose, 0);
+    Group group = new Group(hit.createAnchor());
+    group.instant = true;
+    groups.add(group);
+    return attach(group, hitPose, nextPlacementId++, nowMs);
+  }
+
+  // Places at a pose resolved without ARCore hitTest (see PlaneRaycaster)
+  Placement place(ArSession.Plane plane, float[] pose, long nowMs) {
+    return attach(groupFor(pose, null, plane), pose, nextPlacementId++, nowMs);
+  }
+
+  // Moves a placement to a new hit. The new placement is created before the old one is
+  // released so a drag inside the same group never detaches and recreates the anchor.
+  Placement relocate(Placement old, ArSession.Hit hit) {
+    float[] hitPose = new float[16];
+    hit.getPoseMatrix(hitPose, 0);
+    return move(old, groupFor(hitPose, hit, null), hitPose);
+  }
+
+  Placement relocate(Placement old, ArSession.Plane plane, float[] pose) {
+    return move(old, groupFor(pose, null, plane), pose);
+  }
+
+  // A tap at view pixel x, y: the CPU raycast hit while its plane still tracks, else ARCore's hit
+  // test (e.g. feature points only), else an instant placement when enabled. Null if nothing is
+  // under the tap.
+  Placement placeAt(ArSession.Frame frame, PlaneRaycaster.Hit<ArSession.Plane> planeHit, float x, float y,
+                    boolean instantPlacement, long nowMs) {
+    if (planeHit != null && planeHit.plane.getTrackingState() == ArSession.Tracking.TRACKING) {
+      return place(planeHit.plane, poseOnPlane(planeHit), nowMs);
+    }
+    List<ArSession.Hit> hits = frame.hitTest(x, y);
+    if (!hits.isEmpty()) return place(hits.get(0), nowMs);
+    if (instantPlacement) {
+      List<ArSession.Hit> instantHits = frame.hitTestInstantPlacement(x, y, INSTANT_PLACEMENT_DISTANCE);
+      if (!instantHits.isEmpty()) return placeInstant(instantHits.get(0), nowMs);
+    }
+    return null;
+  }
+
+  // A drag step to view pixel x, y, resolved like placeAt() without instant placement; old
+  // itself when nothing is under the finger
+  Placement relocateAt(Placement old, ArSession.Frame frame, PlaneRaycaster.Hit<ArSession.Plane> planeHit,
+                       float x, float y) {
+    if (planeHit != null && planeHit.plane.getTrackingState() == ArSession.Tracking.TRACKING) {
+      return relocate(old, planeHit.plane, poseOnPlane(planeHit));
+    }
+    List<ArSession.Hit> hits = frame.hitTest(x, y);
+    return hits.isEmpty() ? old : relocate(old, hits.get(0));
+  }
+
+  // World pose of a CPU raycast hit, oriented like the plane it landed on
+  static float[] poseOnPlane(PlaneRaycaster.Hit<ArSession.Plane> hit) {
+    float[] pose = new float[16];
+    hit.plane.getCenterMatrix(pose, 0);
+    pose[12] = hit.x;
+    pose[13] = hit.y;
+    pose[14] = hit.z;
+    return pose;
+  }
+
+  private Placement move(Placement old, Group group, float[] pose) {
+    // Keep the identity of the item so JS ids and eviction bookkeeping survive a drag
+    Placement moved = attach(group, pose, old.id, old.createdAtMs);
+    moved.lastVisibleMs = old.lastVisibleMs;
+    release(old);
+    return moved;
+  }
+
+  private Placement attach(Group group, float[] pose, int id, long createdAtMs) {
+    Placement placement = new Placement(group, id, createdAtMs);
+    placement.setWorldPose(pose);
+    group.refCount++;
+    return placement;
+  }
+
+  void release(Placement placement) {
+    if (placement == null || placement.released) return;
+    placement.released = true;
+    Group group = placement.group;
+    group.refCount--;
+    if (group.refCount <= 0) {
+      groups.remove(group);
+      try { group.anchor.detach(); } catch (Exception ignored) {}
+    }
+  }
+
+  void clear() {
+    for (Group group : groups) {
+      try { group.anchor.detach(); } catch (Exception ignored) {}
+    }
+    groups.clear();
+  }
+
+  // Exactly one of hit / plane is non-null; a new anchor is only created when no group is near
+  private Group groupFor(float[] pose, ArSession.Hit hit, ArSession.Plane plane) {
+    Group group = findNearestGroup(pose);
+    if (group == null) {
+      group = new Group(hit != null ? hit.createAnchor() : plane.createAnchor(pose));
+      groups.add(group);
+    }
+    return group;
+  }
+
+  private Group findNearestGroup(float[] pose) {
+    float radius = groupRadius;
+    if (radius <= 0f) return null;
+
+    Group nearest = null;
+    float nearestDistSq = radius * radius;
+    for (int i = 0; i < groups.size(); i++) {
+      Group group = groups.get(i);
+      if (group.instant || group.trackingState != ArSession.Tracking.TRACKING) continue;
+      float dx = group.matrix[12] - pose[12];
+      float dy = group.matrix[13] - pose[13];
+      float dz = group.matrix[14] - pose[14];
+      float distSq = dx * dx + dy * dy + dz * dz;
+      if (distSq <= nearestDistSq) {
+        nearestDistSq = distSq;
+        nearest = group;
+      }
+    }
+    return nearest;
+  }
+
+  private static class Group {
+    final ArSession.Anchor anchor;
+    final float[] matrix = new float[16];
+    ArSession.Tracking trackingState;
+    int refCount = 0;
+    // True while the group still follows an approximate instant placement point
+    boolean instant;
+
+    Group(ArSession.Anchor anchor) {
+      this.anchor = anchor;
+      refresh();
+    }
+
+    void refresh() {
+      trackingState = anchor.getTrackingState();
+      if (trackingState == ArSession.Tracking.TRACKING) {
+        anchor.getPoseMatrix(matrix, 0);
+      }
+    }
+  }
+
+  // A content item attached to a shared group anchor
+  static class Placement {
+    final int id;
+    final long createdAtMs;
+    long lastVisibleMs;
+    private final Group group;
+    private final float[] localMatrix = new float[16];
+    private boolean released = false;
+
+    private Placement(Group group, int id, long createdAtMs) {
+      this.group = group;
+      this.id = id;
+      this.createdAtMs = createdAtMs;
+      this.lastVisibleMs = createdAtMs;
+    }
+
+    private void setWorldPose(float[] worldPose) {
+      float[] anchorPose = new float[16];
+      float[] inverse = new float[16];
+      group.anchor.getPoseMatrix(anchorPose, 0);
+      MatrixMath.invert(inverse, anchorPose);
+      MatrixMath.multiplyMM(localMatrix, inverse, worldPose);
+    }
+
+    ArSession.Tracking getTrackingState() {
+      return group.trackingState;
+    }
+
+    // True until an instant placement is promoted to full tracking
+    boolean isInstant() {
+      return group.instant;
+    }
+
+    // model = group pose * local transform
+    void getModelMatrix(float[] out) {
+      MatrixMath.multiplyMM(out, group.matrix, localMatrix);
+    }
+  }
+}
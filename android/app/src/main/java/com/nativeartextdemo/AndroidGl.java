@@ -0,0 +1,261 @@
+package com.visionar;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// GlApi on the device: every call goes straight to GLES20/GLES30 on the current context
+class AndroidGl implements GlApi {
+  // Tightly packed RGBA8 copy of a bitmap for glTexImage2D, converting other configs first
+  static ByteBuffer rgbaPixels(Bitmap bitmap) {
+    Bitmap source = bitmap.getConfig() == Bitmap.Config.ARGB_8888
+        ? bitmap
+        : bitmap.copy(Bitmap.Config.ARGB_8888, false);
+    ByteBuffer pixels = ByteBuffer.allocateDirect(source.getWidth() * source.getHeight() * 4)
+        .order(ByteOrder.nativeOrder());
+    source.copyPixelsToBuffer(pixels);
+    pixels.position(0);
+    if (source != bitmap) source.recycle();
+    return pixels;
+  }
+
+  @Override
+  public void glClear(int mask) {
+    GLES20.glClear(mask);
+  }
+
+  @Override
+  public String glGetString(int name) {
+    return GLES20.glGetString(name);
+  }
+
+  @Override
+  public int glCreateShader(int type) {
+    return GLES20.glCreateShader(type);
+  }
+
+  @Override
+  public void glShaderSource(int shader, String source) {
+    GLES20.glShaderSource(shader, source);
+  }
+
+  @Override
+  public void glCompileShader(int shader) {
+    GLES20.glCompileShader(shader);
+  }
+
+  @Override
+  public int glCreateProgram() {
+    return GLES20.glCreateProgram();
+  }
+
+  @Override
+  public void glAttachShader(int program, int shader) {
+    GLES20.glAttachShader(program, shader);
+  }
+
+  @Override
+  public void glLinkProgram(int program) {
+    GLES20.glLinkProgram(program);
+  }
+
+  @Override
+  public int glGetAttribLocation(int program, String name) {
+    return GLES20.glGetAttribLocation(program, name);
+  }
+
+  @Override
+  public int glGetUniformLocation(int program, String name) {
+    return GLES20.glGetUniformLocation(program, name);
+  }
+
+  @Override
+  public int glGetUniformBlockIndex(int program, String name) {
+    return GLES30.glGetUniformBlockIndex(program, name);
+  }
+
+  @Override
+  public void glUniformBlockBinding(int program, int blockIndex, int binding) {
+    GLES30.glUniformBlockBinding(program, blockIndex, binding);
+  }
+
+  @Override
+  public void glUseProgram(int program) {
+    GLES20.glUseProgram(program);
+  }
+
+  @Override
+  public void glUniform1i(int location, int x) {
+    GLES20.glUniform1i(location, x);
+  }
+
+  @Override
+  public void glUniform1f(int location, float x) {
+    GLES20.glUniform1f(location, x);
+  }
+
+  @Override
+  public void glUniform4f(int location, float x, float y, float z, float w) {
+    GLES20.glUniform4f(location, x, y, z, w);
+  }
+
+  @Override
+  public void glUniform4fv(int location, int count, float[] value, int offset) {
+    GLES20.glUniform4fv(location, count, value, offset);
+  }
+
+  @Override
+  public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+    GLES20.glUniformMatrix4fv(location, count, transpose, value, offset);
+  }
+
+  @Override
+  public void glEnable(int cap) {
+    GLES20.glEnable(cap);
+  }
+
+  @Override
+  public void glDisable(int cap) {
+    GLES20.glDisable(cap);
+  }
+
+  @Override
+  public void glBlendFunc(int src, int dst) {
+    GLES20.glBlendFunc(src, dst);
+  }
+
+  @Override
+  public void glDepthMask(boolean flag) {
+    GLES20.glDepthMask(flag);
+  }
+
+  @Override
+  public void glGenTextures(int n, int[] textures, int offset) {
+    GLES20.glGenTextures(n, textures, offset);
+  }
+
+  @Override
+  public void glDeleteTextures(int n, int[] textures, int offset) {
+    GLES20.glDeleteTextures(n, textures, offset);
+  }
+
+  @Override
+  public void glActiveTexture(int texture) {
+    GLES20.glActiveTexture(texture);
+  }
+
+  @Override
+  public void glBindTexture(int target, int texture) {
+    GLES20.glBindTexture(target, texture);
+  }
+
+  @Override
+  public void glTexParameteri(int target, int pname, int param) {
+    GLES20.glTexParameteri(target, pname, param);
+  }
+
+  @Override
+  public void glTexImage2D(int target, int level, int internalFormat, int width, int height, int border,
+                           int format, int type, Buffer pixels) {
+    GLES20.glTexImage2D(target, level, internalFormat, width, height, border, format, type, pixels);
+  }
+
+  @Override
+  public void glGenerateMipmap(int target) {
+    GLES20.glGenerateMipmap(target);
+  }
+
+  @Override
+  public void glGenBuffers(int n, int[] buffers, int offset) {
+    GLES20.glGenBuffers(n, buffers, offset);
+  }
+
+  @Override
+  public void glDeleteBuffers(int n, int[] buffers, int offset) {
+    GLES20.glDeleteBuffers(n, buffers, offset);
+  }
+
+  @Override
+  public void glBindBuffer(int target, int buffer) {
+    GLES20.glBindBuffer(target, buffer);
+  }
+
+  @Override
+  public void glBindBufferBase(int target, int index, int buffer) {
+    GLES30.glBindBufferBase(target, index, buffer);
+  }
+
+  @Override
+  public void glBufferData(int target, int size, Buffer data, int usage) {
+    GLES20.glBufferData(target, size, data, usage);
+  }
+
+  @Override
+  public void glBufferSubData(int target, int offset, int size, Buffer data) {
+    GLES20.glBufferSubData(target, offset, size, data);
+  }
+
+  @Override
+  public void glGenVertexArrays(int n, int[] arrays, int offset) {
+    GLES30.glGenVertexArrays(n, arrays, offset);
+  }
+
+  @Override
+  public void glDeleteVertexArrays(int n, int[] arrays, int offset) {
+    GLES30.glDeleteVertexArrays(n, arrays, offset);
+  }
+
+  @Override
+  public void glBindVertexArray(int array) {
+    GLES30.glBindVertexArray(array);
+  }
+
+  @Override
+  public void glEnableVertexAttribArray(int index) {
+    GLES20.glEnableVertexAttribArray(index);
+  }
+
+  @Override
+  public void glDisableVertexAttribArray(int index) {
+    GLES20.glDisableVertexAttribArray(index);
+  }
+
+  @Override
+  public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+    GLES20.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+  }
+
+  @Override
+  public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer pointer) {
+    GLES20.glVertexAttribPointer(index, size, type, normalized, stride, pointer);
+  }
+
+  @Override
+  public void glVertexAttribDivisor(int index, int divisor) {
+    GLES30.glVertexAttribDivisor(index, divisor);
+  }
+
+  @Override
+  public void glDrawArrays(int mode, int first, int count) {
+    GLES20.glDrawArrays(mode, first, count);
+  }
+
+  @Override
+  public void glDrawArraysInstanced(int mode, int first, int count, int instanceCount) {
+    GLES30.glDrawArraysInstanced(mode, first, count, instanceCount);
+  }
+
+  @Override
+  public void glDrawElements(int mode, int count, int type, int offset) {
+    GLES20.glDrawElements(mode, count, type, offset);
+  }
+
+  @Override
+  public void glDrawElementsInstanced(int mode, int count, int type, int offset, int instanceCount) {
+    GLES30.glDrawElementsInstanced(mode, count, type, offset, instanceCount);
+  }
+}
@@ -0,0 +1,280 @@
+package com.visionar;
+
+import com.google.ar.core.Coordinates2d;
+import com.google.ar.core.HitResult;
+import com.google.ar.core.InstantPlacementPoint;
+import com.google.ar.core.Point;
+import com.google.ar.core.Pose;
+import com.google.ar.core.Session;
+import com.google.ar.core.Trackable;
+import com.google.ar.core.TrackingState;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// ArSession on a device: a thin adapter over the ARCore session the view owns. The frame and
+// camera wrappers are reused across updates and planes keep one wrapper for their lifetime,
+// so the frame loop allocates nothing here beyond what ARCore itself does.
+class ArCoreSession implements ArSession {
+  private final Session session;
+  private final FrameAdapter frame = new FrameAdapter();
+  private final CameraAdapter camera = new CameraAdapter();
+  private final Map<com.google.ar.core.Plane, PlaneAdapter> planes = new HashMap<>();
+  private final List<ArSession.Plane> updatedPlanes = new ArrayList<>();
+
+  ArCoreSession(Session session) {
+    this.session = session;
+  }
+
+  @Override
+  public void setCameraTextureNames(int[] textureIds) {
+    session.setCameraTextureNames(textureIds);
+  }
+
+  @Override
+  public ArSession.Frame update() throws Exception {
+    frame.frame = session.update();
+    camera.camera = frame.frame.getCamera();
+
+    updatedPlanes.clear();
+    for (com.google.ar.core.Plane plane : frame.frame.getUpdatedTrackables(com.google.ar.core.Plane.class)) {
+      PlaneAdapter adapter = planes.get(plane);
+      if (adapter == null) {
+        adapter = new PlaneAdapter(plane);
+        planes.put(plane, adapter);
+      }
+      updatedPlanes.add(adapter);
+      // Reported once more as STOPPED so consumers can drop it, then forgotten
+      if (plane.getTrackingState() == TrackingState.STOPPED) planes.remove(plane);
+    }
+    return frame;
+  }
+
+  static Tracking tracking(TrackingState state) {
+    switch (state) {
+      case TRACKING:
+        return Tracking.TRACKING;
+      case PAUSED:
+        return Tracking.PAUSED;
+      default:
+        return Tracking.STOPPED;
+    }
+  }
+
+  // Rigid column-major matrix to an ARCore pose
+  static Pose toPose(float[] m) {
+    float trace = m[0] + m[5] + m[10];
+    float qx, qy, qz, qw;
+    if (trace > 0f) {
+      float s = (float) Math.sqrt(trace + 1f) * 2f;
+      qw = 0.25f * s;
+      qx = (m[6] - m[9]) / s;
+      qy = (m[8] - m[2]) / s;
+      qz = (m[1] - m[4]) / s;
+    } else if (m[0] > m[5] && m[0] > m[10]) {
+      float s = (float) Math.sqrt(1f + m[0] - m[5] - m[10]) * 2f;
+      qw = (m[6] - m[9]) / s;
+      qx = 0.25f * s;
+      qy = (m[4] + m[1]) / s;
+      qz = (m[8] + m[2]) / s;
+    } else if (m[5] > m[10]) {
+      float s = (float) Math.sqrt(1f + m[5] - m[0] - m[10]) * 2f;
+      qw = (m[8] - m[2]) / s;
+      qx = (m[4] + m[1]) / s;
+      qy = 0.25f * s;
+      qz = (m[9] + m[6]) / s;
+    } else {
+      float s = (float) Math.sqrt(1f + m[10] - m[0] - m[5]) * 2f;
+      qw = (m[1] - m[4]) / s;
+      qx = (m[8] + m[2]) / s;
+      qy = (m[9] + m[6]) / s;
+      qz = 0.25f * s;
+    }
+    return new Pose(new float[]{m[12], m[13], m[14]}, new float[]{qx, qy, qz, qw});
+  }
+
+  private static boolean isSurfaceHit(HitResult hit) {
+    Trackable trackable = hit.getTrackable();
+    if (trackable instanceof com.google.ar.core.Plane) {
+      return ((com.google.ar.core.Plane) trackable).isPoseInPolygon(hit.getHitPose());
+    }
+    return trackable instanceof Point
+        && ((Point) trackable).getOrientationMode() == Point.OrientationMode.ESTIMATED_SURFACE_NORMAL;
+  }
+
+  private static List<ArSession.Hit> wrap(List<HitResult> results, boolean surfacesOnly) {
+    if (results.isEmpty()) return Collections.emptyList();
+    List<ArSession.Hit> hits = new ArrayList<>(results.size());
+    for (HitResult result : results) {
+      if (!surfacesOnly || isSurfaceHit(result)) hits.add(new HitAdapter(result));
+    }
+    return hits;
+  }
+
+  private final class FrameAdapter implements ArSession.Frame {
+    com.google.ar.core.Frame frame;
+
+    @Override
+    public long getTimestamp() {
+      return frame.getTimestamp();
+    }
+
+    @Override
+    public ArSession.Camera getCamera() {
+      return camera;
+    }
+
+    @Override
+    public Collection<ArSession.Plane> getUpdatedPlanes() {
+      return updatedPlanes;
+    }
+
+    @Override
+    public boolean hasDisplayGeometryChanged() {
+      return frame.hasDisplayGeometryChanged();
+    }
+
+    @Override
+    public void transformDisplayUvs(FloatBuffer ndc, FloatBuffer uvs) {
+      frame.transformCoordinates2d(
+          Coordinates2d.OPENGL_NORMALIZED_DEVICE_COORDINATES, ndc, Coordinates2d.TEXTURE_NORMALIZED, uvs);
+    }
+
+    @Override
+    public int getCameraTextureName() {
+      return frame.getCameraTextureName();
+    }
+
+    @Override
+    public List<ArSession.Hit> hitTest(float x, float y) {
+      return wrap(frame.hitTest(x, y), true);
+    }
+
+    @Override
+    public List<ArSession.Hit> hitTestInstantPlacement(float x, float y, float approximateDistance) {
+      return wrap(frame.hitTestInstantPlacement(x, y, approximateDistance), false);
+    }
+  }
+
+  private static final class CameraAdapter implements ArSession.Camera {
+    com.google.ar.core.Camera camera;
+
+    @Override
+    public Tracking getTrackingState() {
+      return tracking(camera.getTrackingState());
+    }
+
+    @Override
+    public void getViewMatrix(float[] out, int offset) {
+      camera.getViewMatrix(out, offset);
+    }
+
+    @Override
+    public void getProjectionMatrix(float[] out, int offset, float near, float far) {
+      camera.getProjectionMatrix(out, offset, near, far);
+    }
+
+    @Override
+    public void getPoseMatrix(float[] out, int offset) {
+      camera.getPose().toMatrix(out, offset);
+    }
+  }
+
+  private static final class PlaneAdapter implements ArSession.Plane {
+    private final com.google.ar.core.Plane plane;
+
+    PlaneAdapter(com.google.ar.core.Plane plane) {
+      this.plane = plane;
+    }
+
+    @Override
+    public Tracking getTrackingState() {
+      return tracking(plane.getTrackingState());
+    }
+
+    @Override
+    public boolean isSubsumed() {
+      return plane.getSubsumedBy() != null;
+    }
+
+    @Override
+    public void getCenterMatrix(float[] out, int offset) {
+      plane.getCenterPose().toMatrix(out, offset);
+    }
+
+    @Override
+    public FloatBuffer getPolygon() {
+      return plane.getPolygon();
+    }
+
+    @Override
+    public ArSession.Anchor createAnchor(float[] pose) {
+      return new AnchorAdapter(plane.createAnchor(toPose(pose)), null);
+    }
+  }
+
+  private static final class AnchorAdapter implements ArSession.Anchor {
+    private final com.google.ar.core.Anchor anchor;
+    // Non-null until ARCore switches the instant placement point to full tracking
+    private InstantPlacementPoint instantPoint;
+
+    AnchorAdapter(com.google.ar.core.Anchor anchor, InstantPlacementPoint instantPoint) {
+      this.anchor = anchor;
+      this.instantPoint = instantPoint;
+    }
+
+    @Override
+    public Tracking getTrackingState() {
+      return tracking(anchor.getTrackingState());
+    }
+
+    @Override
+    public void getPoseMatrix(float[] out, int offset) {
+      anchor.getPose().toMatrix(out, offset);
+    }
+
+    @Override
+    public boolean isApproximate() {
+      if (instantPoint != null
+          && instantPoint.getTrackingMethod() == InstantPlacementPoint.TrackingMethod.FULL_TRACKING) {
+        instantPoint = null;
+      }
+      return instantPoint != null;
+    }
+
+    @Override
+    public void detach() {
+      anchor.detach();
+    }
+  }
+
+  private static final class HitAdapter implements ArSession.Hit {
+    private final HitResult hit;
+
+    HitAdapter(HitResult hit) {
+      this.hit = hit;
+    }
+
+    @Override
+    public void getPoseMatrix(float[] out, int offset) {
+      hit.getHitPose().toMatrix(out, offset);
+    }
+
+    @Override
+    public ArSession.Anchor createAnchor() {
+      Trackable trackable = hit.getTrackable();
+      return new AnchorAdapter(hit.createAnchor(),
+          trackable instanceof InstantPlacementPoint ? (InstantPlacementPoint) trackable : null);
+    }
+
+    @Override
+    public boolean isInstant() {
+      return hit.getTrackable() instanceof InstantPlacementPoint;
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package com.visionar;
+
+import java.nio.FloatBuffer;
+import java.util.Collection;
+import java.util.List;
+
+// The slice of ARCore the per-frame render and interaction code reads, so that code can run
+// against ArCoreSession on a device or FakeArSession on a plain JVM. Poses are column-major
+// 4x4 matrices rather than ARCore Pose objects. Configuration, install and camera config
+// selection stay on the ARCore Session itself; only the frame loop goes through here.
+interface ArSession {
+  enum Tracking {
+    TRACKING,
+    PAUSED,
+    STOPPED
+  }
+
+  // Ring of external textures the camera image is written into
+  void setCameraTextureNames(int[] textureIds);
+
+  // Latest frame; the returned object (and everything read from it) is valid until the next call
+  Frame update() throws Exception;
+
+  interface Frame {
+    long getTimestamp();
+
+    Camera getCamera();
+
+    // Planes whose state changed this frame. The same plane is always the same object.
+    Collection<Plane> getUpdatedPlanes();
+
+    boolean hasDisplayGeometryChanged();
+
+    // Maps x/y pairs in normalized device coordinates to camera image texture coordinates
+    void transformDisplayUvs(FloatBuffer ndc, FloatBuffer uvs);
+
+    int getCameraTextureName();
+
+    // Surfaces under a view pixel, nearest first: planes hit inside their polygon and points
+    // with an estimated surface normal. Anything else ARCore reports is left out.
+    List<Hit> hitTest(float x, float y);
+
+    // Placement at an assumed depth when no surface is known yet
+    List<Hit> hitTestInstantPlacement(float x, float y, float approximateDistance);
+  }
+
+  interface Camera {
+    Tracking getTrackingState();
+
+    void getViewMatrix(float[] out, int offset);
+
+    void getProjectionMatrix(float[] out, int offset, float near, float far);
+
+    // Camera to world; the translation column is the camera position
+    void getPoseMatrix(float[] out, int offset);
+  }
+
+  interface Plane {
+    Tracking getTrackingState();
+
+    // True once the plane has been merged into another one
+    boolean isSubsumed();
+
+    // Plane local to world, local +Y is the plane normal
+    void getCenterMatrix(float[] out, int offset);
+
+    // Boundary as plane-local x/z pairs, positioned at the start
+    FloatBuffer getPolygon();
+
+    Anchor createAnchor(float[] pose);
+  }
+
+  interface Anchor {
+    Tracking getTrackingState();
+
+    void getPoseMatrix(float[] out, int offset);
+
+    // True while the anchor follows an instant placement estimate rather than full tracking
+    boolean isApproximate();
+
+    void detach();
+  }
+
+  interface Hit {
+    void getPoseMatrix(float[] out, int offset);
+
+    Anchor createAnchor();
+
+    boolean isInstant();
+  }
+}
@@ -0,0 +1,158 @@
+package com.visionar;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+// Draws the camera image behind the scene. Owns a small ring of external OES textures that
+// ARCore writes camera frames into round-robin, so writing the next frame does not have to
+// wait for the GPU to finish sampling the previous one. Each frame samples the texture
+// ARCore reports for it. On GLES 3 the quad lives in buffers recorded in a VAO, so a frame
+// binds one object instead of re-specifying both attributes from client memory.
+class BackgroundRenderer {
+  static final int CAMERA_TEXTURE_COUNT = 3;
+
+  private static final String VERTEX_SHADER =
+      "attribute vec4 a_Position;\n"
+      + "attribute vec2 a_TexCoord;\n"
+      + "varying vec2 v_TexCoord;\n"
+      + "void main() {\n"
+      + "   gl_Position = a_Position;\n"
+      + "   v_TexCoord = a_TexCoord;\n"
+      + "}";
+
+  private static final String FRAGMENT_SHADER =
+      "#extension GL_OES_EGL_image_external : require\n"
+      + "precision highp float;\n"
+      + "varying vec2 v_TexCoord;\n"
+      + "uniform samplerExternalOES u_Texture;\n"
+      + "void main() {\n"
+      + "   gl_FragColor = texture2D(u_Texture, v_TexCoord);\n"
+      + "}";
+
+  private final int[] cameraTextureIds = new int[CAMERA_TEXTURE_COUNT];
+  private int program;
+  private int positionAttrib;
+  private int texCoordAttrib;
+  private int textureUniform;
+  private FloatBuffer quadVertices;
+  private FloatBuffer quadTexCoordsTransformed;
+  private final GlApi gl;
+  private final GlStateCache state;
+  private int vertexArray = 0;
+  private int positionBuffer = 0;
+  private int texCoordBuffer = 0;
+
+  // Must be created on the GL thread
+  BackgroundRenderer(GlBackend backend) {
+    gl = backend.getGl();
+    state = backend.getState();
+    gl.glGenTextures(CAMERA_TEXTURE_COUNT, cameraTextureIds, 0);
+    for (int textureId : cameraTextureIds) {
+      state.bindTexture(0, GlApi.GL_TEXTURE_EXTERNAL_OES, textureId);
+      gl.glTexParameteri(GlApi.GL_TEXTURE_EXTERNAL_OES, GlApi.GL_TEXTURE_WRAP_S, GlApi.GL_CLAMP_TO_EDGE);
+      gl.glTexParameteri(GlApi.GL_TEXTURE_EXTERNAL_OES, GlApi.GL_TEXTURE_WRAP_T, GlApi.GL_CLAMP_TO_EDGE);
+      gl.glTexParameteri(GlApi.GL_TEXTURE_EXTERNAL_OES, GlApi.GL_TEXTURE_MIN_FILTER, GlApi.GL_LINEAR);
+      gl.glTexParameteri(GlApi.GL_TEXTURE_EXTERNAL_OES, GlApi.GL_TEXTURE_MAG_FILTER, GlApi.GL_LINEAR);
+    }
+
+    int vertexShader = loadShader(GlApi.GL_VERTEX_SHADER, VERTEX_SHADER);
+    int fragmentShader = loadShader(GlApi.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
+
+    program = gl.glCreateProgram();
+    gl.glAttachShader(program, vertexShader);
+    gl.glAttachShader(program, fragmentShader);
+    gl.glLinkProgram(program);
+
+    positionAttrib = gl.glGetAttribLocation(program, "a_Position");
+    texCoordAttrib = gl.glGetAttribLocation(program, "a_TexCoord");
+    textureUniform = gl.glGetUniformLocation(program, "u_Texture");
+    state.useProgram(program);
+    gl.glUniform1i(textureUniform, 0);
+
+    float[] vertices = {-1.0f, -1.0f, 1.0f, -1.0f, -1.0f, 1.0f, 1.0f, 1.0f};
+    float[] viewNormalizedCoords = {0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 1.0f, 1.0f, 1.0f};
+
+    quadVertices = ByteBuffer.allocateDirect(vertices.length * 4)
+        .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    quadVertices.put(vertices).position(0);
+
+    quadTexCoordsTransformed = ByteBuffer.allocateDirect(viewNormalizedCoords.length * 4)
+        .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    quadTexCoordsTransformed.put(viewNormalizedCoords).position(0);
+
+    if (backend.isGles3()) {
+      int[] buffers = new int[2];
+      gl.glGenBuffers(2, buffers, 0);
+      positionBuffer = buffers[0];
+      texCoordBuffer = buffers[1];
+
+      vertexArray = backend.createVertexArray();
+      state.bindVertexArray(vertexArray);
+      state.bindArrayBuffer(positionBuffer);
+      gl.glBufferData(GlApi.GL_ARRAY_BUFFER, vertices.length * 4, quadVertices, GlApi.GL_STATIC_DRAW);
+      gl.glVertexAttribPointer(positionAttrib, 2, GlApi.GL_FLOAT, false, 0, 0);
+      state.enableVertexAttribArray(positionAttrib);
+      state.bindArrayBuffer(texCoordBuffer);
+      gl.glBufferData(GlApi.GL_ARRAY_BUFFER, viewNormalizedCoords.length * 4, quadTexCoordsTransformed,
+          GlApi.GL_DYNAMIC_DRAW);
+      gl.glVertexAttribPointer(texCoordAttrib, 2, GlApi.GL_FLOAT, false, 0, 0);
+      state.enableVertexAttribArray(texCoordAttrib);
+      state.bindVertexArray(0);
+    }
+  }
+
+  // Registers the whole ring with the session; call whenever either side is (re)created
+  void attachTo(ArSession session) {
+    session.setCameraTextureNames(cameraTextureIds);
+  }
+
+  private int loadShader(int type, String shaderCode) {
+    int shader = gl.glCreateShader(type);
+    gl.glShaderSource(shader, shaderCode);
+    gl.glCompileShader(shader);
+    return shader;
+  }
+
+  void draw(ArSession.Frame frame) {
+    if (frame.hasDisplayGeometryChanged()) {
+      quadVertices.position(0);
+      quadTexCoordsTransformed.position(0);
+      frame.transformDisplayUvs(quadVertices, quadTexCoordsTransformed);
+      quadTexCoordsTransformed.position(0);
+      if (vertexArray != 0) {
+        state.bindArrayBuffer(texCoordBuffer);
+        gl.glBufferSubData(GlApi.GL_ARRAY_BUFFER, 0, 8 * 4, quadTexCoordsTransformed);
+      }
+    }
+
+    // The texture of the ring ARCore wrote this frame's image into
+    int textureId = frame.getCameraTextureName();
+
+    state.useProgram(program);
+    state.depthMask(false);
+    state.setDepthTest(false);
+    state.setBlend(false);
+    state.bindTexture(0, GlApi.GL_TEXTURE_EXTERNAL_OES, textureId);
+
+    if (vertexArray != 0) {
+      state.bindVertexArray(vertexArray);
+      gl.glDrawArrays(GlApi.GL_TRIANGLE_STRIP, 0, 4);
+    } else {
+      // Client-side arrays need the array buffer unbound
+      state.bindArrayBuffer(0);
+      quadVertices.position(0);
+      quadTexCoordsTransformed.position(0);
+      gl.glVertexAttribPointer(positionAttrib, 2, GlApi.GL_FLOAT, false, 0, quadVertices);
+      gl.glVertexAttribPointer(texCoordAttrib, 2, GlApi.GL_FLOAT, false, 0, quadTexCoordsTransformed);
+
+      state.enableVertexAttribArray(positionAttrib);
+      state.enableVertexAttribArray(texCoordAttrib);
+
+      gl.glDrawArrays(GlApi.GL_TRIANGLE_STRIP, 0, 4);
+
+      state.disableVertexAttribArray(positionAttrib);
+      state.disableVertexAttribArray(texCoordAttrib);
+    }
+  }
+}
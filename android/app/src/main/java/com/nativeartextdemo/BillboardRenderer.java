@@ -0,0 +1,252 @@
+package com.visionar;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+// Draws every placed billboard of a view with one texture. Placements are collected between
+// begin() and draw(); on GLES 3 their model matrices go into an instance buffer and the whole
+// batch is a single instanced draw out of a VAO, on GLES 2 the state is set up once and each
+// billboard costs one uniform upload and one draw.
+class BillboardRenderer {
+  private static final String VERTEX_SHADER =
+      "uniform mat4 u_MVP;\n" +
+      "attribute vec4 a_Position;\n" +
+      "attribute vec2 a_TexCoord;\n" +
+      "varying vec2 v_TexCoord;\n" +
+      "void main() {\n" +
+      "  gl_Position = u_MVP * a_Position;\n" +
+      "  v_TexCoord = a_TexCoord;\n" +
+      "}";
+
+  private static final String FRAGMENT_SHADER =
+      "precision mediump float;\n" +
+      "varying vec2 v_TexCoord;\n" +
+      "uniform sampler2D u_Texture;\n" +
+      "void main() {\n" +
+      "  gl_FragColor = texture2D(u_Texture, v_TexCoord);\n" +
+      "}";
+
+  private static final String VERTEX_SHADER_ES3 =
+      "#version 300 es\n" +
+      GlBackend.FRAME_UNIFORMS_GLSL +
+      "layout(location = 0) in vec4 a_Position;\n" +
+      "layout(location = 1) in vec2 a_TexCoord;\n" +
+      "layout(location = 2) in mat4 a_Model;\n" +
+      "out vec2 v_TexCoord;\n" +
+      "void main() {\n" +
+      "  gl_Position = u_ViewProj * a_Model * a_Position;\n" +
+      "  v_TexCoord = a_TexCoord;\n" +
+      "}";
+
+  private static final String FRAGMENT_SHADER_ES3 =
+      "#version 300 es\n" +
+      "precision mediump float;\n" +
+      "in vec2 v_TexCoord;\n" +
+      "uniform sampler2D u_Texture;\n" +
+      "out vec4 o_FragColor;\n" +
+      "void main() {\n" +
+      "  o_FragColor = texture(u_Texture, v_TexCoord);\n" +
+      "}";
+
+  private static final float SIZE = 0.3f;
+  private static final float SCALE = 0.3f;
+  private static final int MODEL_ATTRIB_LOCATION = 2;
+  // Interleaved x, y, z, u, v
+  private static final int QUAD_STRIDE = 5 * 4;
+
+  private final GlBackend backend;
+  private final GlApi gl;
+  private final GlStateCache state;
+  private final int program;
+  private final int positionAttrib;
+  private final int texCoordAttrib;
+  // GLES 2 only; GLES 3 reads the camera from the frame uniform buffer
+  private final int mvpUniform;
+  private final int textureUniform;
+  private final FloatBuffer quad;
+
+  private int vertexArray = 0;
+  private int quadBuffer = 0;
+  private int instanceBuffer = 0;
+
+  private int textureId = -1;
+  private float aspectRatio = 1f;
+
+  private float[] instances = new float[16 * 8];
+  private int instanceCount = 0;
+  private FloatBuffer instanceData;
+  private final float[] modelViewProj = new float[16];
+
+  // Must be created on the GL thread
+  BillboardRenderer(GlBackend backend) {
+    this.backend = backend;
+    gl = backend.getGl();
+    state = backend.getState();
+    boolean gles3 = backend.isGles3();
+    int v = loadShader(GlApi.GL_VERTEX_SHADER, gles3 ? VERTEX_SHADER_ES3 : VERTEX_SHADER);
+    int f = loadShader(GlApi.GL_FRAGMENT_SHADER, gles3 ? FRAGMENT_SHADER_ES3 : FRAGMENT_SHADER);
+    program = gl.glCreateProgram();
+    gl.glAttachShader(program, v);
+    gl.glAttachShader(program, f);
+    gl.glLinkProgram(program);
+
+    positionAttrib = gl.glGetAttribLocation(program, "a_Position");
+    texCoordAttrib = gl.glGetAttribLocation(program, "a_TexCoord");
+    textureUniform = gl.glGetUniformLocation(program, "u_Texture");
+    mvpUniform = gles3 ? -1 : gl.glGetUniformLocation(program, "u_MVP");
+    state.useProgram(program);
+    gl.glUniform1i(textureUniform, 0);
+
+    float[] vertices = {
+        -SIZE, -SIZE, 0f, 0f, 1f,
+        SIZE, -SIZE, 0f, 1f, 1f,
+        -SIZE, SIZE, 0f, 0f, 0f,
+        SIZE, SIZE, 0f, 1f, 0f,
+    };
+    quad = ByteBuffer.allocateDirect(vertices.length * 4)
+        .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    quad.put(vertices).position(0);
+    instanceData = ByteBuffer.allocateDirect(instances.length * 4)
+        .order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+    if (gles3) {
+      backend.bindFrameUniforms(program);
+      createVertexArray(vertices.length);
+    }
+  }
+
+  private void createVertexArray(int quadFloats) {
+    int[] buffers = new int[2];
+    gl.glGenBuffers(2, buffers, 0);
+    quadBuffer = buffers[0];
+    instanceBuffer = buffers[1];
+
+    vertexArray = backend.createVertexArray();
+    state.bindVertexArray(vertexArray);
+    state.bindArrayBuffer(quadBuffer);
+    gl.glBufferData(GlApi.GL_ARRAY_BUFFER, quadFloats * 4, quad, GlApi.GL_STATIC_DRAW);
+    gl.glVertexAttribPointer(positionAttrib, 3, GlApi.GL_FLOAT, false, QUAD_STRIDE, 0);
+    state.enableVertexAttribArray(positionAttrib);
+    gl.glVertexAttribPointer(texCoordAttrib, 2, GlApi.GL_FLOAT, false, QUAD_STRIDE, 3 * 4);
+    state.enableVertexAttribArray(texCoordAttrib);
+
+    // One mat4 per instance, as four vec4 columns
+    state.bindArrayBuffer(instanceBuffer);
+    for (int column = 0; column < 4; column++) {
+      int location = MODEL_ATTRIB_LOCATION + column;
+      gl.glVertexAttribPointer(location, 4, GlApi.GL_FLOAT, false, 16 * 4, column * 4 * 4);
+      state.enableVertexAttribArray(location);
+      gl.glVertexAttribDivisor(location, 1);
+    }
+    state.bindVertexArray(0);
+  }
+
+  private int loadShader(int type, String code) {
+    int shader = gl.glCreateShader(type);
+    gl.glShaderSource(shader, code);
+    gl.glCompileShader(shader);
+    return shader;
+  }
+
+  // Replaces the billboard texture with tightly packed RGBA8 pixels; the image's aspect ratio
+  // sets the billboard width
+  void updateTexture(int width, int height, ByteBuffer rgba) {
+    if (rgba == null || width <= 0 || height <= 0) return;
+
+    if (textureId != -1) {
+      state.deleteTexture(textureId);
+    }
+
+    int[] textures = new int[1];
+    gl.glGenTextures(1, textures, 0);
+    textureId = textures[0];
+    state.bindTexture(0, GlApi.GL_TEXTURE_2D, textureId);
+    gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_MIN_FILTER, GlApi.GL_LINEAR);
+    gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_MAG_FILTER, GlApi.GL_LINEAR);
+    gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_WRAP_S, GlApi.GL_CLAMP_TO_EDGE);
+    gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_WRAP_T, GlApi.GL_CLAMP_TO_EDGE);
+    gl.glTexImage2D(GlApi.GL_TEXTURE_2D, 0, GlApi.GL_RGBA, width, height, 0, GlApi.GL_RGBA, GlApi.GL_UNSIGNED_BYTE,
+        rgba);
+
+    aspectRatio = (float) width / (float) height;
+  }
+
+  boolean hasTexture() {
+    return textureId != -1;
+  }
+
+  void begin() {
+    instanceCount = 0;
+  }
+
+  // Queues one billboard at the anchor's position, rotated in degrees as Z * Y * X
+  void add(float[] anchorModel, float rotationX, float rotationY, float rotationZ) {
+    if (instances.length < (instanceCount + 1) * 16) {
+      float[] grown = new float[instances.length * 2];
+      System.arraycopy(instances, 0, grown, 0, instanceCount * 16);
+      instances = grown;
+    }
+    MatrixMath.setTranslateRotateScale(instances, instanceCount * 16,
+        anchorModel[12], anchorModel[13], anchorModel[14],
+        rotationX, rotationY, rotationZ,
+        SCALE * aspectRatio, SCALE, SCALE);
+    instanceCount++;
+  }
+
+  // Draws everything queued since begin() with the matrices from GlBackend.beginFrame
+  void draw() {
+    if (instanceCount == 0 || textureId == -1) return;
+
+    state.useProgram(program);
+    state.setDepthTest(false);
+    state.depthMask(false);
+    state.setBlend(true);
+    state.blendFunc(GlApi.GL_SRC_ALPHA, GlApi.GL_ONE_MINUS_SRC_ALPHA);
+    state.bindTexture(0, GlApi.GL_TEXTURE_2D, textureId);
+
+    if (vertexArray != 0) {
+      drawInstanced();
+    } else {
+      drawEach();
+    }
+  }
+
+  private void drawInstanced() {
+    int floats = instanceCount * 16;
+    if (instanceData.capacity() < floats) {
+      instanceData = ByteBuffer.allocateDirect(instances.length * 4)
+          .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+    instanceData.clear();
+    instanceData.put(instances, 0, floats).position(0);
+    state.bindArrayBuffer(instanceBuffer);
+    // Respecifying the whole store lets the driver orphan last frame's copy instead of waiting on it
+    gl.glBufferData(GlApi.GL_ARRAY_BUFFER, floats * 4, instanceData, GlApi.GL_STREAM_DRAW);
+
+    state.bindVertexArray(vertexArray);
+    gl.glDrawArraysInstanced(GlApi.GL_TRIANGLE_STRIP, 0, 4, instanceCount);
+  }
+
+  private void drawEach() {
+    // Client-side arrays need the array buffer unbound
+    state.bindArrayBuffer(0);
+    quad.position(0);
+    gl.glVertexAttribPointer(positionAttrib, 3, GlApi.GL_FLOAT, false, QUAD_STRIDE, quad);
+    state.enableVertexAttribArray(positionAttrib);
+    quad.position(3);
+    gl.glVertexAttribPointer(texCoordAttrib, 2, GlApi.GL_FLOAT, false, QUAD_STRIDE, quad);
+    state.enableVertexAttribArray(texCoordAttrib);
+    quad.position(0);
+
+    float[] viewProj = backend.getViewProj();
+    for (int i = 0; i < instanceCount; i++) {
+      MatrixMath.multiplyMM(modelViewProj, viewProj, instances, i * 16);
+      gl.glUniformMatrix4fv(mvpUniform, 1, false, modelViewProj, 0);
+      gl.glDrawArrays(GlApi.GL_TRIANGLE_STRIP, 0, 4);
+    }
+
+    state.disableVertexAttribArray(positionAttrib);
+    state.disableVertexAttribArray(texCoordAttrib);
+  }
+}
@@ -0,0 +1,76 @@
+package com.visionar;
+
+import java.util.List;
+
+// Picks the cheapest camera configuration that is still good enough for placing content:
+// a fixed 30 fps capture, the smallest CPU image at or above MIN_IMAGE_*, and the depth
+// sensor only when the session profile wants depth. Plain Java over Candidate so the policy
+// can be exercised with fake configs; SessionCameraConfig adapts ARCore's CameraConfig.
+final class CameraConfigSelector {
+  static final int TARGET_FPS = 30;
+  // Below this the CPU image gets too coarse for ARCore's feature tracking to be worth it
+  static final int MIN_IMAGE_WIDTH = 640;
+  static final int MIN_IMAGE_HEIGHT = 480;
+
+  interface Candidate {
+    int getImageWidth();
+    int getImageHeight();
+    int getTextureWidth();
+    int getTextureHeight();
+    int getMinFps();
+    int getMaxFps();
+    boolean usesDepthSensor();
+  }
+
+  private CameraConfigSelector() {}
+
+  // Returns the preferred candidate, or null for an empty list
+  static <T extends Candidate> T select(List<T> candidates, boolean preferDepthSensor) {
+    T best = null;
+    for (int i = 0; i < candidates.size(); i++) {
+      T candidate = candidates.get(i);
+      if (best == null || compare(candidate, best, preferDepthSensor) < 0) {
+        best = candidate;
+      }
+    }
+    return best;
+  }
+
+  // Negative when a is preferred over b. Criteria in order: frame rate, depth sensor,
+  // CPU image size, then the larger GPU texture for a sharper background.
+  static int compare(Candidate a, Candidate b, boolean preferDepthSensor) {
+    int byFps = Integer.compare(fpsRank(a), fpsRank(b));
+    if (byFps != 0) return byFps;
+
+    if (a.usesDepthSensor() != b.usesDepthSensor()) {
+      return a.usesDepthSensor() == preferDepthSensor ? -1 : 1;
+    }
+
+    boolean aAcceptable = isImageAcceptable(a);
+    boolean bAcceptable = isImageAcceptable(b);
+    if (aAcceptable != bAcceptable) return aAcceptable ? -1 : 1;
+    long aPixels = (long) a.getImageWidth() * a.getImageHeight();
+    long bPixels = (long) b.getImageWidth() * b.getImageHeight();
+    if (aPixels != bPixels) {
+      // Smallest acceptable image, or the largest one when none is acceptable
+      return aAcceptable ? Long.compare(aPixels, bPixels) : Long.compare(bPixels, aPixels);
+    }
+
+    long aTexture = (long) a.getTextureWidth() * a.getTextureHeight();
+    long bTexture = (long) b.getTextureWidth() * b.getTextureHeight();
+    return Long.compare(bTexture, aTexture);
+  }
+
+  static boolean isImageAcceptable(Candidate candidate) {
+    int longSide = Math.max(candidate.getImageWidth(), candidate.getImageHeight());
+    int shortSide = Math.min(candidate.getImageWidth(), candidate.getImageHeight());
+    return longSide >= MIN_IMAGE_WIDTH && shortSide >= MIN_IMAGE_HEIGHT;
+  }
+
+  // 0: locked to the target, 1: range includes the target, 2: anything else
+  private static int fpsRank(Candidate candidate) {
+    if (candidate.getMinFps() == TARGET_FPS && candidate.getMaxFps() == TARGET_FPS) return 0;
+    if (candidate.getMinFps() <= TARGET_FPS && candidate.getMaxFps() >= TARGET_FPS) return 1;
+    return 2;
+  }
+}
@@ -0,0 +1,86 @@
+package com.visionar;
+
+import android.content.Context;
+import android.hardware.display.DisplayManager;
+import android.view.Display;
+import android.view.Surface;
+import android.view.WindowManager;
+
+import com.google.ar.core.Session;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Caches the display rotation and viewport size. Rotation is refreshed from DisplayManager
+// callbacks instead of being queried every frame, and Session.setDisplayGeometry is only
+// called when the rotation or the surface size actually changed.
+class DisplayRotationHelper implements DisplayManager.DisplayListener {
+  private final DisplayManager displayManager;
+  private final Display display;
+  private volatile int rotation;
+  private volatile int viewportWidth = 0;
+  private volatile int viewportHeight = 0;
+  private final AtomicBoolean geometryChanged = new AtomicBoolean(true);
+
+  DisplayRotationHelper(Context context) {
+    displayManager = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+    WindowManager wm = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+    display = wm != null ? wm.getDefaultDisplay() : null;
+    rotation = display != null ? display.getRotation() : Surface.ROTATION_0;
+  }
+
+  // Registers for display changes on the calling thread's looper (the UI thread)
+  void onResume() {
+    if (displayManager != null) {
+      displayManager.registerDisplayListener(this, null);
+    }
+    refreshRotation();
+    geometryChanged.set(true);
+  }
+
+  void onPause() {
+    if (displayManager != null) {
+      displayManager.unregisterDisplayListener(this);
+    }
+  }
+
+  // Called from GLSurfaceView.Renderer.onSurfaceChanged
+  void onSurfaceChanged(int width, int height) {
+    viewportWidth = width;
+    viewportHeight = height;
+    geometryChanged.set(true);
+  }
+
+  // Called on the GL thread before Session.update(); a no-op on almost every frame
+  void updateSessionIfNeeded(Session session) {
+    if (viewportWidth == 0 || viewportHeight == 0) return;
+    if (geometryChanged.getAndSet(false)) {
+      session.setDisplayGeometry(rotation, viewportWidth, viewportHeight);
+    }
+  }
+
+  int getRotation() {
+    return rotation;
+  }
+
+  private void refreshRotation() {
+    if (display == null) return;
+    int current = display.getRotation();
+    if (current != rotation) {
+      rotation = current;
+      geometryChanged.set(true);
+    }
+  }
+
+  @Override
+  public void onDisplayAdded(int displayId) {}
+
+  @Override
+  public void onDisplayRemoved(int displayId) {}
+
+  @Override
+  public void onDisplayChanged(int displayId) {
+    if (display != null && displayId == display.getDisplayId()) {
+      refreshRotation();
+    }
+  }
+}
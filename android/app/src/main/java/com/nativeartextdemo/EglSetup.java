@@ -0,0 +1,151 @@
+package com.visionar;
+
+import android.graphics.PixelFormat;
+import android.opengl.GLSurfaceView;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+
+// Surface format, EGL config and context creation for the AR views. The camera image always
+// fills the view, so the surface defaults to opaque and SurfaceFlinger does not have to blend
+// a full-screen layer. Depth and stencil sizes come from what the view draws, MSAA is opt-in,
+// and a GLES 3 context is used when the device offers one (GLES 2 otherwise).
+//
+// Options must be set before applyTo(); GLSurfaceView reads them when its GL thread starts.
+class EglSetup implements GLSurfaceView.EGLConfigChooser, GLSurfaceView.EGLContextFactory {
+  private static final int EGL_OPENGL_ES2_BIT = 0x0004;
+  private static final int EGL_OPENGL_ES3_BIT_KHR = 0x0040;
+  private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+
+  private boolean opaque = true;
+  private int msaaSamples = 0;
+  private boolean preferGles3 = true;
+  private final int depthBits;
+  private final int stencilBits;
+
+  private volatile int chosenRenderableType = EGL_OPENGL_ES2_BIT;
+  private volatile int chosenSamples = 0;
+  private volatile int glesVersion = 0;
+
+  EglSetup(int depthBits, int stencilBits) {
+    this.depthBits = depthBits;
+    this.stencilBits = stencilBits;
+  }
+
+  void setOpaque(boolean opaque) {
+    this.opaque = opaque;
+  }
+
+  // 0 or 1 disables MSAA; otherwise the closest supported count is used, or none
+  void setMsaaSamples(int samples) {
+    this.msaaSamples = Math.max(0, samples);
+  }
+
+  void setPreferGles3(boolean preferGles3) {
+    this.preferGles3 = preferGles3;
+  }
+
+  void applyTo(GLSurfaceView view) {
+    view.getHolder().setFormat(opaque ? PixelFormat.OPAQUE : PixelFormat.TRANSLUCENT);
+    view.setEGLContextFactory(this);
+    view.setEGLConfigChooser(this);
+  }
+
+  // 3 or 2 once the context exists, 0 before
+  int getGlesVersion() {
+    return glesVersion;
+  }
+
+  int getSamples() {
+    return chosenSamples;
+  }
+
+  @Override
+  public EGLConfig chooseConfig(EGL10 egl, EGLDisplay display) {
+    int[] renderableTypes = preferGles3
+        ? new int[]{EGL_OPENGL_ES3_BIT_KHR, EGL_OPENGL_ES2_BIT}
+        : new int[]{EGL_OPENGL_ES2_BIT};
+    for (int renderableType : renderableTypes) {
+      if (msaaSamples > 1) {
+        EGLConfig config = findConfig(egl, display, renderableType, msaaSamples);
+        if (config != null) return config;
+      }
+      EGLConfig config = findConfig(egl, display, renderableType, 0);
+      if (config != null) return config;
+    }
+    throw new IllegalArgumentException("No EGL config with RGB888, depth " + depthBits + ", stencil " + stencilBits);
+  }
+
+  private EGLConfig findConfig(EGL10 egl, EGLDisplay display, int renderableType, int samples) {
+    int alphaBits = opaque ? 0 : 8;
+    int[] attribs = samples > 1
+        ? new int[]{
+            EGL10.EGL_RED_SIZE, 8, EGL10.EGL_GREEN_SIZE, 8, EGL10.EGL_BLUE_SIZE, 8,
+            EGL10.EGL_ALPHA_SIZE, alphaBits, EGL10.EGL_DEPTH_SIZE, depthBits, EGL10.EGL_STENCIL_SIZE, stencilBits,
+            EGL10.EGL_RENDERABLE_TYPE, renderableType,
+            EGL10.EGL_SAMPLE_BUFFERS, 1, EGL10.EGL_SAMPLES, samples,
+            EGL10.EGL_NONE}
+        : new int[]{
+            EGL10.EGL_RED_SIZE, 8, EGL10.EGL_GREEN_SIZE, 8, EGL10.EGL_BLUE_SIZE, 8,
+            EGL10.EGL_ALPHA_SIZE, alphaBits, EGL10.EGL_DEPTH_SIZE, depthBits, EGL10.EGL_STENCIL_SIZE, stencilBits,
+            EGL10.EGL_RENDERABLE_TYPE, renderableType,
+            EGL10.EGL_NONE};
+
+    int[] count = new int[1];
+    if (!egl.eglChooseConfig(display, attribs, null, 0, count) || count[0] <= 0) return null;
+    EGLConfig[] configs = new EGLConfig[count[0]];
+    if (!egl.eglChooseConfig(display, attribs, configs, configs.length, count)) return null;
+
+    // eglChooseConfig treats sizes as minimums; take the config with the least excess so an
+    // opaque surface does not end up with alpha and a 16-bit request does not get 24+8
+    EGLConfig best = null;
+    int bestExcess = Integer.MAX_VALUE;
+    int[] value = new int[1];
+    for (EGLConfig config : configs) {
+      if (config == null) continue;
+      int red = attrib(egl, display, config, EGL10.EGL_RED_SIZE, value);
+      int green = attrib(egl, display, config, EGL10.EGL_GREEN_SIZE, value);
+      int blue = attrib(egl, display, config, EGL10.EGL_BLUE_SIZE, value);
+      if (red != 8 || green != 8 || blue != 8) continue;
+      int excess = (attrib(egl, display, config, EGL10.EGL_ALPHA_SIZE, value) - alphaBits)
+          + (attrib(egl, display, config, EGL10.EGL_DEPTH_SIZE, value) - depthBits)
+          + (attrib(egl, display, config, EGL10.EGL_STENCIL_SIZE, value) - stencilBits)
+          + (samples > 1 ? attrib(egl, display, config, EGL10.EGL_SAMPLES, value) - samples : 0);
+      if (excess < bestExcess) {
+        bestExcess = excess;
+        best = config;
+      }
+    }
+    if (best != null) {
+      chosenRenderableType = renderableType;
+      chosenSamples = samples > 1 ? attrib(egl, display, best, EGL10.EGL_SAMPLES, value) : 0;
+    }
+    return best;
+  }
+
+  private static int attrib(EGL10 egl, EGLDisplay display, EGLConfig config, int attribute, int[] value) {
+    return egl.eglGetConfigAttrib(display, config, attribute, value) ? value[0] : 0;
+  }
+
+  @Override
+  public EGLContext createContext(EGL10 egl, EGLDisplay display, EGLConfig config) {
+    if (chosenRenderableType == EGL_OPENGL_ES3_BIT_KHR) {
+      EGLContext context = egl.eglCreateContext(display, config, EGL10.EGL_NO_CONTEXT,
+          new int[]{EGL_CONTEXT_CLIENT_VERSION, 3, EGL10.EGL_NONE});
+      if (context != null && context != EGL10.EGL_NO_CONTEXT) {
+        glesVersion = 3;
+        return context;
+      }
+    }
+    glesVersion = 2;
+    return egl.eglCreateContext(display, config, EGL10.EGL_NO_CONTEXT,
+        new int[]{EGL_CONTEXT_CLIENT_VERSION, 2, EGL10.EGL_NONE});
+  }
+
+  @Override
+  public void destroyContext(EGL10 egl, EGLDisplay display, EGLContext context) {
+    egl.eglDestroyContext(display, context);
+  }
+}
@@ -0,0 +1,399 @@
+package com.visionar;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+// Scripted ArSession for running the frame loop on a plain JVM. Each update() advances one
+// frame on a fixed timestep and replays whatever the script put on that frame: camera
+// keyframes (interpolated in between), planes appearing, growing or going away, and taps.
+// There is no randomness and no wall clock, so a script always produces the same frames.
+class FakeArSession implements ArSession {
+  static final long DEFAULT_FRAME_INTERVAL_NS = 33_333_333L;
+  // Frames an instant placement anchor stays approximate before it counts as converged
+  static final int INSTANT_CONVERGE_FRAMES = 30;
+  private static final float FOV_Y_DEGREES = 60f;
+
+  private final int viewportWidth;
+  private final int viewportHeight;
+  private final long frameIntervalNs;
+  private final List<Keyframe> cameraPath = new ArrayList<>();
+  private final List<PlaneEvent> planeEvents = new ArrayList<>();
+  private final List<Tap> taps = new ArrayList<>();
+  private final List<FakePlane> planes = new ArrayList<>();
+  private final List<ArSession.Plane> updatedPlanes = new ArrayList<>();
+  private final List<Tap> frameTaps = new ArrayList<>();
+  private final FakeFrame frame = new FakeFrame();
+  private final FakeCamera camera = new FakeCamera();
+  private final float[] cameraPose = new float[16];
+  private final float[] view = new float[16];
+  private int[] cameraTextureNames = {0};
+  private int frameIndex = -1;
+
+  FakeArSession(int viewportWidth, int viewportHeight) {
+    this(viewportWidth, viewportHeight, DEFAULT_FRAME_INTERVAL_NS);
+  }
+
+  FakeArSession(int viewportWidth, int viewportHeight, long frameIntervalNs) {
+    this.viewportWidth = viewportWidth;
+    this.viewportHeight = viewportHeight;
+    this.frameIntervalNs = frameIntervalNs;
+    MatrixMath.setIdentity(cameraPose);
+    MatrixMath.setIdentity(view);
+  }
+
+  // Camera position and heading at a frame. Yaw turns about +Y, pitch about the camera's
+  // +X; at yaw 0 and pitch 0 the camera looks down -Z like ARCore's.
+  void addCameraKeyframe(int frame, float x, float y, float z, float yawDegrees, float pitchDegrees) {
+    Keyframe keyframe = new Keyframe(frame, x, y, z, yawDegrees, pitchDegrees);
+    int i = cameraPath.size();
+    while (i > 0 && cameraPath.get(i - 1).frame > frame) i--;
+    cameraPath.add(i, keyframe);
+  }
+
+  // A horizontal, upward facing plane centered at (x, y, z) that starts tracking at the frame
+  FakePlane addPlane(int frame, float x, float y, float z, float[] polygonXz) {
+    FakePlane plane = new FakePlane(x, y, z);
+    planeEvents.add(new PlaneEvent(frame, plane, polygonXz.clone(), ArSession.Tracking.TRACKING));
+    return plane;
+  }
+
+  // Replaces the boundary, the way ARCore grows a plane as more of it is seen
+  void updatePlane(int frame, FakePlane plane, float[] polygonXz) {
+    planeEvents.add(new PlaneEvent(frame, plane, polygonXz.clone(), ArSession.Tracking.TRACKING));
+  }
+
+  void stopPlane(int frame, FakePlane plane) {
+    planeEvents.add(new PlaneEvent(frame, plane, null, ArSession.Tracking.STOPPED));
+  }
+
+  // Tap in view pixels, delivered on the given frame through getTaps()
+  void addTap(int frame, float x, float y) {
+    taps.add(new Tap(frame, x, y));
+  }
+
+  // Axis-aligned width x depth rectangle around the plane center, as x/z pairs
+  static float[] rectangle(float width, float depth) {
+    float hw = width / 2f;
+    float hd = depth / 2f;
+    return new float[]{-hw, -hd, hw, -hd, hw, hd, -hw, hd};
+  }
+
+  int getFrameIndex() {
+    return frameIndex;
+  }
+
+  int getViewportWidth() {
+    return viewportWidth;
+  }
+
+  int getViewportHeight() {
+    return viewportHeight;
+  }
+
+  // Taps scripted for the current frame
+  List<Tap> getTaps() {
+    return frameTaps;
+  }
+
+  @Override
+  public void setCameraTextureNames(int[] textureIds) {
+    cameraTextureNames = textureIds.clone();
+  }
+
+  @Override
+  public ArSession.Frame update() {
+    frameIndex++;
+
+    updatedPlanes.clear();
+    for (int i = 0; i < planeEvents.size(); i++) {
+      PlaneEvent event = planeEvents.get(i);
+      if (event.frame != frameIndex) continue;
+      event.plane.trackingState = event.state;
+      if (event.polygon != null) event.plane.polygon = event.polygon;
+      if (!updatedPlanes.contains(event.plane)) updatedPlanes.add(event.plane);
+      if (event.state == ArSession.Tracking.TRACKING && !planes.contains(event.plane)) planes.add(event.plane);
+      if (event.state == ArSession.Tracking.STOPPED) planes.remove(event.plane);
+    }
+
+    frameTaps.clear();
+    for (int i = 0; i < taps.size(); i++) {
+      if (taps.get(i).frame == frameIndex) frameTaps.add(taps.get(i));
+    }
+
+    updateCameraPose();
+    return frame;
+  }
+
+  private void updateCameraPose() {
+    if (cameraPath.isEmpty()) return;
+    Keyframe a = cameraPath.get(0);
+    Keyframe b = a;
+    for (int i = 1; i < cameraPath.size(); i++) {
+      b = cameraPath.get(i);
+      if (b.frame >= frameIndex) break;
+      a = b;
+    }
+    float t = 0f;
+    if (b.frame > a.frame) {
+      t = Math.max(0f, Math.min(1f, (frameIndex - a.frame) / (float) (b.frame - a.frame)));
+    }
+    MatrixMath.setTranslateRotateScale(cameraPose, 0,
+        lerp(a.x, b.x, t), lerp(a.y, b.y, t), lerp(a.z, b.z, t),
+        lerp(a.pitch, b.pitch, t), lerp(a.yaw, b.yaw, t), 0f, 1f, 1f, 1f);
+    MatrixMath.invert(view, cameraPose);
+  }
+
+  private static float lerp(float a, float b, float t) {
+    return a + (b - a) * t;
+  }
+
+  // World space ray through a view pixel for the current camera
+  private boolean ray(float x, float y, float[] rayOut) {
+    float[] proj = new float[16];
+    float[] viewProj = new float[16];
+    float[] inverse = new float[16];
+    camera.getProjectionMatrix(proj, 0, 0.1f, 100f);
+    MatrixMath.multiplyMM(viewProj, proj, view);
+    return MatrixMath.invert(inverse, viewProj)
+        && PlaneRaycaster.screenRay(inverse, viewportWidth, viewportHeight, x, y, rayOut);
+  }
+
+  static final class Tap {
+    final int frame;
+    final float x;
+    final float y;
+
+    Tap(int frame, float x, float y) {
+      this.frame = frame;
+      this.x = x;
+      this.y = y;
+    }
+  }
+
+  private static final class Keyframe {
+    final int frame;
+    final float x, y, z, yaw, pitch;
+
+    Keyframe(int frame, float x, float y, float z, float yaw, float pitch) {
+      this.frame = frame;
+      this.x = x;
+      this.y = y;
+      this.z = z;
+      this.yaw = yaw;
+      this.pitch = pitch;
+    }
+  }
+
+  private static final class PlaneEvent {
+    final int frame;
+    final FakePlane plane;
+    final float[] polygon;
+    final ArSession.Tracking state;
+
+    PlaneEvent(int frame, FakePlane plane, float[] polygon, ArSession.Tracking state) {
+      this.frame = frame;
+      this.plane = plane;
+      this.polygon = polygon;
+      this.state = state;
+    }
+  }
+
+  private final class FakeFrame implements ArSession.Frame {
+    @Override
+    public long getTimestamp() {
+      return frameIndex * frameIntervalNs;
+    }
+
+    @Override
+    public ArSession.Camera getCamera() {
+      return camera;
+    }
+
+    @Override
+    public Collection<ArSession.Plane> getUpdatedPlanes() {
+      return updatedPlanes;
+    }
+
+    @Override
+    public boolean hasDisplayGeometryChanged() {
+      return frameIndex == 0;
+    }
+
+    // The fake camera image fills the view unrotated
+    @Override
+    public void transformDisplayUvs(FloatBuffer ndc, FloatBuffer uvs) {
+      int base = ndc.position();
+      int out = uvs.position();
+      for (int i = 0; i + 1 < ndc.remaining(); i += 2) {
+        uvs.put(out + i, (ndc.get(base + i) + 1f) / 2f);
+        uvs.put(out + i + 1, (1f - ndc.get(base + i + 1)) / 2f);
+      }
+    }
+
+    @Override
+    public int getCameraTextureName() {
+      return cameraTextureNames[Math.max(frameIndex, 0) % cameraTextureNames.length];
+    }
+
+    @Override
+    public List<ArSession.Hit> hitTest(float x, float y) {
+      float[] ray = new float[6];
+      if (planes.isEmpty() || !ray(x, y, ray)) return Collections.emptyList();
+
+      int n = planes.size();
+      float[][] poses = new float[n][];
+      float[][] polygons = new float[n][];
+      int[] counts = new int[n];
+      for (int i = 0; i < n; i++) {
+        FakePlane plane = planes.get(i);
+        poses[i] = plane.center;
+        polygons[i] = plane.polygon;
+        counts[i] = plane.polygon.length / 2;
+      }
+      PlaneRaycaster.Hit<FakePlane> hit = PlaneRaycaster.intersect(
+          new PlaneRaycaster.PlaneSet<FakePlane>(planes.toArray(), poses, polygons, counts), ray);
+      if (hit == null) return Collections.emptyList();
+
+      float[] pose = hit.plane.center.clone();
+      pose[12] = hit.x;
+      pose[13] = hit.y;
+      pose[14] = hit.z;
+      return Collections.<ArSession.Hit>singletonList(new FakeHit(pose, false));
+    }
+
+    @Override
+    public List<ArSession.Hit> hitTestInstantPlacement(float x, float y, float approximateDistance) {
+      float[] ray = new float[6];
+      if (!ray(x, y, ray)) return Collections.emptyList();
+      float[] pose = new float[16];
+      MatrixMath.setIdentity(pose);
+      pose[12] = ray[0] + ray[3] * approximateDistance;
+      pose[13] = ray[1] + ray[4] * approximateDistance;
+      pose[14] = ray[2] + ray[5] * approximateDistance;
+      return Collections.<ArSession.Hit>singletonList(new FakeHit(pose, true));
+    }
+  }
+
+  private final class FakeCamera implements ArSession.Camera {
+    private final float[] scratch = new float[16];
+
+    @Override
+    public Tracking getTrackingState() {
+      return Tracking.TRACKING;
+    }
+
+    @Override
+    public void getViewMatrix(float[] out, int offset) {
+      System.arraycopy(view, 0, out, offset, 16);
+    }
+
+    @Override
+    public void getProjectionMatrix(float[] out, int offset, float near, float far) {
+      MatrixMath.perspective(scratch, FOV_Y_DEGREES, viewportWidth / (float) viewportHeight, near, far);
+      System.arraycopy(scratch, 0, out, offset, 16);
+    }
+
+    @Override
+    public void getPoseMatrix(float[] out, int offset) {
+      System.arraycopy(cameraPose, 0, out, offset, 16);
+    }
+  }
+
+  final class FakePlane implements ArSession.Plane {
+    private final float[] center = new float[16];
+    private float[] polygon = new float[0];
+    private Tracking trackingState = Tracking.PAUSED;
+
+    private FakePlane(float x, float y, float z) {
+      MatrixMath.setIdentity(center);
+      center[12] = x;
+      center[13] = y;
+      center[14] = z;
+    }
+
+    @Override
+    public Tracking getTrackingState() {
+      return trackingState;
+    }
+
+    @Override
+    public boolean isSubsumed() {
+      return false;
+    }
+
+    @Override
+    public void getCenterMatrix(float[] out, int offset) {
+      System.arraycopy(center, 0, out, offset, 16);
+    }
+
+    @Override
+    public FloatBuffer getPolygon() {
+      return FloatBuffer.wrap(polygon);
+    }
+
+    @Override
+    public ArSession.Anchor createAnchor(float[] pose) {
+      return new FakeAnchor(pose, -1);
+    }
+  }
+
+  private final class FakeHit implements ArSession.Hit {
+    private final float[] pose;
+    private final boolean instant;
+
+    FakeHit(float[] pose, boolean instant) {
+      this.pose = pose;
+      this.instant = instant;
+    }
+
+    @Override
+    public void getPoseMatrix(float[] out, int offset) {
+      System.arraycopy(pose, 0, out, offset, 16);
+    }
+
+    @Override
+    public ArSession.Anchor createAnchor() {
+      return new FakeAnchor(pose, instant ? frameIndex + INSTANT_CONVERGE_FRAMES : -1);
+    }
+
+    @Override
+    public boolean isInstant() {
+      return instant;
+    }
+  }
+
+  private final class FakeAnchor implements ArSession.Anchor {
+    private final float[] pose;
+    // Frame from which an instant placement anchor is fully tracked, -1 if it always was
+    private final int convergesAtFrame;
+    private boolean detached = false;
+
+    FakeAnchor(float[] pose, int convergesAtFrame) {
+      this.pose = pose.clone();
+      this.convergesAtFrame = convergesAtFrame;
+    }
+
+    @Override
+    public Tracking getTrackingState() {
+      return detached ? Tracking.STOPPED : Tracking.TRACKING;
+    }
+
+    @Override
+    public void getPoseMatrix(float[] out, int offset) {
+      System.arraycopy(pose, 0, out, offset, 16);
+    }
+
+    @Override
+    public boolean isApproximate() {
+      return frameIndex < convergesAtFrame;
+    }
+
+    @Override
+    public void detach() {
+      detached = true;
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package com.visionar;
+
+import java.nio.Buffer;
+
+// The GL entry points the renderers use, so they can run against AndroidGl on a device or
+// RecordingGl on a plain JVM. Names and signatures follow android.opengl.GLES20/GLES30; the
+// constants are duplicated here so renderer code does not touch android.opengl at all.
+interface GlApi {
+  int GL_DEPTH_BUFFER_BIT = 0x0100;
+  int GL_COLOR_BUFFER_BIT = 0x4000;
+
+  int GL_TRIANGLES = 0x0004;
+  int GL_TRIANGLE_STRIP = 0x0005;
+
+  int GL_SRC_ALPHA = 0x0302;
+  int GL_ONE_MINUS_SRC_ALPHA = 0x0303;
+
+  int GL_DEPTH_TEST = 0x0B71;
+  int GL_BLEND = 0x0BE2;
+
+  int GL_UNSIGNED_BYTE = 0x1401;
+  int GL_UNSIGNED_SHORT = 0x1403;
+  int GL_UNSIGNED_INT = 0x1405;
+  int GL_FLOAT = 0x1406;
+  int GL_RGBA = 0x1908;
+
+  int GL_TEXTURE_2D = 0x0DE1;
+  int GL_TEXTURE_EXTERNAL_OES = 0x8D65;
+  int GL_TEXTURE_MAG_FILTER = 0x2800;
+  int GL_TEXTURE_MIN_FILTER = 0x2801;
+  int GL_TEXTURE_WRAP_S = 0x2802;
+  int GL_TEXTURE_WRAP_T = 0x2803;
+  int GL_LINEAR = 0x2601;
+  int GL_LINEAR_MIPMAP_LINEAR = 0x2703;
+  int GL_REPEAT = 0x2901;
+  int GL_CLAMP_TO_EDGE = 0x812F;
+  int GL_TEXTURE0 = 0x84C0;
+
+  int GL_ARRAY_BUFFER = 0x8892;
+  int GL_ELEMENT_ARRAY_BUFFER = 0x8893;
+  int GL_UNIFORM_BUFFER = 0x8A11;
+  int GL_STREAM_DRAW = 0x88E0;
+  int GL_STATIC_DRAW = 0x88E4;
+  int GL_DYNAMIC_DRAW = 0x88E8;
+
+  int GL_EXTENSIONS = 0x1F03;
+
+  int GL_FRAGMENT_SHADER = 0x8B30;
+  int GL_VERTEX_SHADER = 0x8B31;
+  int GL_INVALID_INDEX = -1;
+
+  // Frame
+  void glClear(int mask);
+
+  // Capabilities, GL_EXTENSIONS being the one the renderers ask for
+  String glGetString(int name);
+
+  // Programs
+  int glCreateShader(int type);
+  void glShaderSource(int shader, String source);
+  void glCompileShader(int shader);
+  int glCreateProgram();
+  void glAttachShader(int program, int shader);
+  void glLinkProgram(int program);
+  int glGetAttribLocation(int program, String name);
+  int glGetUniformLocation(int program, String name);
+  int glGetUniformBlockIndex(int program, String name);
+  void glUniformBlockBinding(int program, int blockIndex, int binding);
+  void glUseProgram(int program);
+  void glUniform1i(int location, int x);
+  void glUniform1f(int location, float x);
+  void glUniform4f(int location, float x, float y, float z, float w);
+  void glUniform4fv(int location, int count, float[] value, int offset);
+  void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset);
+
+  // Fixed-function state
+  void glEnable(int cap);
+  void glDisable(int cap);
+  void glBlendFunc(int src, int dst);
+  void glDepthMask(boolean flag);
+
+  // Textures
+  void glGenTextures(int n, int[] textures, int offset);
+  void glDeleteTextures(int n, int[] textures, int offset);
+  void glActiveTexture(int texture);
+  void glBindTexture(int target, int texture);
+  void glTexParameteri(int target, int pname, int param);
+  void glTexImage2D(int target, int level, int internalFormat, int width, int height, int border,
+                    int format, int type, Buffer pixels);
+  void glGenerateMipmap(int target);
+
+  // Buffers
+  void glGenBuffers(int n, int[] buffers, int offset);
+  void glDeleteBuffers(int n, int[] buffers, int offset);
+  void glBindBuffer(int target, int buffer);
+  void glBindBufferBase(int target, int index, int buffer);
+  void glBufferData(int target, int size, Buffer data, int usage);
+  void glBufferSubData(int target, int offset, int size, Buffer data);
+
+  // Vertex input
+  void glGenVertexArrays(int n, int[] arrays, int offset);
+  void glDeleteVertexArrays(int n, int[] arrays, int offset);
+  void glBindVertexArray(int array);
+  void glEnableVertexAttribArray(int index);
+  void glDisableVertexAttribArray(int index);
+  void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset);
+  void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer pointer);
+  void glVertexAttribDivisor(int index, int divisor);
+
+  // Draws
+  void glDrawArrays(int mode, int first, int count);
+  void glDrawArraysInstanced(int mode, int first, int count, int instanceCount);
+  void glDrawElements(int mode, int count, int type, int offset);
+  void glDrawElementsInstanced(int mode, int count, int type, int offset, int instanceCount);
+}
@@ -0,0 +1,135 @@
+package com.visionar;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+// What the renderers may use on the current context, and the GlApi they call it through.
+// Created in onSurfaceCreated from the version EglSetup actually got. On GLES 3 the renderers
+// keep their vertex state in VAOs, draw billboards instanced and read view/projection from
+// one uniform buffer that is written once per frame; on GLES 2 they fall back to per-draw
+// attribute and uniform setup.
+class GlBackend {
+  // Binding point of the FrameUniforms block shared by every GLES 3 program
+  static final int FRAME_UNIFORMS_BINDING = 0;
+
+  // std140 declaration to paste into "#version 300 es" shaders
+  static final String FRAME_UNIFORMS_GLSL =
+      "layout(std140) uniform FrameUniforms {\n" +
+      "  mat4 u_View;\n" +
+      "  mat4 u_Proj;\n" +
+      "  mat4 u_ViewProj;\n" +
+      "};\n";
+
+  private static final int FRAME_UNIFORMS_FLOATS = 48;
+
+  private final GlApi gl;
+  private final boolean gles3;
+  private final GlStateCache state;
+  private final float[] view = new float[16];
+  private final float[] proj = new float[16];
+  private final float[] viewProj = new float[16];
+  private int frameUniformBuffer = 0;
+  private FloatBuffer frameUniformData;
+  // GL_EXTENSIONS, read on first use
+  private String extensions;
+
+  // Must be created on the GL thread
+  GlBackend(GlApi gl, int glesVersion) {
+    this.gl = gl;
+    gles3 = glesVersion >= 3;
+    state = new GlStateCache(gl, gles3);
+    MatrixMath.setIdentity(view);
+    MatrixMath.setIdentity(proj);
+    MatrixMath.setIdentity(viewProj);
+    if (!gles3) return;
+
+    int[] buffers = new int[1];
+    gl.glGenBuffers(1, buffers, 0);
+    frameUniformBuffer = buffers[0];
+    frameUniformData = ByteBuffer.allocateDirect(FRAME_UNIFORMS_FLOATS * 4)
+        .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    gl.glBindBuffer(GlApi.GL_UNIFORM_BUFFER, frameUniformBuffer);
+    gl.glBufferData(GlApi.GL_UNIFORM_BUFFER, FRAME_UNIFORMS_FLOATS * 4, null, GlApi.GL_DYNAMIC_DRAW);
+    gl.glBindBuffer(GlApi.GL_UNIFORM_BUFFER, 0);
+    gl.glBindBufferBase(GlApi.GL_UNIFORM_BUFFER, FRAME_UNIFORMS_BINDING, frameUniformBuffer);
+  }
+
+  GlApi getGl() {
+    return gl;
+  }
+
+  boolean isGles3() {
+    return gles3;
+  }
+
+  GlStateCache getState() {
+    return state;
+  }
+
+  boolean hasExtension(String name) {
+    if (extensions == null) {
+      String reported = gl.glGetString(GlApi.GL_EXTENSIONS);
+      extensions = " " + (reported != null ? reported : "") + " ";
+    }
+    return extensions.contains(" " + name + " ");
+  }
+
+  // GL_UNSIGNED_INT element indices are core in GLES 3 and an extension in GLES 2
+  boolean supportsUintIndices() {
+    return gles3 || hasExtension("GL_OES_element_index_uint");
+  }
+
+  // Top of onDrawFrame: rolls the state counters over and clears color and depth. glClear
+  // honours the depth mask, which renderers leave however they last needed it.
+  void clearFrame() {
+    state.nextFrame();
+    state.depthMask(true);
+    gl.glClear(GlApi.GL_COLOR_BUFFER_BIT | GlApi.GL_DEPTH_BUFFER_BIT);
+  }
+
+  // Call once per frame before any renderer draws with the camera matrices
+  void beginFrame(float[] viewMatrix, float[] projMatrix) {
+    System.arraycopy(viewMatrix, 0, view, 0, 16);
+    System.arraycopy(projMatrix, 0, proj, 0, 16);
+    MatrixMath.multiplyMM(viewProj, proj, view);
+    if (!gles3) return;
+
+    frameUniformData.position(0);
+    frameUniformData.put(view).put(proj).put(viewProj).position(0);
+    gl.glBindBuffer(GlApi.GL_UNIFORM_BUFFER, frameUniformBuffer);
+    gl.glBufferSubData(GlApi.GL_UNIFORM_BUFFER, 0, FRAME_UNIFORMS_FLOATS * 4, frameUniformData);
+    gl.glBindBuffer(GlApi.GL_UNIFORM_BUFFER, 0);
+  }
+
+  float[] getView() {
+    return view;
+  }
+
+  float[] getProj() {
+    return proj;
+  }
+
+  float[] getViewProj() {
+    return viewProj;
+  }
+
+  // Points a GLES 3 program's FrameUniforms block at the shared buffer
+  void bindFrameUniforms(int program) {
+    int blockIndex = gl.glGetUniformBlockIndex(program, "FrameUniforms");
+    if (blockIndex != GlApi.GL_INVALID_INDEX) {
+      gl.glUniformBlockBinding(program, blockIndex, FRAME_UNIFORMS_BINDING);
+    }
+  }
+
+  int createVertexArray() {
+    int[] arrays = new int[1];
+    gl.glGenVertexArrays(1, arrays, 0);
+    return arrays[0];
+  }
+
+  void deleteVertexArray(int vertexArray) {
+    if (vertexArray == 0) return;
+    state.deleteVertexArray(vertexArray);
+  }
+}
@@ -0,0 +1,225 @@
+package com.visionar;
+
+import java.util.Arrays;
+
+// Shadow copy of the GL state the renderers touch, so setting a value that is already current
+// costs a field compare instead of a driver call. Every renderer sets the state it needs
+// through here rather than restoring defaults afterwards; anything that changes tracked state
+// behind the cache's back must call invalidate(). GL thread only.
+class GlStateCache {
+  private static final int UNKNOWN = -1;
+  private static final int MAX_TEXTURE_UNITS = 8;
+  private static final int MAX_VERTEX_ATTRIBS = 16;
+
+  private final GlApi gl;
+  private final boolean vertexArraysSupported;
+  private int program = UNKNOWN;
+  private int vertexArray = UNKNOWN;
+  private int arrayBuffer = UNKNOWN;
+  private int activeTextureUnit = UNKNOWN;
+  private final int[] texture2d = new int[MAX_TEXTURE_UNITS];
+  private final int[] textureExternal = new int[MAX_TEXTURE_UNITS];
+  // Enabled arrays of the default vertex array object; named VAOs keep their own
+  private final int[] attribEnabled = new int[MAX_VERTEX_ATTRIBS];
+  private int blend = UNKNOWN;
+  private int blendSrc = UNKNOWN;
+  private int blendDst = UNKNOWN;
+  private int depthTest = UNKNOWN;
+  private int depthMask = UNKNOWN;
+
+  private int issued = 0;
+  private int skipped = 0;
+  private int lastFrameIssued = 0;
+  private int lastFrameSkipped = 0;
+
+  // Without VAO support (GLES 2) the default vertex array object is the only one
+  GlStateCache(GlApi gl, boolean vertexArraysSupported) {
+    this.gl = gl;
+    this.vertexArraysSupported = vertexArraysSupported;
+    invalidate();
+  }
+
+  // Forget everything; the next call for each piece of state goes to the driver
+  void invalidate() {
+    program = UNKNOWN;
+    vertexArray = vertexArraysSupported ? UNKNOWN : 0;
+    arrayBuffer = UNKNOWN;
+    activeTextureUnit = UNKNOWN;
+    Arrays.fill(texture2d, UNKNOWN);
+    Arrays.fill(textureExternal, UNKNOWN);
+    Arrays.fill(attribEnabled, UNKNOWN);
+    blend = UNKNOWN;
+    blendSrc = UNKNOWN;
+    blendDst = UNKNOWN;
+    depthTest = UNKNOWN;
+    depthMask = UNKNOWN;
+  }
+
+  // Closes the counters of the previous frame; call once at the top of onDrawFrame
+  void nextFrame() {
+    lastFrameIssued = issued;
+    lastFrameSkipped = skipped;
+    issued = 0;
+    skipped = 0;
+  }
+
+  int getLastFrameIssued() {
+    return lastFrameIssued;
+  }
+
+  int getLastFrameSkipped() {
+    return lastFrameSkipped;
+  }
+
+  void useProgram(int id) {
+    if (program == id) {
+      skipped++;
+      return;
+    }
+    program = id;
+    issued++;
+    gl.glUseProgram(id);
+  }
+
+  void bindVertexArray(int id) {
+    if (vertexArray == id) {
+      skipped++;
+      return;
+    }
+    vertexArray = id;
+    issued++;
+    gl.glBindVertexArray(id);
+  }
+
+  void bindArrayBuffer(int id) {
+    if (arrayBuffer == id) {
+      skipped++;
+      return;
+    }
+    arrayBuffer = id;
+    issued++;
+    gl.glBindBuffer(GlApi.GL_ARRAY_BUFFER, id);
+  }
+
+  void activeTexture(int unit) {
+    if (activeTextureUnit == unit) {
+      skipped++;
+      return;
+    }
+    activeTextureUnit = unit;
+    issued++;
+    gl.glActiveTexture(GlApi.GL_TEXTURE0 + unit);
+  }
+
+  // Binds to the given unit; target is GL_TEXTURE_2D or GL_TEXTURE_EXTERNAL_OES
+  void bindTexture(int unit, int target, int id) {
+    int[] bound = target == GlApi.GL_TEXTURE_EXTERNAL_OES ? textureExternal : texture2d;
+    if (unit < MAX_TEXTURE_UNITS && bound[unit] == id) {
+      skipped++;
+      return;
+    }
+    activeTexture(unit);
+    if (unit < MAX_TEXTURE_UNITS) bound[unit] = id;
+    issued++;
+    gl.glBindTexture(target, id);
+  }
+
+  void setBlend(boolean enabled) {
+    int value = enabled ? 1 : 0;
+    if (blend == value) {
+      skipped++;
+      return;
+    }
+    blend = value;
+    issued++;
+    if (enabled) {
+      gl.glEnable(GlApi.GL_BLEND);
+    } else {
+      gl.glDisable(GlApi.GL_BLEND);
+    }
+  }
+
+  void blendFunc(int src, int dst) {
+    if (blendSrc == src && blendDst == dst) {
+      skipped++;
+      return;
+    }
+    blendSrc = src;
+    blendDst = dst;
+    issued++;
+    gl.glBlendFunc(src, dst);
+  }
+
+  void setDepthTest(boolean enabled) {
+    int value = enabled ? 1 : 0;
+    if (depthTest == value) {
+      skipped++;
+      return;
+    }
+    depthTest = value;
+    issued++;
+    if (enabled) {
+      gl.glEnable(GlApi.GL_DEPTH_TEST);
+    } else {
+      gl.glDisable(GlApi.GL_DEPTH_TEST);
+    }
+  }
+
+  void depthMask(boolean write) {
+    int value = write ? 1 : 0;
+    if (depthMask == value) {
+      skipped++;
+      return;
+    }
+    depthMask = value;
+    issued++;
+    gl.glDepthMask(write);
+  }
+
+  void enableVertexAttribArray(int index) {
+    setVertexAttribArray(index, true);
+  }
+
+  void disableVertexAttribArray(int index) {
+    setVertexAttribArray(index, false);
+  }
+
+  private void setVertexAttribArray(int index, boolean enabled) {
+    int value = enabled ? 1 : 0;
+    // Only the default VAO is tracked; enables recorded into a named VAO always go through
+    boolean tracked = vertexArray == 0 && index >= 0 && index < MAX_VERTEX_ATTRIBS;
+    if (tracked && attribEnabled[index] == value) {
+      skipped++;
+      return;
+    }
+    if (tracked) attribEnabled[index] = value;
+    issued++;
+    if (enabled) {
+      gl.glEnableVertexAttribArray(index);
+    } else {
+      gl.glDisableVertexAttribArray(index);
+    }
+  }
+
+  // Deleting a bound object changes the binding, and the name may be handed out again, so
+  // bindings to it become unknown rather than staying cached
+  void deleteTexture(int id) {
+    gl.glDeleteTextures(1, new int[]{id}, 0);
+    for (int unit = 0; unit < MAX_TEXTURE_UNITS; unit++) {
+      if (texture2d[unit] == id) texture2d[unit] = UNKNOWN;
+      if (textureExternal[unit] == id) textureExternal[unit] = UNKNOWN;
+    }
+  }
+
+  void deleteBuffers(int[] ids) {
+    gl.glDeleteBuffers(ids.length, ids, 0);
+    for (int id : ids) {
+      if (arrayBuffer == id) arrayBuffer = UNKNOWN;
+    }
+  }
+
+  void deleteVertexArray(int id) {
+    gl.glDeleteVertexArrays(1, new int[]{id}, 0);
+    if (vertexArray == id) vertexArray = UNKNOWN;
+  }
+}
@@ -0,0 +1,280 @@
+package com.visionar;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+// A binary glTF reduced to what ModelRenderer draws: every primitive's vertices interleaved into
+// one vertex buffer and its indices into one index buffer, ready to hand to glBufferData, plus
+// the scene's mesh nodes with their transforms flattened relative to the model origin, and for
+// skinned or animated models the node hierarchy, skins and animation clips ModelAnimator plays.
+// Every mesh carries a MeshBvh for picking.
+// Produced by GlbParser or read back from ModelCache; holds no GL objects.
+final class GlbModel {
+  // x, y, z, nx, ny, nz, u, v as floats, then four joint indices and four weights as unsigned
+  // bytes (weights normalized), all zero for vertices without a skin
+  static final int VERTEX_FLOATS = 10;
+  static final int VERTEX_STRIDE = VERTEX_FLOATS * 4;
+  static final int NORMAL_OFFSET = 3 * 4;
+  static final int TEXCOORD_OFFSET = 6 * 4;
+  static final int JOINTS_OFFSET = 8 * 4;
+  static final int WEIGHTS_OFFSET = 9 * 4;
+  // Index sets per primitive: the full mesh, then ones simplified by MeshSimplifier for
+  // placements that cover less of the screen
+  static final int LOD_LEVELS = 4;
+
+  static final class Material {
+    final float[] baseColor;
+    // Index into images, or -1 for a flat baseColor
+    final int baseColorImage;
+    final float metallic;
+    final float roughness;
+    final float[] emissive;
+    final boolean blend;
+
+    Material(float[] baseColor, int baseColorImage, float metallic, float roughness, float[] emissive,
+             boolean blend) {
+      this.baseColor = baseColor;
+      this.baseColorImage = baseColorImage;
+      this.metallic = metallic;
+      this.roughness = roughness;
+      this.emissive = emissive;
+      this.blend = blend;
+    }
+  }
+
+  static final class Primitive {
+    // Byte offsets into vertices and indices
+    final int vertexOffset;
+    final int vertexCount;
+    // The full detail index set, the same as level 0
+    final int indexOffset;
+    final int indexCount;
+    // GL_UNSIGNED_SHORT or GL_UNSIGNED_INT, indices are relative to vertexOffset
+    final int indexType;
+    final Material material;
+    // Per level of detail; all levels index the same vertices with the same index type
+    final int[] levelOffsets;
+    final int[] levelCounts;
+
+    Primitive(int vertexOffset, int vertexCount, int indexOffset, int indexCount, int indexType,
+              Material material) {
+      this(vertexOffset, vertexCount, new int[]{indexOffset}, new int[]{indexCount}, indexType, material);
+    }
+
+    Primitive(int vertexOffset, int vertexCount, int[] levelOffsets, int[] levelCounts, int indexType,
+              Material material) {
+      this.vertexOffset = vertexOffset;
+      this.vertexCount = vertexCount;
+      this.indexOffset = levelOffsets[0];
+      this.indexCount = levelCounts[0];
+      this.indexType = indexType;
+      this.material = material;
+      this.levelOffsets = levelOffsets;
+      this.levelCounts = levelCounts;
+    }
+
+    // Levels past the last one this primitive has draw its coarsest
+    int levelOffset(int level) {
+      return levelOffsets[Math.min(level, levelOffsets.length - 1)];
+    }
+
+    int levelCount(int level) {
+      return levelCounts[Math.min(level, levelCounts.length - 1)];
+    }
+  }
+
+  static final class Mesh {
+    final List<Primitive> primitives;
+    // Over the full detail triangles for picking, null when the mesh has none
+    final MeshBvh bvh;
+
+    Mesh(List<Primitive> primitives) {
+      this(primitives, null);
+    }
+
+    Mesh(List<Primitive> primitives, MeshBvh bvh) {
+      this.primitives = primitives;
+      this.bvh = bvh;
+    }
+  }
+
+  // A mesh placed in the scene; the same mesh may appear under several nodes
+  static final class Node {
+    final Mesh mesh;
+    // At rest; identity for skinned meshes, whose vertices are already in model space
+    final float[] matrix;
+    // Index into rig.parents whose animated transform replaces matrix, or -1 without a rig
+    final int rigNode;
+    // Index into rig.skins, or -1
+    final int skin;
+
+    Node(Mesh mesh, float[] matrix) {
+      this(mesh, matrix, -1, -1);
+    }
+
+    Node(Mesh mesh, float[] matrix, int rigNode, int skin) {
+      this.mesh = mesh;
+      this.matrix = matrix;
+      this.rigNode = rigNode;
+      this.skin = skin;
+    }
+  }
+
+  static final class Skin {
+    // Rig node per joint, -1 for a joint outside the scene
+    final int[] joints;
+    // Column-major 4x4 per joint
+    final float[] inverseBindMatrices;
+
+    Skin(int[] joints, float[] inverseBindMatrices) {
+      this.joints = joints;
+      this.inverseBindMatrices = inverseBindMatrices;
+    }
+  }
+
+  // One animated property of one rig node
+  static final class Channel {
+    static final int TRANSLATION = 0;
+    static final int ROTATION = 1;
+    static final int SCALE = 2;
+
+    static final int LINEAR = 0;
+    static final int STEP = 1;
+    // Values hold an in-tangent, the value and an out-tangent per key
+    static final int CUBIC_SPLINE = 2;
+
+    final int node;
+    final int path;
+    final int interpolation;
+    // Seconds, ascending
+    final float[] times;
+    // 3 or 4 (rotation) floats per key, times 3 for CUBIC_SPLINE
+    final float[] values;
+
+    Channel(int node, int path, int interpolation, float[] times, float[] values) {
+      this.node = node;
+      this.path = path;
+      this.interpolation = interpolation;
+      this.times = times;
+      this.values = values;
+    }
+
+    int components() {
+      return path == ROTATION ? 4 : 3;
+    }
+  }
+
+  static final class Animation {
+    final String name;
+    final float duration;
+    final List<Channel> channels;
+
+    Animation(String name, float duration, List<Channel> channels) {
+      this.name = name;
+      this.duration = duration;
+      this.channels = channels;
+    }
+  }
+
+  // The scene's nodes in an order where parents come before their children
+  static final class Rig {
+    // Rig index of each node's parent, -1 for roots
+    final int[] parents;
+    // Local transform at rest, a column-major 4x4 per node
+    final float[] restMatrices;
+    // The same as tx, ty, tz, qx, qy, qz, qw, sx, sy, sz per node, which animation channels
+    // override; nodes given as a matrix are never animated and keep their matrix
+    final float[] restTrs;
+    final List<Skin> skins;
+    final List<Animation> animations;
+
+    Rig(int[] parents, float[] restMatrices, float[] restTrs, List<Skin> skins, List<Animation> animations) {
+      this.parents = parents;
+      this.restMatrices = restMatrices;
+      this.restTrs = restTrs;
+      this.skins = skins;
+      this.animations = animations;
+    }
+
+    int getNodeCount() {
+      return parents.length;
+    }
+  }
+
+  // An embedded PNG or JPEG, still encoded
+  static final class Image {
+    final ByteBuffer data;
+    final String mimeType;
+
+    Image(ByteBuffer data, String mimeType) {
+      this.data = data;
+      this.mimeType = mimeType;
+    }
+
+    // Reads the encoded bytes in place, so a decoder can take them without a byte[] copy;
+    // null when the image had no embedded data
+    InputStream open() {
+      if (data == null) return null;
+      final ByteBuffer source = data.duplicate();
+      return new InputStream() {
+        @Override
+        public int read() {
+          return source.hasRemaining() ? source.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+          if (length == 0) return 0;
+          if (!source.hasRemaining()) return -1;
+          int count = Math.min(length, source.remaining());
+          source.get(buffer, offset, count);
+          return count;
+        }
+
+        @Override
+        public int available() {
+          return source.remaining();
+        }
+      };
+    }
+  }
+
+  final ByteBuffer vertices;
+  final ByteBuffer indices;
+  final List<Mesh> meshes;
+  final List<Node> nodes;
+  final List<Image> images;
+  // Bounds of all nodes in model space, at rest
+  final float[] min;
+  final float[] max;
+  // Null for a model without skins or animations
+  final Rig rig;
+
+  GlbModel(ByteBuffer vertices, ByteBuffer indices, List<Mesh> meshes, List<Node> nodes, List<Image> images,
+           float[] min, float[] max, Rig rig) {
+    this.vertices = vertices;
+    this.indices = indices;
+    this.meshes = meshes;
+    this.nodes = nodes;
+    this.images = images;
+    this.min = min;
+    this.max = max;
+    this.rig = rig;
+  }
+
+  // Triangles drawn for one placement of the model
+  int getTriangleCount() {
+    return getTriangleCount(0);
+  }
+
+  int getTriangleCount(int level) {
+    int triangles = 0;
+    for (Node node : nodes) {
+      for (Primitive primitive : node.mesh.primitives) {
+        triangles += primitive.levelCount(level) / 3;
+      }
+    }
+    return triangles;
+  }
+}
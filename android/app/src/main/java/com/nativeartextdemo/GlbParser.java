@@ -0,0 +1,817 @@
+package com.visionar;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Reads a binary glTF 2.0 (.glb) into a GlbModel, either from a mapped buffer without copying
+// the BIN chunk, or front to back from a stream with the BIN chunk read straight into a direct
+// buffer; the whole file never sits in a byte[]. Vertices and indices are written directly
+// into the model's direct buffers. Triangle primitives with POSITION and optional NORMAL,
+// TEXCOORD_0, JOINTS_0 and WEIGHTS_0 are converted; other primitive modes, sparse accessors,
+// external buffers and morph targets are skipped. Skins and translation, rotation and scale
+// animation channels are kept in the model's rig. Every primitive also gets the simplified
+// levels of detail from MeshSimplifier, and every mesh a MeshBvh for picking. Geometry
+// compressed with EXT_meshopt_compression goes through MeshoptDecoder, quantized attributes
+// (KHR_mesh_quantization) read like any other, and a base color KHR_texture_transform is baked
+// into the texture coordinates.
+final class GlbParser {
+  private static final int MAGIC = 0x46546C67; // "glTF"
+  private static final int CHUNK_JSON = 0x4E4F534A;
+  private static final int CHUNK_BIN = 0x004E4942;
+  private static final int MODE_TRIANGLES = 4;
+
+  private static final int BYTE = 5120;
+  private static final int UNSIGNED_BYTE = 5121;
+  private static final int SHORT = 5122;
+  private static final int UNSIGNED_SHORT = 5123;
+  private static final int UNSIGNED_INT = 5125;
+  private static final int FLOAT = 5126;
+
+  private final Map<String, Object> json;
+  private final ByteBuffer bin;
+  // Null when nobody listens for progress or cancels
+  private final ModelLoadJob job;
+  private final List<Object> accessors;
+  private final List<Object> bufferViews;
+  // Meshopt compressed bufferViews once decoded, little endian like bin; null until needed
+  private final ByteBuffer[] decodedViews;
+  private ByteBuffer vertices;
+  // The scene's nodes in rig order, filled by collectNodes
+  private final List<Integer> rigParents = new ArrayList<>();
+  private final List<float[]> rigMatrices = new ArrayList<>();
+  private final List<float[]> rigTrs = new ArrayList<>();
+  // Rig index of every glTF node, -1 for nodes outside the scene
+  private int[] rigIndex;
+
+  private GlbParser(Map<String, Object> json, ByteBuffer bin, ModelLoadJob job) {
+    this.json = json;
+    this.bin = bin;
+    this.job = job;
+    accessors = MiniJson.array(json, "accessors");
+    bufferViews = MiniJson.array(json, "bufferViews");
+    decodedViews = new ByteBuffer[bufferViews.size()];
+  }
+
+  // For a file already in memory, typically an asset or cache file mapped with FileChannel.map.
+  // The BIN chunk stays a view of glb: nothing is copied and the model keeps the mapping alive.
+  static GlbModel parse(ByteBuffer glb) throws IOException {
+    return parse(glb, null);
+  }
+
+  // Same, reporting converted meshes to job and giving up once it is cancelled
+  static GlbModel parse(ByteBuffer glb, ModelLoadJob job) throws IOException {
+    ByteBuffer file = glb.slice().order(ByteOrder.LITTLE_ENDIAN);
+    if (file.remaining() < 12) throw new IOException("Not a binary glTF file");
+    int length = Math.min(checkHeader(file), file.capacity());
+
+    String jsonText = null;
+    ByteBuffer bin = null;
+    int at = 12;
+    while (at + 8 <= length) {
+      int chunkLength = file.getInt(at);
+      int type = file.getInt(at + 4);
+      at += 8;
+      if (chunkLength < 0 || chunkLength > length - at) throw new IOException("Truncated glTF chunk");
+      ByteBuffer chunk = file.duplicate();
+      chunk.position(at).limit(at + chunkLength);
+      if (type == CHUNK_JSON && jsonText == null) {
+        jsonText = StandardCharsets.UTF_8.decode(chunk).toString();
+      } else if (type == CHUNK_BIN && bin == null) {
+        bin = chunk.slice().order(ByteOrder.LITTLE_ENDIAN);
+      }
+      at += chunkLength;
+    }
+    return fromChunks(jsonText, bin, job);
+  }
+
+  // For sources that can only be streamed, such as a download
+  static GlbModel read(InputStream in) throws IOException {
+    ReadableByteChannel channel = Channels.newChannel(in);
+    ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(channel, header);
+    int remaining = checkHeader(header) - 12;
+
+    String jsonText = null;
+    ByteBuffer bin = null;
+    ByteBuffer chunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    while (remaining >= 8) {
+      chunkHeader.clear();
+      readFully(channel, chunkHeader);
+      int length = chunkHeader.getInt(0);
+      int type = chunkHeader.getInt(4);
+      if (length < 0 || length > remaining - 8) throw new IOException("Truncated glTF chunk");
+      if (type == CHUNK_JSON && jsonText == null) {
+        ByteBuffer text = ByteBuffer.allocate(length);
+        readFully(channel, text);
+        jsonText = new String(text.array(), StandardCharsets.UTF_8);
+      } else if (type == CHUNK_BIN && bin == null) {
+        bin = ByteBuffer.allocateDirect(length).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, bin);
+        bin.clear();
+      } else {
+        // Unknown chunks must be ignored
+        readFully(channel, ByteBuffer.allocate(length));
+      }
+      remaining -= 8 + length;
+    }
+    return fromChunks(jsonText, bin, null);
+  }
+
+  // Validates the 12 byte header and returns the file length it declares
+  private static int checkHeader(ByteBuffer header) throws IOException {
+    if (header.getInt(0) != MAGIC) throw new IOException("Not a binary glTF file");
+    if (header.getInt(4) != 2) throw new IOException("Unsupported glTF version " + header.getInt(4));
+    return header.getInt(8);
+  }
+
+  private static GlbModel fromChunks(String jsonText, ByteBuffer bin, ModelLoadJob job) throws IOException {
+    if (jsonText == null) throw new IOException("glTF file has no JSON chunk");
+
+    Object root = MiniJson.parse(jsonText);
+    if (!(root instanceof Map)) throw new IOException("glTF JSON is not an object");
+    @SuppressWarnings("unchecked")
+    Map<String, Object> json = (Map<String, Object>) root;
+    return new GlbParser(json, bin, job).build();
+  }
+
+  private static void readFully(ReadableByteChannel channel, ByteBuffer target) throws IOException {
+    while (target.hasRemaining()) {
+      if (channel.read(target) < 0) throw new IOException("Unexpected end of glTF file");
+    }
+  }
+
+  private GlbModel build() throws IOException {
+    List<GlbModel.Image> images = readImages();
+    List<GlbModel.Material> materials = readMaterials();
+    GlbModel.Material fallback = new GlbModel.Material(new float[]{1f, 1f, 1f, 1f}, -1, 1f, 1f,
+        new float[]{0f, 0f, 0f}, false);
+
+    // Size both buffers up front so primitives are written in place
+    List<Object> meshesJson = MiniJson.array(json, "meshes");
+    int vertexBytes = 0;
+    int indexBytes = 0;
+    for (int m = 0; m < meshesJson.size(); m++) {
+      for (Object p : primitivesOf(meshesJson, m)) {
+        int vertexCount = vertexCountOf(p);
+        if (vertexCount <= 0) continue;
+        vertexBytes += vertexCount * GlbModel.VERTEX_STRIDE;
+        indexBytes = align4(indexBytes) + indexCountOf(p, vertexCount) * (vertexCount > 65536 ? 4 : 2);
+      }
+    }
+    vertices = ByteBuffer.allocateDirect(vertexBytes).order(ByteOrder.nativeOrder());
+    ByteBuffer indices = ByteBuffer.allocateDirect(align4(indexBytes)).order(ByteOrder.nativeOrder());
+
+    List<GlbModel.Mesh> meshes = new ArrayList<>();
+    for (int m = 0; m < meshesJson.size(); m++) {
+      List<GlbModel.Primitive> primitives = new ArrayList<>();
+      for (Object p : primitivesOf(meshesJson, m)) {
+        int vertexCount = vertexCountOf(p);
+        if (vertexCount <= 0) continue;
+        @SuppressWarnings("unchecked")
+        Map<String, Object> primitive = (Map<String, Object>) p;
+        int material = MiniJson.integer(primitive, "material", -1);
+        primitives.add(readPrimitive(primitive, vertexCount, indices,
+            material >= 0 && material < materials.size() ? materials.get(material) : fallback,
+            texCoordTransform(material)));
+      }
+      meshes.add(new GlbModel.Mesh(primitives));
+      if (job != null) {
+        job.progress("meshes", m + 1, meshesJson.size());
+      }
+    }
+    vertices.clear();
+    indices.clear();
+    // Simplified levels go after the full index sets, the vertices are shared
+    indices = MeshSimplifier.addLevels(vertices, indices, meshes, job);
+    for (int m = 0; m < meshes.size(); m++) {
+      if (job != null) job.checkCancelled();
+      List<GlbModel.Primitive> primitives = meshes.get(m).primitives;
+      meshes.set(m, new GlbModel.Mesh(primitives, MeshBvh.build(vertices, indices, meshes.get(m))));
+    }
+
+    List<GlbModel.Node> nodes = new ArrayList<>();
+    float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+    float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+    float[] identity = new float[16];
+    MatrixMath.setIdentity(identity);
+    rigIndex = new int[MiniJson.array(json, "nodes").size()];
+    Arrays.fill(rigIndex, -1);
+    for (int root : sceneRoots()) {
+      collectNodes(root, identity, -1, meshes, nodes, min, max, 0);
+    }
+    if (nodes.isEmpty()) {
+      min = new float[3];
+      max = new float[3];
+    }
+    GlbModel.Rig rig = readRig();
+    if (rig == null) {
+      // Without a rig there is nothing for rigNode to point into
+      for (int n = 0; n < nodes.size(); n++) {
+        GlbModel.Node node = nodes.get(n);
+        nodes.set(n, new GlbModel.Node(node.mesh, node.matrix));
+      }
+    }
+    return new GlbModel(vertices, indices, meshes, nodes, images, min, max, rig);
+  }
+
+  // Null unless the scene has a skin or an animation that targets one of its nodes
+  private GlbModel.Rig readRig() throws IOException {
+    List<GlbModel.Skin> skins = readSkins();
+    List<GlbModel.Animation> animations = readAnimations();
+    if (skins.isEmpty() && animations.isEmpty()) return null;
+    int count = rigParents.size();
+    int[] parents = new int[count];
+    float[] matrices = new float[count * 16];
+    float[] trs = new float[count * 10];
+    for (int i = 0; i < count; i++) {
+      parents[i] = rigParents.get(i);
+      System.arraycopy(rigMatrices.get(i), 0, matrices, i * 16, 16);
+      System.arraycopy(rigTrs.get(i), 0, trs, i * 10, 10);
+    }
+    return new GlbModel.Rig(parents, matrices, trs, skins, animations);
+  }
+
+  // Every skin, in glTF order so mesh nodes can refer to them by their glTF index
+  private List<GlbModel.Skin> readSkins() throws IOException {
+    List<GlbModel.Skin> skins = new ArrayList<>();
+    for (Object s : MiniJson.array(json, "skins")) {
+      @SuppressWarnings("unchecked")
+      Map<String, Object> skin = s instanceof Map ? (Map<String, Object>) s : new HashMap<>();
+      List<Object> jointsJson = MiniJson.array(skin, "joints");
+      int[] joints = new int[jointsJson.size()];
+      for (int j = 0; j < joints.length; j++) {
+        Object joint = jointsJson.get(j);
+        int node = joint instanceof Number ? ((Number) joint).intValue() : -1;
+        joints[j] = node >= 0 && node < rigIndex.length ? rigIndex[node] : -1;
+      }
+      Map<String, Object> inverseBind = accessor(MiniJson.integer(skin, "inverseBindMatrices", -1));
+      float[] matrices = inverseBind != null && hasData(inverseBind) ? readFloats(inverseBind, 16) : new float[0];
+      if (matrices.length < joints.length * 16) {
+        // Missing matrices are identity
+        float[] complete = new float[joints.length * 16];
+        System.arraycopy(matrices, 0, complete, 0, matrices.length);
+        for (int j = matrices.length / 16; j < joints.length; j++) {
+          for (int c = 0; c < 16; c += 5) complete[j * 16 + c] = 1f;
+        }
+        matrices = complete;
+      }
+      skins.add(new GlbModel.Skin(joints, matrices));
+    }
+    return skins;
+  }
+
+  // Translation, rotation and scale channels on nodes in the scene; morph target weights and
+  // channels whose sampler data is missing or the wrong size are dropped
+  private List<GlbModel.Animation> readAnimations() throws IOException {
+    List<GlbModel.Animation> animations = new ArrayList<>();
+    for (Object a : MiniJson.array(json, "animations")) {
+      if (!(a instanceof Map)) continue;
+      @SuppressWarnings("unchecked")
+      Map<String, Object> animation = (Map<String, Object>) a;
+      List<Object> samplers = MiniJson.array(animation, "samplers");
+      List<GlbModel.Channel> channels = new ArrayList<>();
+      float duration = 0f;
+      for (Object c : MiniJson.array(animation, "channels")) {
+        if (!(c instanceof Map)) continue;
+        @SuppressWarnings("unchecked")
+        Map<String, Object> channel = (Map<String, Object>) c;
+        Map<String, Object> target = MiniJson.object(channel, "target");
+        Map<String, Object> sampler = MiniJson.objectAt(samplers, MiniJson.integer(channel, "sampler", -1));
+        if (target == null || sampler == null) continue;
+        int node = MiniJson.integer(target, "node", -1);
+        int rigNode = node >= 0 && node < rigIndex.length ? rigIndex[node] : -1;
+        int path = pathOf(MiniJson.string(target, "path", ""));
+        if (rigNode < 0 || path < 0) continue;
+        Map<String, Object> input = accessor(MiniJson.integer(sampler, "input", -1));
+        Map<String, Object> output = accessor(MiniJson.integer(sampler, "output", -1));
+        if (input == null || output == null || !hasData(input) || !hasData(output)) continue;
+        String interpolationName = MiniJson.string(sampler, "interpolation", "LINEAR");
+        int interpolation = "STEP".equals(interpolationName) ? GlbModel.Channel.STEP
+            : "CUBICSPLINE".equals(interpolationName) ? GlbModel.Channel.CUBIC_SPLINE
+            : GlbModel.Channel.LINEAR;
+        int components = path == GlbModel.Channel.ROTATION ? 4 : 3;
+        float[] times = readFloats(input, 1);
+        float[] values = readFloats(output, components);
+        int perKey = components * (interpolation == GlbModel.Channel.CUBIC_SPLINE ? 3 : 1);
+        if (times.length == 0 || values.length != times.length * perKey) continue;
+        channels.add(new GlbModel.Channel(rigNode, path, interpolation, times, values));
+        duration = Math.max(duration, times[times.length - 1]);
+      }
+      if (!channels.isEmpty()) {
+        animations.add(new GlbModel.Animation(MiniJson.string(animation, "name", null), duration, channels));
+      }
+    }
+    return animations;
+  }
+
+  private static int pathOf(String path) {
+    switch (path) {
+      case "translation": return GlbModel.Channel.TRANSLATION;
+      case "rotation": return GlbModel.Channel.ROTATION;
+      case "scale": return GlbModel.Channel.SCALE;
+      default: return -1;
+    }
+  }
+
+  private List<Object> primitivesOf(List<Object> meshes, int index) {
+    Map<String, Object> mesh = MiniJson.objectAt(meshes, index);
+    return mesh == null ? new ArrayList<>() : MiniJson.array(mesh, "primitives");
+  }
+
+  // Vertex count of a primitive this parser can draw, or 0
+  private int vertexCountOf(Object p) {
+    if (!(p instanceof Map)) return 0;
+    @SuppressWarnings("unchecked")
+    Map<String, Object> primitive = (Map<String, Object>) p;
+    if (MiniJson.integer(primitive, "mode", MODE_TRIANGLES) != MODE_TRIANGLES) return 0;
+    Map<String, Object> attributes = MiniJson.object(primitive, "attributes");
+    if (attributes == null) return 0;
+    Map<String, Object> position = accessor(MiniJson.integer(attributes, "POSITION", -1));
+    if (position == null || !hasData(position)) return 0;
+    return MiniJson.integer(position, "count", 0);
+  }
+
+  @SuppressWarnings("unchecked")
+  private int indexCountOf(Object p, int vertexCount) {
+    Map<String, Object> indices = accessor(MiniJson.integer((Map<String, Object>) p, "indices", -1));
+    int count = indices != null && hasData(indices) ? MiniJson.integer(indices, "count", 0) : vertexCount;
+    return count - count % 3;
+  }
+
+  // Writes straight into the direct vertex and index buffers, so a primitive costs no heap
+  // beyond its JSON
+  private GlbModel.Primitive readPrimitive(Map<String, Object> primitive, int vertexCount, ByteBuffer indices,
+                                           GlbModel.Material material, float[] texCoordTransform)
+      throws IOException {
+    Map<String, Object> attributes = MiniJson.object(primitive, "attributes");
+    int vertexOffset = vertices.position();
+    int indexType = vertexCount > 65536 ? GlApi.GL_UNSIGNED_INT : GlApi.GL_UNSIGNED_SHORT;
+    int indexOffset = align4(indices.position());
+    int indexCount = indexCountOf(primitive, vertexCount);
+
+    // Indices first, computed normals need them
+    Map<String, Object> indexAccessor = accessor(MiniJson.integer(primitive, "indices", -1));
+    boolean wide = indexType == GlApi.GL_UNSIGNED_INT;
+    if (indexAccessor != null && hasData(indexAccessor)) {
+      readIndices(indexAccessor, indexCount, indices, indexOffset, wide);
+    } else {
+      for (int i = 0; i < indexCount; i++) {
+        putIndex(indices, indexOffset, i, wide, i);
+      }
+    }
+    for (int i = 0; i < indexCount; i++) {
+      int index = getIndex(indices, indexOffset, i, wide);
+      if (index < 0 || index >= vertexCount) throw new IOException("glTF index out of range");
+    }
+    indices.position(indexOffset + indexCount * (wide ? 4 : 2));
+
+    readAttribute(accessor(MiniJson.integer(attributes, "POSITION", -1)), 3, vertexOffset, vertexCount, 0);
+    Map<String, Object> normals = accessor(MiniJson.integer(attributes, "NORMAL", -1));
+    if (normals != null && hasData(normals)) {
+      readAttribute(normals, 3, vertexOffset, vertexCount, GlbModel.NORMAL_OFFSET);
+    } else {
+      computeNormals(vertexOffset, vertexCount, indices, indexOffset, indexCount, wide);
+    }
+    Map<String, Object> texCoords = accessor(MiniJson.integer(attributes, "TEXCOORD_0", -1));
+    if (texCoords != null && hasData(texCoords)) {
+      readAttribute(texCoords, 2, vertexOffset, vertexCount, GlbModel.TEXCOORD_OFFSET);
+      if (texCoordTransform != null) transformTexCoords(texCoordTransform, vertexOffset, vertexCount);
+    }
+    readSkinAttributes(attributes, vertexOffset, vertexCount);
+    vertices.position(vertexOffset + vertexCount * GlbModel.VERTEX_STRIDE);
+
+    return new GlbModel.Primitive(vertexOffset, vertexCount, indexOffset, indexCount, indexType, material);
+  }
+
+  private static void putIndex(ByteBuffer indices, int offset, int i, boolean wide, int value) {
+    if (wide) {
+      indices.putInt(offset + i * 4, value);
+    } else {
+      indices.putShort(offset + i * 2, (short) value);
+    }
+  }
+
+  private static int getIndex(ByteBuffer indices, int offset, int i, boolean wide) {
+    return wide ? indices.getInt(offset + i * 4) : indices.getShort(offset + i * 2) & 0xFFFF;
+  }
+
+  // Area weighted vertex normals for primitives that ship without NORMAL, accumulated in the
+  // normal slots of the (zero filled) vertex buffer
+  private void computeNormals(int vertexOffset, int vertexCount, ByteBuffer indices, int indexOffset,
+                              int indexCount, boolean wide) {
+    int stride = GlbModel.VERTEX_STRIDE;
+    for (int t = 0; t + 2 < indexCount; t += 3) {
+      int a = vertexOffset + getIndex(indices, indexOffset, t, wide) * stride;
+      int b = vertexOffset + getIndex(indices, indexOffset, t + 1, wide) * stride;
+      int c = vertexOffset + getIndex(indices, indexOffset, t + 2, wide) * stride;
+      float ax = vertices.getFloat(a), ay = vertices.getFloat(a + 4), az = vertices.getFloat(a + 8);
+      float e1x = vertices.getFloat(b) - ax, e1y = vertices.getFloat(b + 4) - ay, e1z = vertices.getFloat(b + 8) - az;
+      float e2x = vertices.getFloat(c) - ax, e2y = vertices.getFloat(c + 4) - ay, e2z = vertices.getFloat(c + 8) - az;
+      float nx = e1y * e2z - e1z * e2y;
+      float ny = e1z * e2x - e1x * e2z;
+      float nz = e1x * e2y - e1y * e2x;
+      addNormal(a, nx, ny, nz);
+      addNormal(b, nx, ny, nz);
+      addNormal(c, nx, ny, nz);
+    }
+    for (int v = 0; v < vertexCount; v++) {
+      int at = vertexOffset + v * stride + GlbModel.NORMAL_OFFSET;
+      float nx = vertices.getFloat(at), ny = vertices.getFloat(at + 4), nz = vertices.getFloat(at + 8);
+      float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+      if (length > 0f) {
+        vertices.putFloat(at, nx / length);
+        vertices.putFloat(at + 4, ny / length);
+        vertices.putFloat(at + 8, nz / length);
+      } else {
+        vertices.putFloat(at + 4, 1f);
+      }
+    }
+  }
+
+  private void addNormal(int vertex, float nx, float ny, float nz) {
+    int at = vertex + GlbModel.NORMAL_OFFSET;
+    vertices.putFloat(at, vertices.getFloat(at) + nx);
+    vertices.putFloat(at + 4, vertices.getFloat(at + 4) + ny);
+    vertices.putFloat(at + 8, vertices.getFloat(at + 8) + nz);
+  }
+
+  // u' = m0 u + m2 v + m4, v' = m1 u + m3 v + m5
+  private void transformTexCoords(float[] m, int vertexOffset, int vertexCount) {
+    for (int v = 0; v < vertexCount; v++) {
+      int at = vertexOffset + v * GlbModel.VERTEX_STRIDE + GlbModel.TEXCOORD_OFFSET;
+      float s = vertices.getFloat(at);
+      float t = vertices.getFloat(at + 4);
+      vertices.putFloat(at, m[0] * s + m[2] * t + m[4]);
+      vertices.putFloat(at + 4, m[1] * s + m[3] * t + m[5]);
+    }
+  }
+
+  private Map<String, Object> accessor(int index) {
+    return MiniJson.objectAt(accessors, index);
+  }
+
+  // Only accessors backed by the BIN chunk carry data here, directly or meshopt compressed
+  private boolean hasData(Map<String, Object> accessor) {
+    Map<String, Object> view = MiniJson.objectAt(bufferViews, MiniJson.integer(accessor, "bufferView", -1));
+    if (view == null || bin == null || MiniJson.object(accessor, "sparse") != null) return false;
+    // A compressed view's own buffer is the uncompressed fallback, which a GLB leaves empty
+    Map<String, Object> meshopt = meshoptOf(view);
+    return MiniJson.integer(meshopt != null ? meshopt : view, "buffer", 0) == 0;
+  }
+
+  private static Map<String, Object> meshoptOf(Map<String, Object> view) {
+    Map<String, Object> extensions = view == null ? null : MiniJson.object(view, "extensions");
+    return extensions == null ? null : MiniJson.object(extensions, "EXT_meshopt_compression");
+  }
+
+  // The buffer an accessor's layout is in: bin, or its bufferView decoded on first use
+  private ByteBuffer source(Map<String, Object> accessor) throws IOException {
+    int index = MiniJson.integer(accessor, "bufferView", -1);
+    Map<String, Object> meshopt = meshoptOf(MiniJson.objectAt(bufferViews, index));
+    if (meshopt == null) return bin;
+    if (decodedViews[index] == null) {
+      int count = MiniJson.integer(meshopt, "count", 0);
+      int stride = MiniJson.integer(meshopt, "byteStride", 0);
+      if (count < 0 || stride <= 0 || (long) count * stride > Integer.MAX_VALUE) {
+        throw new IOException("Bad meshopt bufferView size");
+      }
+      ByteBuffer decoded = ByteBuffer.allocateDirect(count * stride).order(ByteOrder.LITTLE_ENDIAN);
+      decodeView(meshopt, decoded, 0);
+      decodedViews[index] = decoded;
+    }
+    return decodedViews[index];
+  }
+
+  private void decodeView(Map<String, Object> meshopt, ByteBuffer target, int offset) throws IOException {
+    int byteOffset = MiniJson.integer(meshopt, "byteOffset", 0);
+    int byteLength = MiniJson.integer(meshopt, "byteLength", 0);
+    if (byteOffset < 0 || byteLength <= 0 || (long) byteOffset + byteLength > bin.capacity()) {
+      throw new IOException("Meshopt bufferView runs past the end of the buffer");
+    }
+    // The compressed bytes are a fraction of the output and decode fastest from an array
+    byte[] compressed = new byte[byteLength];
+    ByteBuffer view = bin.duplicate();
+    view.position(byteOffset);
+    view.get(compressed);
+    MeshoptDecoder.decode(target, offset, MiniJson.integer(meshopt, "count", 0),
+        MiniJson.integer(meshopt, "byteStride", 0), MiniJson.string(meshopt, "mode", ""),
+        MiniJson.string(meshopt, "filter", "NONE"), compressed);
+  }
+
+  // Start of the accessor's first element in source, and its element stride
+  private int[] layout(ByteBuffer source, Map<String, Object> accessor, int elementBytes) throws IOException {
+    Map<String, Object> view = MiniJson.objectAt(bufferViews, MiniJson.integer(accessor, "bufferView", -1));
+    // A decoded view starts at 0
+    int viewOffset = source == bin ? MiniJson.integer(view, "byteOffset", 0) : 0;
+    int offset = viewOffset + MiniJson.integer(accessor, "byteOffset", 0);
+    int stride = MiniJson.integer(view, "byteStride", elementBytes);
+    int count = MiniJson.integer(accessor, "count", 0);
+    if (count > 0 && (offset < 0 || (long) offset + (long) stride * (count - 1) + elementBytes > source.capacity())) {
+      throw new IOException("glTF accessor runs past the end of the buffer");
+    }
+    return new int[]{offset, stride};
+  }
+
+  // Tightly packed indices that are already the output type are one bulk copy, and a meshopt
+  // view holding just them decodes straight into place
+  private void readIndices(Map<String, Object> accessor, int count, ByteBuffer indices, int offset, boolean wide)
+      throws IOException {
+    int type = MiniJson.integer(accessor, "componentType", UNSIGNED_SHORT);
+    int size = componentSize(type);
+    int index = MiniJson.integer(accessor, "bufferView", -1);
+    Map<String, Object> meshopt = meshoptOf(MiniJson.objectAt(bufferViews, index));
+    if (meshopt != null && decodedViews[index] == null && type == (wide ? UNSIGNED_INT : UNSIGNED_SHORT)
+        && MiniJson.integer(accessor, "byteOffset", 0) == 0 && MiniJson.integer(accessor, "count", 0) == count
+        && MiniJson.integer(meshopt, "count", 0) == count && MiniJson.integer(meshopt, "byteStride", 0) == size
+        && !"ATTRIBUTES".equals(MiniJson.string(meshopt, "mode", ""))) {
+      decodeView(meshopt, indices, offset);
+      return;
+    }
+    ByteBuffer data = source(accessor);
+    int[] layout = layout(data, accessor, size);
+    if (layout[1] == size && type == (wide ? UNSIGNED_INT : UNSIGNED_SHORT)
+        && data.order() == indices.order()) {
+      ByteBuffer source = data.duplicate();
+      source.position(layout[0]).limit(layout[0] + count * size);
+      ByteBuffer target = indices.duplicate();
+      target.position(offset);
+      target.put(source);
+      return;
+    }
+    for (int i = 0; i < count; i++) {
+      int at = layout[0] + i * layout[1];
+      switch (type) {
+        case UNSIGNED_BYTE: putIndex(indices, offset, i, wide, data.get(at) & 0xFF); break;
+        case UNSIGNED_SHORT: putIndex(indices, offset, i, wide, data.getShort(at) & 0xFFFF); break;
+        case UNSIGNED_INT: putIndex(indices, offset, i, wide, data.getInt(at)); break;
+        default: throw new IOException("Unsupported glTF index type " + type);
+      }
+    }
+  }
+
+  // Reads a VEC2/VEC3 attribute into the vertex buffer at byte `attributeOffset` of each vertex
+  private void readAttribute(Map<String, Object> accessor, int components, int vertexOffset, int vertexCount,
+                             int attributeOffset) throws IOException {
+    int type = MiniJson.integer(accessor, "componentType", FLOAT);
+    boolean normalized = Boolean.TRUE.equals(accessor.get("normalized"));
+    int size = componentSize(type);
+    ByteBuffer data = source(accessor);
+    int[] layout = layout(data, accessor, size * components);
+    int count = Math.min(MiniJson.integer(accessor, "count", 0), vertexCount);
+    for (int i = 0; i < count; i++) {
+      int at = layout[0] + i * layout[1];
+      int out = vertexOffset + i * GlbModel.VERTEX_STRIDE + attributeOffset;
+      for (int c = 0; c < components; c++) {
+        vertices.putFloat(out + c * 4, component(data, type, at + c * size, normalized));
+      }
+    }
+  }
+
+  // JOINTS_0 and WEIGHTS_0 as bytes; an influence on a joint past 255 is dropped
+  private void readSkinAttributes(Map<String, Object> attributes, int vertexOffset, int vertexCount)
+      throws IOException {
+    Map<String, Object> joints = accessor(MiniJson.integer(attributes, "JOINTS_0", -1));
+    Map<String, Object> weights = accessor(MiniJson.integer(attributes, "WEIGHTS_0", -1));
+    if (joints == null || weights == null || !hasData(joints) || !hasData(weights)) return;
+    int jointType = MiniJson.integer(joints, "componentType", UNSIGNED_BYTE);
+    int weightType = MiniJson.integer(weights, "componentType", FLOAT);
+    int jointSize = componentSize(jointType);
+    int weightSize = componentSize(weightType);
+    ByteBuffer jointData = source(joints);
+    ByteBuffer weightData = source(weights);
+    int[] jointLayout = layout(jointData, joints, jointSize * 4);
+    int[] weightLayout = layout(weightData, weights, weightSize * 4);
+    int count = Math.min(Math.min(MiniJson.integer(joints, "count", 0), MiniJson.integer(weights, "count", 0)),
+        vertexCount);
+    for (int i = 0; i < count; i++) {
+      int out = vertexOffset + i * GlbModel.VERTEX_STRIDE;
+      for (int c = 0; c < 4; c++) {
+        int joint = (int) component(jointData, jointType, jointLayout[0] + i * jointLayout[1] + c * jointSize, false);
+        // Integer weights are always normalized
+        float weight = component(weightData, weightType, weightLayout[0] + i * weightLayout[1] + c * weightSize,
+            weightType != FLOAT);
+        if (joint > 255) {
+          joint = 0;
+          weight = 0f;
+        }
+        vertices.put(out + GlbModel.JOINTS_OFFSET + c, (byte) joint);
+        vertices.put(out + GlbModel.WEIGHTS_OFFSET + c, (byte) Math.round(Math.max(0f, Math.min(1f, weight)) * 255f));
+      }
+    }
+  }
+
+  // Every element of a SCALAR, VEC or MAT accessor of `components` values as floats
+  private float[] readFloats(Map<String, Object> accessor, int components) throws IOException {
+    int type = MiniJson.integer(accessor, "componentType", FLOAT);
+    boolean normalized = Boolean.TRUE.equals(accessor.get("normalized"));
+    int size = componentSize(type);
+    ByteBuffer data = source(accessor);
+    int[] layout = layout(data, accessor, size * components);
+    int count = Math.max(MiniJson.integer(accessor, "count", 0), 0);
+    float[] out = new float[count * components];
+    for (int i = 0; i < count; i++) {
+      for (int c = 0; c < components; c++) {
+        out[i * components + c] = component(data, type, layout[0] + i * layout[1] + c * size, normalized);
+      }
+    }
+    return out;
+  }
+
+  private static float component(ByteBuffer data, int type, int at, boolean normalized) throws IOException {
+    switch (type) {
+      case FLOAT: return data.getFloat(at);
+      case UNSIGNED_BYTE: return normalized ? (data.get(at) & 0xFF) / 255f : data.get(at) & 0xFF;
+      case UNSIGNED_SHORT: return normalized ? (data.getShort(at) & 0xFFFF) / 65535f : data.getShort(at) & 0xFFFF;
+      case BYTE: return normalized ? Math.max(data.get(at) / 127f, -1f) : data.get(at);
+      case SHORT: return normalized ? Math.max(data.getShort(at) / 32767f, -1f) : data.getShort(at);
+      default: throw new IOException("Unsupported glTF component type " + type);
+    }
+  }
+
+  private static int componentSize(int type) throws IOException {
+    switch (type) {
+      case BYTE:
+      case UNSIGNED_BYTE: return 1;
+      case SHORT:
+      case UNSIGNED_SHORT: return 2;
+      case UNSIGNED_INT:
+      case FLOAT: return 4;
+      default: throw new IOException("Unsupported glTF component type " + type);
+    }
+  }
+
+  private List<GlbModel.Image> readImages() {
+    List<GlbModel.Image> images = new ArrayList<>();
+    for (Object i : MiniJson.array(json, "images")) {
+      ByteBuffer data = null;
+      String mimeType = null;
+      if (i instanceof Map && bin != null) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> image = (Map<String, Object>) i;
+        Map<String, Object> view = MiniJson.objectAt(bufferViews, MiniJson.integer(image, "bufferView", -1));
+        if (view != null) {
+          int offset = MiniJson.integer(view, "byteOffset", 0);
+          int length = MiniJson.integer(view, "byteLength", 0);
+          if (offset >= 0 && length > 0 && (long) offset + length <= bin.capacity()) {
+            ByteBuffer slice = bin.duplicate();
+            slice.position(offset).limit(offset + length);
+            data = slice.slice();
+          }
+        }
+        mimeType = MiniJson.string(image, "mimeType", null);
+      }
+      // Images referenced by URI are not loaded, their slot stays empty
+      images.add(new GlbModel.Image(data, mimeType));
+    }
+    return images;
+  }
+
+  // KHR_texture_transform of a material's base color texture as a 2x3 matrix, scale then
+  // rotation then offset; null without one
+  private float[] texCoordTransform(int material) {
+    Map<String, Object> materialJson = MiniJson.objectAt(MiniJson.array(json, "materials"), material);
+    Map<String, Object> pbr = materialJson == null ? null : MiniJson.object(materialJson, "pbrMetallicRoughness");
+    Map<String, Object> texture = pbr == null ? null : MiniJson.object(pbr, "baseColorTexture");
+    Map<String, Object> extensions = texture == null ? null : MiniJson.object(texture, "extensions");
+    Map<String, Object> transform = extensions == null ? null : MiniJson.object(extensions, "KHR_texture_transform");
+    if (transform == null) return null;
+    float[] offset = MiniJson.floats(transform, "offset", 2, new float[]{0f, 0f});
+    float[] scale = MiniJson.floats(transform, "scale", 2, new float[]{1f, 1f});
+    float rotation = MiniJson.number(transform, "rotation", 0f);
+    float cos = (float) Math.cos(rotation);
+    float sin = (float) Math.sin(rotation);
+    return new float[]{cos * scale[0], -sin * scale[0], sin * scale[1], cos * scale[1], offset[0], offset[1]};
+  }
+
+  private List<GlbModel.Material> readMaterials() {
+    List<Object> textures = MiniJson.array(json, "textures");
+    List<GlbModel.Material> materials = new ArrayList<>();
+    for (Object m : MiniJson.array(json, "materials")) {
+      @SuppressWarnings("unchecked")
+      Map<String, Object> material = m instanceof Map ? (Map<String, Object>) m : new HashMap<>();
+      Map<String, Object> pbr = MiniJson.object(material, "pbrMetallicRoughness");
+      if (pbr == null) pbr = new HashMap<>();
+      int image = -1;
+      Map<String, Object> baseColorTexture = MiniJson.object(pbr, "baseColorTexture");
+      if (baseColorTexture != null) {
+        Map<String, Object> texture = MiniJson.objectAt(textures, MiniJson.integer(baseColorTexture, "index", -1));
+        if (texture != null) image = MiniJson.integer(texture, "source", -1);
+      }
+      materials.add(new GlbModel.Material(
+          MiniJson.floats(pbr, "baseColorFactor", 4, new float[]{1f, 1f, 1f, 1f}),
+          image,
+          MiniJson.number(pbr, "metallicFactor", 1f),
+          MiniJson.number(pbr, "roughnessFactor", 1f),
+          MiniJson.floats(material, "emissiveFactor", 3, new float[]{0f, 0f, 0f}),
+          "BLEND".equals(MiniJson.string(material, "alphaMode", "OPAQUE"))));
+    }
+    return materials;
+  }
+
+  // Root nodes of the default scene, or of every node nobody lists as a child
+  private List<Integer> sceneRoots() {
+    List<Integer> roots = new ArrayList<>();
+    Map<String, Object> scene = MiniJson.objectAt(MiniJson.array(json, "scenes"), MiniJson.integer(json, "scene", 0));
+    if (scene != null) {
+      for (Object node : MiniJson.array(scene, "nodes")) {
+        if (node instanceof Number) roots.add(((Number) node).intValue());
+      }
+      return roots;
+    }
+    List<Object> nodes = MiniJson.array(json, "nodes");
+    boolean[] isChild = new boolean[nodes.size()];
+    for (int n = 0; n < nodes.size(); n++) {
+      Map<String, Object> node = MiniJson.objectAt(nodes, n);
+      if (node == null) continue;
+      for (Object child : MiniJson.array(node, "children")) {
+        int c = child instanceof Number ? ((Number) child).intValue() : -1;
+        if (c >= 0 && c < isChild.length) isChild[c] = true;
+      }
+    }
+    for (int n = 0; n < nodes.size(); n++) {
+      if (!isChild[n]) roots.add(n);
+    }
+    return roots;
+  }
+
+  private void collectNodes(int index, float[] parent, int parentRig, List<GlbModel.Mesh> meshes,
+                            List<GlbModel.Node> out, float[] min, float[] max, int depth) throws IOException {
+    if (depth > 64) throw new IOException("glTF node hierarchy is cyclic or too deep");
+    Map<String, Object> node = MiniJson.objectAt(MiniJson.array(json, "nodes"), index);
+    if (node == null) return;
+    // glTF nodes form a tree. A node reached twice would be walked again for every path to it,
+    // which a small file can make exponential.
+    if (rigIndex[index] >= 0) throw new IOException("glTF node " + index + " has more than one parent");
+    float[] trs = localTrs(node);
+    float[] local = MiniJson.floats(node, "matrix", 16, null);
+    if (local == null) {
+      local = new float[16];
+      MatrixMath.setFromTrs(local, 0, trs, 0);
+    }
+    float[] world = new float[16];
+    MatrixMath.multiplyMM(world, parent, local);
+    int rig = rigParents.size();
+    rigParents.add(parentRig);
+    rigMatrices.add(local);
+    rigTrs.add(trs);
+    rigIndex[index] = rig;
+
+    int mesh = MiniJson.integer(node, "mesh", -1);
+    if (mesh >= 0 && mesh < meshes.size()) {
+      // Skinned vertices are already in model space at bind pose; the node transform does not apply
+      float[] placed = world;
+      int skin = MiniJson.integer(node, "skin", -1);
+      if (node.containsKey("skin")) {
+        placed = new float[16];
+        MatrixMath.setIdentity(placed);
+      }
+      int skinCount = MiniJson.array(json, "skins").size();
+      out.add(new GlbModel.Node(meshes.get(mesh), placed, rig, skin >= 0 && skin < skinCount ? skin : -1));
+      growBounds(meshes.get(mesh), placed, min, max);
+    }
+    for (Object child : MiniJson.array(node, "children")) {
+      if (child instanceof Number) {
+        collectNodes(((Number) child).intValue(), world, rig, meshes, out, min, max, depth + 1);
+      }
+    }
+  }
+
+  // translation, rotation and scale, identity for nodes given as a matrix
+  private static float[] localTrs(Map<String, Object> node) {
+    float[] trs = {0f, 0f, 0f, 0f, 0f, 0f, 1f, 1f, 1f, 1f};
+    if (node.containsKey("matrix")) return trs;
+    System.arraycopy(MiniJson.floats(node, "translation", 3, new float[]{0f, 0f, 0f}), 0, trs, 0, 3);
+    System.arraycopy(MiniJson.floats(node, "rotation", 4, new float[]{0f, 0f, 0f, 1f}), 0, trs, 3, 4);
+    System.arraycopy(MiniJson.floats(node, "scale", 3, new float[]{1f, 1f, 1f}), 0, trs, 7, 3);
+    return trs;
+  }
+
+  // Model space bounds from the transformed vertices of every primitive
+  private void growBounds(GlbModel.Mesh mesh, float[] matrix, float[] min, float[] max) {
+    float[] p = new float[4];
+    for (GlbModel.Primitive primitive : mesh.primitives) {
+      for (int v = 0; v < primitive.vertexCount; v++) {
+        int at = primitive.vertexOffset + v * GlbModel.VERTEX_STRIDE;
+        MatrixMath.multiplyMV(p, matrix, vertices.getFloat(at), vertices.getFloat(at + 4), vertices.getFloat(at + 8), 1f);
+        for (int c = 0; c < 3; c++) {
+          min[c] = Math.min(min[c], p[c]);
+          max[c] = Math.max(max[c], p[c]);
+        }
+      }
+    }
+  }
+
+  private static int align4(int value) {
+    return (value + 3) & ~3;
+  }
+}
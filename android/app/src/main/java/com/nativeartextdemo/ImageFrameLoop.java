@@ -0,0 +1,241 @@
+package com.visionar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The GL thread half of the image view, the counterpart of TextFrameLoop: planes, placing,
+// dragging and rotating images, and drawing them, against ArSession so FakeArSession and
+// RecordingGl can run it on a JVM. Touches arrive through getGestures() from the UI thread;
+// everything else is GL thread only. Drawing a frame allocates nothing once the images exist.
+final class ImageFrameLoop {
+  interface Listener {
+    void onImageEvent(String eventType, String message, int anchorId);
+  }
+
+  static final float NEAR = 0.1f;
+  static final float FAR = 100f;
+
+  private final Listener listener;
+  private final AnchorGroupManager anchorGroups = new AnchorGroupManager();
+  private final AnchorBudget anchorBudget = new AnchorBudget();
+  private final PlacementLatencyTracker placementLatency;
+  private final PlaneMeshCache planeMeshCache = new PlaneMeshCache();
+  private final PlaneRaycaster<ArSession.Plane> planeRaycaster = new PlaneRaycaster<>();
+  private final PlacementGestures gestures = new PlacementGestures(planeRaycaster);
+  private final List<AnchorGroupManager.Placement> anchors = new ArrayList<>();
+  // X, Y, Z rotation in degrees per anchor, parallel to anchors
+  private float[] rotations = new float[16 * 3];
+  private int publishedPlaneRevision = -1;
+
+  private GlBackend backend;
+  private BackgroundRenderer background;
+  private BillboardRenderer images;
+  private PlaneRenderer planeRenderer;
+  private int viewportWidth = 0;
+  private int viewportHeight = 0;
+
+  private final float[] view = new float[16];
+  private final float[] proj = new float[16];
+  private final float[] viewProj = new float[16];
+  private final float[] model = new float[16];
+  private final float[] cameraPose = new float[16];
+
+  private volatile boolean imageReady = false;
+  private volatile boolean instantPlacementEnabled = false;
+  private volatile boolean planeDetected = false;
+
+  ImageFrameLoop(Listener listener, PlacementLatencyTracker.Listener timingListener) {
+    this.listener = listener;
+    this.placementLatency = new PlacementLatencyTracker(timingListener);
+  }
+
+  // On surface creation
+  void attach(GlBackend backend, BackgroundRenderer background, BillboardRenderer images, PlaneRenderer planeRenderer) {
+    this.backend = backend;
+    this.background = background;
+    this.images = images;
+    this.planeRenderer = planeRenderer;
+  }
+
+  void setViewport(int width, int height) {
+    viewportWidth = width;
+    viewportHeight = height;
+  }
+
+  // Once the image is in the renderer's texture; taps before that are refused
+  void setImageReady(boolean ready) {
+    imageReady = ready;
+  }
+
+  PlacementGestures getGestures() {
+    return gestures;
+  }
+
+  AnchorGroupManager getAnchorGroups() {
+    return anchorGroups;
+  }
+
+  AnchorBudget getAnchorBudget() {
+    return anchorBudget;
+  }
+
+  void setInstantPlacementEnabled(boolean enabled) {
+    instantPlacementEnabled = enabled;
+  }
+
+  boolean isInstantPlacementEnabled() {
+    return instantPlacementEnabled;
+  }
+
+  boolean isPlaneDetected() {
+    return planeDetected;
+  }
+
+  int getAnchorCount() {
+    return anchors.size();
+  }
+
+  // X, Y, Z rotation of the image at index into out
+  void getRotation(int index, float[] out) {
+    System.arraycopy(rotations, index * 3, out, 0, 3);
+  }
+
+  AnchorGroupManager.Placement getAnchor(int index) {
+    return anchors.get(index);
+  }
+
+  // Everything after session.update(). nowMs is on the same clock as the touch times.
+  void draw(ArSession.Frame frame, long nowMs) {
+    ArSession.Camera camera = frame.getCamera();
+    boolean tracking = camera.getTrackingState() == ArSession.Tracking.TRACKING;
+
+    boolean planesTracking = planeMeshCache.update(frame.getUpdatedPlanes());
+    if (planesTracking && !planeDetected) {
+      planeDetected = true;
+      listener.onImageEvent("PLANE_DETECTED", "Surface detected - tap to place image", -1);
+    }
+    if (planeMeshCache.getRevision() != publishedPlaneRevision) {
+      planeMeshCache.publishTo(planeRaycaster);
+      publishedPlaneRevision = planeMeshCache.getRevision();
+    }
+
+    if (tracking) handleGestures(frame, nowMs);
+
+    if (background != null) {
+      background.draw(frame);
+    }
+    if (!tracking || images == null) return;
+
+    camera.getProjectionMatrix(proj, 0, NEAR, FAR);
+    camera.getViewMatrix(view, 0);
+    MatrixMath.multiplyMM(viewProj, proj, view);
+    planeRaycaster.setCamera(view, proj, viewportWidth, viewportHeight);
+    backend.beginFrame(view, proj);
+
+    // Detected planes are only drawn until the first placement
+    if (planeRenderer != null && anchors.isEmpty()) {
+      planeRenderer.draw(planeMeshCache);
+    }
+
+    enforceAnchorBudget(camera);
+
+    anchorGroups.updateGroupPoses();
+    images.begin();
+    for (int i = 0; i < anchors.size(); i++) {
+      AnchorGroupManager.Placement anchor = anchors.get(i);
+      if (anchor.getTrackingState() != ArSession.Tracking.TRACKING) continue;
+      anchor.getModelMatrix(model);
+      if (AnchorBudget.isInView(viewProj, model)) {
+        anchor.lastVisibleMs = nowMs;
+      }
+      if (imageReady) {
+        images.add(model, rotations[i * 3], rotations[i * 3 + 1], rotations[i * 3 + 2]);
+        placementLatency.onDrawn(anchor, nowMs);
+      }
+    }
+    // Every placed image shares the one texture, so this is a single batch
+    images.draw();
+  }
+
+  // False if no such anchor is placed, e.g. it was evicted already
+  boolean removeAnchor(int anchorId) {
+    for (int i = 0; i < anchors.size(); i++) {
+      if (anchors.get(i).id == anchorId) {
+        removeAnchorAt(i);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  void clearAnchors() {
+    anchors.clear();
+    anchorGroups.clear();
+    placementLatency.clear();
+  }
+
+  // A tap places a new image; drags and rotations move the newest one
+  private void handleGestures(ArSession.Frame frame, long nowMs) {
+    if (gestures.isTapPending()) {
+      if (!imageReady) {
+        listener.onImageEvent("PLACEMENT_BLOCKED", "Image still loading, please wait", -1);
+      } else if (!planeDetected && !instantPlacementEnabled) {
+        listener.onImageEvent("PLACEMENT_BLOCKED", "No surface detected, keep scanning", -1);
+      } else {
+        AnchorGroupManager.Placement placed = anchorGroups.placeAt(frame, gestures.takeTapHit(),
+            gestures.getTapX(), gestures.getTapY(), instantPlacementEnabled, nowMs);
+        if (placed != null) addPlacement(placed);
+        listener.onImageEvent("IMAGE_PLACED", "Image placed successfully", placed != null ? placed.id : -1);
+      }
+      gestures.clearTap();
+    }
+    if (anchors.isEmpty()) return;
+    int last = anchors.size() - 1;
+    if (gestures.takeDragMove()) {
+      AnchorGroupManager.Placement moved = anchorGroups.relocateAt(anchors.get(last), frame,
+          gestures.getDragHit(), gestures.getDragX(), gestures.getDragY());
+      if (moved != anchors.get(last)) {
+        anchors.set(last, moved);
+        gestures.getRotation(rotations, last * 3);
+      }
+    }
+    if (gestures.isRotating()) {
+      gestures.getRotation(rotations, last * 3);
+    }
+  }
+
+  private void addPlacement(AnchorGroupManager.Placement placement) {
+    int index = anchors.size();
+    anchors.add(placement);
+    if ((index + 1) * 3 > rotations.length) {
+      float[] grown = new float[rotations.length * 2];
+      System.arraycopy(rotations, 0, grown, 0, index * 3);
+      rotations = grown;
+    }
+    rotations[index * 3] = 0f;
+    rotations[index * 3 + 1] = 0f;
+    rotations[index * 3 + 2] = 0f;
+    gestures.setRotation(0f, 0f, 0f);
+    placementLatency.track(placement, gestures.getTapTimeMs());
+  }
+
+  private int removeAnchorAt(int index) {
+    AnchorGroupManager.Placement placement = anchors.remove(index);
+    System.arraycopy(rotations, (index + 1) * 3, rotations, index * 3, (anchors.size() - index) * 3);
+    anchorGroups.release(placement);
+    placementLatency.forget(placement.id);
+    return placement.id;
+  }
+
+  // Evict placements chosen by the budget policy until we are back under the limit
+  private void enforceAnchorBudget(ArSession.Camera camera) {
+    if (!anchorBudget.isOverBudget(anchors.size())) return;
+    camera.getPoseMatrix(cameraPose, 0);
+    while (anchorBudget.isOverBudget(anchors.size())) {
+      int victim = anchorBudget.selectVictim(anchors, model, cameraPose[12], cameraPose[13], cameraPose[14]);
+      if (victim < 0) break;
+      int anchorId = removeAnchorAt(victim);
+      listener.onImageEvent("ANCHOR_EVICTED", "Image evicted by anchor budget (" + anchorBudget.getPolicy() + ")", anchorId);
+    }
+  }
+}
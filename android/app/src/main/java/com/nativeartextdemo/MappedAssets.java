@@ -0,0 +1,78 @@
+package com.visionar;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Read-only memory maps of assets and files. Pages are faulted in from the APK or file as
+// they are touched, so a multi-megabyte model costs no Java heap to open. Assets can only be
+// mapped when they are stored uncompressed (see noCompress in app/build.gradle).
+final class MappedAssets {
+  private MappedAssets() {}
+
+  // null when the asset is compressed in the APK and has to be streamed instead
+  static ByteBuffer mapAsset(AssetManager assets, String path) throws IOException {
+    AssetFileDescriptor descriptor;
+    try {
+      descriptor = assets.openFd(path);
+    } catch (FileNotFoundException e) {
+      // openFd also fails like this for compressed assets; tell the two apart with open()
+      assets.open(path).close();
+      return null;
+    }
+    // The mapping stays valid after the descriptor is closed
+    try (FileInputStream in = descriptor.createInputStream()) {
+      return in.getChannel().map(FileChannel.MapMode.READ_ONLY, descriptor.getStartOffset(),
+          descriptor.getLength());
+    } finally {
+      descriptor.close();
+    }
+  }
+
+  // For sources that cannot be mapped where they are: copies the stream to file and maps that.
+  // The mapping outlives the file, so the next copy may overwrite it.
+  static ByteBuffer copyAndMap(InputStream in, File file) throws IOException {
+    return copyAndMap(in, file, null, -1);
+  }
+
+  // Same, reporting copied bytes against totalBytes (-1 when unknown) to job as "download"
+  static ByteBuffer copyAndMap(InputStream in, File file, ModelLoadJob job, long totalBytes)
+      throws IOException {
+    File temp = new File(file.getPath() + ".tmp");
+    try (FileOutputStream out = new FileOutputStream(temp)) {
+      byte[] buffer = new byte[64 * 1024];
+      long copied = 0;
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+        copied += read;
+        if (job != null) job.progress("download", copied, totalBytes);
+      }
+      if (job != null) job.progress("download", copied, copied);
+    } catch (IOException | RuntimeException e) {
+      temp.delete();
+      throw e;
+    }
+    ByteBuffer mapped = mapFile(temp);
+    // Replacing rather than rewriting leaves earlier mappings of file intact
+    if (!temp.renameTo(file)) {
+      temp.delete();
+    }
+    return mapped;
+  }
+
+  static ByteBuffer mapFile(File file) throws IOException {
+    try (FileInputStream in = new FileInputStream(file)) {
+      FileChannel channel = in.getChannel();
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+}
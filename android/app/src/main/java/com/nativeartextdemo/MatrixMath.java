@@ -0,0 +1,159 @@
+package com.visionar;
+
+import java.util.Arrays;
+
+// Column-major 4x4 matrix helpers with the same layout as android.opengl.Matrix, written in
+// plain Java so the code that uses them can run on a desktop JVM.
+final class MatrixMath {
+  private MatrixMath() {}
+
+  static void setIdentity(float[] m) {
+    for (int i = 0; i < 16; i++) {
+      m[i] = (i % 5 == 0) ? 1f : 0f;
+    }
+  }
+
+  // result = lhs * rhs. result must not alias lhs or rhs.
+  static void multiplyMM(float[] result, float[] lhs, float[] rhs) {
+    multiplyMM(result, lhs, rhs, 0);
+  }
+
+  // Same, with rhs read from rhs[rhsOffset..rhsOffset + 15]
+  static void multiplyMM(float[] result, float[] lhs, float[] rhs, int rhsOffset) {
+    multiplyMM(result, 0, lhs, 0, rhs, rhsOffset);
+  }
+
+  // Same, with every matrix at an offset into its array. Each rhs column is read before its
+  // result column is written, so result may be rhs at the same offset (never lhs).
+  static void multiplyMM(float[] result, int resultOffset, float[] lhs, int lhsOffset, float[] rhs, int rhsOffset) {
+    for (int col = 0; col < 4; col++) {
+      float r0 = rhs[rhsOffset + col * 4];
+      float r1 = rhs[rhsOffset + col * 4 + 1];
+      float r2 = rhs[rhsOffset + col * 4 + 2];
+      float r3 = rhs[rhsOffset + col * 4 + 3];
+      for (int row = 0; row < 4; row++) {
+        result[resultOffset + col * 4 + row] = lhs[lhsOffset + row] * r0 + lhs[lhsOffset + 4 + row] * r1
+            + lhs[lhsOffset + 8 + row] * r2 + lhs[lhsOffset + 12 + row] * r3;
+      }
+    }
+  }
+
+  // m[offset..offset + 15] = T * R * S from a glTF style tx, ty, tz, qx, qy, qz, qw, sx, sy, sz
+  // at trs[trsOffset..]; the quaternion is expected to be unit length
+  static void setFromTrs(float[] m, int offset, float[] trs, int trsOffset) {
+    float x = trs[trsOffset + 3], y = trs[trsOffset + 4], z = trs[trsOffset + 5], w = trs[trsOffset + 6];
+    float sx = trs[trsOffset + 7], sy = trs[trsOffset + 8], sz = trs[trsOffset + 9];
+    m[offset] = (1 - 2 * (y * y + z * z)) * sx;
+    m[offset + 1] = 2 * (x * y + z * w) * sx;
+    m[offset + 2] = 2 * (x * z - y * w) * sx;
+    m[offset + 3] = 0f;
+    m[offset + 4] = 2 * (x * y - z * w) * sy;
+    m[offset + 5] = (1 - 2 * (x * x + z * z)) * sy;
+    m[offset + 6] = 2 * (y * z + x * w) * sy;
+    m[offset + 7] = 0f;
+    m[offset + 8] = 2 * (x * z + y * w) * sz;
+    m[offset + 9] = 2 * (y * z - x * w) * sz;
+    m[offset + 10] = (1 - 2 * (x * x + y * y)) * sz;
+    m[offset + 11] = 0f;
+    m[offset + 12] = trs[trsOffset];
+    m[offset + 13] = trs[trsOffset + 1];
+    m[offset + 14] = trs[trsOffset + 2];
+    m[offset + 15] = 1f;
+  }
+
+  // m[offset..offset + 15] = T * Rz * Ry * Rx * S, angles in degrees. Matches translateM,
+  // rotateM (z, then y, then x) and scaleM applied to an identity matrix, without the temporaries.
+  static void setTranslateRotateScale(float[] m, int offset, float tx, float ty, float tz,
+                                      float rxDegrees, float ryDegrees, float rzDegrees,
+                                      float sx, float sy, float sz) {
+    double rx = Math.toRadians(rxDegrees);
+    double ry = Math.toRadians(ryDegrees);
+    double rz = Math.toRadians(rzDegrees);
+    float ca = (float) Math.cos(rx);
+    float sa = (float) Math.sin(rx);
+    float cb = (float) Math.cos(ry);
+    float sb = (float) Math.sin(ry);
+    float cc = (float) Math.cos(rz);
+    float sc = (float) Math.sin(rz);
+
+    m[offset] = cc * cb * sx;
+    m[offset + 1] = sc * cb * sx;
+    m[offset + 2] = -sb * sx;
+    m[offset + 3] = 0f;
+    m[offset + 4] = (cc * sb * sa - sc * ca) * sy;
+    m[offset + 5] = (sc * sb * sa + cc * ca) * sy;
+    m[offset + 6] = cb * sa * sy;
+    m[offset + 7] = 0f;
+    m[offset + 8] = (cc * sb * ca + sc * sa) * sz;
+    m[offset + 9] = (sc * sb * ca - cc * sa) * sz;
+    m[offset + 10] = cb * ca * sz;
+    m[offset + 11] = 0f;
+    m[offset + 12] = tx;
+    m[offset + 13] = ty;
+    m[offset + 14] = tz;
+    m[offset + 15] = 1f;
+  }
+
+  // Same layout as android.opengl.Matrix.perspectiveM
+  static void perspective(float[] m, float fovYDegrees, float aspect, float near, float far) {
+    float f = 1f / (float) Math.tan(Math.toRadians(fovYDegrees) / 2.0);
+    float rangeReciprocal = 1f / (near - far);
+    Arrays.fill(m, 0, 16, 0f);
+    m[0] = f / aspect;
+    m[5] = f;
+    m[10] = (far + near) * rangeReciprocal;
+    m[11] = -1f;
+    m[14] = 2f * far * near * rangeReciprocal;
+  }
+
+  // Transforms (x, y, z, w) and writes the homogeneous result into out[0..3]
+  static void multiplyMV(float[] out, float[] m, float x, float y, float z, float w) {
+    out[0] = m[0] * x + m[4] * y + m[8] * z + m[12] * w;
+    out[1] = m[1] * x + m[5] * y + m[9] * z + m[13] * w;
+    out[2] = m[2] * x + m[6] * y + m[10] * z + m[14] * w;
+    out[3] = m[3] * x + m[7] * y + m[11] * z + m[15] * w;
+  }
+
+  // General inverse via cofactors. Returns false (and leaves inv untouched) if m is singular.
+  static boolean invert(float[] inv, float[] m) {
+    float a0 = m[0] * m[5] - m[1] * m[4];
+    float a1 = m[0] * m[6] - m[2] * m[4];
+    float a2 = m[0] * m[7] - m[3] * m[4];
+    float a3 = m[1] * m[6] - m[2] * m[5];
+    float a4 = m[1] * m[7] - m[3] * m[5];
+    float a5 = m[2] * m[7] - m[3] * m[6];
+    float b0 = m[8] * m[13] - m[9] * m[12];
+    float b1 = m[8] * m[14] - m[10] * m[12];
+    float b2 = m[8] * m[15] - m[11] * m[12];
+    float b3 = m[9] * m[14] - m[10] * m[13];
+    float b4 = m[9] * m[15] - m[11] * m[13];
+    float b5 = m[10] * m[15] - m[11] * m[14];
+
+    float det = a0 * b5 - a1 * b4 + a2 * b3 + a3 * b2 - a4 * b1 + a5 * b0;
+    if (Math.abs(det) < 1e-12f) return false;
+    float invDet = 1f / det;
+
+    float i0 = (m[5] * b5 - m[6] * b4 + m[7] * b3) * invDet;
+    float i1 = (-m[1] * b5 + m[2] * b4 - m[3] * b3) * invDet;
+    float i2 = (m[13] * a5 - m[14] * a4 + m[15] * a3) * invDet;
+    float i3 = (-m[9] * a5 + m[10] * a4 - m[11] * a3) * invDet;
+    float i4 = (-m[4] * b5 + m[6] * b2 - m[7] * b1) * invDet;
+    float i5 = (m[0] * b5 - m[2] * b2 + m[3] * b1) * invDet;
+    float i6 = (-m[12] * a5 + m[14] * a2 - m[15] * a1) * invDet;
+    float i7 = (m[8] * a5 - m[10] * a2 + m[11] * a1) * invDet;
+    float i8 = (m[4] * b4 - m[5] * b2 + m[7] * b0) * invDet;
+    float i9 = (-m[0] * b4 + m[1] * b2 - m[3] * b0) * invDet;
+    float i10 = (m[12] * a4 - m[13] * a2 + m[15] * a0) * invDet;
+    float i11 = (-m[8] * a4 + m[9] * a2 - m[11] * a0) * invDet;
+    float i12 = (-m[4] * b3 + m[5] * b1 - m[6] * b0) * invDet;
+    float i13 = (m[0] * b3 - m[1] * b1 + m[2] * b0) * invDet;
+    float i14 = (-m[12] * a3 + m[13] * a1 - m[14] * a0) * invDet;
+    float i15 = (m[8] * a3 - m[9] * a1 + m[10] * a0) * invDet;
+
+    inv[0] = i0; inv[1] = i1; inv[2] = i2; inv[3] = i3;
+    inv[4] = i4; inv[5] = i5; inv[6] = i6; inv[7] = i7;
+    inv[8] = i8; inv[9] = i9; inv[10] = i10; inv[11] = i11;
+    inv[12] = i12; inv[13] = i13; inv[14] = i14; inv[15] = i15;
+    return true;
+  }
+}
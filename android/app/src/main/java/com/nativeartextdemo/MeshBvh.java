@@ -0,0 +1,277 @@
+package com.visionar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Bounding volume hierarchy over the full detail triangles of one mesh, so a ray can find the
+// triangle it hits by visiting a few boxes instead of every triangle. Built once when a model is
+// converted and kept in one buffer ModelCache writes and maps back as it is:
+//
+//   nodes      32 bytes each in depth first order: min xyz, max xyz, then two ints. A leaf has
+//              its first triangle and a positive triangle count; an inner node has its second
+//              child's index and -1 - split axis, and its first child right after it.
+//   triangles  three vertex numbers each, in leaf order, indexing GlbModel.vertices
+final class MeshBvh {
+  static final int NODE_BYTES = 32;
+  static final int TRIANGLE_BYTES = 12;
+  private static final int LEAF_TRIANGLES = 4;
+  // Deeper subtrees become one leaf, which bounds the traversal stack
+  private static final int MAX_DEPTH = 48;
+  private static final float PARALLEL_EPSILON = 1e-12f;
+
+  final ByteBuffer data;
+  final int nodeCount;
+  final int triangleCount;
+
+  private MeshBvh(ByteBuffer data, int nodeCount, int triangleCount) {
+    this.data = data;
+    this.nodeCount = nodeCount;
+    this.triangleCount = triangleCount;
+  }
+
+  int byteSize() {
+    return nodeCount * NODE_BYTES + triangleCount * TRIANGLE_BYTES;
+  }
+
+  // A hierarchy read back from a cache file, checked so a corrupt one cannot index out of range
+  static MeshBvh read(ByteBuffer data, int nodeCount, int triangleCount, int vertexCount) throws IOException {
+    if (nodeCount < 1 || triangleCount < 1) throw new IOException("Bad BVH size");
+    MeshBvh bvh = new MeshBvh(data, nodeCount, triangleCount);
+    // Children always come after their parent, so one pass in order sees every parent first
+    int[] depths = new int[nodeCount];
+    for (int node = 0; node < nodeCount; node++) {
+      int a = data.getInt(node * NODE_BYTES + 24);
+      int b = data.getInt(node * NODE_BYTES + 28);
+      if (b > 0) {
+        if (a < 0 || a > triangleCount - b) throw new IOException("Bad BVH leaf");
+        continue;
+      }
+      if (b == 0 || b < -3 || a <= node + 1 || a >= nodeCount || depths[node] >= MAX_DEPTH) {
+        throw new IOException("Bad BVH node");
+      }
+      depths[node + 1] = Math.max(depths[node + 1], depths[node] + 1);
+      depths[a] = Math.max(depths[a], depths[node] + 1);
+    }
+    int triangles = nodeCount * NODE_BYTES;
+    for (int i = 0; i < triangleCount * 3; i++) {
+      int vertex = data.getInt(triangles + i * 4);
+      if (vertex < 0 || vertex >= vertexCount) throw new IOException("Bad BVH vertex");
+    }
+    return bvh;
+  }
+
+  // Over every primitive's full detail index set, null for a mesh without triangles
+  static MeshBvh build(ByteBuffer vertices, ByteBuffer indices, GlbModel.Mesh mesh) {
+    int count = 0;
+    for (GlbModel.Primitive primitive : mesh.primitives) {
+      count += primitive.levelCount(0) / 3;
+    }
+    if (count == 0) return null;
+
+    int[] corners = new int[count * 3];
+    int next = 0;
+    for (GlbModel.Primitive primitive : mesh.primitives) {
+      int base = primitive.vertexOffset / GlbModel.VERTEX_STRIDE;
+      int offset = primitive.levelOffset(0);
+      int size = primitive.indexType == GlApi.GL_UNSIGNED_INT ? 4
+          : primitive.indexType == GlApi.GL_UNSIGNED_SHORT ? 2 : 1;
+      int end = (primitive.levelCount(0) / 3) * 3;
+      for (int i = 0; i < end; i++) {
+        int at = offset + i * size;
+        int index = size == 4 ? indices.getInt(at) : size == 2 ? indices.getShort(at) & 0xFFFF : indices.get(at) & 0xFF;
+        corners[next++] = base + index;
+      }
+    }
+
+    float[] bounds = new float[count * 6];
+    float[] centroids = new float[count * 3];
+    for (int t = 0; t < count; t++) {
+      for (int c = 0; c < 3; c++) {
+        bounds[t * 6 + c] = Float.MAX_VALUE;
+        bounds[t * 6 + 3 + c] = -Float.MAX_VALUE;
+      }
+      for (int k = 0; k < 3; k++) {
+        int at = corners[t * 3 + k] * GlbModel.VERTEX_STRIDE;
+        for (int c = 0; c < 3; c++) {
+          float value = vertices.getFloat(at + c * 4);
+          bounds[t * 6 + c] = Math.min(bounds[t * 6 + c], value);
+          bounds[t * 6 + 3 + c] = Math.max(bounds[t * 6 + 3 + c], value);
+        }
+      }
+      for (int c = 0; c < 3; c++) {
+        centroids[t * 3 + c] = (bounds[t * 6 + c] + bounds[t * 6 + 3 + c]) * 0.5f;
+      }
+    }
+
+    int[] order = new int[count];
+    for (int t = 0; t < count; t++) {
+      order[t] = t;
+    }
+    // A binary tree with leaves of at least one triangle has fewer than 2 * count nodes
+    Builder builder = new Builder(bounds, centroids, order, 2 * count);
+    builder.split(0, count, 0);
+
+    int nodes = builder.nodeCount;
+    ByteBuffer data = ByteBuffer.allocateDirect(nodes * NODE_BYTES + count * TRIANGLE_BYTES)
+        .order(ByteOrder.nativeOrder());
+    for (int node = 0; node < nodes; node++) {
+      for (int c = 0; c < 6; c++) {
+        data.putFloat(builder.nodeBounds[node * 6 + c]);
+      }
+      data.putInt(builder.links[node * 2]).putInt(builder.links[node * 2 + 1]);
+    }
+    for (int t = 0; t < count; t++) {
+      data.putInt(corners[order[t] * 3]).putInt(corners[order[t] * 3 + 1]).putInt(corners[order[t] * 3 + 2]);
+    }
+    data.clear();
+    return new MeshBvh(data, nodes, count);
+  }
+
+  // Nearest t below maxT at which origin + t * direction (ray[0..2], ray[3..5]) crosses a
+  // triangle from either side, or maxT when nothing closer is hit. Neither the ray nor t need to
+  // be normalized, so a ray transformed into mesh space keeps the caller's t.
+  float intersect(ByteBuffer vertices, float[] ray, float maxT) {
+    float ox = ray[0], oy = ray[1], oz = ray[2];
+    float dx = ray[3], dy = ray[4], dz = ray[5];
+    float ix = 1f / dx, iy = 1f / dy, iz = 1f / dz;
+    float nearest = maxT;
+    int[] stack = new int[MAX_DEPTH + 2];
+    int top = 0;
+    stack[top++] = 0;
+    while (top > 0) {
+      int at = stack[--top] * NODE_BYTES;
+      if (!hitsBox(at, ox, oy, oz, ix, iy, iz, nearest)) continue;
+      int a = data.getInt(at + 24);
+      int b = data.getInt(at + 28);
+      if (b > 0) {
+        for (int t = a; t < a + b; t++) {
+          nearest = intersectTriangle(vertices, t, ox, oy, oz, dx, dy, dz, nearest);
+        }
+        continue;
+      }
+      int first = at / NODE_BYTES + 1;
+      // Visit the child on the ray's side of the split first so it can shorten the ray
+      float axisDirection = b == -1 ? dx : b == -2 ? dy : dz;
+      if (axisDirection < 0f) {
+        stack[top++] = first;
+        stack[top++] = a;
+      } else {
+        stack[top++] = a;
+        stack[top++] = first;
+      }
+    }
+    return nearest;
+  }
+
+  private boolean hitsBox(int at, float ox, float oy, float oz, float ix, float iy, float iz, float maxT) {
+    float near = 0f;
+    float far = maxT;
+    float t1 = (data.getFloat(at) - ox) * ix;
+    float t2 = (data.getFloat(at + 12) - ox) * ix;
+    // Written so a NaN from a zero direction component on a slab plane constrains nothing
+    if (Math.min(t1, t2) > near) near = Math.min(t1, t2);
+    if (Math.max(t1, t2) < far) far = Math.max(t1, t2);
+    t1 = (data.getFloat(at + 4) - oy) * iy;
+    t2 = (data.getFloat(at + 16) - oy) * iy;
+    if (Math.min(t1, t2) > near) near = Math.min(t1, t2);
+    if (Math.max(t1, t2) < far) far = Math.max(t1, t2);
+    t1 = (data.getFloat(at + 8) - oz) * iz;
+    t2 = (data.getFloat(at + 20) - oz) * iz;
+    if (Math.min(t1, t2) > near) near = Math.min(t1, t2);
+    if (Math.max(t1, t2) < far) far = Math.max(t1, t2);
+    return near <= far;
+  }
+
+  // Moller-Trumbore
+  private float intersectTriangle(ByteBuffer vertices, int triangle, float ox, float oy, float oz,
+                                  float dx, float dy, float dz, float nearest) {
+    int at = nodeCount * NODE_BYTES + triangle * TRIANGLE_BYTES;
+    int v0 = data.getInt(at) * GlbModel.VERTEX_STRIDE;
+    int v1 = data.getInt(at + 4) * GlbModel.VERTEX_STRIDE;
+    int v2 = data.getInt(at + 8) * GlbModel.VERTEX_STRIDE;
+    float x0 = vertices.getFloat(v0), y0 = vertices.getFloat(v0 + 4), z0 = vertices.getFloat(v0 + 8);
+    float e1x = vertices.getFloat(v1) - x0, e1y = vertices.getFloat(v1 + 4) - y0, e1z = vertices.getFloat(v1 + 8) - z0;
+    float e2x = vertices.getFloat(v2) - x0, e2y = vertices.getFloat(v2 + 4) - y0, e2z = vertices.getFloat(v2 + 8) - z0;
+    float px = dy * e2z - dz * e2y;
+    float py = dz * e2x - dx * e2z;
+    float pz = dx * e2y - dy * e2x;
+    float det = e1x * px + e1y * py + e1z * pz;
+    if (Math.abs(det) < PARALLEL_EPSILON) return nearest;
+    float inverse = 1f / det;
+    float sx = ox - x0, sy = oy - y0, sz = oz - z0;
+    float u = (sx * px + sy * py + sz * pz) * inverse;
+    if (u < 0f || u > 1f) return nearest;
+    float qx = sy * e1z - sz * e1y;
+    float qy = sz * e1x - sx * e1z;
+    float qz = sx * e1y - sy * e1x;
+    float v = (dx * qx + dy * qy + dz * qz) * inverse;
+    if (v < 0f || u + v > 1f) return nearest;
+    float t = (e2x * qx + e2y * qy + e2z * qz) * inverse;
+    return t > 0f && t < nearest ? t : nearest;
+  }
+
+  // Splits at the middle of the centroids' extent along its longest axis, or in half by count
+  // when every centroid falls on one side
+  private static final class Builder {
+    final float[] bounds;
+    final float[] centroids;
+    final int[] order;
+    final float[] nodeBounds;
+    final int[] links;
+    int nodeCount = 0;
+
+    Builder(float[] bounds, float[] centroids, int[] order, int maxNodes) {
+      this.bounds = bounds;
+      this.centroids = centroids;
+      this.order = order;
+      nodeBounds = new float[maxNodes * 6];
+      links = new int[maxNodes * 2];
+    }
+
+    void split(int start, int end, int depth) {
+      int node = nodeCount++;
+      float[] centroidMin = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+      float[] centroidMax = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+      for (int c = 0; c < 3; c++) {
+        nodeBounds[node * 6 + c] = Float.MAX_VALUE;
+        nodeBounds[node * 6 + 3 + c] = -Float.MAX_VALUE;
+      }
+      for (int i = start; i < end; i++) {
+        int t = order[i];
+        for (int c = 0; c < 3; c++) {
+          nodeBounds[node * 6 + c] = Math.min(nodeBounds[node * 6 + c], bounds[t * 6 + c]);
+          nodeBounds[node * 6 + 3 + c] = Math.max(nodeBounds[node * 6 + 3 + c], bounds[t * 6 + 3 + c]);
+          centroidMin[c] = Math.min(centroidMin[c], centroids[t * 3 + c]);
+          centroidMax[c] = Math.max(centroidMax[c], centroids[t * 3 + c]);
+        }
+      }
+      if (end - start <= LEAF_TRIANGLES || depth >= MAX_DEPTH) {
+        links[node * 2] = start;
+        links[node * 2 + 1] = end - start;
+        return;
+      }
+
+      int axis = 0;
+      for (int c = 1; c < 3; c++) {
+        if (centroidMax[c] - centroidMin[c] > centroidMax[axis] - centroidMin[axis]) axis = c;
+      }
+      float middle = (centroidMin[axis] + centroidMax[axis]) * 0.5f;
+      int mid = start;
+      for (int i = start; i < end; i++) {
+        if (centroids[order[i] * 3 + axis] < middle) {
+          int swap = order[i];
+          order[i] = order[mid];
+          order[mid++] = swap;
+        }
+      }
+      if (mid == start || mid == end) {
+        mid = (start + end) >>> 1;
+      }
+      split(start, mid, depth + 1);
+      links[node * 2] = nodeCount;
+      links[node * 2 + 1] = -1 - axis;
+      split(mid, end, depth + 1);
+    }
+  }
+}
@@ -0,0 +1,429 @@
+package com.visionar;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Quadric error edge collapse (Garland and Heckbert) giving every primitive lower detail index
+// sets for placements far from the camera. No vertex is moved or created: a collapse folds one
+// vertex onto a neighbour, so every level indexes the primitive's own vertices and only the
+// index buffer grows. Collapses work on positions: every vertex at the collapsing position (they
+// differ only in normal on hard edges) moves to the vertex at the target with the closest
+// normal. Positions on open borders and on UV seams stay put, which keeps silhouettes and
+// texture layout intact at the price of less reduction on heavily seamed meshes.
+final class MeshSimplifier {
+  // Index count of levels 1.. relative to the full mesh
+  private static final float[] LEVEL_RATIOS = {0.5f, 0.25f, 0.125f};
+  // Largest surface deviation each level may reach, relative to the primitive's bounding diagonal
+  private static final float[] LEVEL_ERRORS = {0.01f, 0.025f, 0.05f};
+  // a2, ab, ac, ad, b2, bc, bd, c2, cd, d2 of the summed plane equations, then their area weight
+  private static final int QUADRIC_DOUBLES = 11;
+  // Vertex floats that make two vertices the same position, or the same position and texcoord
+  private static final int[] POSITION = {0, 1, 2};
+  private static final int[] POSITION_TEXCOORD = {0, 1, 2, 6, 7};
+
+  private MeshSimplifier() {}
+
+  // Appends GlbModel.LOD_LEVELS - 1 simplified index sets for every primitive after the full
+  // ones and replaces the primitives in meshes with ones that know their levels. Returns the
+  // grown index buffer; indices is left as it was.
+  static ByteBuffer addLevels(ByteBuffer vertices, ByteBuffer indices, List<GlbModel.Mesh> meshes,
+                              ModelLoadJob job) {
+    List<int[][]> levels = new ArrayList<>();
+    int extraBytes = 0;
+    for (GlbModel.Mesh mesh : meshes) {
+      for (GlbModel.Primitive primitive : mesh.primitives) {
+        if (job != null) job.checkCancelled();
+        int[][] primitiveLevels = simplifyLevels(vertices, indices, primitive);
+        levels.add(primitiveLevels);
+        for (int l = 1; l < primitiveLevels.length; l++) {
+          if (primitiveLevels[l] != primitiveLevels[l - 1]) {
+            extraBytes += align4(primitiveLevels[l].length * indexSize(primitive));
+          }
+        }
+      }
+    }
+
+    ByteBuffer all = indices.duplicate();
+    all.clear();
+    ByteBuffer out = ByteBuffer.allocateDirect(all.capacity() + extraBytes).order(ByteOrder.nativeOrder());
+    out.put(all);
+    int next = 0;
+    for (GlbModel.Mesh mesh : meshes) {
+      for (int p = 0; p < mesh.primitives.size(); p++) {
+        GlbModel.Primitive primitive = mesh.primitives.get(p);
+        int[][] primitiveLevels = levels.get(next++);
+        int[] offsets = new int[primitiveLevels.length];
+        int[] counts = new int[primitiveLevels.length];
+        offsets[0] = primitive.indexOffset;
+        counts[0] = primitive.indexCount;
+        boolean wide = primitive.indexType == GlApi.GL_UNSIGNED_INT;
+        for (int l = 1; l < primitiveLevels.length; l++) {
+          if (primitiveLevels[l] == primitiveLevels[l - 1]) {
+            // Could not be reduced further, draw the level before it
+            offsets[l] = offsets[l - 1];
+            counts[l] = counts[l - 1];
+            continue;
+          }
+          offsets[l] = out.position();
+          counts[l] = primitiveLevels[l].length;
+          for (int index : primitiveLevels[l]) {
+            if (wide) {
+              out.putInt(index);
+            } else {
+              out.putShort((short) index);
+            }
+          }
+          out.position(align4(out.position()));
+        }
+        mesh.primitives.set(p, new GlbModel.Primitive(primitive.vertexOffset, primitive.vertexCount, offsets, counts,
+            primitive.indexType, primitive.material));
+      }
+    }
+    out.clear();
+    return out;
+  }
+
+  // Level 0 is the primitive's own index set; a level that is no smaller than the one before it
+  // is that same array
+  private static int[][] simplifyLevels(ByteBuffer vertices, ByteBuffer indices, GlbModel.Primitive primitive) {
+    int[] base = new int[primitive.indexCount];
+    boolean wide = primitive.indexType == GlApi.GL_UNSIGNED_INT;
+    for (int i = 0; i < base.length; i++) {
+      base[i] = wide
+          ? indices.getInt(primitive.indexOffset + i * 4)
+          : indices.getShort(primitive.indexOffset + i * 2) & 0xFFFF;
+    }
+    float[] data = new float[primitive.vertexCount * GlbModel.VERTEX_FLOATS];
+    ByteBuffer source = vertices.duplicate().order(vertices.order());
+    source.clear().position(primitive.vertexOffset);
+    source.asFloatBuffer().get(data);
+    float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+    float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+    for (int v = 0; v < primitive.vertexCount; v++) {
+      for (int c = 0; c < 3; c++) {
+        min[c] = Math.min(min[c], data[v * GlbModel.VERTEX_FLOATS + c]);
+        max[c] = Math.max(max[c], data[v * GlbModel.VERTEX_FLOATS + c]);
+      }
+    }
+    float diagonal = 0f;
+    if (primitive.vertexCount > 0) {
+      float dx = max[0] - min[0], dy = max[1] - min[1], dz = max[2] - min[2];
+      diagonal = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    int levelCount = GlbModel.LOD_LEVELS;
+    int[] targets = new int[levelCount - 1];
+    float[] errors = new float[levelCount - 1];
+    for (int l = 0; l < targets.length; l++) {
+      targets[l] = Math.round(base.length * LEVEL_RATIOS[l] / 3f) * 3;
+      errors[l] = diagonal * LEVEL_ERRORS[l];
+    }
+    int[][] simplified = simplify(data, primitive.vertexCount, base, targets, errors);
+    int[][] levels = new int[levelCount][];
+    levels[0] = base;
+    for (int l = 1; l < levelCount; l++) {
+      int[] level = simplified[l - 1];
+      levels[l] = level.length >= levels[l - 1].length ? levels[l - 1] : level;
+    }
+    return levels;
+  }
+
+  // One index set per target over vertices laid out as in GlbModel: each is collapsed from the
+  // previous one until it has at most targets[i] indices or no collapse stays within
+  // maxErrors[i] of the original surface
+  static int[][] simplify(float[] data, int vertexCount, int[] indices, int[] targets, float[] maxErrors) {
+    Mesh mesh = new Mesh(data, vertexCount, indices);
+    int[][] levels = new int[targets.length][];
+    int[] current = indices.clone();
+    int count = current.length;
+    int level = 0;
+    while (level < targets.length) {
+      double limit = (double) maxErrors[level] * maxErrors[level];
+      int reduced = count <= targets[level] ? count : mesh.collapsePass(current, count, targets[level], limit);
+      if (reduced == count || reduced <= targets[level]) {
+        levels[level++] = Arrays.copyOf(current, reduced);
+      }
+      count = reduced;
+    }
+    return levels;
+  }
+
+  // Per-position state shared by the passes of one simplify() call. Positions are numbered by
+  // their first vertex.
+  private static final class Mesh {
+    final float[] data;
+    final int vertexCount;
+    // The first vertex with this vertex's position, and with its position and texcoord
+    final int[] position;
+    final int[] texturePosition;
+    // Vertices at each position, as offsets into wedges[]
+    final int[] firstWedge;
+    final int[] wedges;
+    final boolean[] locked;
+    final double[] quadrics;
+    final int[] remap;
+
+    Mesh(float[] data, int vertexCount, int[] indices) {
+      this.data = data;
+      this.vertexCount = vertexCount;
+      position = firstEqual(data, vertexCount, POSITION);
+      texturePosition = firstEqual(data, vertexCount, POSITION_TEXCOORD);
+      firstWedge = new int[vertexCount + 1];
+      for (int v = 0; v < vertexCount; v++) {
+        firstWedge[position[v] + 1]++;
+      }
+      for (int v = 0; v < vertexCount; v++) {
+        firstWedge[v + 1] += firstWedge[v];
+      }
+      wedges = new int[vertexCount];
+      int[] filled = Arrays.copyOf(firstWedge, vertexCount);
+      for (int v = 0; v < vertexCount; v++) {
+        wedges[filled[position[v]]++] = v;
+      }
+      locked = lockedPositions(indices);
+      quadrics = new double[vertexCount * QUADRIC_DOUBLES];
+      for (int t = 0; t + 2 < indices.length; t += 3) {
+        addTriangleQuadric(indices[t], indices[t + 1], indices[t + 2]);
+      }
+      remap = new int[vertexCount];
+    }
+
+    // Collapses a set of positions that share no triangles, cheapest first, and compacts the
+    // surviving triangles to the front of current. Returns their index count.
+    int collapsePass(int[] current, int count, int target, double limit) {
+      // Triangles around each position, as offsets into triangles[]
+      int[] firstTriangle = new int[vertexCount + 1];
+      for (int i = 0; i < count; i++) {
+        firstTriangle[position[current[i]] + 1]++;
+      }
+      for (int v = 0; v < vertexCount; v++) {
+        firstTriangle[v + 1] += firstTriangle[v];
+      }
+      int[] filled = Arrays.copyOf(firstTriangle, vertexCount);
+      int[] triangles = new int[count];
+      for (int i = 0; i < count; i++) {
+        triangles[filled[position[current[i]]]++] = i / 3;
+      }
+
+      // Both directions of every edge, sorted by error with the candidate number in the low bits
+      int[] from = new int[count * 2];
+      int[] to = new int[count * 2];
+      long[] order = new long[count * 2];
+      int candidates = 0;
+      for (int i = 0; i < count; i++) {
+        int a = current[i];
+        int b = current[i - i % 3 + (i + 1) % 3];
+        for (int direction = 0; direction < 2; direction++) {
+          int source = direction == 0 ? a : b;
+          int destination = direction == 0 ? b : a;
+          if (locked[position[source]] || position[source] == position[destination]) continue;
+          double error = collapseError(position[source], destination);
+          if (error > limit) continue;
+          from[candidates] = source;
+          to[candidates] = destination;
+          order[candidates] = ((long) Float.floatToIntBits((float) Math.max(error, 0.0)) << 32) | candidates;
+          candidates++;
+        }
+      }
+      Arrays.sort(order, 0, candidates);
+
+      for (int v = 0; v < vertexCount; v++) {
+        remap[v] = v;
+      }
+      boolean[] touched = new boolean[vertexCount];
+      int triangleCount = count / 3;
+      for (int c = 0; c < candidates && triangleCount * 3 > target; c++) {
+        int candidate = (int) order[c];
+        int source = position[from[candidate]];
+        int destination = to[candidate];
+        if (touched[source] || touched[position[destination]]) continue;
+        if (flipsTriangle(current, triangles, firstTriangle, source, destination)) continue;
+
+        for (int k = firstWedge[source]; k < firstWedge[source + 1]; k++) {
+          remap[wedges[k]] = closestWedge(wedges[k], destination);
+        }
+        for (int k = firstTriangle[source]; k < firstTriangle[source + 1]; k++) {
+          int t = triangles[k] * 3;
+          boolean removed = false;
+          for (int j = 0; j < 3; j++) {
+            touched[position[current[t + j]]] = true;
+            removed |= position[current[t + j]] == position[destination];
+          }
+          if (removed) triangleCount--;
+        }
+        int sourceQuadric = source * QUADRIC_DOUBLES;
+        int destinationQuadric = position[destination] * QUADRIC_DOUBLES;
+        for (int q = 0; q < QUADRIC_DOUBLES; q++) {
+          quadrics[destinationQuadric + q] += quadrics[sourceQuadric + q];
+        }
+      }
+
+      int kept = 0;
+      for (int t = 0; t < count; t += 3) {
+        int a = remap[current[t]];
+        int b = remap[current[t + 1]];
+        int c = remap[current[t + 2]];
+        if (position[a] == position[b] || position[b] == position[c] || position[c] == position[a]) continue;
+        current[kept++] = a;
+        current[kept++] = b;
+        current[kept++] = c;
+      }
+      return kept;
+    }
+
+    // Of the vertices at destination's position and texcoord, the one whose normal is closest
+    // to wedge's
+    private int closestWedge(int wedge, int destination) {
+      int best = destination;
+      double bestDot = -Double.MAX_VALUE;
+      int p = position[destination];
+      for (int k = firstWedge[p]; k < firstWedge[p + 1]; k++) {
+        int candidate = wedges[k];
+        if (texturePosition[candidate] != texturePosition[destination]) continue;
+        double dot = 0.0;
+        for (int c = 3; c < 6; c++) {
+          dot += data[wedge * GlbModel.VERTEX_FLOATS + c] * data[candidate * GlbModel.VERTEX_FLOATS + c];
+        }
+        if (dot > bestDot) {
+          bestDot = dot;
+          best = candidate;
+        }
+      }
+      return best;
+    }
+
+    // Squared distance to the planes both ends have absorbed, per unit of area
+    private double collapseError(int source, int destination) {
+      int s = source * QUADRIC_DOUBLES;
+      int d = position[destination] * QUADRIC_DOUBLES;
+      double x = data[destination * GlbModel.VERTEX_FLOATS];
+      double y = data[destination * GlbModel.VERTEX_FLOATS + 1];
+      double z = data[destination * GlbModel.VERTEX_FLOATS + 2];
+      double error = evaluate(s, x, y, z) + evaluate(d, x, y, z);
+      double weight = quadrics[s + 10] + quadrics[d + 10];
+      return weight > 0.0 ? error / weight : 0.0;
+    }
+
+    private double evaluate(int q, double x, double y, double z) {
+      return quadrics[q] * x * x + 2 * quadrics[q + 1] * x * y + 2 * quadrics[q + 2] * x * z
+          + 2 * quadrics[q + 3] * x + quadrics[q + 4] * y * y + 2 * quadrics[q + 5] * y * z
+          + 2 * quadrics[q + 6] * y + quadrics[q + 7] * z * z + 2 * quadrics[q + 8] * z + quadrics[q + 9];
+    }
+
+    // Whether moving source onto destination turns any surviving triangle around it over
+    private boolean flipsTriangle(int[] current, int[] triangles, int[] firstTriangle, int source, int destination) {
+      for (int k = firstTriangle[source]; k < firstTriangle[source + 1]; k++) {
+        int t = triangles[k] * 3;
+        // Rotate so source comes first, keeping the winding
+        int at = position[current[t]] == source ? 0 : position[current[t + 1]] == source ? 1 : 2;
+        int u = current[t + (at + 1) % 3];
+        int v = current[t + (at + 2) % 3];
+        if (position[u] == position[destination] || position[v] == position[destination]) continue;
+        double[] before = normal(current[t + at], u, v);
+        double[] after = normal(destination, u, v);
+        if (before[0] * after[0] + before[1] * after[1] + before[2] * after[2] <= 0.0) return true;
+      }
+      return false;
+    }
+
+    private double[] normal(int a, int b, int c) {
+      int f = GlbModel.VERTEX_FLOATS;
+      double e1x = data[b * f] - data[a * f];
+      double e1y = data[b * f + 1] - data[a * f + 1];
+      double e1z = data[b * f + 2] - data[a * f + 2];
+      double e2x = data[c * f] - data[a * f];
+      double e2y = data[c * f + 1] - data[a * f + 1];
+      double e2z = data[c * f + 2] - data[a * f + 2];
+      return new double[]{e1y * e2z - e1z * e2y, e1z * e2x - e1x * e2z, e1x * e2y - e1y * e2x};
+    }
+
+    private void addTriangleQuadric(int a, int b, int c) {
+      double[] n = normal(a, b, c);
+      double length = Math.sqrt(n[0] * n[0] + n[1] * n[1] + n[2] * n[2]);
+      if (length == 0.0) return;
+      int f = GlbModel.VERTEX_FLOATS;
+      double nx = n[0] / length, ny = n[1] / length, nz = n[2] / length;
+      double d = -(nx * data[a * f] + ny * data[a * f + 1] + nz * data[a * f + 2]);
+      double area = length * 0.5;
+      double[] plane = {nx * nx, nx * ny, nx * nz, nx * d, ny * ny, ny * nz, ny * d, nz * nz, nz * d, d * d, 1.0};
+      for (int vertex : new int[]{a, b, c}) {
+        int q = position[vertex] * QUADRIC_DOUBLES;
+        for (int i = 0; i < QUADRIC_DOUBLES; i++) {
+          quadrics[q + i] += plane[i] * area;
+        }
+      }
+    }
+
+    // UV seam positions, and both ends of every edge not shared by exactly two triangles
+    private boolean[] lockedPositions(int[] indices) {
+      boolean[] result = new boolean[vertexCount];
+      for (int v = 0; v < vertexCount; v++) {
+        if (texturePosition[v] != texturePosition[wedges[firstWedge[position[v]]]]) {
+          result[position[v]] = true;
+        }
+      }
+      long[] edges = new long[indices.length];
+      for (int i = 0; i < indices.length; i++) {
+        int a = position[indices[i]];
+        int b = position[indices[i - i % 3 + (i + 1) % 3]];
+        edges[i] = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+      }
+      Arrays.sort(edges);
+      for (int i = 0; i < edges.length; ) {
+        int run = i;
+        while (run < edges.length && edges[run] == edges[i]) run++;
+        if (run - i != 2) {
+          result[(int) (edges[i] >>> 32)] = true;
+          result[(int) edges[i]] = true;
+        }
+        i = run;
+      }
+      return result;
+    }
+  }
+
+  // For each vertex, the first vertex whose floats at `components` are bit for bit equal
+  private static int[] firstEqual(float[] data, int vertexCount, int[] components) {
+    int f = GlbModel.VERTEX_FLOATS;
+    int capacity = Integer.highestOneBit(Math.max(vertexCount, 1) * 2) * 2;
+    int[] table = new int[capacity];
+    Arrays.fill(table, -1);
+    int[] first = new int[vertexCount];
+    for (int v = 0; v < vertexCount; v++) {
+      int hash = 0;
+      for (int c : components) {
+        hash = hash * 31 + Float.floatToIntBits(data[v * f + c]);
+      }
+      int slot = (hash ^ (hash >>> 16)) & (capacity - 1);
+      while (true) {
+        int other = table[slot];
+        if (other < 0) {
+          table[slot] = v;
+          first[v] = v;
+          break;
+        }
+        boolean equal = true;
+        for (int c : components) {
+          equal &= Float.floatToIntBits(data[other * f + c]) == Float.floatToIntBits(data[v * f + c]);
+        }
+        if (equal) {
+          first[v] = other;
+          break;
+        }
+        slot = (slot + 1) & (capacity - 1);
+      }
+    }
+    return first;
+  }
+
+  private static int indexSize(GlbModel.Primitive primitive) {
+    return primitive.indexType == GlApi.GL_UNSIGNED_INT ? 4 : 2;
+  }
+
+  private static int align4(int value) {
+    return (value + 3) & ~3;
+  }
+}
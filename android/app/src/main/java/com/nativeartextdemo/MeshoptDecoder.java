@@ -0,0 +1,377 @@
+package com.visionar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Decodes bufferViews compressed with EXT_meshopt_compression: the vertex codec for ATTRIBUTES,
+// the index codec for TRIANGLES and INDICES, and the OCTAHEDRAL, QUATERNION and EXPONENTIAL
+// filters. Output goes straight into a caller's ByteBuffer at an absolute offset. Attribute
+// bytes come out as they were encoded, little endian like the BIN chunk; index values are
+// written in the target's own order, so indices can land directly in an upload buffer. Every
+// read of the compressed bytes is bounds checked and malformed input is an IOException.
+final class MeshoptDecoder {
+  private static final int VERTEX_HEADER = 0xA0;
+  private static final int INDEX_HEADER = 0xE0;
+  private static final int SEQUENCE_HEADER = 0xD0;
+  private static final int BYTE_GROUP_SIZE = 16;
+  // Longest encoding of one byte group: 4 header bytes, 16 escaped values and slack
+  private static final int BYTE_GROUP_DECODE_LIMIT = 24;
+  private static final int VERTEX_BLOCK_SIZE_BYTES = 8192;
+  private static final int VERTEX_BLOCK_MAX_SIZE = 256;
+  private static final int TAIL_MIN_SIZE = 32;
+
+  private MeshoptDecoder() {
+  }
+
+  // One compressed bufferView: `count` elements of `stride` bytes into target at offset
+  static void decode(ByteBuffer target, int offset, int count, int stride, String mode, String filter,
+                     byte[] source) throws IOException {
+    if (count < 0 || stride <= 0 || offset < 0 || (long) offset + (long) count * stride > target.capacity()) {
+      throw new IOException("Meshopt output does not fit its buffer");
+    }
+    switch (mode) {
+      case "ATTRIBUTES":
+        decodeVertexBuffer(target, offset, count, stride, source);
+        break;
+      case "TRIANGLES":
+        decodeIndexBuffer(target, offset, count, stride, source);
+        break;
+      case "INDICES":
+        decodeIndexSequence(target, offset, count, stride, source);
+        break;
+      default:
+        throw new IOException("Unsupported meshopt mode " + mode);
+    }
+    if (filter == null || "NONE".equals(filter)) return;
+    if (!"ATTRIBUTES".equals(mode)) throw new IOException("Meshopt filter " + filter + " on " + mode);
+    switch (filter) {
+      case "OCTAHEDRAL":
+        filterOctahedral(target, offset, count, stride);
+        break;
+      case "QUATERNION":
+        filterQuaternion(target, offset, count, stride);
+        break;
+      case "EXPONENTIAL":
+        filterExponential(target, offset, count, stride);
+        break;
+      default:
+        throw new IOException("Unsupported meshopt filter " + filter);
+    }
+  }
+
+  // Blocks of up to 256 vertices, each byte lane delta coded against the previous vertex and
+  // packed in groups of 16 at 0, 2, 4 or 8 bits per byte
+  static void decodeVertexBuffer(ByteBuffer target, int offset, int count, int stride, byte[] source)
+      throws IOException {
+    if (stride > 256 || stride % 4 != 0) throw new IOException("Bad meshopt vertex stride " + stride);
+    if (source.length < 1 + stride) throw new IOException("Truncated meshopt vertex data");
+    if ((source[0] & 0xF0) != VERTEX_HEADER) throw new IOException("Not meshopt vertex data");
+    if ((source[0] & 0x0F) != 0) throw new IOException("Unsupported meshopt vertex version " + (source[0] & 0x0F));
+
+    // The tail holds the vertex the first deltas are against
+    byte[] last = new byte[stride];
+    System.arraycopy(source, source.length - stride, last, 0, stride);
+    int blockSize = Math.min((VERTEX_BLOCK_SIZE_BYTES / stride) & ~(BYTE_GROUP_SIZE - 1), VERTEX_BLOCK_MAX_SIZE);
+    byte[] lane = new byte[VERTEX_BLOCK_MAX_SIZE];
+    byte[] block = new byte[blockSize * stride];
+    ByteBuffer out = target.duplicate();
+    int at = 1;
+    for (int first = 0; first < count; first += blockSize) {
+      int vertices = Math.min(blockSize, count - first);
+      int aligned = (vertices + BYTE_GROUP_SIZE - 1) & ~(BYTE_GROUP_SIZE - 1);
+      for (int k = 0; k < stride; k++) {
+        at = decodeBytes(source, at, lane, aligned);
+        int previous = last[k];
+        for (int i = 0, o = k; i < vertices; i++, o += stride) {
+          int v = lane[i] & 0xFF;
+          previous += (v >>> 1) ^ -(v & 1);
+          block[o] = (byte) previous;
+        }
+      }
+      System.arraycopy(block, (vertices - 1) * stride, last, 0, stride);
+      out.clear().position(offset + first * stride);
+      out.put(block, 0, vertices * stride);
+    }
+    if (source.length - at != Math.max(stride, TAIL_MIN_SIZE)) throw new IOException("Bad meshopt vertex data length");
+  }
+
+  // `size` bytes of one lane: a 2 bit mode per group of 16, then the groups. Values equal to the
+  // all ones code are escapes whose byte follows the group's packed bits.
+  private static int decodeBytes(byte[] source, int at, byte[] lane, int size) throws IOException {
+    int header = at;
+    at += (size / BYTE_GROUP_SIZE + 3) / 4;
+    if (at > source.length) throw new IOException("Truncated meshopt vertex data");
+    for (int i = 0; i < size; i += BYTE_GROUP_SIZE) {
+      if (source.length - at < BYTE_GROUP_DECODE_LIMIT) throw new IOException("Truncated meshopt vertex data");
+      int group = i / BYTE_GROUP_SIZE;
+      int mode = (source[header + group / 4] >> ((group % 4) * 2)) & 3;
+      switch (mode) {
+        case 0:
+          for (int j = 0; j < BYTE_GROUP_SIZE; j++) lane[i + j] = 0;
+          break;
+        case 1:
+          at = decodeGroup(source, at, lane, i, 2);
+          break;
+        case 2:
+          at = decodeGroup(source, at, lane, i, 4);
+          break;
+        default:
+          System.arraycopy(source, at, lane, i, BYTE_GROUP_SIZE);
+          at += BYTE_GROUP_SIZE;
+          break;
+      }
+    }
+    return at;
+  }
+
+  // 16 values of `bits` each, most significant first; the decode limit keeps escapes in bounds
+  private static int decodeGroup(byte[] source, int at, byte[] lane, int i, int bits) {
+    int escape = (1 << bits) - 1;
+    int perByte = 8 / bits;
+    int extra = at + BYTE_GROUP_SIZE / perByte;
+    for (int j = 0; j < BYTE_GROUP_SIZE; j++) {
+      int packed = source[at + j / perByte] & 0xFF;
+      int value = (packed >> (8 - bits - (j % perByte) * bits)) & escape;
+      if (value == escape) {
+        lane[i + j] = source[extra++];
+      } else {
+        lane[i + j] = (byte) value;
+      }
+    }
+    return extra;
+  }
+
+  // One code byte per triangle against FIFOs of recent edges and vertices; vertices seen for the
+  // first time are numbered in order and the rest are deltas after the codes
+  static void decodeIndexBuffer(ByteBuffer target, int offset, int count, int indexSize, byte[] source)
+      throws IOException {
+    checkIndexSize(indexSize);
+    if (count % 3 != 0) throw new IOException("Meshopt triangle count is not a multiple of 3");
+    if (source.length < 1 + count / 3 + 16) throw new IOException("Truncated meshopt index data");
+    if ((source[0] & 0xF0) != INDEX_HEADER) throw new IOException("Not meshopt index data");
+    int version = source[0] & 0x0F;
+    if (version > 1) throw new IOException("Unsupported meshopt index version " + version);
+
+    int[] edges = new int[32];
+    int[] fifo = new int[16];
+    Arrays.fill(edges, -1);
+    Arrays.fill(fifo, -1);
+    int edgeOffset = 0;
+    int fifoOffset = 0;
+    int next = 0;
+    int last = 0;
+    int fecMax = version >= 1 ? 13 : 15;
+    int code = 1;
+    int[] data = {1 + count / 3};
+    int dataEnd = source.length - 16;
+    int codeAux = dataEnd;
+
+    for (int i = 0; i < count; i += 3) {
+      if (data[0] > dataEnd) throw new IOException("Truncated meshopt index data");
+      int codeTri = source[code++] & 0xFF;
+      int a;
+      int b;
+      int c;
+      if (codeTri < 0xF0) {
+        int fe = (edgeOffset - 1 - (codeTri >> 4)) & 15;
+        a = edges[fe * 2];
+        b = edges[fe * 2 + 1];
+        int fec = codeTri & 15;
+        if (fec < fecMax) {
+          c = fec == 0 ? next : fifo[(fifoOffset - 1 - fec) & 15];
+          // A cached vertex is not pushed again
+          fifo[fifoOffset] = c;
+          if (fec == 0) {
+            next++;
+            fifoOffset = (fifoOffset + 1) & 15;
+          }
+        } else {
+          // 13 and 14 are the last free index -1 and +1
+          c = last = fec != 15 ? last + (fec - (fec ^ 3)) : last + readDelta(source, data);
+          fifo[fifoOffset] = c;
+          fifoOffset = (fifoOffset + 1) & 15;
+        }
+        edges[edgeOffset * 2] = c;
+        edges[edgeOffset * 2 + 1] = b;
+        edgeOffset = (edgeOffset + 1) & 15;
+        edges[edgeOffset * 2] = a;
+        edges[edgeOffset * 2 + 1] = c;
+        edgeOffset = (edgeOffset + 1) & 15;
+      } else {
+        int feb;
+        int fec;
+        if (codeTri < 0xFE) {
+          int aux = source[codeAux + (codeTri & 15)] & 0xFF;
+          feb = aux >> 4;
+          fec = aux & 15;
+          a = next++;
+          b = feb == 0 ? next++ : fifo[(fifoOffset - feb) & 15];
+          c = fec == 0 ? next++ : fifo[(fifoOffset - fec) & 15];
+        } else {
+          int aux = source[data[0]++] & 0xFF;
+          boolean freeA = codeTri == 0xFF;
+          feb = aux >> 4;
+          fec = aux & 15;
+          if (aux == 0) next = 0;
+          a = freeA ? 0 : next++;
+          b = feb == 0 ? next++ : fifo[(fifoOffset - feb) & 15];
+          c = fec == 0 ? next++ : fifo[(fifoOffset - fec) & 15];
+          if (freeA) a = last = last + readDelta(source, data);
+          if (feb == 15) b = last = last + readDelta(source, data);
+          if (fec == 15) c = last = last + readDelta(source, data);
+          if (feb == 15) feb = 0;
+          if (fec == 15) fec = 0;
+        }
+        fifo[fifoOffset] = a;
+        fifoOffset = (fifoOffset + 1) & 15;
+        fifo[fifoOffset] = b;
+        fifoOffset = (fifoOffset + (feb == 0 ? 1 : 0)) & 15;
+        fifo[fifoOffset] = c;
+        fifoOffset = (fifoOffset + (fec == 0 ? 1 : 0)) & 15;
+        edges[edgeOffset * 2] = b;
+        edges[edgeOffset * 2 + 1] = a;
+        edgeOffset = (edgeOffset + 1) & 15;
+        edges[edgeOffset * 2] = c;
+        edges[edgeOffset * 2 + 1] = b;
+        edgeOffset = (edgeOffset + 1) & 15;
+        edges[edgeOffset * 2] = a;
+        edges[edgeOffset * 2 + 1] = c;
+        edgeOffset = (edgeOffset + 1) & 15;
+      }
+      putIndex(target, offset, i, indexSize, a);
+      putIndex(target, offset, i + 1, indexSize, b);
+      putIndex(target, offset, i + 2, indexSize, c);
+    }
+    if (data[0] != dataEnd) throw new IOException("Bad meshopt index data length");
+  }
+
+  // Arbitrary index lists: each index a delta against one of two running baselines
+  static void decodeIndexSequence(ByteBuffer target, int offset, int count, int indexSize, byte[] source)
+      throws IOException {
+    checkIndexSize(indexSize);
+    if (source.length < 1 + count + 4) throw new IOException("Truncated meshopt index data");
+    if ((source[0] & 0xF0) != SEQUENCE_HEADER) throw new IOException("Not meshopt index sequence data");
+    int version = source[0] & 0x0F;
+    if (version > 1) throw new IOException("Unsupported meshopt index version " + version);
+
+    int[] data = {1};
+    int dataEnd = source.length - 4;
+    int last0 = 0;
+    int last1 = 0;
+    for (int i = 0; i < count; i++) {
+      if (data[0] >= dataEnd) throw new IOException("Truncated meshopt index data");
+      int v = readVByte(source, data);
+      int delta = (v >>> 2) ^ -((v >>> 1) & 1);
+      int index;
+      if ((v & 1) != 0) {
+        index = last1 += delta;
+      } else {
+        index = last0 += delta;
+      }
+      putIndex(target, offset, i, indexSize, index);
+    }
+    if (data[0] != dataEnd) throw new IOException("Bad meshopt index data length");
+  }
+
+  private static void checkIndexSize(int indexSize) throws IOException {
+    if (indexSize != 2 && indexSize != 4) throw new IOException("Bad meshopt index size " + indexSize);
+  }
+
+  private static void putIndex(ByteBuffer target, int offset, int i, int indexSize, int value) {
+    if (indexSize == 4) {
+      target.putInt(offset + i * 4, value);
+    } else {
+      target.putShort(offset + i * 2, (short) value);
+    }
+  }
+
+  // Zigzag coded vbyte delta at data[0], advancing it
+  private static int readDelta(byte[] source, int[] data) throws IOException {
+    int v = readVByte(source, data);
+    return (v >>> 1) ^ -(v & 1);
+  }
+
+  // Up to 5 bytes of 7 bits each, low first
+  private static int readVByte(byte[] source, int[] data) throws IOException {
+    int at = data[0];
+    int limit = Math.min(at + 5, source.length);
+    int result = 0;
+    for (int shift = 0; at < limit && at < source.length; shift += 7) {
+      int group = source[at++] & 0xFF;
+      result |= (group & 127) << shift;
+      if (group < 128) {
+        data[0] = at;
+        return result;
+      }
+    }
+    throw new IOException("Bad meshopt varint");
+  }
+
+  // Signed 8 or 16 bit x, y and a z slot carrying the encoded length, back to a unit vector;
+  // the fourth component is kept
+  static void filterOctahedral(ByteBuffer data, int offset, int count, int stride) throws IOException {
+    if (stride != 4 && stride != 8) throw new IOException("Bad meshopt octahedral stride " + stride);
+    boolean wide = stride == 8;
+    float max = wide ? 32767f : 127f;
+    for (int i = 0; i < count; i++) {
+      int at = offset + i * stride;
+      float x = wide ? data.getShort(at) : data.get(at);
+      float y = wide ? data.getShort(at + 2) : data.get(at + 1);
+      float z = (wide ? data.getShort(at + 4) : data.get(at + 2)) - Math.abs(x) - Math.abs(y);
+      // Fold the lower hemisphere back
+      float t = Math.min(z, 0f);
+      x += x >= 0f ? t : -t;
+      y += y >= 0f ? t : -t;
+      float s = max / (float) Math.sqrt(x * x + y * y + z * z);
+      int xf = round(x * s);
+      int yf = round(y * s);
+      int zf = round(z * s);
+      if (wide) {
+        data.putShort(at, (short) xf).putShort(at + 2, (short) yf).putShort(at + 4, (short) zf);
+      } else {
+        data.put(at, (byte) xf).put(at + 1, (byte) yf).put(at + 2, (byte) zf);
+      }
+    }
+  }
+
+  // Three smallest components of a unit quaternion as int16, the fourth slot holding the scale
+  // and which component was dropped; rebuilt and written back in x, y, z, w order
+  static void filterQuaternion(ByteBuffer data, int offset, int count, int stride) throws IOException {
+    if (stride != 8) throw new IOException("Bad meshopt quaternion stride " + stride);
+    float scale = (float) (1.0 / Math.sqrt(2.0));
+    for (int i = 0; i < count; i++) {
+      int at = offset + i * 8;
+      int packed = data.getShort(at + 6);
+      float ss = scale / (packed | 3);
+      float x = data.getShort(at) * ss;
+      float y = data.getShort(at + 2) * ss;
+      float z = data.getShort(at + 4) * ss;
+      float ww = 1f - x * x - y * y - z * z;
+      float w = (float) Math.sqrt(Math.max(ww, 0f));
+      int qc = packed & 3;
+      data.putShort(at + ((qc + 1) & 3) * 2, (short) round(x * 32767f));
+      data.putShort(at + ((qc + 2) & 3) * 2, (short) round(y * 32767f));
+      data.putShort(at + ((qc + 3) & 3) * 2, (short) round(z * 32767f));
+      data.putShort(at + (qc & 3) * 2, (short) round(w * 32767f));
+    }
+  }
+
+  // Each 32 bit value is a 24 bit signed mantissa and an 8 bit signed exponent, to a float
+  static void filterExponential(ByteBuffer data, int offset, int count, int stride) throws IOException {
+    if (stride % 4 != 0) throw new IOException("Bad meshopt exponential stride " + stride);
+    int values = count * (stride / 4);
+    for (int i = 0; i < values; i++) {
+      int at = offset + i * 4;
+      int v = data.getInt(at);
+      int mantissa = (v << 8) >> 8;
+      int exponent = v >> 24;
+      data.putFloat(at, Float.intBitsToFloat((exponent + 127) << 23) * mantissa);
+    }
+  }
+
+  // Rounds half away from zero like the reference decoder's casts
+  private static int round(float value) {
+    return (int) (value + (value >= 0f ? 0.5f : -0.5f));
+  }
+}
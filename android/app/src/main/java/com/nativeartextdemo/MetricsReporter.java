@@ -0,0 +1,33 @@
+package com.visionar;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Opt-in, throttled numeric metrics for JS. Producers put the latest values every frame;
+// poll() hands out a snapshot at most once per interval. GL thread only, except the interval.
+class MetricsReporter {
+  private volatile long intervalMs = 0;
+  private long lastEmitMs = 0;
+  private final Map<String, Double> values = new LinkedHashMap<>();
+
+  // 0 or less turns metrics off
+  void setIntervalMs(long intervalMs) {
+    this.intervalMs = intervalMs;
+  }
+
+  boolean isEnabled() {
+    return intervalMs > 0;
+  }
+
+  void put(String key, double value) {
+    values.put(key, value);
+  }
+
+  // Snapshot of the current values when the interval has elapsed, otherwise null
+  Map<String, Double> poll(long nowMs) {
+    long interval = intervalMs;
+    if (interval <= 0 || values.isEmpty() || nowMs - lastEmitMs < interval) return null;
+    lastEmitMs = nowMs;
+    return new LinkedHashMap<>(values);
+  }
+}
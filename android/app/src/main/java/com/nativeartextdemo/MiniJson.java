@@ -0,0 +1,215 @@
+package com.visionar;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Just enough JSON for a glTF document: objects become Map<String, Object>, arrays List<Object>,
+// numbers Double, plus String, Boolean and null. Pure Java so the model parser runs on a JVM.
+final class MiniJson {
+  // Far deeper than any glTF document, shallow enough that hostile input cannot overflow the stack
+  static final int MAX_DEPTH = 256;
+
+  private final String text;
+  private int pos;
+  private int depth;
+
+  private MiniJson(String text) {
+    this.text = text;
+  }
+
+  static Object parse(String text) throws IOException {
+    MiniJson parser = new MiniJson(text);
+    Object value = parser.readValue();
+    parser.skipWhitespace();
+    if (parser.pos != text.length()) throw parser.error("Trailing characters");
+    return value;
+  }
+
+  // Typed accessors for walking the parsed tree; a missing key reads as the fallback
+
+  @SuppressWarnings("unchecked")
+  static Map<String, Object> object(Map<String, Object> parent, String key) {
+    Object value = parent.get(key);
+    return value instanceof Map ? (Map<String, Object>) value : null;
+  }
+
+  @SuppressWarnings("unchecked")
+  static List<Object> array(Map<String, Object> parent, String key) {
+    Object value = parent.get(key);
+    return value instanceof List ? (List<Object>) value : new ArrayList<>();
+  }
+
+  static int integer(Map<String, Object> parent, String key, int fallback) {
+    Object value = parent.get(key);
+    return value instanceof Number ? ((Number) value).intValue() : fallback;
+  }
+
+  static float number(Map<String, Object> parent, String key, float fallback) {
+    Object value = parent.get(key);
+    return value instanceof Number ? ((Number) value).floatValue() : fallback;
+  }
+
+  static String string(Map<String, Object> parent, String key, String fallback) {
+    Object value = parent.get(key);
+    return value instanceof String ? (String) value : fallback;
+  }
+
+  // Numeric array into a float[] of exactly size entries, or fallback if absent or too short
+  static float[] floats(Map<String, Object> parent, String key, int size, float[] fallback) {
+    Object value = parent.get(key);
+    if (!(value instanceof List) || ((List<?>) value).size() < size) return fallback;
+    List<?> list = (List<?>) value;
+    float[] result = new float[size];
+    for (int i = 0; i < size; i++) {
+      result[i] = list.get(i) instanceof Number ? ((Number) list.get(i)).floatValue() : 0f;
+    }
+    return result;
+  }
+
+  @SuppressWarnings("unchecked")
+  static Map<String, Object> objectAt(List<Object> list, int index) {
+    if (index < 0 || index >= list.size() || !(list.get(index) instanceof Map)) return null;
+    return (Map<String, Object>) list.get(index);
+  }
+
+  private Object readValue() throws IOException {
+    skipWhitespace();
+    if (pos >= text.length()) throw error("Unexpected end of input");
+    char c = text.charAt(pos);
+    switch (c) {
+      case '{':
+      case '[':
+        if (++depth > MAX_DEPTH) throw error("Nested deeper than " + MAX_DEPTH + " levels");
+        Object nested = c == '{' ? readObject() : readArray();
+        depth--;
+        return nested;
+      case '"': return readString();
+      case 't': expectWord("true"); return Boolean.TRUE;
+      case 'f': expectWord("false"); return Boolean.FALSE;
+      case 'n': expectWord("null"); return null;
+      default:
+        if (c == '-' || (c >= '0' && c <= '9')) return readNumber();
+        throw error("Unexpected character '" + c + "'");
+    }
+  }
+
+  private Map<String, Object> readObject() throws IOException {
+    Map<String, Object> result = new LinkedHashMap<>();
+    pos++;
+    skipWhitespace();
+    if (peek() == '}') {
+      pos++;
+      return result;
+    }
+    while (true) {
+      skipWhitespace();
+      if (peek() != '"') throw error("Expected a key");
+      String key = readString();
+      skipWhitespace();
+      if (peek() != ':') throw error("Expected ':'");
+      pos++;
+      result.put(key, readValue());
+      skipWhitespace();
+      char c = peek();
+      pos++;
+      if (c == '}') return result;
+      if (c != ',') throw error("Expected ',' or '}'");
+    }
+  }
+
+  private List<Object> readArray() throws IOException {
+    List<Object> result = new ArrayList<>();
+    pos++;
+    skipWhitespace();
+    if (peek() == ']') {
+      pos++;
+      return result;
+    }
+    while (true) {
+      result.add(readValue());
+      skipWhitespace();
+      char c = peek();
+      pos++;
+      if (c == ']') return result;
+      if (c != ',') throw error("Expected ',' or ']'");
+    }
+  }
+
+  private String readString() throws IOException {
+    pos++;
+    StringBuilder out = null;
+    int start = pos;
+    while (pos < text.length()) {
+      char c = text.charAt(pos);
+      if (c == '"') {
+        String tail = text.substring(start, pos++);
+        return out == null ? tail : out.append(tail).toString();
+      }
+      if (c != '\\') {
+        pos++;
+        continue;
+      }
+      if (out == null) out = new StringBuilder();
+      out.append(text, start, pos);
+      if (pos + 1 >= text.length()) break;
+      char escaped = text.charAt(pos + 1);
+      pos += 2;
+      switch (escaped) {
+        case 'b': out.append('\b'); break;
+        case 'f': out.append('\f'); break;
+        case 'n': out.append('\n'); break;
+        case 'r': out.append('\r'); break;
+        case 't': out.append('\t'); break;
+        case 'u':
+          if (pos + 4 > text.length()) throw error("Bad unicode escape");
+          try {
+            out.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+          } catch (NumberFormatException e) {
+            throw error("Bad unicode escape");
+          }
+          pos += 4;
+          break;
+        default: out.append(escaped);
+      }
+      start = pos;
+    }
+    throw error("Unterminated string");
+  }
+
+  private Double readNumber() throws IOException {
+    int start = pos;
+    while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+      pos++;
+    }
+    try {
+      return Double.valueOf(text.substring(start, pos));
+    } catch (NumberFormatException e) {
+      throw error("Bad number");
+    }
+  }
+
+  private void expectWord(String word) throws IOException {
+    if (!text.startsWith(word, pos)) throw error("Expected " + word);
+    pos += word.length();
+  }
+
+  private char peek() throws IOException {
+    if (pos >= text.length()) throw error("Unexpected end of input");
+    return text.charAt(pos);
+  }
+
+  private void skipWhitespace() {
+    while (pos < text.length()) {
+      char c = text.charAt(pos);
+      if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return;
+      pos++;
+    }
+  }
+
+  private IOException error(String message) {
+    return new IOException(message + " at offset " + pos + " of the glTF JSON");
+  }
+}
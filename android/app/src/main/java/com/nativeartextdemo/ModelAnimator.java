@@ -0,0 +1,193 @@
+package com.visionar;
+
+import java.util.Arrays;
+
+// Plays one animation of a GlbModel's rig. Everything is allocated up front: update() samples
+// each channel into a pose buffer of translation, rotation and scale per node, composes the
+// nodes' model space matrices in rig order, and fills one joint palette per skin for
+// ModelRenderer's skinning shader. Keyframe lookups resume from the key used last time, so
+// playing forward costs a constant amount per channel and per joint.
+final class ModelAnimator {
+  // Floats per joint in a palette: the top three rows of the joint matrix, one vec4 each
+  static final int PALETTE_STRIDE = 12;
+
+  private final GlbModel.Rig rig;
+  // tx, ty, tz, qx, qy, qz, qw, sx, sy, sz per node
+  private final float[] pose;
+  // Nodes the current animation moves; the rest keep their rest matrix
+  private final boolean[] animated;
+  private final float[] worlds;
+  private final float[][] palettes;
+  private final float[] local = new float[16];
+  private final float[] joint = new float[16];
+  // Per channel of the current animation, the key at or before the last sampled time
+  private final int[] cursors;
+  private GlbModel.Animation animation;
+
+  ModelAnimator(GlbModel.Rig rig) {
+    this.rig = rig;
+    int nodes = rig.getNodeCount();
+    pose = new float[nodes * 10];
+    animated = new boolean[nodes];
+    worlds = new float[nodes * 16];
+    palettes = new float[rig.skins.size()][];
+    for (int s = 0; s < palettes.length; s++) {
+      palettes[s] = new float[rig.skins.get(s).joints.length * PALETTE_STRIDE];
+    }
+    int maxChannels = 0;
+    for (GlbModel.Animation clip : rig.animations) {
+      maxChannels = Math.max(maxChannels, clip.channels.size());
+    }
+    cursors = new int[maxChannels];
+    setAnimation(rig.animations.isEmpty() ? -1 : 0);
+  }
+
+  // -1 holds the rest pose
+  void setAnimation(int index) {
+    animation = index >= 0 && index < rig.animations.size() ? rig.animations.get(index) : null;
+    Arrays.fill(animated, false);
+    Arrays.fill(cursors, 0);
+    if (animation == null) return;
+    for (GlbModel.Channel channel : animation.channels) {
+      animated[channel.node] = true;
+    }
+  }
+
+  float getDuration() {
+    return animation == null ? 0f : animation.duration;
+  }
+
+  // Poses the rig at `seconds` into the animation, looping over its duration
+  void update(float seconds) {
+    System.arraycopy(rig.restTrs, 0, pose, 0, pose.length);
+    if (animation != null) {
+      float duration = animation.duration;
+      float time = duration > 0f ? seconds % duration : 0f;
+      if (time < 0f) time += duration;
+      for (int c = 0; c < animation.channels.size(); c++) {
+        sample(animation.channels.get(c), c, time);
+      }
+    }
+
+    for (int node = 0; node < animated.length; node++) {
+      float[] source = rig.restMatrices;
+      int sourceOffset = node * 16;
+      if (animated[node]) {
+        normalizeRotation(node * 10 + 3);
+        MatrixMath.setFromTrs(local, 0, pose, node * 10);
+        source = local;
+        sourceOffset = 0;
+      }
+      int parent = rig.parents[node];
+      if (parent < 0) {
+        System.arraycopy(source, sourceOffset, worlds, node * 16, 16);
+      } else {
+        MatrixMath.multiplyMM(worlds, node * 16, worlds, parent * 16, source, sourceOffset);
+      }
+    }
+
+    for (int s = 0; s < palettes.length; s++) {
+      GlbModel.Skin skin = rig.skins.get(s);
+      float[] palette = palettes[s];
+      for (int j = 0; j < skin.joints.length; j++) {
+        if (skin.joints[j] < 0) {
+          MatrixMath.setIdentity(joint);
+        } else {
+          MatrixMath.multiplyMM(joint, 0, worlds, skin.joints[j] * 16, skin.inverseBindMatrices, j * 16);
+        }
+        for (int row = 0; row < 3; row++) {
+          for (int column = 0; column < 4; column++) {
+            palette[j * PALETTE_STRIDE + row * 4 + column] = joint[column * 4 + row];
+          }
+        }
+      }
+    }
+  }
+
+  // Model space matrix of every rig node, 16 floats each, as of the last update()
+  float[] getWorldMatrices() {
+    return worlds;
+  }
+
+  float[] getPalette(int skin) {
+    return palettes[skin];
+  }
+
+  private void sample(GlbModel.Channel channel, int index, float time) {
+    float[] times = channel.times;
+    int keys = times.length;
+    int key = cursors[index];
+    // Looped around, or a fresh animation
+    if (key >= keys || times[key] > time) key = 0;
+    while (key + 1 < keys && times[key + 1] <= time) key++;
+    cursors[index] = key;
+
+    int components = channel.components();
+    int out = channel.node * 10 + (channel.path == GlbModel.Channel.TRANSLATION ? 0
+        : channel.path == GlbModel.Channel.ROTATION ? 3 : 7);
+    boolean cubic = channel.interpolation == GlbModel.Channel.CUBIC_SPLINE;
+    int stride = cubic ? components * 3 : components;
+    // A cubic key is in-tangent, value, out-tangent
+    int value = cubic ? components : 0;
+    float[] values = channel.values;
+    if (time <= times[0] || key + 1 >= keys || channel.interpolation == GlbModel.Channel.STEP) {
+      System.arraycopy(values, key * stride + value, pose, out, components);
+      return;
+    }
+
+    float span = times[key + 1] - times[key];
+    float s = span > 0f ? (time - times[key]) / span : 0f;
+    int a = key * stride;
+    int b = (key + 1) * stride;
+    if (cubic) {
+      float s2 = s * s;
+      float s3 = s2 * s;
+      for (int c = 0; c < components; c++) {
+        pose[out + c] = (2 * s3 - 3 * s2 + 1) * values[a + value + c]
+            + (s3 - 2 * s2 + s) * span * values[a + 2 * components + c]
+            + (-2 * s3 + 3 * s2) * values[b + value + c]
+            + (s3 - s2) * span * values[b + c];
+      }
+    } else if (channel.path == GlbModel.Channel.ROTATION) {
+      slerp(values, a, b, s, out);
+    } else {
+      for (int c = 0; c < components; c++) {
+        pose[out + c] = values[a + c] + (values[b + c] - values[a + c]) * s;
+      }
+    }
+  }
+
+  // Shortest arc between the quaternions at values[a] and values[b]
+  private void slerp(float[] values, int a, int b, float s, int out) {
+    double dot = 0.0;
+    for (int c = 0; c < 4; c++) {
+      dot += values[a + c] * values[b + c];
+    }
+    double sign = dot < 0.0 ? -1.0 : 1.0;
+    dot = Math.abs(dot);
+    double weightA = 1.0 - s;
+    double weightB = s;
+    // Nearly parallel: a normalized lerp is as accurate and avoids dividing by sin(~0)
+    if (dot < 0.9995) {
+      double theta = Math.acos(dot);
+      double sin = Math.sin(theta);
+      weightA = Math.sin((1.0 - s) * theta) / sin;
+      weightB = Math.sin(s * theta) / sin;
+    }
+    for (int c = 0; c < 4; c++) {
+      pose[out + c] = (float) (weightA * values[a + c] + sign * weightB * values[b + c]);
+    }
+  }
+
+  private void normalizeRotation(int at) {
+    float x = pose[at], y = pose[at + 1], z = pose[at + 2], w = pose[at + 3];
+    float length = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+    if (length == 0f) {
+      pose[at + 3] = 1f;
+      return;
+    }
+    for (int c = 0; c < 4; c++) {
+      pose[at + c] /= length;
+    }
+  }
+}
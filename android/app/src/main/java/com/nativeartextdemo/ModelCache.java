@@ -0,0 +1,515 @@
+package com.visionar;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// GlbModels converted once and kept on disk in the layout ModelRenderer uploads: interleaved
+// vertices, 16-bit indices wherever a primitive allows it with every level of detail,
+// bounds, the rig, each mesh's picking hierarchy and the embedded images. Files
+// are named by the SHA-256 of the source GLB, so the same model under another name or URL is
+// one entry and a changed file is a new one. A cached model is memory mapped and its vertex and
+// index sections go to glBufferData as they are, with no parsing or conversion; the hierarchies
+// and every offset and count into the sections are only checked, not rebuilt.
+final class ModelCache {
+  interface Listener {
+    // The entry was not kept; load() still returns the converted model
+    void onWriteFailed(File file, IOException e);
+  }
+
+  // Bump whenever the file layout or the conversion changes; older files are then ignored
+  static final int VERSION = 5;
+  private static final int MAGIC = 0x4D524156; // "VARM"
+  // Written in native order; reading it back any other way means another byte order
+  private static final int BYTE_ORDER_MARK = 0x01020304;
+  private static final String SUFFIX = ".v" + VERSION + ".model";
+  private static final int HEADER_INTS = 17;
+  private static final int MATERIAL_INTS = 12;
+  // Primitive count, then the hierarchy's node and triangle counts (0 and 0 without one)
+  private static final int MESH_INTS = 3;
+  // Plus an offset and count per level of detail
+  private static final int PRIMITIVE_INTS = 5;
+  private static final int NODE_INTS = 19;
+  private static final int HASH_SLICE_BYTES = 256 * 1024;
+
+  private final File directory;
+  private final long maxBytes;
+  private final Listener listener;
+
+  ModelCache(File directory, long maxBytes) {
+    this(directory, maxBytes, null);
+  }
+
+  ModelCache(File directory, long maxBytes, Listener listener) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    this.listener = listener;
+  }
+
+  // The converted model for a GLB, from the cache if this content was seen before
+  GlbModel load(ByteBuffer glb) throws IOException {
+    return load(glb, null);
+  }
+
+  // Same, reporting hashed bytes and converted meshes to job; a cancelled job stops between
+  // steps and never leaves a partial cache entry behind
+  GlbModel load(ByteBuffer glb, ModelLoadJob job) throws IOException {
+    File file = new File(directory, sha256(glb, job) + SUFFIX);
+    if (file.isFile()) {
+      try {
+        GlbModel cached = read(map(file));
+        // Recently used entries survive trim()
+        file.setLastModified(System.currentTimeMillis());
+        if (job != null) {
+          job.progress("meshes", cached.meshes.size(), cached.meshes.size());
+        }
+        return cached;
+      } catch (IOException e) {
+        // Truncated or from an incompatible build, convert again
+        file.delete();
+      }
+    }
+
+    GlbModel model = GlbParser.parse(glb, job);
+    if (!directory.isDirectory() && !directory.mkdirs()) return model;
+    File temp = new File(directory, file.getName() + ".tmp");
+    try {
+      try (FileOutputStream out = new FileOutputStream(temp)) {
+        write(model, out.getChannel());
+      }
+      if (!temp.renameTo(file)) throw new IOException("Could not rename " + temp);
+      // Hand out the mapped copy so the source mapping can be released
+      GlbModel cached = read(map(file));
+      trim(file);
+      return cached;
+    } catch (IOException e) {
+      // A full disk and the like only cost the next load a conversion
+      temp.delete();
+      file.delete();
+      if (listener != null) listener.onWriteFailed(file, e);
+      return model;
+    }
+  }
+
+  // Deletes least recently used entries other than keep until the directory fits in maxBytes;
+  // keep stays even when it alone is larger
+  void trim(File keep) {
+    File[] files = directory.listFiles();
+    if (files == null) return;
+    long total = 0;
+    for (File file : files) {
+      total += file.length();
+    }
+    if (total <= maxBytes) return;
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+    for (File file : files) {
+      if (total <= maxBytes) break;
+      if (file.equals(keep)) continue;
+      long length = file.length();
+      if (file.delete()) total -= length;
+    }
+  }
+
+  static String sha256(ByteBuffer data) {
+    return sha256(data, null);
+  }
+
+  private static String sha256(ByteBuffer data, ModelLoadJob job) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    // In slices, so a long hash of a mapped file still reports progress and can be cancelled
+    ByteBuffer remaining = data.duplicate();
+    int total = remaining.remaining();
+    while (remaining.hasRemaining()) {
+      ByteBuffer slice = remaining.duplicate();
+      slice.limit(Math.min(remaining.limit(), remaining.position() + HASH_SLICE_BYTES));
+      digest.update(slice);
+      remaining.position(slice.limit());
+      if (job != null) {
+        job.progress("bytes", remaining.position() - data.position(), total);
+      }
+    }
+    StringBuilder hex = new StringBuilder(64);
+    for (byte b : digest.digest()) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+  // Layout, all native order and 4 byte aligned: header, materials, per-mesh primitive counts,
+  // primitives, nodes, image table, then the vertex, index and image sections
+  static void write(GlbModel model, FileChannel out) throws IOException {
+    Map<GlbModel.Material, Integer> materialIndex = new IdentityHashMap<>();
+    List<GlbModel.Material> materials = new ArrayList<>();
+    Map<GlbModel.Mesh, Integer> meshIndex = new IdentityHashMap<>();
+    int primitiveCount = 0;
+    int primitiveInts = 0;
+    int bvhBytes = 0;
+    for (GlbModel.Mesh mesh : model.meshes) {
+      meshIndex.put(mesh, meshIndex.size());
+      if (mesh.bvh != null) bvhBytes += mesh.bvh.byteSize();
+      for (GlbModel.Primitive primitive : mesh.primitives) {
+        if (!materialIndex.containsKey(primitive.material)) {
+          materialIndex.put(primitive.material, materials.size());
+          materials.add(primitive.material);
+        }
+        primitiveCount++;
+        primitiveInts += PRIMITIVE_INTS + 2 * primitive.levelOffsets.length;
+      }
+    }
+    byte[][] mimeTypes = new byte[model.images.size()][];
+    int tableBytes = 0;
+    for (int i = 0; i < mimeTypes.length; i++) {
+      String mimeType = model.images.get(i).mimeType;
+      mimeTypes[i] = mimeType == null ? new byte[0] : mimeType.getBytes(StandardCharsets.UTF_8);
+      tableBytes += 3 * 4 + align4(mimeTypes[i].length);
+    }
+
+    int headerBytes = 4 * (HEADER_INTS + materials.size() * MATERIAL_INTS + model.meshes.size() * MESH_INTS
+        + primitiveInts + model.nodes.size() * NODE_INTS) + rigBytes(model.rig) + tableBytes;
+    int vertexBytes = model.vertices.capacity();
+    int indexBytes = model.indices.capacity();
+    int bvhStart = headerBytes + vertexBytes + align4(indexBytes);
+    int imageStart = bvhStart + bvhBytes;
+
+    ByteBuffer header = ByteBuffer.allocate(headerBytes).order(ByteOrder.nativeOrder());
+    header.putInt(MAGIC).putInt(VERSION).putInt(BYTE_ORDER_MARK);
+    header.putInt(materials.size()).putInt(model.meshes.size()).putInt(primitiveCount);
+    header.putInt(model.nodes.size()).putInt(model.images.size());
+    header.putInt(vertexBytes).putInt(indexBytes).putInt(bvhStart);
+    for (int c = 0; c < 3; c++) header.putFloat(model.min[c]);
+    for (int c = 0; c < 3; c++) header.putFloat(model.max[c]);
+
+    for (GlbModel.Material material : materials) {
+      for (int c = 0; c < 4; c++) header.putFloat(material.baseColor[c]);
+      header.putInt(material.baseColorImage).putFloat(material.metallic).putFloat(material.roughness);
+      for (int c = 0; c < 3; c++) header.putFloat(material.emissive[c]);
+      header.putInt(material.blend ? 1 : 0);
+      header.putInt(0);
+    }
+    for (GlbModel.Mesh mesh : model.meshes) {
+      header.putInt(mesh.primitives.size());
+      header.putInt(mesh.bvh == null ? 0 : mesh.bvh.nodeCount).putInt(mesh.bvh == null ? 0 : mesh.bvh.triangleCount);
+    }
+    for (GlbModel.Mesh mesh : model.meshes) {
+      for (GlbModel.Primitive primitive : mesh.primitives) {
+        header.putInt(primitive.vertexOffset).putInt(primitive.vertexCount).putInt(primitive.indexType)
+            .putInt(materialIndex.get(primitive.material)).putInt(primitive.levelOffsets.length);
+        for (int l = 0; l < primitive.levelOffsets.length; l++) {
+          header.putInt(primitive.levelOffsets[l]).putInt(primitive.levelCounts[l]);
+        }
+      }
+    }
+    for (GlbModel.Node node : model.nodes) {
+      header.putInt(meshIndex.get(node.mesh)).putInt(node.rigNode).putInt(node.skin);
+      for (int c = 0; c < 16; c++) header.putFloat(node.matrix[c]);
+    }
+    writeRig(model.rig, header);
+    int imageOffset = imageStart;
+    for (int i = 0; i < mimeTypes.length; i++) {
+      ByteBuffer data = model.images.get(i).data;
+      int length = data == null ? -1 : data.remaining();
+      header.putInt(imageOffset).putInt(length).putInt(mimeTypes[i].length);
+      header.put(mimeTypes[i]);
+      header.position(align4(header.position()));
+      imageOffset += align4(Math.max(length, 0));
+    }
+    header.flip();
+
+    writeFully(out, header);
+    writeFully(out, model.vertices.duplicate());
+    writeFully(out, model.indices.duplicate());
+    writeFully(out, ByteBuffer.allocate(align4(indexBytes) - indexBytes));
+    for (GlbModel.Mesh mesh : model.meshes) {
+      if (mesh.bvh != null) writeFully(out, mesh.bvh.data.duplicate());
+    }
+    for (GlbModel.Image image : model.images) {
+      if (image.data == null) continue;
+      writeFully(out, image.data.duplicate());
+      int padding = align4(image.data.remaining()) - image.data.remaining();
+      writeFully(out, ByteBuffer.allocate(padding));
+    }
+  }
+
+  static GlbModel read(ByteBuffer file) throws IOException {
+    ByteBuffer in = file.duplicate().order(ByteOrder.nativeOrder());
+    try {
+      if (in.getInt() != MAGIC || in.getInt() != VERSION || in.getInt() != BYTE_ORDER_MARK) {
+        throw new IOException("Not a model cache file of this version and byte order");
+      }
+      int materialCount = in.getInt();
+      int meshCount = in.getInt();
+      int primitiveCount = in.getInt();
+      int nodeCount = in.getInt();
+      int imageCount = in.getInt();
+      int vertexBytes = in.getInt();
+      int indexBytes = in.getInt();
+      int bvhAt = in.getInt();
+      float[] min = {in.getFloat(), in.getFloat(), in.getFloat()};
+      float[] max = {in.getFloat(), in.getFloat(), in.getFloat()};
+
+      List<GlbModel.Material> materials = new ArrayList<>(materialCount);
+      for (int i = 0; i < materialCount; i++) {
+        float[] baseColor = {in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat()};
+        int image = in.getInt();
+        float metallic = in.getFloat();
+        float roughness = in.getFloat();
+        float[] emissive = {in.getFloat(), in.getFloat(), in.getFloat()};
+        boolean blend = in.getInt() != 0;
+        in.getInt();
+        materials.add(new GlbModel.Material(baseColor, image, metallic, roughness, emissive, blend));
+      }
+      int[] meshPrimitives = new int[meshCount];
+      int[] bvhNodes = new int[meshCount];
+      int[] bvhTriangles = new int[meshCount];
+      for (int i = 0; i < meshCount; i++) {
+        meshPrimitives[i] = in.getInt();
+        bvhNodes[i] = in.getInt();
+        bvhTriangles[i] = in.getInt();
+      }
+      List<GlbModel.Mesh> meshes = new ArrayList<>(meshCount);
+      int primitivesRead = 0;
+      for (int m = 0; m < meshCount; m++) {
+        List<GlbModel.Primitive> primitives = new ArrayList<>(meshPrimitives[m]);
+        for (int p = 0; p < meshPrimitives[m]; p++) {
+          int vertexOffset = in.getInt();
+          int vertexCount = in.getInt();
+          int indexType = in.getInt();
+          int material = in.getInt();
+          int levels = in.getInt();
+          if (material < 0 || material >= materialCount) throw new IOException("Bad material index");
+          if (levels < 1 || levels > GlbModel.LOD_LEVELS) throw new IOException("Bad level count");
+          if (indexType != GlApi.GL_UNSIGNED_SHORT && indexType != GlApi.GL_UNSIGNED_INT) {
+            throw new IOException("Bad index type");
+          }
+          if (vertexOffset < 0 || vertexCount < 0 || vertexOffset % GlbModel.VERTEX_STRIDE != 0
+              || vertexOffset + (long) vertexCount * GlbModel.VERTEX_STRIDE > vertexBytes) {
+            throw new IOException("Bad vertex range");
+          }
+          int indexSize = indexType == GlApi.GL_UNSIGNED_INT ? 4 : 2;
+          int[] levelOffsets = new int[levels];
+          int[] levelCounts = new int[levels];
+          for (int l = 0; l < levels; l++) {
+            levelOffsets[l] = in.getInt();
+            levelCounts[l] = in.getInt();
+            if (levelOffsets[l] < 0 || levelCounts[l] < 0 || levelOffsets[l] % indexSize != 0
+                || levelOffsets[l] + (long) levelCounts[l] * indexSize > indexBytes) {
+              throw new IOException("Bad index range");
+            }
+          }
+          primitives.add(new GlbModel.Primitive(vertexOffset, vertexCount, levelOffsets, levelCounts, indexType,
+              materials.get(material)));
+          primitivesRead++;
+        }
+        MeshBvh bvh = null;
+        if (bvhNodes[m] != 0) {
+          int bytes = bvhNodes[m] * MeshBvh.NODE_BYTES + bvhTriangles[m] * MeshBvh.TRIANGLE_BYTES;
+          bvh = MeshBvh.read(section(file, bvhAt, bytes), bvhNodes[m], bvhTriangles[m],
+              vertexBytes / GlbModel.VERTEX_STRIDE);
+          bvhAt += bytes;
+        }
+        meshes.add(new GlbModel.Mesh(primitives, bvh));
+      }
+      if (primitivesRead != primitiveCount) throw new IOException("Primitive count mismatch");
+      List<GlbModel.Node> nodes = new ArrayList<>(nodeCount);
+      for (int i = 0; i < nodeCount; i++) {
+        int mesh = in.getInt();
+        int rigNode = in.getInt();
+        int skin = in.getInt();
+        float[] matrix = new float[16];
+        for (int c = 0; c < 16; c++) matrix[c] = in.getFloat();
+        if (mesh < 0 || mesh >= meshCount) throw new IOException("Bad mesh index");
+        nodes.add(new GlbModel.Node(meshes.get(mesh), matrix, rigNode, skin));
+      }
+      GlbModel.Rig rig = readRig(in);
+      for (GlbModel.Node node : nodes) {
+        int rigNodes = rig == null ? 0 : rig.getNodeCount();
+        int skins = rig == null ? 0 : rig.skins.size();
+        if (node.rigNode >= rigNodes || node.skin >= skins) throw new IOException("Bad rig reference");
+      }
+      int[][] imageTable = new int[imageCount][];
+      String[] mimeTypes = new String[imageCount];
+      for (int i = 0; i < imageCount; i++) {
+        imageTable[i] = new int[]{in.getInt(), in.getInt()};
+        byte[] mime = new byte[in.getInt()];
+        in.get(mime);
+        in.position(align4(in.position()));
+        mimeTypes[i] = mime.length == 0 ? null : new String(mime, StandardCharsets.UTF_8);
+      }
+
+      ByteBuffer vertices = section(file, in.position(), vertexBytes);
+      ByteBuffer indices = section(file, in.position() + vertexBytes, indexBytes);
+      List<GlbModel.Image> images = new ArrayList<>(imageCount);
+      for (int i = 0; i < imageCount; i++) {
+        int length = imageTable[i][1];
+        images.add(new GlbModel.Image(length < 0 ? null : section(file, imageTable[i][0], length), mimeTypes[i]));
+      }
+      return new GlbModel(vertices, indices, meshes, nodes, images, min, max, rig);
+    } catch (RuntimeException e) {
+      // BufferUnderflow, IllegalArgument and the like from a truncated or corrupt file
+      throw new IOException("Corrupt model cache file", e);
+    }
+  }
+
+  // Node count (0 without a rig), parents, rest matrices and TRS; skin count, then per skin its
+  // joint count, joints and inverse bind matrices; animation count, then per animation its name,
+  // duration and channels with their key count, times and values
+  private static int rigBytes(GlbModel.Rig rig) {
+    if (rig == null) return 4;
+    int nodes = rig.getNodeCount();
+    int ints = 1 + nodes * (1 + 16 + 10) + 1;
+    for (GlbModel.Skin skin : rig.skins) {
+      ints += 1 + skin.joints.length + skin.inverseBindMatrices.length;
+    }
+    ints += 1;
+    int bytes = 0;
+    for (GlbModel.Animation animation : rig.animations) {
+      ints += 3;
+      bytes += align4(nameBytes(animation).length);
+      for (GlbModel.Channel channel : animation.channels) {
+        ints += 5 + channel.times.length + channel.values.length;
+      }
+    }
+    return ints * 4 + bytes;
+  }
+
+  private static byte[] nameBytes(GlbModel.Animation animation) {
+    return animation.name == null ? new byte[0] : animation.name.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static void writeRig(GlbModel.Rig rig, ByteBuffer out) {
+    if (rig == null) {
+      out.putInt(0);
+      return;
+    }
+    out.putInt(rig.getNodeCount());
+    for (int parent : rig.parents) out.putInt(parent);
+    for (float value : rig.restMatrices) out.putFloat(value);
+    for (float value : rig.restTrs) out.putFloat(value);
+    out.putInt(rig.skins.size());
+    for (GlbModel.Skin skin : rig.skins) {
+      out.putInt(skin.joints.length);
+      for (int joint : skin.joints) out.putInt(joint);
+      for (float value : skin.inverseBindMatrices) out.putFloat(value);
+    }
+    out.putInt(rig.animations.size());
+    for (GlbModel.Animation animation : rig.animations) {
+      byte[] name = nameBytes(animation);
+      out.putInt(name.length).put(name);
+      out.position(align4(out.position()));
+      out.putFloat(animation.duration).putInt(animation.channels.size());
+      for (GlbModel.Channel channel : animation.channels) {
+        out.putInt(channel.node).putInt(channel.path).putInt(channel.interpolation).putInt(channel.times.length)
+            .putInt(channel.values.length);
+        for (float value : channel.times) out.putFloat(value);
+        for (float value : channel.values) out.putFloat(value);
+      }
+    }
+  }
+
+  private static GlbModel.Rig readRig(ByteBuffer in) throws IOException {
+    int nodes = in.getInt();
+    if (nodes == 0) return null;
+    int[] parents = new int[nodes];
+    for (int i = 0; i < nodes; i++) {
+      parents[i] = in.getInt();
+      if (parents[i] >= i) throw new IOException("Bad rig parent");
+    }
+    float[] restMatrices = floats(in, nodes * 16);
+    float[] restTrs = floats(in, nodes * 10);
+    int skinCount = in.getInt();
+    List<GlbModel.Skin> skins = new ArrayList<>(skinCount);
+    for (int s = 0; s < skinCount; s++) {
+      int[] joints = new int[count(in, 4 + 64)];
+      for (int j = 0; j < joints.length; j++) {
+        joints[j] = in.getInt();
+        if (joints[j] >= nodes) throw new IOException("Bad joint");
+      }
+      skins.add(new GlbModel.Skin(joints, floats(in, joints.length * 16)));
+    }
+    int animationCount = in.getInt();
+    List<GlbModel.Animation> animations = new ArrayList<>(animationCount);
+    for (int a = 0; a < animationCount; a++) {
+      byte[] name = new byte[count(in, 1)];
+      in.get(name);
+      in.position(align4(in.position()));
+      float duration = in.getFloat();
+      int channelCount = in.getInt();
+      List<GlbModel.Channel> channels = new ArrayList<>(channelCount);
+      for (int c = 0; c < channelCount; c++) {
+        int node = in.getInt();
+        int path = in.getInt();
+        int interpolation = in.getInt();
+        int keys = in.getInt();
+        int values = in.getInt();
+        if (node < 0 || node >= nodes || path < GlbModel.Channel.TRANSLATION || path > GlbModel.Channel.SCALE
+            || interpolation < GlbModel.Channel.LINEAR || interpolation > GlbModel.Channel.CUBIC_SPLINE || keys < 1) {
+          throw new IOException("Bad animation channel");
+        }
+        GlbModel.Channel channel = new GlbModel.Channel(node, path, interpolation, floats(in, keys), floats(in, values));
+        int perKey = channel.components() * (interpolation == GlbModel.Channel.CUBIC_SPLINE ? 3 : 1);
+        if (values != (long) keys * perKey) throw new IOException("Bad animation value count");
+        channels.add(channel);
+      }
+      animations.add(new GlbModel.Animation(name.length == 0 ? null : new String(name, StandardCharsets.UTF_8),
+          duration, channels));
+    }
+    return new GlbModel.Rig(parents, restMatrices, restTrs, skins, animations);
+  }
+
+  // A count read from in, checked against what is left so a corrupt one cannot allocate gigabytes
+  private static int count(ByteBuffer in, int elementBytes) {
+    int count = in.getInt();
+    if (count < 0 || count > in.remaining() / elementBytes) throw new BufferUnderflowException();
+    return count;
+  }
+
+  private static float[] floats(ByteBuffer in, int count) {
+    if (count < 0 || count > in.remaining() / 4) throw new BufferUnderflowException();
+    float[] values = new float[count];
+    in.asFloatBuffer().get(values);
+    in.position(in.position() + count * 4);
+    return values;
+  }
+
+  private static ByteBuffer map(File file) throws IOException {
+    try (FileInputStream in = new FileInputStream(file)) {
+      FileChannel channel = in.getChannel();
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  private static ByteBuffer section(ByteBuffer file, int offset, int length) {
+    ByteBuffer section = file.duplicate();
+    section.limit(offset + length).position(offset);
+    return section.slice().order(ByteOrder.nativeOrder());
+  }
+
+  private static void writeFully(FileChannel out, ByteBuffer data) throws IOException {
+    while (data.hasRemaining()) {
+      out.write(data);
+    }
+  }
+
+  private static int align4(int value) {
+    return (value + 3) & ~3;
+  }
+}
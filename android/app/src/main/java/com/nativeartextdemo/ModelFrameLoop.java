@@ -0,0 +1,314 @@
+package com.visionar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// The GL thread half of the model view, like TextFrameLoop for text: the placed models with
+// their rotations and scales, picking and selection, the model's animation and the draw. Plain
+// Java against ArSession, so FakeArSession and RecordingGl run it on a JVM. Touches arrive
+// through getGestures() and the props through the volatile setters; the rest is GL thread only.
+final class ModelFrameLoop {
+  interface Listener {
+    void onModelEvent(String eventType, String message, int anchorId);
+  }
+
+  static final float NEAR = 0.1f;
+  static final float FAR = 100f;
+  // Longest step the animation takes, so a pause does not make it jump
+  static final float MAX_ANIMATION_STEP = 0.1f; // seconds
+
+  private final Listener listener;
+  private final AnchorGroupManager anchorGroups = new AnchorGroupManager();
+  private final AnchorBudget anchorBudget = new AnchorBudget();
+  private final PlacementLatencyTracker placementLatency;
+  private final PlaneMeshCache planeMeshCache = new PlaneMeshCache();
+  private final PlaneRaycaster<ArSession.Plane> planeRaycaster = new PlaneRaycaster<>();
+  private final PlacementGestures gestures = new PlacementGestures(planeRaycaster);
+  private final ModelPicker modelPicker = new ModelPicker();
+  private final List<AnchorGroupManager.Placement> anchors = new ArrayList<>();
+  // Parallel to anchors: X, Y, Z rotation in degrees, and the scale the model was placed with
+  private float[] rotations = new float[16 * 3];
+  private float[] scales = new float[16];
+  // Drags and rotations move the selected placement; -1, or an id that has since been removed,
+  // means the newest one
+  private int selectedAnchorId = -1;
+  private int publishedPlaneRevision = -1;
+
+  private GlBackend backend;
+  private BackgroundRenderer background;
+  private ModelRenderer models;
+  private int viewportWidth = 0;
+  private int viewportHeight = 0;
+
+  private GlbModel model;
+  private ModelAnimator animator;
+  private float animationTime = 0f;
+  private long lastFrameMs = -1L;
+
+  private final float[] view = new float[16];
+  private final float[] proj = new float[16];
+  private final float[] viewProj = new float[16];
+  private final float[] placement = new float[16];
+  private final float[] cameraPose = new float[16];
+
+  private volatile boolean instantPlacementEnabled = false;
+  private volatile float modelScale = 1f;
+  private volatile boolean animationPlaying = true;
+  private volatile float animationSpeed = 1f;
+
+  ModelFrameLoop(Listener listener, PlacementLatencyTracker.Listener timingListener) {
+    this.listener = listener;
+    this.placementLatency = new PlacementLatencyTracker(timingListener);
+  }
+
+  // On surface creation
+  void attach(GlBackend backend, BackgroundRenderer background, ModelRenderer models) {
+    this.backend = backend;
+    this.background = background;
+    this.models = models;
+  }
+
+  void setViewport(int width, int height) {
+    viewportWidth = width;
+    viewportHeight = height;
+  }
+
+  // Once the model is uploaded to the renderer; taps are ignored until then. animator is null
+  // for models without skins or animations.
+  void setModel(GlbModel newModel, ModelAnimator newAnimator) {
+    model = newModel;
+    animator = newAnimator;
+    animationTime = 0f;
+    modelPicker.setModel(newModel);
+    if (models != null) models.setAnimator(newAnimator);
+  }
+
+  PlacementGestures getGestures() {
+    return gestures;
+  }
+
+  AnchorGroupManager getAnchorGroups() {
+    return anchorGroups;
+  }
+
+  AnchorBudget getAnchorBudget() {
+    return anchorBudget;
+  }
+
+  void setInstantPlacementEnabled(boolean enabled) {
+    instantPlacementEnabled = enabled;
+  }
+
+  boolean isInstantPlacementEnabled() {
+    return instantPlacementEnabled;
+  }
+
+  // Applies to models placed from now on
+  void setModelScale(float scale) {
+    modelScale = scale;
+  }
+
+  void setAnimationPlaying(boolean playing) {
+    animationPlaying = playing;
+  }
+
+  void setAnimationSpeed(float speed) {
+    animationSpeed = speed;
+  }
+
+  int getAnchorCount() {
+    return anchors.size();
+  }
+
+  AnchorGroupManager.Placement getAnchor(int index) {
+    return anchors.get(index);
+  }
+
+  // X, Y, Z rotation of the model at index into out
+  void getRotation(int index, float[] out) {
+    System.arraycopy(rotations, index * 3, out, 0, 3);
+  }
+
+  float getScale(int index) {
+    return scales[index];
+  }
+
+  int getSelectedAnchorId() {
+    int index = selectedIndex();
+    return index < 0 ? -1 : anchors.get(index).id;
+  }
+
+  float getAnimationTime() {
+    return animationTime;
+  }
+
+  // Everything after session.update(). nowMs is on the same clock as the touch times and also
+  // paces the animation.
+  void draw(ArSession.Frame frame, long nowMs) {
+    ArSession.Camera camera = frame.getCamera();
+    boolean tracking = camera.getTrackingState() == ArSession.Tracking.TRACKING;
+
+    // Planes are not drawn here, the cache only feeds the CPU raycaster
+    planeMeshCache.update(frame.getUpdatedPlanes());
+    if (planeMeshCache.getRevision() != publishedPlaneRevision) {
+      planeMeshCache.publishTo(planeRaycaster);
+      publishedPlaneRevision = planeMeshCache.getRevision();
+    }
+
+    if (tracking) handleGestures(frame, nowMs);
+
+    if (background != null) {
+      background.draw(frame);
+    }
+    if (!tracking || models == null) return;
+
+    enforceAnchorBudget(camera);
+    anchorGroups.updateGroupPoses();
+
+    camera.getProjectionMatrix(proj, 0, NEAR, FAR);
+    camera.getViewMatrix(view, 0);
+    MatrixMath.multiplyMM(viewProj, proj, view);
+    planeRaycaster.setCamera(view, proj, viewportWidth, viewportHeight);
+    backend.beginFrame(view, proj);
+    modelPicker.setCamera(view, proj, viewportWidth, viewportHeight);
+
+    advanceAnimation(nowMs);
+    models.begin();
+    modelPicker.begin();
+    for (int i = 0; i < anchors.size(); i++) {
+      AnchorGroupManager.Placement anchor = anchors.get(i);
+      if (anchor.getTrackingState() != ArSession.Tracking.TRACKING) continue;
+      anchor.getModelMatrix(placement);
+      // Visibility bookkeeping for the not-visible-longest eviction policy
+      if (AnchorBudget.isInView(viewProj, placement)) {
+        anchor.lastVisibleMs = nowMs;
+      }
+      float rotationX = rotations[i * 3];
+      float rotationY = rotations[i * 3 + 1];
+      float rotationZ = rotations[i * 3 + 2];
+      models.add(placement, rotationX, rotationY, rotationZ, scales[i]);
+      modelPicker.add(anchor.id, placement, rotationX, rotationY, rotationZ, scales[i]);
+      placementLatency.onDrawn(anchor, nowMs);
+    }
+    models.draw();
+  }
+
+  // False if no such anchor is placed, e.g. it was evicted already
+  boolean removeAnchor(int anchorId) {
+    for (int i = 0; i < anchors.size(); i++) {
+      if (anchors.get(i).id == anchorId) {
+        removeAnchorAt(i);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  void clearAnchors() {
+    anchors.clear();
+    anchorGroups.clear();
+    placementLatency.clear();
+    selectedAnchorId = -1;
+  }
+
+  // A tap on a placed model selects it instead of placing another; drags and rotations move the
+  // selected one
+  private void handleGestures(ArSession.Frame frame, long nowMs) {
+    if (gestures.isTapPending()) {
+      PlaneRaycaster.Hit<ArSession.Plane> planeHit = gestures.takeTapHit();
+      if (model != null) {
+        int picked = modelPicker.pick(gestures.getTapX(), gestures.getTapY());
+        if (picked >= 0) {
+          selectAnchor(picked);
+        } else {
+          AnchorGroupManager.Placement placed = anchorGroups.placeAt(frame, planeHit,
+              gestures.getTapX(), gestures.getTapY(), instantPlacementEnabled, nowMs);
+          if (placed != null) addPlacement(placed);
+        }
+      }
+      gestures.clearTap();
+    }
+    int index = selectedIndex();
+    if (index < 0) return;
+    if (gestures.takeDragMove()) {
+      AnchorGroupManager.Placement moved = anchorGroups.relocateAt(anchors.get(index), frame,
+          gestures.getDragHit(), gestures.getDragX(), gestures.getDragY());
+      if (moved != anchors.get(index)) {
+        anchors.set(index, moved);
+        gestures.getRotation(rotations, index * 3);
+      }
+    }
+    if (gestures.isRotating()) {
+      gestures.getRotation(rotations, index * 3);
+    }
+  }
+
+  private void addPlacement(AnchorGroupManager.Placement placed) {
+    int index = anchors.size();
+    anchors.add(placed);
+    if (index == scales.length) {
+      rotations = Arrays.copyOf(rotations, index * 2 * 3);
+      scales = Arrays.copyOf(scales, index * 2);
+    }
+    rotations[index * 3] = 0f;
+    rotations[index * 3 + 1] = 0f;
+    rotations[index * 3 + 2] = 0f;
+    scales[index] = modelScale;
+    gestures.setRotation(0f, 0f, 0f);
+    selectedAnchorId = placed.id;
+    placementLatency.track(placed, gestures.getTapTimeMs());
+    listener.onModelEvent("MODEL_PLACED", "Model placed successfully", placed.id);
+  }
+
+  // Gestures continue from the selected placement's rotation
+  private void selectAnchor(int anchorId) {
+    selectedAnchorId = anchorId;
+    int index = selectedIndex();
+    gestures.setRotation(rotations[index * 3], rotations[index * 3 + 1], rotations[index * 3 + 2]);
+    listener.onModelEvent("MODEL_SELECTED", "Model selected", anchorId);
+  }
+
+  private int selectedIndex() {
+    for (int i = 0; i < anchors.size(); i++) {
+      if (anchors.get(i).id == selectedAnchorId) return i;
+    }
+    return anchors.size() - 1;
+  }
+
+  private int removeAnchorAt(int index) {
+    AnchorGroupManager.Placement removed = anchors.remove(index);
+    int after = anchors.size() - index;
+    System.arraycopy(rotations, (index + 1) * 3, rotations, index * 3, after * 3);
+    System.arraycopy(scales, index + 1, scales, index, after);
+    anchorGroups.release(removed);
+    placementLatency.forget(removed.id);
+    return removed.id;
+  }
+
+  // Evict placements chosen by the budget policy until we are back under the limit
+  private void enforceAnchorBudget(ArSession.Camera camera) {
+    if (!anchorBudget.isOverBudget(anchors.size())) return;
+    camera.getPoseMatrix(cameraPose, 0);
+    while (anchorBudget.isOverBudget(anchors.size())) {
+      int victim = anchorBudget.selectVictim(anchors, placement, cameraPose[12], cameraPose[13], cameraPose[14]);
+      if (victim < 0) break;
+      int anchorId = removeAnchorAt(victim);
+      listener.onModelEvent("ANCHOR_EVICTED", "Model evicted by anchor budget (" + anchorBudget.getPolicy() + ")", anchorId);
+    }
+  }
+
+  // Steps the animation by the time since the last drawn frame, at most MAX_ANIMATION_STEP
+  private void advanceAnimation(long nowMs) {
+    float dt = lastFrameMs < 0L ? 0f : Math.min((nowMs - lastFrameMs) / 1000f, MAX_ANIMATION_STEP);
+    lastFrameMs = nowMs;
+    if (animator == null) return;
+    if (animationPlaying) {
+      animationTime += dt * animationSpeed;
+      float duration = animator.getDuration();
+      // Kept within one loop so float precision does not wear down over a long session
+      if (duration > 0f) animationTime %= duration;
+    }
+    animator.update(animationTime);
+  }
+}
@@ -0,0 +1,54 @@
+package com.visionar;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// One model load, passed through every stage so they can report progress and notice when a
+// newer load has superseded them. Each view keeps one generation counter; starting a load
+// bumps it, which cancels every older job at its next progress() or checkCancelled() call.
+final class ModelLoadJob {
+  interface Listener {
+    // stage is "download" (remote sources only), "bytes" (GLB bytes read), "meshes" or "textures";
+    // total is -1 when unknown
+    void onProgress(String stage, long done, long total);
+  }
+
+  // Progress inside a stage is reported at most this often; stage ends always are
+  private static final long MIN_REPORT_INTERVAL_NS = 100_000_000L;
+
+  private final AtomicInteger generations;
+  private final int generation;
+  private final Listener listener;
+  private String lastStage = null;
+  private long lastReportNs = 0L;
+
+  private ModelLoadJob(AtomicInteger generations, int generation, Listener listener) {
+    this.generations = generations;
+    this.generation = generation;
+    this.listener = listener;
+  }
+
+  // Starts a job and cancels every job started earlier from the same counter
+  static ModelLoadJob start(AtomicInteger generations, Listener listener) {
+    return new ModelLoadJob(generations, generations.incrementAndGet(), listener);
+  }
+
+  boolean isCancelled() {
+    return generations.get() != generation;
+  }
+
+  void checkCancelled() {
+    if (isCancelled()) throw new CancellationException("Superseded by a newer model load");
+  }
+
+  void progress(String stage, long done, long total) {
+    checkCancelled();
+    if (listener == null) return;
+    long now = System.nanoTime();
+    boolean stageEdge = !stage.equals(lastStage) || (total >= 0 && done >= total);
+    if (!stageEdge && now - lastReportNs < MIN_REPORT_INTERVAL_NS) return;
+    lastStage = stage;
+    lastReportNs = now;
+    listener.onProgress(stage, done, total);
+  }
+}
@@ -0,0 +1,118 @@
+package com.visionar;
+
+import java.util.Arrays;
+
+// Finds the placed model under a screen point. Placements are recorded as they are drawn, so a
+// pick tests what was on screen in the last frame: the ray goes into each placement's model
+// space and is tested against the model's bounds, and only placements it passes through are
+// followed into every mesh node's MeshBvh for the nearest triangle. Skinned meshes are tested in
+// their bind pose. Plain Java, used from the GL thread only.
+final class ModelPicker {
+  private GlbModel model;
+  // Per model node, mesh space from node space; nodeInvertible false for degenerate transforms
+  private float[] nodeInverses = new float[0];
+  private boolean[] nodeInvertible = new boolean[0];
+  private float[] placements = new float[16 * 8];
+  private int[] ids = new int[8];
+  private int count = 0;
+  private float[] inverseViewProj = null;
+  private int viewportWidth = 0;
+  private int viewportHeight = 0;
+  private final float[] viewProj = new float[16];
+  private final float[] matrix = new float[16];
+  private final float[] inverse = new float[16];
+  private final float[] worldRay = new float[6];
+  private final float[] modelRay = new float[6];
+  private final float[] meshRay = new float[6];
+
+  void setModel(GlbModel newModel) {
+    model = newModel;
+    count = 0;
+    if (model == null) return;
+    int nodes = model.nodes.size();
+    nodeInverses = new float[nodes * 16];
+    nodeInvertible = new boolean[nodes];
+    for (int n = 0; n < nodes; n++) {
+      nodeInvertible[n] = MatrixMath.invert(inverse, model.nodes.get(n).matrix);
+      System.arraycopy(inverse, 0, nodeInverses, n * 16, 16);
+    }
+  }
+
+  // The matrices the recorded placements are drawn with
+  void setCamera(float[] view, float[] proj, int width, int height) {
+    MatrixMath.multiplyMM(viewProj, proj, view);
+    if (width <= 0 || height <= 0 || !MatrixMath.invert(inverse, viewProj)) {
+      inverseViewProj = null;
+      return;
+    }
+    if (inverseViewProj == null) inverseViewProj = new float[16];
+    System.arraycopy(inverse, 0, inverseViewProj, 0, 16);
+    viewportWidth = width;
+    viewportHeight = height;
+  }
+
+  void begin() {
+    count = 0;
+  }
+
+  // Records a placement as ModelRenderer.add draws it, under the caller's id
+  void add(int id, float[] anchorModel, float rotationX, float rotationY, float rotationZ, float scale) {
+    if (ids.length == count) {
+      ids = Arrays.copyOf(ids, count * 2);
+      placements = Arrays.copyOf(placements, count * 2 * 16);
+    }
+    ModelRenderer.setPlacement(placements, count * 16, anchorModel, rotationX, rotationY, rotationZ, scale);
+    ids[count++] = id;
+  }
+
+  // Id of the nearest placement whose triangles are under the view coordinates, or -1
+  int pick(float screenX, float screenY) {
+    if (model == null || inverseViewProj == null
+        || !PlaneRaycaster.screenRay(inverseViewProj, viewportWidth, viewportHeight, screenX, screenY, worldRay)) {
+      return -1;
+    }
+    float nearest = Float.MAX_VALUE;
+    int picked = -1;
+    for (int i = 0; i < count; i++) {
+      System.arraycopy(placements, i * 16, matrix, 0, 16);
+      if (!MatrixMath.invert(inverse, matrix)) continue;
+      transformRay(inverse, 0, worldRay, modelRay);
+      if (!hitsBounds(model.min, model.max, modelRay, nearest)) continue;
+      for (int n = 0; n < model.nodes.size(); n++) {
+        MeshBvh bvh = model.nodes.get(n).mesh.bvh;
+        if (bvh == null || !nodeInvertible[n]) continue;
+        transformRay(nodeInverses, n * 16, modelRay, meshRay);
+        float t = bvh.intersect(model.vertices, meshRay, nearest);
+        if (t < nearest) {
+          nearest = t;
+          picked = ids[i];
+        }
+      }
+    }
+    return picked;
+  }
+
+  // Origin as a point, direction as a vector; the direction keeps its length change so t carries over
+  private static void transformRay(float[] m, int offset, float[] ray, float[] out) {
+    float ox = ray[0], oy = ray[1], oz = ray[2];
+    float dx = ray[3], dy = ray[4], dz = ray[5];
+    for (int r = 0; r < 3; r++) {
+      out[r] = m[offset + r] * ox + m[offset + 4 + r] * oy + m[offset + 8 + r] * oz + m[offset + 12 + r];
+      out[3 + r] = m[offset + r] * dx + m[offset + 4 + r] * dy + m[offset + 8 + r] * dz;
+    }
+  }
+
+  private static boolean hitsBounds(float[] min, float[] max, float[] ray, float maxT) {
+    float near = 0f;
+    float far = maxT;
+    for (int c = 0; c < 3; c++) {
+      float inverse = 1f / ray[3 + c];
+      float t1 = (min[c] - ray[c]) * inverse;
+      float t2 = (max[c] - ray[c]) * inverse;
+      // A NaN from a zero direction component on a bounds plane constrains nothing
+      if (Math.min(t1, t2) > near) near = Math.min(t1, t2);
+      if (Math.max(t1, t2) < far) far = Math.max(t1, t2);
+    }
+    return near <= far;
+  }
+}
@@ -0,0 +1,595 @@
+package com.visionar;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+// Draws a GlbModel at every placement of a view with PBR-lite shading and skinning: on GLES 3
+// one instanced draw per primitive, node and level of detail, on GLES 2 one draw per placement.
+class ModelRenderer {
+  // A placement whose bounding sphere spans less of the viewport height than entry i draws
+  // level i + 1 or coarser
+  private static final float[] LOD_SCREEN_FRACTIONS = {0.5f, 0.25f, 0.12f};
+  // GLES 3 only: the placement matrix as four vec4 columns at 3..6
+  private static final int MODEL_ATTRIB_LOCATION = 3;
+  private static final int JOINTS_ATTRIB_LOCATION = 7;
+  private static final int WEIGHTS_ATTRIB_LOCATION = 8;
+  // Three vec4 per joint; GLES 2 only guarantees 128 vertex uniform vectors, GLES 3 256. Skins
+  // with more joints draw in their bind pose.
+  private static final int MAX_JOINTS = 32;
+  private static final int MAX_JOINTS_ES3 = 64;
+
+  // The light and up directions go to view space per vertex, so the fragment stage needs no
+  // matrices and no uniform is shared between stages at different precisions
+  private static final String VIEW_SPACE_GLSL =
+      "const vec3 LIGHT_DIR = vec3(0.32, 0.89, 0.32);\n" +
+      // GLSL ES 1.00 has no mat3(mat4) constructor
+      "mat3 upper3(mat4 m) {\n" +
+      "  return mat3(m[0].xyz, m[1].xyz, m[2].xyz);\n" +
+      "}\n" +
+      "void toViewSpace(mat4 model, mat4 view, vec3 position, vec3 normal) {\n" +
+      "  vec4 viewPos = view * model * vec4(position, 1.0);\n" +
+      "  mat3 view3 = upper3(view);\n" +
+      "  v_ViewPos = viewPos.xyz;\n" +
+      "  v_ViewNormal = view3 * upper3(model) * normal;\n" +
+      "  v_LightDir = view3 * LIGHT_DIR;\n" +
+      "  v_Up = view3[1];\n" +
+      "  gl_Position = u_Proj * viewPos;\n" +
+      "}\n";
+
+  // Blends the rows of the joint matrices in u_Joints by the vertex's weights, which exporters
+  // do not always normalize
+  private static final String SKINNING_GLSL =
+      "uniform float u_Skinned;\n" +
+      "mat4 skinMatrix(vec4 joints, vec4 weights) {\n" +
+      "  float total = dot(weights, vec4(1.0));\n" +
+      "  if (u_Skinned < 0.5 || total <= 0.0) return mat4(1.0);\n" +
+      "  vec4 w = weights / total;\n" +
+      "  ivec4 j = ivec4(joints) * 3;\n" +
+      "  vec4 r0 = u_Joints[j.x] * w.x + u_Joints[j.y] * w.y + u_Joints[j.z] * w.z + u_Joints[j.w] * w.w;\n" +
+      "  vec4 r1 = u_Joints[j.x + 1] * w.x + u_Joints[j.y + 1] * w.y + u_Joints[j.z + 1] * w.z + u_Joints[j.w + 1] * w.w;\n" +
+      "  vec4 r2 = u_Joints[j.x + 2] * w.x + u_Joints[j.y + 2] * w.y + u_Joints[j.z + 2] * w.z + u_Joints[j.w + 2] * w.w;\n" +
+      "  return mat4(r0.x, r1.x, r2.x, 0.0, r0.y, r1.y, r2.y, 0.0, r0.z, r1.z, r2.z, 0.0, r0.w, r1.w, r2.w, 1.0);\n" +
+      "}\n";
+
+  private static final String SHADING_GLSL =
+      "const vec3 LIGHT_COLOR = vec3(1.0, 0.98, 0.94);\n" +
+      "const vec3 SKY = vec3(0.42, 0.45, 0.5);\n" +
+      "const vec3 GROUND = vec3(0.2, 0.18, 0.16);\n" +
+      "uniform vec4 u_BaseColor;\n" +
+      "uniform vec4 u_Emissive;\n" +
+      // x metallic, y roughness
+      "uniform vec4 u_Material;\n" +
+      "vec4 shade(vec4 base) {\n" +
+      "  vec3 n = normalize(gl_FrontFacing ? v_ViewNormal : -v_ViewNormal);\n" +
+      "  vec3 v = normalize(-v_ViewPos);\n" +
+      "  vec3 l = normalize(v_LightDir);\n" +
+      "  vec3 h = normalize(l + v);\n" +
+      "  float metallic = u_Material.x;\n" +
+      "  float roughness = clamp(u_Material.y, 0.05, 1.0);\n" +
+      "  float shininess = exp2(11.0 * (1.0 - roughness)) + 1.0;\n" +
+      "  vec3 diffuse = base.rgb * (1.0 - metallic);\n" +
+      "  vec3 f0 = mix(vec3(0.04), base.rgb, metallic);\n" +
+      "  float ndl = max(dot(n, l), 0.0);\n" +
+      // Blinn-Phong normalized by (s + 8) / 8pi
+      "  float spec = pow(max(dot(n, h), 0.0), shininess) * (shininess + 8.0) * 0.0398;\n" +
+      "  float up = dot(n, normalize(v_Up)) * 0.5 + 0.5;\n" +
+      "  vec3 ambient = mix(GROUND, SKY, up) * (diffuse + f0 * 0.5);\n" +
+      "  vec3 color = ambient + (diffuse + f0 * spec) * LIGHT_COLOR * ndl + u_Emissive.rgb;\n" +
+      "  return vec4(color, base.a);\n" +
+      "}\n";
+
+  private static final String VERTEX_SHADER =
+      "uniform mat4 u_Model;\n" +
+      "uniform mat4 u_View;\n" +
+      "uniform mat4 u_Proj;\n" +
+      "attribute vec3 a_Position;\n" +
+      "attribute vec3 a_Normal;\n" +
+      "attribute vec2 a_TexCoord;\n" +
+      "attribute vec4 a_Joints;\n" +
+      "attribute vec4 a_Weights;\n" +
+      "uniform vec4 u_Joints[" + MAX_JOINTS * 3 + "];\n" +
+      "varying vec3 v_ViewPos;\n" +
+      "varying vec3 v_ViewNormal;\n" +
+      "varying vec3 v_LightDir;\n" +
+      "varying vec3 v_Up;\n" +
+      "varying vec2 v_TexCoord;\n" +
+      VIEW_SPACE_GLSL +
+      SKINNING_GLSL +
+      "void main() {\n" +
+      "  toViewSpace(u_Model * skinMatrix(a_Joints, a_Weights), u_View, a_Position, a_Normal);\n" +
+      "  v_TexCoord = a_TexCoord;\n" +
+      "}";
+
+  private static final String FRAGMENT_SHADER =
+      "precision mediump float;\n" +
+      "uniform sampler2D u_BaseColorTexture;\n" +
+      "varying vec3 v_ViewPos;\n" +
+      "varying vec3 v_ViewNormal;\n" +
+      "varying vec3 v_LightDir;\n" +
+      "varying vec3 v_Up;\n" +
+      "varying vec2 v_TexCoord;\n" +
+      SHADING_GLSL +
+      "void main() {\n" +
+      "  gl_FragColor = shade(u_BaseColor * texture2D(u_BaseColorTexture, v_TexCoord));\n" +
+      "}";
+
+  private static final String VERTEX_SHADER_ES3 =
+      "#version 300 es\n" +
+      GlBackend.FRAME_UNIFORMS_GLSL +
+      "uniform mat4 u_Node;\n" +
+      "layout(location = 0) in vec3 a_Position;\n" +
+      "layout(location = 1) in vec3 a_Normal;\n" +
+      "layout(location = 2) in vec2 a_TexCoord;\n" +
+      "layout(location = " + MODEL_ATTRIB_LOCATION + ") in mat4 a_Model;\n" +
+      "layout(location = " + JOINTS_ATTRIB_LOCATION + ") in vec4 a_Joints;\n" +
+      "layout(location = " + WEIGHTS_ATTRIB_LOCATION + ") in vec4 a_Weights;\n" +
+      "uniform vec4 u_Joints[" + MAX_JOINTS_ES3 * 3 + "];\n" +
+      "out vec3 v_ViewPos;\n" +
+      "out vec3 v_ViewNormal;\n" +
+      "out vec3 v_LightDir;\n" +
+      "out vec3 v_Up;\n" +
+      "out vec2 v_TexCoord;\n" +
+      VIEW_SPACE_GLSL +
+      SKINNING_GLSL +
+      "void main() {\n" +
+      "  toViewSpace(a_Model * u_Node * skinMatrix(a_Joints, a_Weights), u_View, a_Position, a_Normal);\n" +
+      "  v_TexCoord = a_TexCoord;\n" +
+      "}";
+
+  private static final String FRAGMENT_SHADER_ES3 =
+      "#version 300 es\n" +
+      "precision mediump float;\n" +
+      "uniform sampler2D u_BaseColorTexture;\n" +
+      "in vec3 v_ViewPos;\n" +
+      "in vec3 v_ViewNormal;\n" +
+      "in vec3 v_LightDir;\n" +
+      "in vec3 v_Up;\n" +
+      "in vec2 v_TexCoord;\n" +
+      "out vec4 o_FragColor;\n" +
+      SHADING_GLSL +
+      "void main() {\n" +
+      "  o_FragColor = shade(u_BaseColor * texture(u_BaseColorTexture, v_TexCoord));\n" +
+      "}";
+
+  private final GlBackend backend;
+  private final GlApi gl;
+  private final GlStateCache state;
+  private final int program;
+  private final int positionAttrib;
+  private final int normalAttrib;
+  private final int texCoordAttrib;
+  private final int jointsAttrib;
+  private final int weightsAttrib;
+  // GLES 2 takes the whole model matrix per draw, GLES 3 only the node's part of it
+  private final int modelUniform;
+  private final int nodeUniform;
+  // GLES 2 only; GLES 3 reads the camera from the frame uniform buffer
+  private final int viewUniform;
+  private final int projUniform;
+  private final int baseColorUniform;
+  private final int emissiveUniform;
+  private final int materialUniform;
+  private final int jointsUniform;
+  private final int skinnedUniform;
+  private final int maxJoints;
+  // Bound for materials without a base color texture so one shader covers both
+  private final int whiteTexture;
+
+  private GlbModel model;
+  private int vertexBuffer = 0;
+  private int indexBuffer = 0;
+  // Per primitive, in mesh then primitive order; GLES 3 only
+  private int[] vertexArrays = new int[0];
+  // GLES 3 only: placement matrices grouped by level, and where each VAO's instance attributes
+  // currently point into them
+  private int instanceBuffer = 0;
+  private FloatBuffer instanceData;
+  private int[] instanceOffsets = new int[0];
+  private final int[] levelStarts = new int[GlbModel.LOD_LEVELS];
+  private final int[] levelSizes = new int[GlbModel.LOD_LEVELS];
+  private int[] textures = new int[0];
+
+  private float[] placements = new float[16 * 8];
+  private int[] placementLevels = new int[8];
+  private int placementCount = 0;
+  private final float[] modelMatrix = new float[16];
+  private final float[] nodeMatrix = new float[16];
+  private ModelAnimator animator;
+  // Skin whose palette u_Joints holds, -1 for none; reset every frame as the palettes move
+  private int boundSkin = -1;
+
+  // Must be created on the GL thread
+  ModelRenderer(GlBackend backend) {
+    this.backend = backend;
+    gl = backend.getGl();
+    state = backend.getState();
+    boolean gles3 = backend.isGles3();
+    int v = loadShader(GlApi.GL_VERTEX_SHADER, gles3 ? VERTEX_SHADER_ES3 : VERTEX_SHADER);
+    int f = loadShader(GlApi.GL_FRAGMENT_SHADER, gles3 ? FRAGMENT_SHADER_ES3 : FRAGMENT_SHADER);
+    program = gl.glCreateProgram();
+    gl.glAttachShader(program, v);
+    gl.glAttachShader(program, f);
+    gl.glLinkProgram(program);
+
+    positionAttrib = gl.glGetAttribLocation(program, "a_Position");
+    normalAttrib = gl.glGetAttribLocation(program, "a_Normal");
+    texCoordAttrib = gl.glGetAttribLocation(program, "a_TexCoord");
+    jointsAttrib = gl.glGetAttribLocation(program, "a_Joints");
+    weightsAttrib = gl.glGetAttribLocation(program, "a_Weights");
+    modelUniform = gles3 ? -1 : gl.glGetUniformLocation(program, "u_Model");
+    nodeUniform = gles3 ? gl.glGetUniformLocation(program, "u_Node") : -1;
+    viewUniform = gles3 ? -1 : gl.glGetUniformLocation(program, "u_View");
+    projUniform = gles3 ? -1 : gl.glGetUniformLocation(program, "u_Proj");
+    baseColorUniform = gl.glGetUniformLocation(program, "u_BaseColor");
+    emissiveUniform = gl.glGetUniformLocation(program, "u_Emissive");
+    materialUniform = gl.glGetUniformLocation(program, "u_Material");
+    jointsUniform = gl.glGetUniformLocation(program, "u_Joints");
+    skinnedUniform = gl.glGetUniformLocation(program, "u_Skinned");
+    maxJoints = gles3 ? MAX_JOINTS_ES3 : MAX_JOINTS;
+    state.useProgram(program);
+    gl.glUniform1i(gl.glGetUniformLocation(program, "u_BaseColorTexture"), 0);
+    if (gles3) {
+      backend.bindFrameUniforms(program);
+    }
+
+    ByteBuffer white = ByteBuffer.allocateDirect(4).order(ByteOrder.nativeOrder());
+    white.put(new byte[]{-1, -1, -1, -1}).position(0);
+    whiteTexture = createTexture(1, 1, white, false);
+    instanceData = ByteBuffer.allocateDirect(placements.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+  }
+
+  private int loadShader(int type, String code) {
+    int shader = gl.glCreateShader(type);
+    gl.glShaderSource(shader, code);
+    gl.glCompileShader(shader);
+    return shader;
+  }
+
+  // Uploads the model's geometry, replacing the previous model and its textures. Textures are
+  // added afterwards with setTexture; until then primitives draw with their flat base color.
+  // The model draws in its rest pose until setAnimator. Check canDraw first: a model this GPU
+  // cannot index is rejected rather than drawn as garbage.
+  void setModel(GlbModel newModel) {
+    if (newModel != null && !canDraw(newModel)) {
+      throw new IllegalArgumentException("Model needs 32-bit indices, which this GPU does not support");
+    }
+    release();
+    model = newModel;
+    animator = null;
+    if (model == null) return;
+
+    int[] buffers = new int[2];
+    gl.glGenBuffers(2, buffers, 0);
+    vertexBuffer = buffers[0];
+    indexBuffer = buffers[1];
+    // The element binding is VAO state, keep it out of whichever VAO is bound
+    state.bindVertexArray(0);
+    state.bindArrayBuffer(vertexBuffer);
+    gl.glBufferData(GlApi.GL_ARRAY_BUFFER, model.vertices.capacity(), model.vertices, GlApi.GL_STATIC_DRAW);
+    gl.glBindBuffer(GlApi.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+    gl.glBufferData(GlApi.GL_ELEMENT_ARRAY_BUFFER, model.indices.capacity(), model.indices, GlApi.GL_STATIC_DRAW);
+
+    textures = new int[model.images.size()];
+    if (!backend.isGles3()) return;
+
+    int primitiveCount = 0;
+    for (GlbModel.Mesh mesh : model.meshes) {
+      primitiveCount += mesh.primitives.size();
+    }
+    gl.glGenBuffers(1, buffers, 0);
+    instanceBuffer = buffers[0];
+    vertexArrays = new int[primitiveCount];
+    instanceOffsets = new int[primitiveCount];
+    int index = 0;
+    for (GlbModel.Mesh mesh : model.meshes) {
+      for (GlbModel.Primitive primitive : mesh.primitives) {
+        vertexArrays[index] = backend.createVertexArray();
+        state.bindVertexArray(vertexArrays[index]);
+        gl.glBindBuffer(GlApi.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+        setAttribPointers(primitive);
+        setInstancePointers(0);
+        for (int column = 0; column < 4; column++) {
+          state.enableVertexAttribArray(MODEL_ATTRIB_LOCATION + column);
+          gl.glVertexAttribDivisor(MODEL_ATTRIB_LOCATION + column, 1);
+        }
+        index++;
+      }
+    }
+    state.bindVertexArray(0);
+  }
+
+  // Poses the current model from `newAnimator`, which the caller updates before each draw();
+  // null draws the rest pose
+  void setAnimator(ModelAnimator newAnimator) {
+    animator = newAnimator;
+  }
+
+  // Points the bound VAO's placement matrix at the instance `first` of the instance buffer
+  private void setInstancePointers(int first) {
+    state.bindArrayBuffer(instanceBuffer);
+    for (int column = 0; column < 4; column++) {
+      gl.glVertexAttribPointer(MODEL_ATTRIB_LOCATION + column, 4, GlApi.GL_FLOAT, false, 16 * 4,
+          (first * 16 + column * 4) * 4);
+    }
+  }
+
+  private void setAttribPointers(GlbModel.Primitive primitive) {
+    state.bindArrayBuffer(vertexBuffer);
+    int base = primitive.vertexOffset;
+    gl.glVertexAttribPointer(positionAttrib, 3, GlApi.GL_FLOAT, false, GlbModel.VERTEX_STRIDE, base);
+    state.enableVertexAttribArray(positionAttrib);
+    gl.glVertexAttribPointer(normalAttrib, 3, GlApi.GL_FLOAT, false, GlbModel.VERTEX_STRIDE,
+        base + GlbModel.NORMAL_OFFSET);
+    state.enableVertexAttribArray(normalAttrib);
+    gl.glVertexAttribPointer(texCoordAttrib, 2, GlApi.GL_FLOAT, false, GlbModel.VERTEX_STRIDE,
+        base + GlbModel.TEXCOORD_OFFSET);
+    state.enableVertexAttribArray(texCoordAttrib);
+    gl.glVertexAttribPointer(jointsAttrib, 4, GlApi.GL_UNSIGNED_BYTE, false, GlbModel.VERTEX_STRIDE,
+        base + GlbModel.JOINTS_OFFSET);
+    state.enableVertexAttribArray(jointsAttrib);
+    gl.glVertexAttribPointer(weightsAttrib, 4, GlApi.GL_UNSIGNED_BYTE, true, GlbModel.VERTEX_STRIDE,
+        base + GlbModel.WEIGHTS_OFFSET);
+    state.enableVertexAttribArray(weightsAttrib);
+  }
+
+  // Uploads image `index` of the current model as tightly packed RGBA8 pixels
+  void setTexture(int index, int width, int height, ByteBuffer rgba) {
+    if (model == null || index < 0 || index >= textures.length || rgba == null || width <= 0 || height <= 0) {
+      return;
+    }
+    if (textures[index] != 0) {
+      state.deleteTexture(textures[index]);
+    }
+    // GLES 2 only mipmaps and repeats power of two textures
+    boolean powerOfTwo = (width & (width - 1)) == 0 && (height & (height - 1)) == 0;
+    textures[index] = createTexture(width, height, rgba, backend.isGles3() || powerOfTwo);
+  }
+
+  private int createTexture(int width, int height, ByteBuffer rgba, boolean mipmapped) {
+    int[] names = new int[1];
+    gl.glGenTextures(1, names, 0);
+    state.bindTexture(0, GlApi.GL_TEXTURE_2D, names[0]);
+    gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_MIN_FILTER,
+        mipmapped ? GlApi.GL_LINEAR_MIPMAP_LINEAR : GlApi.GL_LINEAR);
+    gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_MAG_FILTER, GlApi.GL_LINEAR);
+    int wrap = mipmapped ? GlApi.GL_REPEAT : GlApi.GL_CLAMP_TO_EDGE;
+    gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_WRAP_S, wrap);
+    gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_WRAP_T, wrap);
+    gl.glTexImage2D(GlApi.GL_TEXTURE_2D, 0, GlApi.GL_RGBA, width, height, 0, GlApi.GL_RGBA, GlApi.GL_UNSIGNED_BYTE,
+        rgba);
+    if (mipmapped) {
+      gl.glGenerateMipmap(GlApi.GL_TEXTURE_2D);
+    }
+    return names[0];
+  }
+
+  boolean hasModel() {
+    return model != null;
+  }
+
+  // Frees the current model's GL objects; the renderer itself stays usable
+  void release() {
+    for (int vertexArray : vertexArrays) {
+      backend.deleteVertexArray(vertexArray);
+    }
+    vertexArrays = new int[0];
+    instanceOffsets = new int[0];
+    if (instanceBuffer != 0) {
+      state.deleteBuffers(new int[]{instanceBuffer});
+      instanceBuffer = 0;
+    }
+    for (int texture : textures) {
+      if (texture != 0) state.deleteTexture(texture);
+    }
+    textures = new int[0];
+    if (vertexBuffer != 0) {
+      state.deleteBuffers(new int[]{vertexBuffer, indexBuffer});
+      vertexBuffer = 0;
+      indexBuffer = 0;
+    }
+    model = null;
+  }
+
+  void begin() {
+    placementCount = 0;
+  }
+
+  // Queues one copy of the model at the anchor's position, rotated in degrees as Z * Y * X and
+  // scaled uniformly
+  void add(float[] anchorModel, float rotationX, float rotationY, float rotationZ, float scale) {
+    if (placements.length < (placementCount + 1) * 16) {
+      float[] grown = new float[placements.length * 2];
+      System.arraycopy(placements, 0, grown, 0, placementCount * 16);
+      placements = grown;
+      placementLevels = Arrays.copyOf(placementLevels, placementLevels.length * 2);
+    }
+    setPlacement(placements, placementCount * 16, anchorModel, rotationX, rotationY, rotationZ, scale);
+    placementLevels[placementCount] = model == null ? 0 : selectLevel(placementCount * 16, scale);
+    placementCount++;
+  }
+
+  // Primitives with more than 65536 vertices use GL_UNSIGNED_INT indices, which GLES 2 only
+  // draws with GL_OES_element_index_uint
+  boolean canDraw(GlbModel candidate) {
+    if (backend.supportsUintIndices()) return true;
+    for (GlbModel.Mesh mesh : candidate.meshes) {
+      for (GlbModel.Primitive primitive : mesh.primitives) {
+        if (primitive.indexType == GlApi.GL_UNSIGNED_INT) return false;
+      }
+    }
+    return true;
+  }
+
+  // The model matrix add() draws a placement with, for code that has to match it such as picking:
+  // the full anchor pose, so a model on a wall stands out of the wall, then the user's rotation
+  // and scale in anchor space
+  static void setPlacement(float[] m, int offset, float[] anchorModel, float rotationX, float rotationY,
+                           float rotationZ, float scale) {
+    MatrixMath.setTranslateRotateScale(m, offset, 0f, 0f, 0f, rotationX, rotationY, rotationZ, scale, scale, scale);
+    MatrixMath.multiplyMM(m, offset, anchorModel, 0, m, offset);
+  }
+
+  // From the projected size of the model's bounding sphere, with the camera from
+  // GlBackend.beginFrame
+  private int selectLevel(int offset, float scale) {
+    float cx = (model.min[0] + model.max[0]) * 0.5f;
+    float cy = (model.min[1] + model.max[1]) * 0.5f;
+    float cz = (model.min[2] + model.max[2]) * 0.5f;
+    float dx = model.max[0] - model.min[0];
+    float dy = model.max[1] - model.min[1];
+    float dz = model.max[2] - model.min[2];
+    float radius = 0.5f * (float) Math.sqrt(dx * dx + dy * dy + dz * dz) * Math.abs(scale);
+    float[] m = placements;
+    float wx = m[offset] * cx + m[offset + 4] * cy + m[offset + 8] * cz + m[offset + 12];
+    float wy = m[offset + 1] * cx + m[offset + 5] * cy + m[offset + 9] * cz + m[offset + 13];
+    float wz = m[offset + 2] * cx + m[offset + 6] * cy + m[offset + 10] * cz + m[offset + 14];
+    float[] view = backend.getView();
+    float distance = -(view[2] * wx + view[6] * wy + view[10] * wz + view[14]);
+    if (distance <= radius) return 0;
+    // proj[5] is cot(fovY / 2), so this is the sphere's share of the viewport height
+    float fraction = radius * backend.getProj()[5] / distance;
+    int level = 0;
+    while (level < LOD_SCREEN_FRACTIONS.length && fraction < LOD_SCREEN_FRACTIONS[level]) {
+      level++;
+    }
+    return level;
+  }
+
+  // Draws everything queued since begin() with the matrices from GlBackend.beginFrame
+  void draw() {
+    if (model == null || placementCount == 0) return;
+
+    state.useProgram(program);
+    if (!backend.isGles3()) {
+      gl.glUniformMatrix4fv(viewUniform, 1, false, backend.getView(), 0);
+      gl.glUniformMatrix4fv(projUniform, 1, false, backend.getProj(), 0);
+      gl.glBindBuffer(GlApi.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+    }
+    if (vertexArrays.length > 0) {
+      uploadInstances();
+    }
+    boundSkin = -1;
+    gl.glUniform1f(skinnedUniform, 0f);
+    state.setDepthTest(true);
+    state.depthMask(true);
+    state.setBlend(false);
+    drawPass(false);
+
+    state.depthMask(false);
+    state.setBlend(true);
+    state.blendFunc(GlApi.GL_SRC_ALPHA, GlApi.GL_ONE_MINUS_SRC_ALPHA);
+    drawPass(true);
+
+    if (vertexArrays.length == 0) {
+      state.disableVertexAttribArray(positionAttrib);
+      state.disableVertexAttribArray(normalAttrib);
+      state.disableVertexAttribArray(texCoordAttrib);
+      state.disableVertexAttribArray(jointsAttrib);
+      state.disableVertexAttribArray(weightsAttrib);
+    }
+  }
+
+  // Copies the placement matrices into the instance buffer ordered by level, so the placements
+  // at each level are one contiguous run of instances
+  private void uploadInstances() {
+    int floats = placementCount * 16;
+    if (instanceData.capacity() < floats) {
+      instanceData = ByteBuffer.allocateDirect(placements.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+    instanceData.clear();
+    int start = 0;
+    for (int level = 0; level < GlbModel.LOD_LEVELS; level++) {
+      levelStarts[level] = start;
+      for (int i = 0; i < placementCount; i++) {
+        if (placementLevels[i] == level) {
+          instanceData.put(placements, i * 16, 16);
+        }
+      }
+      levelSizes[level] = instanceData.position() / 16 - start;
+      start += levelSizes[level];
+    }
+    instanceData.position(0);
+    state.bindArrayBuffer(instanceBuffer);
+    gl.glBufferData(GlApi.GL_ARRAY_BUFFER, floats * 4, instanceData, GlApi.GL_STREAM_DRAW);
+  }
+
+  private void drawPass(boolean blended) {
+    int index = 0;
+    for (GlbModel.Mesh mesh : model.meshes) {
+      for (GlbModel.Primitive primitive : mesh.primitives) {
+        if (primitive.material.blend == blended && primitive.indexCount > 0) {
+          drawPrimitive(mesh, primitive, index);
+        }
+        index++;
+      }
+    }
+  }
+
+  private void drawPrimitive(GlbModel.Mesh mesh, GlbModel.Primitive primitive, int index) {
+    GlbModel.Material material = primitive.material;
+    int image = material.baseColorImage;
+    int texture = image >= 0 && image < textures.length && textures[image] != 0 ? textures[image] : whiteTexture;
+    state.bindTexture(0, GlApi.GL_TEXTURE_2D, texture);
+    gl.glUniform4f(baseColorUniform, material.baseColor[0], material.baseColor[1], material.baseColor[2],
+        material.baseColor[3]);
+    gl.glUniform4f(emissiveUniform, material.emissive[0], material.emissive[1], material.emissive[2], 0f);
+    gl.glUniform4f(materialUniform, material.metallic, material.roughness, 0f, 0f);
+    if (index < vertexArrays.length) {
+      state.bindVertexArray(vertexArrays[index]);
+      drawInstanced(mesh, primitive, index);
+      return;
+    }
+    setAttribPointers(primitive);
+
+    for (GlbModel.Node node : model.nodes) {
+      if (node.mesh != mesh) continue;
+      float[] matrix = bindNode(node);
+      for (int i = 0; i < placementCount; i++) {
+        MatrixMath.multiplyMM(modelMatrix, 0, placements, i * 16, matrix, 0);
+        gl.glUniformMatrix4fv(modelUniform, 1, false, modelMatrix, 0);
+        int level = placementLevels[i];
+        gl.glDrawElements(GlApi.GL_TRIANGLES, primitive.levelCount(level), primitive.indexType,
+            primitive.levelOffset(level));
+      }
+    }
+  }
+
+  private void drawInstanced(GlbModel.Mesh mesh, GlbModel.Primitive primitive, int index) {
+    for (GlbModel.Node node : model.nodes) {
+      if (node.mesh != mesh) continue;
+      gl.glUniformMatrix4fv(nodeUniform, 1, false, bindNode(node), 0);
+      for (int level = 0; level < GlbModel.LOD_LEVELS; level++) {
+        if (levelSizes[level] == 0) continue;
+        if (instanceOffsets[index] != levelStarts[level]) {
+          setInstancePointers(levelStarts[level]);
+          instanceOffsets[index] = levelStarts[level];
+        }
+        gl.glDrawElementsInstanced(GlApi.GL_TRIANGLES, primitive.levelCount(level), primitive.indexType,
+            primitive.levelOffset(level), levelSizes[level]);
+      }
+    }
+  }
+
+  // Uploads the joint palette when `node` is skinned and returns its model space matrix, posed
+  // by the animator when it moves the node
+  private float[] bindNode(GlbModel.Node node) {
+    int skin = -1;
+    if (animator != null && node.skin >= 0
+        && animator.getPalette(node.skin).length <= maxJoints * ModelAnimator.PALETTE_STRIDE) {
+      skin = node.skin;
+    }
+    if (skin != boundSkin) {
+      gl.glUniform1f(skinnedUniform, skin >= 0 ? 1f : 0f);
+      if (skin >= 0) {
+        float[] palette = animator.getPalette(skin);
+        gl.glUniform4fv(jointsUniform, palette.length / 4, palette, 0);
+      }
+      boundSkin = skin;
+    }
+    if (animator == null || node.rigNode < 0 || node.skin >= 0) return node.matrix;
+    System.arraycopy(animator.getWorldMatrices(), node.rigNode * 16, nodeMatrix, 0, 16);
+    return nodeMatrix;
+  }
+}
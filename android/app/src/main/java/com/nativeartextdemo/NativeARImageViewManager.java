@@ -5,16 +5,11 @@ import android.app.Activity;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.SurfaceTexture;
-import android.opengl.GLES11Ext;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
-import android.opengl.GLUtils;
-import android.opengl.Matrix;
 import android.os.AsyncTask;
-import android.view.Display;
+import android.os.SystemClock;
 import android.view.MotionEvent;
-import android.view.Surface;
-import android.view.WindowManager;
 import androidx.annotation.NonNull;
 import android.util.Log;
 import androidx.annotation.Nullable;
@@ -24,19 +19,14 @@ import com.facebook.react.uimanager.ThemedReactContext;
 import com.facebook.react.uimanager.annotations.ReactProp;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.Arguments;
 
-import com.google.ar.core.Anchor;
 import com.google.ar.core.ArCoreApk;
-import com.google.ar.core.Camera;
+import com.google.ar.core.CameraConfig;
 import com.google.ar.core.Config;
-import com.google.ar.core.Frame;
-import com.google.ar.core.HitResult;
-import com.google.ar.core.Plane;
-import com.google.ar.core.Point;
 import com.google.ar.core.Session;
-import com.google.ar.core.Trackable;
-import com.google.ar.core.TrackingState;
 import com.google.ar.core.exceptions.CameraNotAvailableException;
 import com.google.ar.core.exceptions.UnavailableException;
 
@@ -44,11 +34,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
@@ -83,6 +71,113 @@ public class NativeARImageViewManager extends SimpleViewManager<GLSurfaceView> {
     }
   }
 
+  // Opaque by default: the camera image covers the whole view
+  @ReactProp(name = "opaqueSurface", defaultBoolean = true)
+  public void setOpaqueSurface(GLSurfaceView view, boolean opaque) {
+    if (view instanceof ARImageView) {
+      ((ARImageView) view).eglSetup.setOpaque(opaque);
+    }
+  }
+
+  @ReactProp(name = "msaaSamples", defaultInt = 0)
+  public void setMsaaSamples(GLSurfaceView view, int samples) {
+    if (view instanceof ARImageView) {
+      ((ARImageView) view).eglSetup.setMsaaSamples(samples);
+    }
+  }
+
+  @ReactProp(name = "preferGles3", defaultBoolean = true)
+  public void setPreferGles3(GLSurfaceView view, boolean preferGles3) {
+    if (view instanceof ARImageView) {
+      ((ARImageView) view).eglSetup.setPreferGles3(preferGles3);
+    }
+  }
+
+  @ReactProp(name = "autoDisablePlaneFinding", defaultBoolean = true)
+  public void setAutoDisablePlaneFinding(GLSurfaceView view, boolean enabled) {
+    if (view instanceof ARImageView) {
+      ((ARImageView) view).planeFinding.setAutoDisable(enabled);
+    }
+  }
+
+  // Seconds without touches before plane finding is turned off, 0 = only after placement
+  @ReactProp(name = "planeFindingIdleTimeout", defaultFloat = 0f)
+  public void setPlaneFindingIdleTimeout(GLSurfaceView view, float seconds) {
+    if (view instanceof ARImageView) {
+      ((ARImageView) view).planeFinding.setIdleTimeoutMs((long) (seconds * 1000f));
+    }
+  }
+
+  // Milliseconds between METRICS events, 0 = off
+  @ReactProp(name = "metricsInterval", defaultInt = 0)
+  public void setMetricsInterval(GLSurfaceView view, int intervalMs) {
+    if (view instanceof ARImageView) {
+      ((ARImageView) view).metrics.setIntervalMs(intervalMs);
+    }
+  }
+
+  @ReactProp(name = "sessionConfig")
+  public void setSessionConfig(GLSurfaceView view, @Nullable ReadableMap sessionConfig) {
+    if (view instanceof ARImageView) {
+      ((ARImageView) view).setSessionConfig(sessionConfig);
+    }
+  }
+
+  @ReactProp(name = "instantPlacement")
+  public void setInstantPlacement(GLSurfaceView view, boolean enabled) {
+    if (view instanceof ARImageView) {
+      ((ARImageView) view).setInstantPlacementEnabled(enabled);
+    }
+  }
+
+  @ReactProp(name = "anchorGroupRadius", defaultFloat = AnchorGroupManager.DEFAULT_GROUP_RADIUS)
+  public void setAnchorGroupRadius(GLSurfaceView view, float radius) {
+    if (view instanceof ARImageView) {
+      ((ARImageView) view).frameLoop.getAnchorGroups().setGroupRadius(radius);
+    }
+  }
+
+  @ReactProp(name = "maxAnchors", defaultInt = AnchorBudget.DEFAULT_MAX_ANCHORS)
+  public void setMaxAnchors(GLSurfaceView view, int maxAnchors) {
+    if (view instanceof ARImageView) {
+      ((ARImageView) view).frameLoop.getAnchorBudget().setMaxAnchors(maxAnchors);
+    }
+  }
+
+  @ReactProp(name = "anchorEvictionPolicy")
+  public void setAnchorEvictionPolicy(GLSurfaceView view, @Nullable String policy) {
+    if (view instanceof ARImageView) {
+      ((ARImageView) view).frameLoop.getAnchorBudget().setPolicy(AnchorBudget.Policy.fromString(policy));
+    }
+  }
+
+  @Override
+  public void receiveCommand(@NonNull GLSurfaceView root, String commandId, @Nullable ReadableArray args) {
+    if (!(root instanceof ARImageView)) return;
+    ARImageView view = (ARImageView) root;
+    switch (commandId) {
+      case "removeAnchor":
+        if (args != null && args.size() > 0) {
+          view.removeAnchor(args.getInt(0));
+        }
+        break;
+      case "clearAnchors":
+        view.clearAnchors();
+        break;
+      case "enablePlaneFinding":
+        view.enablePlaneFinding();
+        break;
+    }
+  }
+
+  @Override
+  protected void onAfterUpdateTransaction(@NonNull GLSurfaceView view) {
+    super.onAfterUpdateTransaction(view);
+    if (view instanceof ARImageView) {
+      ((ARImageView) view).startRendering();
+    }
+  }
+
   @Override
   public void onDropViewInstance(@NonNull GLSurfaceView view) {
     if (view instanceof ARImageView) {
@@ -93,116 +188,72 @@ public class NativeARImageViewManager extends SimpleViewManager<GLSurfaceView> {
 
   private static class ARImageView extends GLSurfaceView implements GLSurfaceView.Renderer {
     private Session arSession;
+    // What the frame loop reads; ARCore-backed, the Session itself is only used for configuration
+    private ArSession arFrames;
     private String imageSource = null;
     private String imageUrl = null;
     private Bitmap currentBitmap = null;
-    private final List<Anchor> anchors = new ArrayList<>();
-    private final List<float[]> anchorRotations = new ArrayList<>();
+    private final ImageFrameLoop frameLoop = new ImageFrameLoop(this::emitAREvent, this::emitPlacementTiming);
     private boolean sessionInitialized = false;
     private Exception initializationError = null;
-    private int cameraTextureId = -1;
     private BackgroundRenderer backgroundRenderer;
+    private final EglSetup eglSetup = new EglSetup(16, 0);
+    private boolean rendererStarted = false;
+    private final List<Runnable> pendingGlEvents = new ArrayList<>();
     private boolean installRequested = false;
-    private int viewportWidth = 0;
-    private int viewportHeight = 0;
-    private ImageBillboardRenderer imageRenderer;
+    private final DisplayRotationHelper displayRotationHelper;
+    private GlBackend glBackend;
+    private BillboardRenderer imageRenderer;
     private PlaneRenderer planeRenderer;
-    private volatile boolean pendingTap = false;
-    private volatile float pendingTapX = 0f;
-    private volatile float pendingTapY = 0f;
-    private volatile boolean dragging = false;
-    private volatile float dragX = 0f;
-    private volatile float dragY = 0f;
-    private volatile boolean rotating = false;
-    private volatile float currentRotationX = 0f;
-    private volatile float currentRotationY = 0f;
-    private volatile float currentRotationZ = 0f;
-    private volatile float lastRotationAngle = 0f;
-    private volatile float lastTwoFingerX = 0f;
-    private volatile float lastTwoFingerY = 0f;
+    private volatile SessionConfigProfile sessionProfile = SessionConfigProfile.DEFAULT;
+    private boolean cameraConfigPrefersDepth = false;
+    private final PlaneFindingPolicy planeFinding = new PlaneFindingPolicy();
+    private final MetricsReporter metrics = new MetricsReporter();
 
     // State tracking for loading feedback
     private boolean arSessionReady = false;
     private boolean imageLoaded = false;
-    private boolean planeDetected = false;
-    private boolean hasEmittedPlaneDetection = false;
     private ThemedReactContext reactContext;
 
     public ARImageView(Context context) {
       super(context);
+      displayRotationHelper = new DisplayRotationHelper(context);
       this.reactContext = (ThemedReactContext) context;
       
-      setEGLContextClientVersion(2);
-      setEGLConfigChooser(8, 8, 8, 8, 16, 0);
-      getHolder().setFormat(android.graphics.PixelFormat.TRANSLUCENT);
       setPreserveEGLContextOnPause(true);
-      setRenderer(this);
-      setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+      // setRenderer waits for the EGL props, see startRendering()
 
       setOnTouchListener((v, event) -> {
-        int action = event.getActionMasked();
-        int pointerCount = event.getPointerCount();
-        
-        switch (action) {
+        PlacementGestures gestures = frameLoop.getGestures();
+        switch (event.getActionMasked()) {
           case MotionEvent.ACTION_DOWN:
-            pendingTapX = event.getX();
-            pendingTapY = event.getY();
-            pendingTap = true;
-            dragging = true;
-            dragX = event.getX();
-            dragY = event.getY();
-            rotating = false;
+            planeFinding.onTouch(event.getEventTime());
+            gestures.down(event.getX(), event.getY(), event.getEventTime());
             break;
             
           case MotionEvent.ACTION_POINTER_DOWN:
-            if (pointerCount == 2) {
-              rotating = true;
-              dragging = false;
-              pendingTap = false;
-              lastRotationAngle = getRotationAngle(event);
-              lastTwoFingerX = (event.getX(0) + event.getX(1)) / 2f;
-              lastTwoFingerY = (event.getY(0) + event.getY(1)) / 2f;
+            if (event.getPointerCount() == 2) {
+              gestures.startRotation(event.getX(0), event.getY(0), event.getX(1), event.getY(1));
             }
             break;
             
           case MotionEvent.ACTION_MOVE:
-            if (pointerCount == 2 && rotating) {
-              float currentTwoFingerX = (event.getX(0) + event.getX(1)) / 2f;
-              float currentTwoFingerY = (event.getY(0) + event.getY(1)) / 2f;
-              
-              float deltaX = currentTwoFingerX - lastTwoFingerX;
-              float deltaY = currentTwoFingerY - lastTwoFingerY;
-              
-              float currentAngle = getRotationAngle(event);
-              float rotationDelta = currentAngle - lastRotationAngle;
-              
-              if (rotationDelta > 180) rotationDelta -= 360;
-              if (rotationDelta < -180) rotationDelta += 360;
-              
-              currentRotationZ += rotationDelta;
-              currentRotationX += deltaY * 0.5f;
-              currentRotationY += deltaX * 0.5f;
-              
-              lastRotationAngle = currentAngle;
-              lastTwoFingerX = currentTwoFingerX;
-              lastTwoFingerY = currentTwoFingerY;
-            } else if (pointerCount == 1 && !rotating) {
-              dragging = true;
-              dragX = event.getX();
-              dragY = event.getY();
+            if (event.getPointerCount() == 2) {
+              gestures.moveRotation(event.getX(0), event.getY(0), event.getX(1), event.getY(1));
+            } else if (event.getPointerCount() == 1) {
+              gestures.moveDrag(event.getX(), event.getY());
             }
             break;
             
           case MotionEvent.ACTION_POINTER_UP:
-            if (pointerCount == 2) {
-              rotating = false;
+            if (event.getPointerCount() == 2) {
+              gestures.endRotation();
             }
             break;
             
           case MotionEvent.ACTION_UP:
           case MotionEvent.ACTION_CANCEL:
-            dragging = false;
-            rotating = false;
+            gestures.up();
             break;
         }
         return true;
@@ -211,13 +262,34 @@ public class NativeARImageViewManager extends SimpleViewManager<GLSurfaceView> {
 
     // Event emitter for React Native
     private void emitAREvent(String eventType, String message) {
+      emitAREvent(eventType, message, -1);
+    }
+
+    private void emitAREvent(String eventType, String message, int anchorId) {
+      emitAREvent(eventType, message, anchorId, null);
+    }
+
+    private void emitPlacementTiming(String eventType, int anchorId, long latencyMs) {
+      WritableMap timing = Arguments.createMap();
+      timing.putDouble("latencyMs", latencyMs);
+      String label = "PLACEMENT_PROMOTED".equals(eventType) ? "promoted to full tracking" : "visible";
+      emitAREvent(eventType, "Image " + label + " after " + latencyMs + " ms", anchorId, timing);
+    }
+
+    private void emitAREvent(String eventType, String message, int anchorId, @Nullable WritableMap extras) {
       if (reactContext != null) {
         WritableMap params = Arguments.createMap();
         params.putString("type", eventType);
         params.putString("message", message);
         params.putBoolean("arSessionReady", arSessionReady);
         params.putBoolean("imageLoaded", imageLoaded);
-        params.putBoolean("planeDetected", planeDetected);
+        params.putBoolean("planeDetected", frameLoop.isPlaneDetected());
+        if (anchorId >= 0) {
+          params.putInt("anchorId", anchorId);
+        }
+        if (extras != null) {
+          params.merge(extras);
+        }
         
         reactContext
           .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
@@ -362,8 +434,7 @@ public class NativeARImageViewManager extends SimpleViewManager<GLSurfaceView> {
               currentBitmap.getWidth() + "x" + currentBitmap.getHeight());
         
         if (imageRenderer != null) {
-          imageRenderer.updateBitmap(currentBitmap);
-          imageLoaded = true;
+          uploadBitmap(currentBitmap);
           emitAREvent("IMAGE_LOADED", "Image loaded successfully");
           Log.d("ARImageView", "Image loaded into renderer successfully");
         } else {
@@ -461,8 +532,7 @@ public class NativeARImageViewManager extends SimpleViewManager<GLSurfaceView> {
           
           queueEvent(() -> {
             if (imageRenderer != null) {
-              imageRenderer.updateBitmap(currentBitmap);
-              imageLoaded = true;
+              uploadBitmap(currentBitmap);
               emitAREvent("IMAGE_LOADED", "Image downloaded and loaded");
               Log.d("ARImageView", "Image loaded into renderer successfully");
             } else {
@@ -478,64 +548,137 @@ public class NativeARImageViewManager extends SimpleViewManager<GLSurfaceView> {
       }).start();
     }
 
-    private float getRotationAngle(MotionEvent event) {
-      if (event.getPointerCount() < 2) return 0f;
-      float deltaX = event.getX(1) - event.getX(0);
-      float deltaY = event.getY(1) - event.getY(0);
-      return (float) Math.toDegrees(Math.atan2(deltaY, deltaX));
+    public void setSessionConfig(@Nullable ReadableMap sessionConfig) {
+      sessionProfile = SessionConfigProfile.fromReadableMap(sessionConfig);
+      queueEvent(this::reconfigureSession);
     }
 
-    private void handleTapOnGlThread(Frame frame) {
-      if (frame == null) return;
-      List<HitResult> hitResults = frame.hitTest(pendingTapX, pendingTapY);
-      for (HitResult hit : hitResults) {
-        Trackable trackable = hit.getTrackable();
-        if (trackable instanceof Plane && ((Plane) trackable).isPoseInPolygon(hit.getHitPose())) {
-          Anchor anchor = hit.createAnchor();
-          anchors.add(anchor);
-          anchorRotations.add(new float[]{0f, 0f, 0f});
-          currentRotationX = 0f;
-          currentRotationY = 0f;
-          currentRotationZ = 0f;
-          break;
-        } else if (trackable instanceof Point && ((Point) trackable).getOrientationMode() == Point.OrientationMode.ESTIMATED_SURFACE_NORMAL) {
-          Anchor anchor = hit.createAnchor();
-          anchors.add(anchor);
-          anchorRotations.add(new float[]{0f, 0f, 0f});
-          currentRotationX = 0f;
-          currentRotationY = 0f;
-          currentRotationZ = 0f;
-          break;
+    // Profile changes apply to the running session, it is never recreated
+    private void reconfigureSession() {
+      if (arSession == null || !sessionInitialized) return;
+      if (wantsDepthSensor() != cameraConfigPrefersDepth) {
+        // The camera config can only change while the session is paused
+        try {
+          arSession.pause();
+          selectCameraConfig();
+          configureSession();
+          arSession.resume();
+        } catch (CameraNotAvailableException e) {
+          Log.e("ARImageView", "Camera unavailable while changing camera config", e);
         }
+      } else {
+        configureSession();
       }
+      emitAREvent("SESSION_CONFIGURED", "Session profile " + sessionProfile.describe());
     }
 
-    private void handleDragOnGlThread(Frame frame) {
-      if (frame == null || anchors.isEmpty()) return;
-      List<HitResult> hitResults = frame.hitTest(dragX, dragY);
-      for (HitResult hit : hitResults) {
-        Trackable trackable = hit.getTrackable();
-        if ((trackable instanceof Plane && ((Plane) trackable).isPoseInPolygon(hit.getHitPose()))
-            || (trackable instanceof Point && ((Point) trackable).getOrientationMode() == Point.OrientationMode.ESTIMATED_SURFACE_NORMAL)) {
-          int lastIndex = anchors.size() - 1;
-          Anchor old = anchors.get(lastIndex);
-          try { old.detach(); } catch (Exception ignored) {}
-          Anchor anchor = hit.createAnchor();
-          anchors.set(lastIndex, anchor);
-          if (lastIndex < anchorRotations.size()) {
-            anchorRotations.set(lastIndex, new float[]{currentRotationX, currentRotationY, currentRotationZ});
-          }
-          break;
+    private boolean wantsDepthSensor() {
+      return sessionProfile.depthMode != Config.DepthMode.DISABLED;
+    }
+
+    // 30 fps, smallest acceptable CPU image, depth sensor only if the profile uses depth
+    private void selectCameraConfig() {
+      cameraConfigPrefersDepth = wantsDepthSensor();
+      CameraConfig selected = SessionCameraConfig.selectAndApply(arSession, cameraConfigPrefersDepth);
+      if (selected != null) {
+        emitAREvent("CAMERA_CONFIG_SELECTED", SessionCameraConfig.describe(selected));
+      }
+    }
+
+    // Builds the whole Config from the profile and props so one configure() call applies everything
+    private void configureSession() {
+      Config config = new Config(arSession);
+      sessionProfile.applyTo(arSession, config, Config.PlaneFindingMode.HORIZONTAL);
+      if (planeFinding.isSuspended()) {
+        config.setPlaneFindingMode(Config.PlaneFindingMode.DISABLED);
+      }
+      config.setInstantPlacementMode(frameLoop.isInstantPlacementEnabled()
+          ? Config.InstantPlacementMode.LOCAL_Y_UP
+          : Config.InstantPlacementMode.DISABLED);
+      arSession.configure(config);
+    }
+
+    // Called once the first batch of props is applied. The EGL options cannot change after
+    // the GL thread has started, so later changes to them are ignored.
+    void startRendering() {
+      if (rendererStarted) return;
+      eglSetup.applyTo(this);
+      setRenderer(this);
+      setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+      synchronized (pendingGlEvents) {
+        rendererStarted = true;
+        for (Runnable event : pendingGlEvents) {
+          super.queueEvent(event);
         }
+        pendingGlEvents.clear();
       }
     }
 
-    private void handleRotationOnGlThread() {
-      if (anchors.isEmpty()) return;
-      int lastIndex = anchors.size() - 1;
-      if (lastIndex < anchorRotations.size()) {
-        anchorRotations.set(lastIndex, new float[]{currentRotationX, currentRotationY, currentRotationZ});
+    // Props may queue GL work before startRendering(); hold it until the GL thread exists
+    @Override
+    public void queueEvent(Runnable event) {
+      synchronized (pendingGlEvents) {
+        if (!rendererStarted) {
+          pendingGlEvents.add(event);
+          return;
+        }
       }
+      super.queueEvent(event);
+    }
+
+    public void enablePlaneFinding() {
+      planeFinding.requestResume(SystemClock.uptimeMillis());
+    }
+
+    private void reportMetrics(long nowMs, float updateMs) {
+      if (!metrics.isEnabled()) return;
+      metrics.put("sessionUpdateMs", updateMs);
+      metrics.put("planeFindingEnabled", planeFinding.isSuspended() ? 0 : 1);
+      metrics.put("planeFindingActiveUpdateMs", planeFinding.getActiveUpdateMs());
+      metrics.put("planeFindingSuspendedUpdateMs", planeFinding.getSuspendedUpdateMs());
+      metrics.put("planeFindingCpuSavedMs", planeFinding.getCpuSavedMs());
+      if (glBackend != null) {
+        metrics.put("glCallsIssued", glBackend.getState().getLastFrameIssued());
+        metrics.put("glCallsSkipped", glBackend.getState().getLastFrameSkipped());
+      }
+      Map<String, Double> snapshot = metrics.poll(nowMs);
+      if (snapshot == null) return;
+
+      WritableMap values = Arguments.createMap();
+      for (Map.Entry<String, Double> entry : snapshot.entrySet()) {
+        values.putDouble(entry.getKey(), entry.getValue());
+      }
+      WritableMap extras = Arguments.createMap();
+      extras.putMap("metrics", values);
+      emitAREvent("METRICS", "Performance metrics", -1, extras);
+    }
+
+    public void setInstantPlacementEnabled(boolean enabled) {
+      if (frameLoop.isInstantPlacementEnabled() == enabled) return;
+      frameLoop.setInstantPlacementEnabled(enabled);
+      queueEvent(this::reconfigureSession);
+    }
+
+    public void removeAnchor(int anchorId) {
+      queueEvent(() -> {
+        if (frameLoop.removeAnchor(anchorId)) {
+          emitAREvent("ANCHOR_REMOVED", "Image removed", anchorId);
+        }
+      });
+    }
+
+    public void clearAnchors() {
+      queueEvent(() -> {
+        frameLoop.clearAnchors();
+        emitAREvent("ANCHORS_CLEARED", "All images removed");
+      });
+    }
+
+    // GL thread, with imageRenderer created
+    private void uploadBitmap(Bitmap bitmap) {
+      imageRenderer.updateTexture(bitmap.getWidth(), bitmap.getHeight(), AndroidGl.rgbaPixels(bitmap));
+      imageLoaded = true;
+      frameLoop.setImageReady(true);
     }
 
     @Override
@@ -547,30 +690,22 @@ public class NativeARImageViewManager extends SimpleViewManager<GLSurfaceView> {
         return;
       }
       
-      int[] textures = new int[1];
-      GLES20.glGenTextures(1, textures, 0);
-      cameraTextureId = textures[0];
-      GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, cameraTextureId);
-      GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
-      GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
-      GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
-      GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-      
-      backgroundRenderer = new BackgroundRenderer();
-      imageRenderer = new ImageBillboardRenderer();
-      planeRenderer = new PlaneRenderer();
+      glBackend = new GlBackend(new AndroidGl(), eglSetup.getGlesVersion());
+      backgroundRenderer = new BackgroundRenderer(glBackend);
+      imageRenderer = new BillboardRenderer(glBackend);
+      planeRenderer = new PlaneRenderer(glBackend);
+      frameLoop.attach(glBackend, backgroundRenderer, imageRenderer, planeRenderer);
       
       Log.d("ARImageView", "Renderers initialized");
       
       if (arSession != null && sessionInitialized) {
-        arSession.setCameraTextureName(cameraTextureId);
+        backgroundRenderer.attachTo(arFrames);
       }
       
       // Check if bitmap was loaded before renderer was ready
       if (currentBitmap != null) {
         Log.d("ARImageView", "Applying pre-loaded bitmap to renderer");
-        imageRenderer.updateBitmap(currentBitmap);
-        imageLoaded = true;
+        uploadBitmap(currentBitmap);
         emitAREvent("IMAGE_LOADED", "Image loaded successfully");
       }
       // Otherwise, load image if source is set
@@ -586,92 +721,38 @@ public class NativeARImageViewManager extends SimpleViewManager<GLSurfaceView> {
     @Override
     public void onSurfaceChanged(GL10 gl, int width, int height) {
       GLES20.glViewport(0, 0, width, height);
-      viewportWidth = width;
-      viewportHeight = height;
-      if (arSession != null) {
-        arSession.setDisplayGeometry(getSurfaceRotation(), width, height);
-      }
+      frameLoop.setViewport(width, height);
+      displayRotationHelper.onSurfaceChanged(width, height);
     }
 
     @Override
     public void onDrawFrame(GL10 gl) {
-      GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+      if (glBackend != null) {
+        glBackend.clearFrame();
+      } else {
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+      }
       
-      if (arSession == null || !sessionInitialized || initializationError != null || cameraTextureId == -1) {
+      if (arSession == null || !sessionInitialized || initializationError != null || backgroundRenderer == null) {
         return;
       }
       
       try {
-        Frame frame = arSession.update();
-        Camera camera = frame.getCamera();
-        arSession.setDisplayGeometry(getSurfaceRotation(), viewportWidth, viewportHeight);
-
-        // Check for plane detection
-        boolean planesFoundThisFrame = false;
-        for (Plane plane : frame.getUpdatedTrackables(Plane.class)) {
-          if (plane.getTrackingState() == TrackingState.TRACKING) {
-            planesFoundThisFrame = true;
-            if (!hasEmittedPlaneDetection) {
-              planeDetected = true;
-              hasEmittedPlaneDetection = true;
-              emitAREvent("PLANE_DETECTED", "Surface detected - tap to place image");
-            }
-            break;
-          }
-        }
-
-        // Handle touch interactions
-        if (pendingTap && camera.getTrackingState() == TrackingState.TRACKING) {
-          if (!imageLoaded) {
-            emitAREvent("PLACEMENT_BLOCKED", "Image still loading, please wait");
-          } else if (!planeDetected) {
-            emitAREvent("PLACEMENT_BLOCKED", "No surface detected, keep scanning");
-          } else {
-            handleTapOnGlThread(frame);
-            emitAREvent("IMAGE_PLACED", "Image placed successfully");
-          }
-          pendingTap = false;
+        displayRotationHelper.updateSessionIfNeeded(arSession);
+        long updateStartNs = System.nanoTime();
+        ArSession.Frame frame = arFrames.update();
+        float updateMs = (System.nanoTime() - updateStartNs) / 1_000_000f;
+        planeFinding.recordUpdateTime(updateMs);
+
+        long frameTimeMs = SystemClock.uptimeMillis();
+        if (planeFinding.update(frameTimeMs, frameLoop.getAnchorCount())) {
+          configureSession();
+          emitAREvent(planeFinding.isSuspended() ? "PLANE_FINDING_DISABLED" : "PLANE_FINDING_ENABLED",
+              planeFinding.isSuspended() ? "Plane finding paused" : "Plane finding resumed", -1);
         }
-        
-        if (dragging && camera.getTrackingState() == TrackingState.TRACKING) {
-          handleDragOnGlThread(frame);
-        }
-        if (rotating && camera.getTrackingState() == TrackingState.TRACKING) {
-          handleRotationOnGlThread();
-        }
-        
-        // Render camera background
-        if (backgroundRenderer != null && cameraTextureId != -1) {
-          backgroundRenderer.draw(frame, cameraTextureId);
-        }
-        
-        if (camera.getTrackingState() == TrackingState.TRACKING) {
-          float[] proj = new float[16];
-          float[] view = new float[16];
-          camera.getProjectionMatrix(proj, 0, 0.1f, 100.0f);
-          camera.getViewMatrix(view, 0);
+        reportMetrics(frameTimeMs, updateMs);
 
-          // Draw detected planes (only before first placement)
-          if (planeRenderer != null && anchors.isEmpty()) {
-            for (Plane plane : frame.getUpdatedTrackables(Plane.class)) {
-              if (plane.getTrackingState() == TrackingState.TRACKING && plane.getSubsumedBy() == null) {
-                planeRenderer.drawPlane(plane, view, proj);
-              }
-            }
-          }
-
-          // Draw placed images
-          for (int i = 0; i < anchors.size(); i++) {
-            Anchor anchor = anchors.get(i);
-            if (anchor.getTrackingState() != TrackingState.TRACKING) continue;
-            float[] model = new float[16];
-            anchor.getPose().toMatrix(model, 0);
-            float[] rotations = i < anchorRotations.size() ? anchorRotations.get(i) : new float[]{0f, 0f, 0f};
-            if (imageRenderer != null && currentBitmap != null) {
-              imageRenderer.drawBillboard(model, view, proj, rotations);
-            }
-          }
-        }
+        frameLoop.draw(frame, frameTimeMs);
       } catch (CameraNotAvailableException e) {
         e.printStackTrace();
       } catch (IllegalStateException e) {
@@ -682,6 +763,7 @@ public class NativeARImageViewManager extends SimpleViewManager<GLSurfaceView> {
     }
 
     public void onPause() {
+      displayRotationHelper.onPause();
       if (arSession != null && sessionInitialized) {
         try {
           arSession.pause();
@@ -711,30 +793,21 @@ public class NativeARImageViewManager extends SimpleViewManager<GLSurfaceView> {
           }
 
           arSession = new Session(getContext());
-          Config config = new Config(arSession);
-          config.setPlaneFindingMode(Config.PlaneFindingMode.HORIZONTAL);
-          config.setFocusMode(Config.FocusMode.AUTO);
-          
-          if (arSession.isDepthModeSupported(Config.DepthMode.AUTOMATIC)) {
-            config.setDepthMode(Config.DepthMode.AUTOMATIC);
-          }
-          
-          arSession.configure(config);
+          arFrames = new ArCoreSession(arSession);
+          selectCameraConfig();
+          configureSession();
           sessionInitialized = true;
           arSessionReady = true;
 
           emitAREvent("AR_SESSION_READY", "AR session initialized - move phone to detect surfaces");
 
-          if (cameraTextureId != -1) {
-            arSession.setCameraTextureName(cameraTextureId);
-          }
-
-          if (viewportWidth > 0 && viewportHeight > 0) {
-            arSession.setDisplayGeometry(getSurfaceRotation(), viewportWidth, viewportHeight);
+          if (backgroundRenderer != null) {
+            backgroundRenderer.attachTo(arFrames);
           }
         }
 
         if (arSession != null) {
+          displayRotationHelper.onResume();
           arSession.resume();
         }
       } catch (UnavailableException | CameraNotAvailableException e) {
@@ -747,367 +820,5 @@ public class NativeARImageViewManager extends SimpleViewManager<GLSurfaceView> {
         emitAREvent("AR_ERROR", "Failed to initialize AR: " + e.getMessage());
       }
     }
-
-    private int getSurfaceRotation() {
-      WindowManager wm = (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
-      if (wm == null) return Surface.ROTATION_0;
-      Display display = wm.getDefaultDisplay();
-      if (display == null) return Surface.ROTATION_0;
-      return display.getRotation();
-    }
-  }
-
-  // Background renderer
-  private static class BackgroundRenderer {
-    private static final String VERTEX_SHADER =
-        "attribute vec4 a_Position;\n"
-        + "attribute vec2 a_TexCoord;\n"
-        + "varying vec2 v_TexCoord;\n"
-        + "void main() {\n"
-        + "   gl_Position = a_Position;\n"
-        + "   v_TexCoord = a_TexCoord;\n"
-        + "}";
-
-    private static final String FRAGMENT_SHADER =
-        "#extension GL_OES_EGL_image_external : require\n"
-        + "precision highp float;\n"
-        + "varying vec2 v_TexCoord;\n"
-        + "uniform samplerExternalOES u_Texture;\n"
-        + "void main() {\n"
-        + "   gl_FragColor = texture2D(u_Texture, v_TexCoord);\n"
-        + "}";
-
-    private int program;
-    private int positionAttrib;
-    private int texCoordAttrib;
-    private int textureUniform;
-    private FloatBuffer quadVertices;
-    private FloatBuffer quadTexCoordsView;
-    private FloatBuffer quadTexCoordsTransformed;
-
-    public BackgroundRenderer() {
-      int vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER);
-      int fragmentShader = loadShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
-      
-      program = GLES20.glCreateProgram();
-      GLES20.glAttachShader(program, vertexShader);
-      GLES20.glAttachShader(program, fragmentShader);
-      GLES20.glLinkProgram(program);
-      
-      positionAttrib = GLES20.glGetAttribLocation(program, "a_Position");
-      texCoordAttrib = GLES20.glGetAttribLocation(program, "a_TexCoord");
-      textureUniform = GLES20.glGetUniformLocation(program, "u_Texture");
-
-      float[] vertices = {
-          -1.0f, -1.0f,
-          1.0f, -1.0f,
-          -1.0f,  1.0f,
-          1.0f,  1.0f,
-      };
-      
-      float[] viewNormalizedCoords = {
-          0.0f, 0.0f,
-          1.0f, 0.0f,
-          0.0f, 1.0f,
-          1.0f, 1.0f,
-      };
-
-      quadVertices = ByteBuffer.allocateDirect(vertices.length * 4)
-          .order(ByteOrder.nativeOrder()).asFloatBuffer();
-      quadVertices.put(vertices).position(0);
-
-      quadTexCoordsView = ByteBuffer.allocateDirect(viewNormalizedCoords.length * 4)
-          .order(ByteOrder.nativeOrder()).asFloatBuffer();
-      quadTexCoordsView.put(viewNormalizedCoords).position(0);
-
-      quadTexCoordsTransformed = ByteBuffer.allocateDirect(viewNormalizedCoords.length * 4)
-          .order(ByteOrder.nativeOrder()).asFloatBuffer();
-      quadTexCoordsTransformed.put(viewNormalizedCoords).position(0);
-    }
-
-    private int loadShader(int type, String shaderCode) {
-      int shader = GLES20.glCreateShader(type);
-      GLES20.glShaderSource(shader, shaderCode);
-      GLES20.glCompileShader(shader);
-      return shader;
-    }
-
-    public void draw(Frame frame, int textureId) {
-      if (frame.hasDisplayGeometryChanged()) {
-        quadVertices.position(0);
-        quadTexCoordsTransformed.position(0);
-        frame.transformCoordinates2d(
-            com.google.ar.core.Coordinates2d.OPENGL_NORMALIZED_DEVICE_COORDINATES,
-            quadVertices,
-            com.google.ar.core.Coordinates2d.TEXTURE_NORMALIZED,
-            quadTexCoordsTransformed);
-        quadTexCoordsTransformed.position(0);
-      }
-
-      GLES20.glUseProgram(program);
-      GLES20.glDepthMask(false);
-      GLES20.glDisable(GLES20.GL_DEPTH_TEST);
-      GLES20.glDisable(GLES20.GL_BLEND);
-
-      quadVertices.position(0);
-      quadTexCoordsTransformed.position(0);
-      GLES20.glVertexAttribPointer(positionAttrib, 2, GLES20.GL_FLOAT, false, 0, quadVertices);
-      GLES20.glVertexAttribPointer(texCoordAttrib, 2, GLES20.GL_FLOAT, false, 0, quadTexCoordsTransformed);
-      
-      GLES20.glEnableVertexAttribArray(positionAttrib);
-      GLES20.glEnableVertexAttribArray(texCoordAttrib);
-
-      GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-      GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
-      GLES20.glUniform1i(textureUniform, 0);
-
-      GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
-
-      GLES20.glDisableVertexAttribArray(positionAttrib);
-      GLES20.glDisableVertexAttribArray(texCoordAttrib);
-      
-      GLES20.glEnable(GLES20.GL_DEPTH_TEST);
-      GLES20.glDepthMask(true);
-    }
-  }
-
-  // Image billboard renderer
-  private static class ImageBillboardRenderer {
-    private static final String VERTEX_SHADER =
-        "uniform mat4 u_MVP;\n" +
-        "attribute vec4 a_Position;\n" +
-        "attribute vec2 a_TexCoord;\n" +
-        "varying vec2 v_TexCoord;\n" +
-        "void main() {\n" +
-        "  gl_Position = u_MVP * a_Position;\n" +
-        "  v_TexCoord = a_TexCoord;\n" +
-        "}";
-
-    private static final String FRAGMENT_SHADER =
-        "precision mediump float;\n" +
-        "varying vec2 v_TexCoord;\n" +
-        "uniform sampler2D u_Texture;\n" +
-        "void main() {\n" +
-        "  gl_FragColor = texture2D(u_Texture, v_TexCoord);\n" +
-        "}";
-
-    private int program;
-    private int positionAttrib;
-    private int texCoordAttrib;
-    private int mvpUniform;
-    private int textureUniform;
-
-    private FloatBuffer quadVertices;
-    private FloatBuffer quadTexCoords;
-    private int imageTextureId = -1;
-    private Bitmap currentBitmap = null;
-
-    public ImageBillboardRenderer() {
-      int v = loadShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER);
-      int f = loadShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
-      program = GLES20.glCreateProgram();
-      GLES20.glAttachShader(program, v);
-      GLES20.glAttachShader(program, f);
-      GLES20.glLinkProgram(program);
-
-      positionAttrib = GLES20.glGetAttribLocation(program, "a_Position");
-      texCoordAttrib = GLES20.glGetAttribLocation(program, "a_TexCoord");
-      mvpUniform = GLES20.glGetUniformLocation(program, "u_MVP");
-      textureUniform = GLES20.glGetUniformLocation(program, "u_Texture");
-
-      float size = 0.3f;
-      float[] vertices = new float[] {
-          -size, -size, 0f,
-          size, -size, 0f,
-          -size,  size, 0f,
-          size,  size, 0f,
-      };
-      float[] uvs = new float[] {
-          0f, 1f,
-          1f, 1f,
-          0f, 0f,
-          1f, 0f,
-      };
-      quadVertices = ByteBuffer.allocateDirect(vertices.length * 4)
-          .order(ByteOrder.nativeOrder()).asFloatBuffer();
-      quadVertices.put(vertices).position(0);
-      quadTexCoords = ByteBuffer.allocateDirect(uvs.length * 4)
-          .order(ByteOrder.nativeOrder()).asFloatBuffer();
-      quadTexCoords.put(uvs).position(0);
-    }
-
-    private int loadShader(int type, String code) {
-      int shader = GLES20.glCreateShader(type);
-      GLES20.glShaderSource(shader, code);
-      GLES20.glCompileShader(shader);
-      return shader;
-    }
-
-    public void updateBitmap(Bitmap bitmap) {
-      if (bitmap == null) return;
-      
-      if (imageTextureId != -1) {
-        int[] toDelete = new int[] { imageTextureId };
-        GLES20.glDeleteTextures(1, toDelete, 0);
-      }
-      
-      int[] textures = new int[1];
-      GLES20.glGenTextures(1, textures, 0);
-      imageTextureId = textures[0];
-      GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, imageTextureId);
-      GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
-      GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-      GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
-      GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
-      GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
-      
-      currentBitmap = bitmap;
-    }
-
-    public void drawBillboard(float[] model, float[] view, float[] proj, float[] rotations) {
-      if (imageTextureId == -1 || currentBitmap == null) return;
-
-      float[] translation = new float[16];
-      Matrix.setIdentityM(translation, 0);
-      translation[12] = model[12];
-      translation[13] = model[13];
-      translation[14] = model[14];
-
-      float[] scaleMatrix = new float[16];
-      Matrix.setIdentityM(scaleMatrix, 0);
-      float aspectRatio = (float) currentBitmap.getWidth() / (float) currentBitmap.getHeight();
-      float scale = 0.3f;
-      Matrix.scaleM(scaleMatrix, 0, scale * aspectRatio, scale, scale);
-
-      float rotationX = rotations.length > 0 ? rotations[0] : 0f;
-      float rotationY = rotations.length > 1 ? rotations[1] : 0f;
-      float rotationZ = rotations.length > 2 ? rotations[2] : 0f;
-      
-      float[] rotationMatrixX = new float[16];
-      Matrix.setIdentityM(rotationMatrixX, 0);
-      Matrix.rotateM(rotationMatrixX, 0, rotationX, 1, 0, 0);
-      
-      float[] rotationMatrixY = new float[16];
-      Matrix.setIdentityM(rotationMatrixY, 0);
-      Matrix.rotateM(rotationMatrixY, 0, rotationY, 0, 1, 0);
-      
-      float[] rotationMatrixZ = new float[16];
-      Matrix.setIdentityM(rotationMatrixZ, 0);
-      Matrix.rotateM(rotationMatrixZ, 0, rotationZ, 0, 0, 1);
-
-      float[] rotationYX = new float[16];
-      float[] rotationZYX = new float[16];
-      Matrix.multiplyMM(rotationYX, 0, rotationMatrixY, 0, rotationMatrixX, 0);
-      Matrix.multiplyMM(rotationZYX, 0, rotationMatrixZ, 0, rotationYX, 0);
-
-      float[] tempModel = new float[16];
-      float[] billboardModel = new float[16];
-      Matrix.multiplyMM(tempModel, 0, rotationZYX, 0, scaleMatrix, 0);
-      Matrix.multiplyMM(billboardModel, 0, translation, 0, tempModel, 0);
-
-      float[] modelView = new float[16];
-      float[] modelViewProj = new float[16];
-      Matrix.multiplyMM(modelView, 0, view, 0, billboardModel, 0);
-      Matrix.multiplyMM(modelViewProj, 0, proj, 0, modelView, 0);
-
-      GLES20.glUseProgram(program);
-      GLES20.glDisable(GLES20.GL_DEPTH_TEST);
-      GLES20.glDepthMask(false);
-      GLES20.glEnable(GLES20.GL_BLEND);
-      GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
-
-      GLES20.glUniformMatrix4fv(mvpUniform, 1, false, modelViewProj, 0);
-
-      quadVertices.position(0);
-      quadTexCoords.position(0);
-      GLES20.glVertexAttribPointer(positionAttrib, 3, GLES20.GL_FLOAT, false, 0, quadVertices);
-      GLES20.glEnableVertexAttribArray(positionAttrib);
-      GLES20.glVertexAttribPointer(texCoordAttrib, 2, GLES20.GL_FLOAT, false, 0, quadTexCoords);
-      GLES20.glEnableVertexAttribArray(texCoordAttrib);
-
-      GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-      GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, imageTextureId);
-      GLES20.glUniform1i(textureUniform, 0);
-
-      GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
-
-      GLES20.glDisableVertexAttribArray(positionAttrib);
-      GLES20.glDisableVertexAttribArray(texCoordAttrib);
-      GLES20.glDisable(GLES20.GL_BLEND);
-      GLES20.glDepthMask(true);
-      GLES20.glEnable(GLES20.GL_DEPTH_TEST);
-    }
-  }
-
-  // Plane renderer for visualization
-  private static class PlaneRenderer {
-    private static final String VERTEX_SHADER =
-        "uniform mat4 u_MVP;\n" +
-        "attribute vec4 a_Position;\n" +
-        "void main() {\n" +
-        "  gl_Position = u_MVP * a_Position;\n" +
-        "  gl_PointSize = 8.0;\n" +
-        "}";
-
-    private static final String FRAGMENT_SHADER =
-        "precision mediump float;\n" +
-        "void main() {\n" +
-        "  float dist = length(gl_PointCoord - vec2(0.5));\n" +
-        "  if (dist > 0.5) discard;\n" +
-        "  gl_FragColor = vec4(1.0, 1.0, 1.0, 0.8);\n" +
-        "}";
-
-    private int program;
-    private int positionAttrib;
-    private int mvpUniform;
-
-    public PlaneRenderer() {
-      int v = loadShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER);
-      int f = loadShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
-      program = GLES20.glCreateProgram();
-      GLES20.glAttachShader(program, v);
-      GLES20.glAttachShader(program, f);
-      GLES20.glLinkProgram(program);
-
-      positionAttrib = GLES20.glGetAttribLocation(program, "a_Position");
-      mvpUniform = GLES20.glGetUniformLocation(program, "u_MVP");
-    }
-
-    private int loadShader(int type, String code) {
-      int shader = GLES20.glCreateShader(type);
-      GLES20.glShaderSource(shader, code);
-      GLES20.glCompileShader(shader);
-      return shader;
-    }
-
-    public void drawPlane(Plane plane, float[] view, float[] proj) {
-      if (plane.getTrackingState() != TrackingState.TRACKING) return;
-      
-      FloatBuffer vertices = plane.getPolygon();
-      if (vertices.remaining() < 3) return;
-
-      float[] model = new float[16];
-      plane.getCenterPose().toMatrix(model, 0);
-
-      float[] modelView = new float[16];
-      float[] modelViewProj = new float[16];
-      Matrix.multiplyMM(modelView, 0, view, 0, model, 0);
-      Matrix.multiplyMM(modelViewProj, 0, proj, 0, modelView, 0);
-
-      GLES20.glUseProgram(program);
-      GLES20.glEnable(GLES20.GL_BLEND);
-      GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
-
-      GLES20.glUniformMatrix4fv(mvpUniform, 1, false, modelViewProj, 0);
-      
-      vertices.position(0);
-      GLES20.glVertexAttribPointer(positionAttrib, 3, GLES20.GL_FLOAT, false, 0, vertices);
-      GLES20.glEnableVertexAttribArray(positionAttrib);
-
-      GLES20.glDrawArrays(GLES20.GL_POINTS, 0, vertices.remaining() / 3);
-
-      GLES20.glDisableVertexAttribArray(positionAttrib);
-      GLES20.glDisable(GLES20.GL_BLEND);
-    }
   }
 }
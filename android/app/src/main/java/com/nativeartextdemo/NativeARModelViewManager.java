@@ -2,46 +2,46 @@ package com.visionar;
 
 import android.content.Context;
 import android.app.Activity;
-import android.net.Uri;
-import android.opengl.GLES11Ext;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
-import android.opengl.Matrix;
-import android.os.Handler;
-import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
-import android.view.Display;
 import android.view.MotionEvent;
-import android.view.Surface;
-import android.view.WindowManager;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.facebook.react.uimanager.SimpleViewManager;
 import com.facebook.react.uimanager.ThemedReactContext;
 import com.facebook.react.uimanager.annotations.ReactProp;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
 
-import com.google.ar.core.Anchor;
 import com.google.ar.core.ArCoreApk;
-import com.google.ar.core.Camera;
+import com.google.ar.core.CameraConfig;
 import com.google.ar.core.Config;
-import com.google.ar.core.Frame;
-import com.google.ar.core.HitResult;
-import com.google.ar.core.Plane;
-import com.google.ar.core.Point;
 import com.google.ar.core.Session;
-import com.google.ar.core.Trackable;
-import com.google.ar.core.TrackingState;
 import com.google.ar.core.exceptions.CameraNotAvailableException;
 import com.google.ar.core.exceptions.UnavailableException;
 
-import com.google.ar.sceneform.rendering.ModelRenderable;
-
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
@@ -77,239 +77,557 @@ public class NativeARModelViewManager extends SimpleViewManager<GLSurfaceView> {
         }
     }
 
+    @ReactProp(name = "animationPlaying", defaultBoolean = true)
+    public void setAnimationPlaying(GLSurfaceView view, boolean playing) {
+        if (view instanceof ARModelView) {
+            ((ARModelView) view).frameLoop.setAnimationPlaying(playing);
+        }
+    }
+
+    // Multiplies the model animation's playback rate, negative plays it backwards
+    @ReactProp(name = "animationSpeed", defaultFloat = 1f)
+    public void setAnimationSpeed(GLSurfaceView view, float speed) {
+        if (view instanceof ARModelView) {
+            ((ARModelView) view).frameLoop.setAnimationSpeed(speed);
+        }
+    }
+
+    // Opaque by default: the camera image covers the whole view
+    @ReactProp(name = "opaqueSurface", defaultBoolean = true)
+    public void setOpaqueSurface(GLSurfaceView view, boolean opaque) {
+        if (view instanceof ARModelView) {
+            ((ARModelView) view).eglSetup.setOpaque(opaque);
+        }
+    }
+
+    @ReactProp(name = "msaaSamples", defaultInt = 0)
+    public void setMsaaSamples(GLSurfaceView view, int samples) {
+        if (view instanceof ARModelView) {
+            ((ARModelView) view).eglSetup.setMsaaSamples(samples);
+        }
+    }
+
+    @ReactProp(name = "preferGles3", defaultBoolean = true)
+    public void setPreferGles3(GLSurfaceView view, boolean preferGles3) {
+        if (view instanceof ARModelView) {
+            ((ARModelView) view).eglSetup.setPreferGles3(preferGles3);
+        }
+    }
+
+    @ReactProp(name = "autoDisablePlaneFinding", defaultBoolean = true)
+    public void setAutoDisablePlaneFinding(GLSurfaceView view, boolean enabled) {
+        if (view instanceof ARModelView) {
+            ((ARModelView) view).planeFinding.setAutoDisable(enabled);
+        }
+    }
+
+    // Seconds without touches before plane finding is turned off, 0 = only after placement
+    @ReactProp(name = "planeFindingIdleTimeout", defaultFloat = 0f)
+    public void setPlaneFindingIdleTimeout(GLSurfaceView view, float seconds) {
+        if (view instanceof ARModelView) {
+            ((ARModelView) view).planeFinding.setIdleTimeoutMs((long) (seconds * 1000f));
+        }
+    }
+
+    // Milliseconds between METRICS events, 0 = off
+    @ReactProp(name = "metricsInterval", defaultInt = 0)
+    public void setMetricsInterval(GLSurfaceView view, int intervalMs) {
+        if (view instanceof ARModelView) {
+            ((ARModelView) view).metrics.setIntervalMs(intervalMs);
+        }
+    }
+
+    @ReactProp(name = "sessionConfig")
+    public void setSessionConfig(GLSurfaceView view, @Nullable ReadableMap sessionConfig) {
+        if (view instanceof ARModelView) {
+            ((ARModelView) view).setSessionConfig(sessionConfig);
+        }
+    }
+
+    @ReactProp(name = "instantPlacement")
+    public void setInstantPlacement(GLSurfaceView view, boolean enabled) {
+        if (view instanceof ARModelView) {
+            ((ARModelView) view).setInstantPlacementEnabled(enabled);
+        }
+    }
+
+    @ReactProp(name = "anchorGroupRadius", defaultFloat = AnchorGroupManager.DEFAULT_GROUP_RADIUS)
+    public void setAnchorGroupRadius(GLSurfaceView view, float radius) {
+        if (view instanceof ARModelView) {
+            ((ARModelView) view).frameLoop.getAnchorGroups().setGroupRadius(radius);
+        }
+    }
+
+    @ReactProp(name = "maxAnchors", defaultInt = AnchorBudget.DEFAULT_MAX_ANCHORS)
+    public void setMaxAnchors(GLSurfaceView view, int maxAnchors) {
+        if (view instanceof ARModelView) {
+            ((ARModelView) view).frameLoop.getAnchorBudget().setMaxAnchors(maxAnchors);
+        }
+    }
+
+    @ReactProp(name = "anchorEvictionPolicy")
+    public void setAnchorEvictionPolicy(GLSurfaceView view, @Nullable String policy) {
+        if (view instanceof ARModelView) {
+            ((ARModelView) view).frameLoop.getAnchorBudget().setPolicy(AnchorBudget.Policy.fromString(policy));
+        }
+    }
+
+    @Override
+    public void receiveCommand(@NonNull GLSurfaceView root, String commandId, @Nullable ReadableArray args) {
+        if (!(root instanceof ARModelView)) return;
+        ARModelView view = (ARModelView) root;
+        switch (commandId) {
+            case "removeAnchor":
+                if (args != null && args.size() > 0) {
+                    view.removeAnchor(args.getInt(0));
+                }
+                break;
+            case "clearAnchors":
+                view.clearAnchors();
+                break;
+            case "enablePlaneFinding":
+                view.enablePlaneFinding();
+                break;
+        }
+    }
+
+    @Override
+    protected void onAfterUpdateTransaction(@NonNull GLSurfaceView view) {
+        super.onAfterUpdateTransaction(view);
+        if (view instanceof ARModelView) {
+            ((ARModelView) view).startRendering();
+        }
+    }
+
     @Override
     public void onDropViewInstance(@NonNull GLSurfaceView view) {
         if (view instanceof ARModelView) {
+            ((ARModelView) view).cancelModelLoad();
             ((ARModelView) view).onPause();
         }
         super.onDropViewInstance(view);
     }
 
     private static class ARModelView extends GLSurfaceView implements GLSurfaceView.Renderer {
+        // Converted models kept in cacheDir/models; least recently used ones go first
+        private static final long MODEL_CACHE_BYTES = 64L * 1024 * 1024;
+        // Shared by every view: reading, converting and decoding a model never runs on the GL
+        // thread, and one load at a time keeps a burst of source changes from piling up work
+        private static final ExecutorService MODEL_LOADER = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                task.run();
+            }, "ARModelLoader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // A model with its images decoded to RGBA, waiting for the GL thread to upload it
+        private static final class DecodedModel {
+            final GlbModel model;
+            final int[] widths;
+            final int[] heights;
+            final ByteBuffer[] pixels;
+            // null for models without skins or animations
+            final ModelAnimator animator;
+
+            DecodedModel(GlbModel model) {
+                this.model = model;
+                animator = model.rig != null ? new ModelAnimator(model.rig) : null;
+                int images = model.images.size();
+                widths = new int[images];
+                heights = new int[images];
+                pixels = new ByteBuffer[images];
+            }
+        }
+
         private Session arSession;
-        private String modelSource = null;
-        private float modelScale = 1.0f;
-        private ModelRenderable currentModel = null;
-        private final List<Anchor> anchors = new ArrayList<>();
-        private final List<float[]> anchorRotations = new ArrayList<>();
-        private final List<Float> anchorScales = new ArrayList<>();
+        // What the frame loop reads; ARCore-backed, the Session itself is only used for configuration
+        private ArSession arFrames;
+        private volatile String modelSource = null;
+        // GL thread only. currentModel is what is drawn; pendingUpload holds a finished load until
+        // modelRenderer exists and is dropped once uploaded, so decoded pixels are not kept around
+        private GlbModel currentModel = null;
+        private DecodedModel pendingUpload = null;
+        private final ModelCache modelCache;
+        // Starting a load bumps this, which cancels the one in flight at its next progress report
+        private final AtomicInteger modelLoads = new AtomicInteger();
+        private final ModelFrameLoop frameLoop = new ModelFrameLoop(this::emitAREvent, this::emitPlacementTiming);
         private boolean sessionInitialized = false;
         private Exception initializationError = null;
-        private int cameraTextureId = -1;
         private BackgroundRenderer backgroundRenderer;
+        private ModelRenderer modelRenderer;
+        private GlBackend glBackend;
+        private final EglSetup eglSetup = new EglSetup(24, 0);
+        private boolean rendererStarted = false;
+        private final List<Runnable> pendingGlEvents = new ArrayList<>();
         private boolean installRequested = false;
-        private int viewportWidth = 0;
-        private int viewportHeight = 0;
-        
-        // UI Thread Handler - CRITICAL FIX
-        private final Handler uiHandler = new Handler(Looper.getMainLooper());
-        
-        // Touch handling
-        private volatile boolean pendingTap = false;
-        private volatile float pendingTapX = 0f;
-        private volatile float pendingTapY = 0f;
-        private volatile boolean dragging = false;
-        private volatile float dragX = 0f;
-        private volatile float dragY = 0f;
-        private volatile boolean rotating = false;
-        private volatile float currentRotationX = 0f;
-        private volatile float currentRotationY = 0f;
-        private volatile float currentRotationZ = 0f;
-        private volatile float lastRotationAngle = 0f;
-        private volatile float lastTwoFingerX = 0f;
-        private volatile float lastTwoFingerY = 0f;
+        private final DisplayRotationHelper displayRotationHelper;
+        private volatile SessionConfigProfile sessionProfile = SessionConfigProfile.DEFAULT;
+        private boolean cameraConfigPrefersDepth = false;
+        private final PlaneFindingPolicy planeFinding = new PlaneFindingPolicy();
+        private final MetricsReporter metrics = new MetricsReporter();
+
+        private ThemedReactContext reactContext;
 
         public ARModelView(Context context) {
             super(context);
-            setEGLContextClientVersion(2);
-            setEGLConfigChooser(8, 8, 8, 8, 16, 0);
-            getHolder().setFormat(android.graphics.PixelFormat.TRANSLUCENT);
+            displayRotationHelper = new DisplayRotationHelper(context);
+            this.reactContext = (ThemedReactContext) context;
+            modelCache = new ModelCache(new File(context.getCacheDir(), "models"), MODEL_CACHE_BYTES,
+                    (file, e) -> Log.w(TAG, "Model not cached, it will be converted again next time: " + file, e));
             setPreserveEGLContextOnPause(true);
-            setRenderer(this);
-            setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+            // setRenderer waits for the EGL props, see startRendering()
 
             setupTouchListener();
         }
 
         private void setupTouchListener() {
             setOnTouchListener((v, event) -> {
-                int action = event.getActionMasked();
-                int pointerCount = event.getPointerCount();
-                
-                switch (action) {
+                PlacementGestures gestures = frameLoop.getGestures();
+                switch (event.getActionMasked()) {
                     case MotionEvent.ACTION_DOWN:
-                        pendingTapX = event.getX();
-                        pendingTapY = event.getY();
-                        pendingTap = true;
-                        dragging = true;
-                        dragX = event.getX();
-                        dragY = event.getY();
-                        rotating = false;
+                        planeFinding.onTouch(event.getEventTime());
+                        gestures.down(event.getX(), event.getY(), event.getEventTime());
                         break;
                         
                     case MotionEvent.ACTION_POINTER_DOWN:
-                        if (pointerCount == 2) {
-                            rotating = true;
-                            dragging = false;
-                            pendingTap = false;
-                            lastRotationAngle = getRotationAngle(event);
-                            lastTwoFingerX = (event.getX(0) + event.getX(1)) / 2f;
-                            lastTwoFingerY = (event.getY(0) + event.getY(1)) / 2f;
+                        if (event.getPointerCount() == 2) {
+                            gestures.startRotation(event.getX(0), event.getY(0), event.getX(1), event.getY(1));
                         }
                         break;
                         
                     case MotionEvent.ACTION_MOVE:
-                        if (pointerCount == 2 && rotating) {
-                            float currentTwoFingerX = (event.getX(0) + event.getX(1)) / 2f;
-                            float currentTwoFingerY = (event.getY(0) + event.getY(1)) / 2f;
-                            
-                            float deltaX = currentTwoFingerX - lastTwoFingerX;
-                            float deltaY = currentTwoFingerY - lastTwoFingerY;
-                            
-                            float currentAngle = getRotationAngle(event);
-                            float rotationDelta = currentAngle - lastRotationAngle;
-                            
-                            if (rotationDelta > 180) rotationDelta -= 360;
-                            if (rotationDelta < -180) rotationDelta += 360;
-                            
-                            currentRotationZ += rotationDelta;
-                            currentRotationX += deltaY * 0.5f;
-                            currentRotationY += deltaX * 0.5f;
-                            
-                            lastRotationAngle = currentAngle;
-                            lastTwoFingerX = currentTwoFingerX;
-                            lastTwoFingerY = currentTwoFingerY;
-                        } else if (pointerCount == 1 && !rotating) {
-                            dragging = true;
-                            dragX = event.getX();
-                            dragY = event.getY();
+                        if (event.getPointerCount() == 2) {
+                            gestures.moveRotation(event.getX(0), event.getY(0), event.getX(1), event.getY(1));
+                        } else if (event.getPointerCount() == 1) {
+                            gestures.moveDrag(event.getX(), event.getY());
                         }
                         break;
                         
                     case MotionEvent.ACTION_POINTER_UP:
-                        if (pointerCount == 2) {
-                            rotating = false;
+                        if (event.getPointerCount() == 2) {
+                            gestures.endRotation();
                         }
                         break;
                         
                     case MotionEvent.ACTION_UP:
                     case MotionEvent.ACTION_CANCEL:
-                        dragging = false;
-                        rotating = false;
+                        gestures.up();
                         break;
                 }
                 return true;
             });
         }
 
+        private void emitAREvent(String eventType, String message, int anchorId) {
+            emitAREvent(eventType, message, anchorId, null);
+        }
+
+        private void emitPlacementTiming(String eventType, int anchorId, long latencyMs) {
+            WritableMap timing = Arguments.createMap();
+            timing.putDouble("latencyMs", latencyMs);
+            String label = "PLACEMENT_PROMOTED".equals(eventType) ? "promoted to full tracking" : "visible";
+            emitAREvent(eventType, "Model " + label + " after " + latencyMs + " ms", anchorId, timing);
+        }
+
+        private void emitAREvent(String eventType, String message, int anchorId, @Nullable WritableMap extras) {
+            if (reactContext != null) {
+                WritableMap params = Arguments.createMap();
+                params.putString("type", eventType);
+                params.putString("message", message);
+                if (anchorId >= 0) {
+                    params.putInt("anchorId", anchorId);
+                }
+                if (extras != null) {
+                    params.merge(extras);
+                }
+
+                reactContext
+                    .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                    .emit("onARModelStateChange", params);
+            }
+        }
+
         public void setModelSource(String source) {
             this.modelSource = source;
             loadModel();
         }
 
         public void setModelScale(float scale) {
-            this.modelScale = scale;
+            frameLoop.setModelScale(scale);
         }
 
         private void loadModel() {
             if (modelSource == null || modelSource.isEmpty()) return;
-            
-            // CRITICAL FIX: Load model on UI thread
-            uiHandler.post(() -> {
-                Context context = getContext();
-                
-                // Construct the URI for the model
-                Uri modelUri;
-                if (modelSource.startsWith("http://") || modelSource.startsWith("https://")) {
-                    modelUri = Uri.parse(modelSource);
-                } else {
-                    // For local assets, use proper format
-                    // If file is in assets/models/HORNET.glb, use: "models/HORNET.glb"
-                    modelUri = Uri.parse(modelSource);
+            final String source = modelSource.trim();
+            final ModelLoadJob job = ModelLoadJob.start(modelLoads, this::emitLoadProgress);
+
+            MODEL_LOADER.execute(() -> {
+                if (job.isCancelled()) return;
+                Log.d(TAG, "Loading model from: " + source);
+                long startMs = SystemClock.uptimeMillis();
+                DecodedModel decoded;
+                try {
+                    decoded = decodeModel(source, job);
+                } catch (CancellationException e) {
+                    Log.d(TAG, "Model load superseded: " + source);
+                    return;
+                } catch (IOException | RuntimeException e) {
+                    // RuntimeException covers parser bugs a malformed file can still reach
+                    if (job.isCancelled()) return;
+                    Log.e(TAG, "Error loading model: " + e.getMessage(), e);
+                    emitAREvent("MODEL_LOAD_FAILED", "Could not load model: " + e.getMessage(), -1);
+                    return;
+                } catch (StackOverflowError | OutOfMemoryError e) {
+                    // A hostile or huge file; what was allocated for it is garbage by now
+                    Log.e(TAG, "Model too large or deeply nested: " + source, e);
+                    emitAREvent("MODEL_LOAD_FAILED", "Could not load model: too large or too deeply nested", -1);
+                    return;
                 }
-                
-                Log.d(TAG, "Loading model from: " + modelUri);
-                
-                // Build ModelRenderable on UI thread
-                ModelRenderable.builder()
-                    .setSource(context, modelUri)
-                    .setIsFilamentGltf(true)
-                    .build()
-                    .thenAccept(renderable -> {
-                        Log.d(TAG, "Model loaded successfully!");
-                        currentModel = renderable;
-                    })
-                    .exceptionally(throwable -> {
-                        Log.e(TAG, "Error loading model: " + throwable.getMessage(), throwable);
-                        return null;
-                    });
+                long loadMs = SystemClock.uptimeMillis() - startMs;
+
+                // Only the GPU upload is left for the GL thread
+                queueEvent(() -> {
+                    if (job.isCancelled()) return;
+                    pendingUpload = decoded;
+                    // On failure the previous model stays
+                    if (modelRenderer != null && !uploadModel()) return;
+                    currentModel = decoded.model;
+                    Log.d(TAG, "Model loaded successfully! " + currentModel.getTriangleCount() + " triangles ("
+                        + currentModel.getTriangleCount(GlbModel.LOD_LEVELS - 1) + " at the coarsest level) in "
+                        + loadMs + " ms");
+                    emitAREvent("MODEL_LOADED", "Model loaded", -1);
+                });
             });
         }
 
-        private float getRotationAngle(MotionEvent event) {
-            if (event.getPointerCount() < 2) return 0f;
-            float deltaX = event.getX(1) - event.getX(0);
-            float deltaY = event.getY(1) - event.getY(0);
-            return (float) Math.toDegrees(Math.atan2(deltaY, deltaX));
-        }
-
-        private void handleTapOnGlThread(Frame frame) {
-            if (frame == null || currentModel == null) return;
-            List<HitResult> hitResults = frame.hitTest(pendingTapX, pendingTapY);
-            for (HitResult hit : hitResults) {
-                Trackable trackable = hit.getTrackable();
-                if (trackable instanceof Plane && ((Plane) trackable).isPoseInPolygon(hit.getHitPose())) {
-                    Anchor anchor = hit.createAnchor();
-                    anchors.add(anchor);
-                    anchorRotations.add(new float[]{0f, 0f, 0f});
-                    anchorScales.add(modelScale);
-                    currentRotationX = 0f;
-                    currentRotationY = 0f;
-                    currentRotationZ = 0f;
-                    Log.d(TAG, "Model anchored at plane");
-                    break;
-                } else if (trackable instanceof Point && 
-                          ((Point) trackable).getOrientationMode() == Point.OrientationMode.ESTIMATED_SURFACE_NORMAL) {
-                    Anchor anchor = hit.createAnchor();
-                    anchors.add(anchor);
-                    anchorRotations.add(new float[]{0f, 0f, 0f});
-                    anchorScales.add(modelScale);
-                    currentRotationX = 0f;
-                    currentRotationY = 0f;
-                    currentRotationZ = 0f;
-                    Log.d(TAG, "Model anchored at point");
-                    break;
+        void cancelModelLoad() {
+            modelLoads.incrementAndGet();
+        }
+
+        // Loader thread; throttled by ModelLoadJob
+        private void emitLoadProgress(String stage, long done, long total) {
+            WritableMap progress = Arguments.createMap();
+            progress.putString("stage", stage);
+            progress.putDouble("done", done);
+            progress.putDouble("total", total);
+            emitAREvent("MODEL_LOAD_PROGRESS", "Model " + stage + " " + done + "/" + total, -1, progress);
+        }
+
+        // Loader thread: everything but the GL calls
+        private DecodedModel decodeModel(String source, ModelLoadJob job) throws IOException {
+            GlbModel model = readModel(source, job);
+            DecodedModel decoded = new DecodedModel(model);
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            // glTF colors are straight alpha
+            options.inPremultiplied = false;
+            int images = model.images.size();
+            for (int i = 0; i < images; i++) {
+                job.progress("textures", i, images);
+                InputStream encoded = model.images.get(i).open();
+                if (encoded == null) continue;
+                Bitmap bitmap = BitmapFactory.decodeStream(encoded, null, options);
+                if (bitmap == null) {
+                    Log.e(TAG, "Could not decode model image " + i);
+                    continue;
                 }
+                decoded.widths[i] = bitmap.getWidth();
+                decoded.heights[i] = bitmap.getHeight();
+                decoded.pixels[i] = AndroidGl.rgbaPixels(bitmap);
+                bitmap.recycle();
             }
+            job.progress("textures", images, images);
+            return decoded;
+        }
+
+        // Converted once per distinct GLB, later loads map the converted file
+        private GlbModel readModel(String source, ModelLoadJob job) throws IOException {
+            ByteBuffer glb = mapModel(source, job);
+            job.checkCancelled();
+            return modelCache.load(glb, job);
         }
 
-        private void handleDragOnGlThread(Frame frame) {
-            if (frame == null || anchors.isEmpty()) return;
-            List<HitResult> hitResults = frame.hitTest(dragX, dragY);
-            for (HitResult hit : hitResults) {
-                Trackable trackable = hit.getTrackable();
-                if ((trackable instanceof Plane && ((Plane) trackable).isPoseInPolygon(hit.getHitPose()))
-                    || (trackable instanceof Point && 
-                       ((Point) trackable).getOrientationMode() == Point.OrientationMode.ESTIMATED_SURFACE_NORMAL)) {
-                    int lastIndex = anchors.size() - 1;
-                    Anchor old = anchors.get(lastIndex);
-                    try { old.detach(); } catch (Exception ignored) {}
-                    Anchor anchor = hit.createAnchor();
-                    anchors.set(lastIndex, anchor);
-                    if (lastIndex < anchorRotations.size()) {
-                        anchorRotations.set(lastIndex, new float[]{currentRotationX, currentRotationY, currentRotationZ});
+        // http(s) URLs, file:// URIs and absolute paths, anything else is an asset path such as
+        // "models/HORNET.glb". Files and uncompressed assets are memory mapped in place; downloads
+        // and compressed assets are copied to a scratch file first so they can be mapped too.
+        private ByteBuffer mapModel(String source, ModelLoadJob job) throws IOException {
+            File scratch = new File(getContext().getCacheDir(), "model-source.glb");
+            if (source.startsWith("http://") || source.startsWith("https://")) {
+                HttpURLConnection connection = (HttpURLConnection) new URL(source).openConnection();
+                connection.setConnectTimeout(10000);
+                connection.setReadTimeout(10000);
+                try {
+                    int responseCode = connection.getResponseCode();
+                    if (responseCode != HttpURLConnection.HTTP_OK) {
+                        throw new IOException("HTTP error code: " + responseCode);
+                    }
+                    try (InputStream in = connection.getInputStream()) {
+                        return MappedAssets.copyAndMap(in, scratch, job, connection.getContentLengthLong());
                     }
-                    break;
+                } finally {
+                    connection.disconnect();
+                }
+            }
+            if (source.startsWith("file://")) {
+                return MappedAssets.mapFile(new File(source.substring("file://".length())));
+            }
+            if (source.startsWith("/")) {
+                return MappedAssets.mapFile(new File(source));
+            }
+            ByteBuffer mapped = MappedAssets.mapAsset(getContext().getAssets(), source);
+            if (mapped != null) {
+                return mapped;
+            }
+            Log.w(TAG, "Model asset is compressed in the APK, copying it out: " + source);
+            try (InputStream in = getContext().getAssets().open(source)) {
+                return MappedAssets.copyAndMap(in, scratch, job, -1);
+            }
+        }
+
+        // GL thread, with modelRenderer created. False, with MODEL_LOAD_FAILED sent, if this GPU
+        // cannot draw the model.
+        private boolean uploadModel() {
+            DecodedModel upload = pendingUpload;
+            pendingUpload = null;
+            if (!modelRenderer.canDraw(upload.model)) {
+                Log.e(TAG, "Model needs 32-bit indices, GL_OES_element_index_uint is missing");
+                emitAREvent("MODEL_LOAD_FAILED", "Could not load model: it has more vertices than this GPU can index", -1);
+                return false;
+            }
+            modelRenderer.setModel(upload.model);
+            frameLoop.setModel(upload.model, upload.animator);
+            for (int i = 0; i < upload.pixels.length; i++) {
+                if (upload.pixels[i] == null) continue;
+                modelRenderer.setTexture(i, upload.widths[i], upload.heights[i], upload.pixels[i]);
+            }
+            return true;
+        }
+
+        public void setSessionConfig(@Nullable ReadableMap sessionConfig) {
+            sessionProfile = SessionConfigProfile.fromReadableMap(sessionConfig);
+            queueEvent(this::reconfigureSession);
+        }
+
+        // Profile changes apply to the running session, it is never recreated
+        private void reconfigureSession() {
+            if (arSession == null || !sessionInitialized) return;
+            if (wantsDepthSensor() != cameraConfigPrefersDepth) {
+                // The camera config can only change while the session is paused
+                try {
+                    arSession.pause();
+                    selectCameraConfig();
+                    configureSession();
+                    arSession.resume();
+                } catch (CameraNotAvailableException e) {
+                    Log.e(TAG, "Camera unavailable while changing camera config", e);
+                }
+            } else {
+                configureSession();
+            }
+            emitAREvent("SESSION_CONFIGURED", "Session profile " + sessionProfile.describe(), -1);
+        }
+
+        private boolean wantsDepthSensor() {
+            return sessionProfile.depthMode != Config.DepthMode.DISABLED;
+        }
+
+        // 30 fps, smallest acceptable CPU image, depth sensor only if the profile uses depth
+        private void selectCameraConfig() {
+            cameraConfigPrefersDepth = wantsDepthSensor();
+            CameraConfig selected = SessionCameraConfig.selectAndApply(arSession, cameraConfigPrefersDepth);
+            if (selected != null) {
+                emitAREvent("CAMERA_CONFIG_SELECTED", SessionCameraConfig.describe(selected), -1);
+            }
+        }
+
+        // Builds the whole Config from the profile and props so one configure() call applies everything
+        private void configureSession() {
+            Config config = new Config(arSession);
+            sessionProfile.applyTo(arSession, config, Config.PlaneFindingMode.HORIZONTAL_AND_VERTICAL);
+            if (planeFinding.isSuspended()) {
+                config.setPlaneFindingMode(Config.PlaneFindingMode.DISABLED);
+            }
+            config.setInstantPlacementMode(frameLoop.isInstantPlacementEnabled()
+                ? Config.InstantPlacementMode.LOCAL_Y_UP
+                : Config.InstantPlacementMode.DISABLED);
+            arSession.configure(config);
+        }
+
+        // Called once the first batch of props is applied. The EGL options cannot change after
+        // the GL thread has started, so later changes to them are ignored.
+        void startRendering() {
+            if (rendererStarted) return;
+            eglSetup.applyTo(this);
+            setRenderer(this);
+            setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+            synchronized (pendingGlEvents) {
+                rendererStarted = true;
+                for (Runnable event : pendingGlEvents) {
+                    super.queueEvent(event);
+                }
+                pendingGlEvents.clear();
+            }
+        }
+
+        // Props may queue GL work before startRendering(); hold it until the GL thread exists
+        @Override
+        public void queueEvent(Runnable event) {
+            synchronized (pendingGlEvents) {
+                if (!rendererStarted) {
+                    pendingGlEvents.add(event);
+                    return;
                 }
             }
+            super.queueEvent(event);
+        }
+
+        public void enablePlaneFinding() {
+            planeFinding.requestResume(SystemClock.uptimeMillis());
         }
 
-        private void handleRotationOnGlThread() {
-            if (anchors.isEmpty()) return;
-            int lastIndex = anchors.size() - 1;
-            if (lastIndex < anchorRotations.size()) {
-                anchorRotations.set(lastIndex, new float[]{currentRotationX, currentRotationY, currentRotationZ});
+        private void reportMetrics(long nowMs, float updateMs) {
+            if (!metrics.isEnabled()) return;
+            metrics.put("sessionUpdateMs", updateMs);
+            metrics.put("planeFindingEnabled", planeFinding.isSuspended() ? 0 : 1);
+            metrics.put("planeFindingActiveUpdateMs", planeFinding.getActiveUpdateMs());
+            metrics.put("planeFindingSuspendedUpdateMs", planeFinding.getSuspendedUpdateMs());
+            metrics.put("planeFindingCpuSavedMs", planeFinding.getCpuSavedMs());
+            if (glBackend != null) {
+                metrics.put("glCallsIssued", glBackend.getState().getLastFrameIssued());
+                metrics.put("glCallsSkipped", glBackend.getState().getLastFrameSkipped());
             }
+            Map<String, Double> snapshot = metrics.poll(nowMs);
+            if (snapshot == null) return;
+
+            WritableMap values = Arguments.createMap();
+            for (Map.Entry<String, Double> entry : snapshot.entrySet()) {
+                values.putDouble(entry.getKey(), entry.getValue());
+            }
+            WritableMap extras = Arguments.createMap();
+            extras.putMap("metrics", values);
+            emitAREvent("METRICS", "Performance metrics", -1, extras);
+        }
+
+        public void setInstantPlacementEnabled(boolean enabled) {
+            if (frameLoop.isInstantPlacementEnabled() == enabled) return;
+            frameLoop.setInstantPlacementEnabled(enabled);
+            queueEvent(this::reconfigureSession);
+        }
+
+        public void removeAnchor(int anchorId) {
+            queueEvent(() -> {
+                if (frameLoop.removeAnchor(anchorId)) {
+                    emitAREvent("ANCHOR_REMOVED", "Model removed", anchorId);
+                }
+            });
+        }
+
+        public void clearAnchors() {
+            queueEvent(() -> {
+                frameLoop.clearAnchors();
+                emitAREvent("ANCHORS_CLEARED", "All models removed", -1);
+            });
         }
 
         @Override
@@ -321,23 +639,23 @@ public class NativeARModelViewManager extends SimpleViewManager<GLSurfaceView> {
                 return;
             }
             
-            int[] textures = new int[1];
-            GLES20.glGenTextures(1, textures, 0);
-            cameraTextureId = textures[0];
-            GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, cameraTextureId);
-            GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
-            GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
-            GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
-            GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-            
-            backgroundRenderer = new BackgroundRenderer();
+            glBackend = new GlBackend(new AndroidGl(), eglSetup.getGlesVersion());
+            backgroundRenderer = new BackgroundRenderer(glBackend);
+            modelRenderer = new ModelRenderer(glBackend);
+            frameLoop.attach(glBackend, backgroundRenderer, modelRenderer);
             
             if (arSession != null && sessionInitialized) {
-                arSession.setCameraTextureName(cameraTextureId);
+                backgroundRenderer.attachTo(arFrames);
             }
             
-            // Load model on UI thread after surface is ready
-            if (modelSource != null) {
+            // A new context has none of the model's GL objects. Pixels are not kept after an
+            // upload, so a model already shown is loaded again; from the cache that is quick.
+            if (pendingUpload != null) {
+                if (!uploadModel()) {
+                    currentModel = null;
+                    frameLoop.setModel(null, null);
+                }
+            } else if (currentModel != null) {
                 loadModel();
             }
         }
@@ -345,45 +663,38 @@ public class NativeARModelViewManager extends SimpleViewManager<GLSurfaceView> {
         @Override
         public void onSurfaceChanged(GL10 gl, int width, int height) {
             GLES20.glViewport(0, 0, width, height);
-            viewportWidth = width;
-            viewportHeight = height;
-            if (arSession != null) {
-                arSession.setDisplayGeometry(getSurfaceRotation(), width, height);
-            }
+            frameLoop.setViewport(width, height);
+            displayRotationHelper.onSurfaceChanged(width, height);
         }
 
         @Override
         public void onDrawFrame(GL10 gl) {
-            GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+            if (glBackend != null) {
+                glBackend.clearFrame();
+            } else {
+                GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+            }
             
-            if (arSession == null || !sessionInitialized || initializationError != null || cameraTextureId == -1) {
+            if (arSession == null || !sessionInitialized || initializationError != null || backgroundRenderer == null) {
                 return;
             }
             
             try {
-                Frame frame = arSession.update();
-                Camera camera = frame.getCamera();
-                arSession.setDisplayGeometry(getSurfaceRotation(), viewportWidth, viewportHeight);
-
-                if (pendingTap && camera.getTrackingState() == TrackingState.TRACKING) {
-                    handleTapOnGlThread(frame);
-                    pendingTap = false;
-                }
-                if (dragging && camera.getTrackingState() == TrackingState.TRACKING) {
-                    handleDragOnGlThread(frame);
-                }
-                if (rotating && camera.getTrackingState() == TrackingState.TRACKING) {
-                    handleRotationOnGlThread();
+                displayRotationHelper.updateSessionIfNeeded(arSession);
+                long updateStartNs = System.nanoTime();
+                ArSession.Frame frame = arFrames.update();
+                float updateMs = (System.nanoTime() - updateStartNs) / 1_000_000f;
+                planeFinding.recordUpdateTime(updateMs);
+
+                long frameTimeMs = SystemClock.uptimeMillis();
+                if (planeFinding.update(frameTimeMs, frameLoop.getAnchorCount())) {
+                    configureSession();
+                    emitAREvent(planeFinding.isSuspended() ? "PLANE_FINDING_DISABLED" : "PLANE_FINDING_ENABLED",
+                        planeFinding.isSuspended() ? "Plane finding paused" : "Plane finding resumed", -1);
                 }
-                
-                if (backgroundRenderer != null && cameraTextureId != -1) {
-                    backgroundRenderer.draw(frame, cameraTextureId);
-                }
-                
-                // Note: Full Sceneform rendering integration requires more setup
-                // This is a placeholder for where you'd render the model
-                // For now, the model loads but full rendering needs Filament integration
-                
+                reportMetrics(frameTimeMs, updateMs);
+
+                frameLoop.draw(frame, frameTimeMs);
             } catch (CameraNotAvailableException e) {
                 Log.e(TAG, "Camera not available", e);
             } catch (Exception e) {
@@ -392,6 +703,7 @@ public class NativeARModelViewManager extends SimpleViewManager<GLSurfaceView> {
         }
 
         public void onPause() {
+            displayRotationHelper.onPause();
             if (arSession != null && sessionInitialized) {
                 try {
                     arSession.pause();
@@ -419,27 +731,18 @@ public class NativeARModelViewManager extends SimpleViewManager<GLSurfaceView> {
                     }
 
                     arSession = new Session(getContext());
-                    Config config = new Config(arSession);
-                    config.setPlaneFindingMode(Config.PlaneFindingMode.HORIZONTAL_AND_VERTICAL);
-                    config.setFocusMode(Config.FocusMode.AUTO);
-                    
-                    if (arSession.isDepthModeSupported(Config.DepthMode.AUTOMATIC)) {
-                        config.setDepthMode(Config.DepthMode.AUTOMATIC);
-                    }
-                    
-                    arSession.configure(config);
+                    arFrames = new ArCoreSession(arSession);
+                    selectCameraConfig();
+                    configureSession();
                     sessionInitialized = true;
 
-                    if (cameraTextureId != -1) {
-                        arSession.setCameraTextureName(cameraTextureId);
-                    }
-
-                    if (viewportWidth > 0 && viewportHeight > 0) {
-                        arSession.setDisplayGeometry(getSurfaceRotation(), viewportWidth, viewportHeight);
+                    if (backgroundRenderer != null) {
+                        backgroundRenderer.attachTo(arFrames);
                     }
                 }
 
                 if (arSession != null) {
+                    displayRotationHelper.onResume();
                     arSession.resume();
                 }
             } catch (UnavailableException | CameraNotAvailableException e) {
@@ -450,111 +753,5 @@ public class NativeARModelViewManager extends SimpleViewManager<GLSurfaceView> {
                 Log.e(TAG, "Error in onResume", e);
             }
         }
-
-        private int getSurfaceRotation() {
-            WindowManager wm = (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
-            if (wm == null) return Surface.ROTATION_0;
-            Display display = wm.getDefaultDisplay();
-            if (display == null) return Surface.ROTATION_0;
-            return display.getRotation();
-        }
-    }
-
-    // BackgroundRenderer class remains the same
-    private static class BackgroundRenderer {
-        private static final String VERTEX_SHADER =
-            "attribute vec4 a_Position;\n"
-            + "attribute vec2 a_TexCoord;\n"
-            + "varying vec2 v_TexCoord;\n"
-            + "void main() {\n"
-            + "   gl_Position = a_Position;\n"
-            + "   v_TexCoord = a_TexCoord;\n"
-            + "}";
-
-        private static final String FRAGMENT_SHADER =
-            "#extension GL_OES_EGL_image_external : require\n"
-            + "precision highp float;\n"
-            + "varying vec2 v_TexCoord;\n"
-            + "uniform samplerExternalOES u_Texture;\n"
-            + "void main() {\n"
-            + "   gl_FragColor = texture2D(u_Texture, v_TexCoord);\n"
-            + "}";
-
-        private int program;
-        private int positionAttrib;
-        private int texCoordAttrib;
-        private int textureUniform;
-        private FloatBuffer quadVertices;
-        private FloatBuffer quadTexCoordsTransformed;
-
-        public BackgroundRenderer() {
-            int vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER);
-            int fragmentShader = loadShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
-            
-            program = GLES20.glCreateProgram();
-            GLES20.glAttachShader(program, vertexShader);
-            GLES20.glAttachShader(program, fragmentShader);
-            GLES20.glLinkProgram(program);
-            
-            positionAttrib = GLES20.glGetAttribLocation(program, "a_Position");
-            texCoordAttrib = GLES20.glGetAttribLocation(program, "a_TexCoord");
-            textureUniform = GLES20.glGetUniformLocation(program, "u_Texture");
-
-            float[] vertices = {-1.0f, -1.0f, 1.0f, -1.0f, -1.0f,  1.0f, 1.0f,  1.0f};
-            float[] viewNormalizedCoords = {0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 1.0f, 1.0f, 1.0f};
-
-            quadVertices = ByteBuffer.allocateDirect(vertices.length * 4)
-                .order(ByteOrder.nativeOrder()).asFloatBuffer();
-            quadVertices.put(vertices).position(0);
-
-            quadTexCoordsTransformed = ByteBuffer.allocateDirect(viewNormalizedCoords.length * 4)
-                .order(ByteOrder.nativeOrder()).asFloatBuffer();
-            quadTexCoordsTransformed.put(viewNormalizedCoords).position(0);
-        }
-
-        private int loadShader(int type, String shaderCode) {
-            int shader = GLES20.glCreateShader(type);
-            GLES20.glShaderSource(shader, shaderCode);
-            GLES20.glCompileShader(shader);
-            return shader;
-        }
-
-        public void draw(Frame frame, int textureId) {
-            if (frame.hasDisplayGeometryChanged()) {
-                quadVertices.position(0);
-                quadTexCoordsTransformed.position(0);
-                frame.transformCoordinates2d(
-                    com.google.ar.core.Coordinates2d.OPENGL_NORMALIZED_DEVICE_COORDINATES,
-                    quadVertices,
-                    com.google.ar.core.Coordinates2d.TEXTURE_NORMALIZED,
-                    quadTexCoordsTransformed);
-                quadTexCoordsTransformed.position(0);
-            }
-
-            GLES20.glUseProgram(program);
-            GLES20.glDepthMask(false);
-            GLES20.glDisable(GLES20.GL_DEPTH_TEST);
-            GLES20.glDisable(GLES20.GL_BLEND);
-
-            quadVertices.position(0);
-            quadTexCoordsTransformed.position(0);
-            GLES20.glVertexAttribPointer(positionAttrib, 2, GLES20.GL_FLOAT, false, 0, quadVertices);
-            GLES20.glVertexAttribPointer(texCoordAttrib, 2, GLES20.GL_FLOAT, false, 0, quadTexCoordsTransformed);
-            
-            GLES20.glEnableVertexAttribArray(positionAttrib);
-            GLES20.glEnableVertexAttribArray(texCoordAttrib);
-
-            GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-            GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
-            GLES20.glUniform1i(textureUniform, 0);
-
-            GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
-
-            GLES20.glDisableVertexAttribArray(positionAttrib);
-            GLES20.glDisableVertexAttribArray(texCoordAttrib);
-            
-            GLES20.glEnable(GLES20.GL_DEPTH_TEST);
-            GLES20.glDepthMask(true);
-        }
     }
 }
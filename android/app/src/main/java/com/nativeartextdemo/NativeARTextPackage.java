@@ -16,6 +16,7 @@ public class NativeARTextPackage implements ReactPackage {
     List<ViewManager> viewManagers = new ArrayList<>();
     viewManagers.add(new NativeARTextViewManager());
     viewManagers.add(new NativeARImageViewManager());
+    viewManagers.add(new NativeARModelViewManager());
     return viewManagers;
   }
 
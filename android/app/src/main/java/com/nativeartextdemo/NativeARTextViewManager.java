@@ -7,15 +7,10 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Typeface;
-import android.opengl.GLES11Ext;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
-import android.opengl.GLUtils;
-import android.opengl.Matrix;
-import android.view.Display;
+import android.os.SystemClock;
 import android.view.MotionEvent;
-import android.view.Surface;
-import android.view.WindowManager;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
@@ -24,27 +19,20 @@ import com.facebook.react.uimanager.ThemedReactContext;
 import com.facebook.react.uimanager.annotations.ReactProp;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.Arguments;
 
-import com.google.ar.core.Anchor;
 import com.google.ar.core.ArCoreApk;
-import com.google.ar.core.Camera;
+import com.google.ar.core.CameraConfig;
 import com.google.ar.core.Config;
-import com.google.ar.core.Frame;
-import com.google.ar.core.HitResult;
-import com.google.ar.core.Plane;
-import com.google.ar.core.Point;
 import com.google.ar.core.Session;
-import com.google.ar.core.Trackable;
-import com.google.ar.core.TrackingState;
 import com.google.ar.core.exceptions.CameraNotAvailableException;
 import com.google.ar.core.exceptions.UnavailableException;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
@@ -72,6 +60,113 @@ public class NativeARTextViewManager extends SimpleViewManager<GLSurfaceView> {
     }
   }
 
+  // Opaque by default: the camera image covers the whole view
+  @ReactProp(name = "opaqueSurface", defaultBoolean = true)
+  public void setOpaqueSurface(GLSurfaceView view, boolean opaque) {
+    if (view instanceof ARTextView) {
+      ((ARTextView) view).eglSetup.setOpaque(opaque);
+    }
+  }
+
+  @ReactProp(name = "msaaSamples", defaultInt = 0)
+  public void setMsaaSamples(GLSurfaceView view, int samples) {
+    if (view instanceof ARTextView) {
+      ((ARTextView) view).eglSetup.setMsaaSamples(samples);
+    }
+  }
+
+  @ReactProp(name = "preferGles3", defaultBoolean = true)
+  public void setPreferGles3(GLSurfaceView view, boolean preferGles3) {
+    if (view instanceof ARTextView) {
+      ((ARTextView) view).eglSetup.setPreferGles3(preferGles3);
+    }
+  }
+
+  @ReactProp(name = "autoDisablePlaneFinding", defaultBoolean = true)
+  public void setAutoDisablePlaneFinding(GLSurfaceView view, boolean enabled) {
+    if (view instanceof ARTextView) {
+      ((ARTextView) view).planeFinding.setAutoDisable(enabled);
+    }
+  }
+
+  // Seconds without touches before plane finding is turned off, 0 = only after placement
+  @ReactProp(name = "planeFindingIdleTimeout", defaultFloat = 0f)
+  public void setPlaneFindingIdleTimeout(GLSurfaceView view, float seconds) {
+    if (view instanceof ARTextView) {
+      ((ARTextView) view).planeFinding.setIdleTimeoutMs((long) (seconds * 1000f));
+    }
+  }
+
+  // Milliseconds between METRICS events, 0 = off
+  @ReactProp(name = "metricsInterval", defaultInt = 0)
+  public void setMetricsInterval(GLSurfaceView view, int intervalMs) {
+    if (view instanceof ARTextView) {
+      ((ARTextView) view).metrics.setIntervalMs(intervalMs);
+    }
+  }
+
+  @ReactProp(name = "sessionConfig")
+  public void setSessionConfig(GLSurfaceView view, @Nullable ReadableMap sessionConfig) {
+    if (view instanceof ARTextView) {
+      ((ARTextView) view).setSessionConfig(sessionConfig);
+    }
+  }
+
+  @ReactProp(name = "instantPlacement")
+  public void setInstantPlacement(GLSurfaceView view, boolean enabled) {
+    if (view instanceof ARTextView) {
+      ((ARTextView) view).setInstantPlacementEnabled(enabled);
+    }
+  }
+
+  @ReactProp(name = "anchorGroupRadius", defaultFloat = AnchorGroupManager.DEFAULT_GROUP_RADIUS)
+  public void setAnchorGroupRadius(GLSurfaceView view, float radius) {
+    if (view instanceof ARTextView) {
+      ((ARTextView) view).frameLoop.getAnchorGroups().setGroupRadius(radius);
+    }
+  }
+
+  @ReactProp(name = "maxAnchors", defaultInt = AnchorBudget.DEFAULT_MAX_ANCHORS)
+  public void setMaxAnchors(GLSurfaceView view, int maxAnchors) {
+    if (view instanceof ARTextView) {
+      ((ARTextView) view).frameLoop.getAnchorBudget().setMaxAnchors(maxAnchors);
+    }
+  }
+
+  @ReactProp(name = "anchorEvictionPolicy")
+  public void setAnchorEvictionPolicy(GLSurfaceView view, @Nullable String policy) {
+    if (view instanceof ARTextView) {
+      ((ARTextView) view).frameLoop.getAnchorBudget().setPolicy(AnchorBudget.Policy.fromString(policy));
+    }
+  }
+
+  @Override
+  public void receiveCommand(@NonNull GLSurfaceView root, String commandId, @Nullable ReadableArray args) {
+    if (!(root instanceof ARTextView)) return;
+    ARTextView view = (ARTextView) root;
+    switch (commandId) {
+      case "removeAnchor":
+        if (args != null && args.size() > 0) {
+          view.removeAnchor(args.getInt(0));
+        }
+        break;
+      case "clearAnchors":
+        view.clearAnchors();
+        break;
+      case "enablePlaneFinding":
+        view.enablePlaneFinding();
+        break;
+    }
+  }
+
+  @Override
+  protected void onAfterUpdateTransaction(@NonNull GLSurfaceView view) {
+    super.onAfterUpdateTransaction(view);
+    if (view instanceof ARTextView) {
+      ((ARTextView) view).startRendering();
+    }
+  }
+
   @Override
   public void onDropViewInstance(@NonNull GLSurfaceView view) {
     if (view instanceof ARTextView) {
@@ -82,102 +177,76 @@ public class NativeARTextViewManager extends SimpleViewManager<GLSurfaceView> {
 
   private static class ARTextView extends GLSurfaceView implements GLSurfaceView.Renderer {
     private Session arSession;
+    // What the frame loop reads; ARCore-backed, the Session itself is only used for configuration
+    private ArSession arFrames;
     private String displayText = "Hello AR";
-    private final List<Anchor> anchors = new ArrayList<>();
-    private final List<Float> anchorRotations = new ArrayList<>();
+    // Placed text, planes and the per-frame drawing; GL thread apart from requestTap()
+    private final TextFrameLoop frameLoop = new TextFrameLoop(this::emitAREvent, this::emitPlacementTiming);
     private boolean sessionInitialized = false;
     private Exception initializationError = null;
-    private int cameraTextureId = -1;
     private BackgroundRenderer backgroundRenderer;
-    private TextBillboardRenderer textRenderer;
+    private final EglSetup eglSetup = new EglSetup(16, 0);
+    private boolean rendererStarted = false;
+    private final List<Runnable> pendingGlEvents = new ArrayList<>();
+    private GlBackend glBackend;
+    private BillboardRenderer textRenderer;
     private PlaneRenderer planeRenderer;
     private boolean installRequested = false;
-    private int viewportWidth = 0;
-    private int viewportHeight = 0;
-    private volatile boolean pendingTap = false;
-    private volatile float pendingTapX = 0f;
-    private volatile float pendingTapY = 0f;
+    private final DisplayRotationHelper displayRotationHelper;
+    private volatile SessionConfigProfile sessionProfile = SessionConfigProfile.DEFAULT;
+    private boolean cameraConfigPrefersDepth = false;
+    private final PlaneFindingPolicy planeFinding = new PlaneFindingPolicy();
+    private final MetricsReporter metrics = new MetricsReporter();
 
-    // Rotation gesture tracking
+    // Rotation gesture tracking, UI thread
     private boolean isRotating = false;
     private float touchDownX = 0f;
     private float touchDownY = 0f;
-    private float rotationStartX = 0f;
-    private float currentRotationAngle = 0f;
-    private int rotatingAnchorIndex = -1;
     private static final float MOVEMENT_THRESHOLD = 15f; // pixels - reduced for better responsiveness
-    private static final float HIT_TEST_RADIUS = 150f; // pixels for text selection - increased for easier selection
     private static final float ROTATION_SENSITIVITY = 0.8f; // rotation speed multiplier
-    
-    // Camera matrices for hit testing
-    // These matrices are updated in onDrawFrame (GL thread) and read in touch events (UI thread)
-    // matricesInitialized ensures we don't use zero/invalid matrices before first frame renders
-    private float[] currentViewMatrix = new float[16];
-    private float[] currentProjectionMatrix = new float[16];
-    private boolean matricesInitialized = false;
 
     // State tracking for loading feedback
     private boolean arSessionReady = false;
     private boolean textRendererReady = false;
-    private boolean planeDetected = false;
-    private boolean hasEmittedPlaneDetection = false;
     private ThemedReactContext reactContext;
 
     public ARTextView(Context context) {
       super(context);
+      displayRotationHelper = new DisplayRotationHelper(context);
       this.reactContext = (ThemedReactContext) context;
       
-      // Initialize matrices with identity to prevent zero-matrix issues
-      Matrix.setIdentityM(currentViewMatrix, 0);
-      Matrix.setIdentityM(currentProjectionMatrix, 0);
-      
-      setEGLContextClientVersion(2);
-      setEGLConfigChooser(8, 8, 8, 8, 16, 0);
-      getHolder().setFormat(android.graphics.PixelFormat.TRANSLUCENT);
       setPreserveEGLContextOnPause(true);
-      setRenderer(this);
-      setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+      // setRenderer waits for the EGL props, see startRendering()
 
       setOnTouchListener((v, event) -> {
         switch (event.getAction()) {
           case MotionEvent.ACTION_DOWN:
+            planeFinding.onTouch(event.getEventTime());
             // Record initial touch position
             touchDownX = event.getX();
             touchDownY = event.getY();
-            
+            isRotating = false;
             // Find which text/anchor the user is touching
-            if (!anchors.isEmpty() && matricesInitialized) {
-              rotatingAnchorIndex = findClosestAnchor(touchDownX, touchDownY);
-              if (rotatingAnchorIndex >= 0) {
-                // User touched an existing text - prepare for rotation
-                rotationStartX = touchDownX;
-                currentRotationAngle = anchorRotations.get(rotatingAnchorIndex);
-                emitAREvent("TEXT_SELECTED", "Text selected for rotation (Index: " + rotatingAnchorIndex + ")");
-              }
-            }
+            float downX = touchDownX;
+            float downY = touchDownY;
+            queueEvent(() -> frameLoop.selectAnchorAt(downX, downY));
             break;
 
           case MotionEvent.ACTION_MOVE:
-            // Only allow rotation if we have a selected anchor
-            if (rotatingAnchorIndex >= 0 && rotatingAnchorIndex < anchorRotations.size()) {
-              // Check if movement exceeds threshold
-              float deltaX = event.getX() - touchDownX;
-              float deltaY = event.getY() - touchDownY;
-              float distance = (float) Math.sqrt(deltaX * deltaX + deltaY * deltaY);
-              
-              // If moved beyond threshold, enter rotation mode
-              if (!isRotating && distance > MOVEMENT_THRESHOLD) {
-                isRotating = true;
-                emitAREvent("TEXT_ROTATING", "Rotating text #" + rotatingAnchorIndex);
-              }
-              
-              // Apply rotation if in rotation mode
-              if (isRotating) {
-                float rotationDeltaX = event.getX() - rotationStartX;
-                float rotationDelta = rotationDeltaX * ROTATION_SENSITIVITY;
-                float newRotation = currentRotationAngle + rotationDelta;
-                anchorRotations.set(rotatingAnchorIndex, newRotation);
-              }
+            // Check if movement exceeds threshold
+            float deltaX = event.getX() - touchDownX;
+            float deltaY = event.getY() - touchDownY;
+            float distance = (float) Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+
+            // If moved beyond threshold, enter rotation mode
+            if (!isRotating && distance > MOVEMENT_THRESHOLD) {
+              isRotating = true;
+            }
+
+            // Apply rotation if in rotation mode; a no-op unless the touch selected a text
+            if (isRotating) {
+              float rotationDelta = deltaX * ROTATION_SENSITIVITY;
+              queueEvent(() -> frameLoop.rotateSelectedAnchor(rotationDelta));
             }
             break;
 
@@ -189,23 +258,18 @@ public class NativeARTextViewManager extends SimpleViewManager<GLSurfaceView> {
             
             if (!isRotating && upDistance <= MOVEMENT_THRESHOLD) {
               // This was a tap - place new text
-              pendingTapX = event.getX();
-              pendingTapY = event.getY();
-              pendingTap = true;
-            } else if (isRotating) {
-              // Rotation completed
-              emitAREvent("TEXT_UPDATED", "Text rotation completed");
+              frameLoop.requestTap(event.getX(), event.getY(), event.getEventTime());
             }
             
             // Reset rotation state
             isRotating = false;
-            rotatingAnchorIndex = -1;
+            queueEvent(frameLoop::endAnchorRotation);
             break;
 
           case MotionEvent.ACTION_CANCEL:
             // Reset rotation state
             isRotating = false;
-            rotatingAnchorIndex = -1;
+            queueEvent(frameLoop::endAnchorRotation);
             break;
         }
         return true;
@@ -214,13 +278,34 @@ public class NativeARTextViewManager extends SimpleViewManager<GLSurfaceView> {
 
     // Event emitter for React Native
     private void emitAREvent(String eventType, String message) {
+      emitAREvent(eventType, message, -1);
+    }
+
+    private void emitAREvent(String eventType, String message, int anchorId) {
+      emitAREvent(eventType, message, anchorId, null);
+    }
+
+    private void emitPlacementTiming(String eventType, int anchorId, long latencyMs) {
+      WritableMap timing = Arguments.createMap();
+      timing.putDouble("latencyMs", latencyMs);
+      String label = "PLACEMENT_PROMOTED".equals(eventType) ? "promoted to full tracking" : "visible";
+      emitAREvent(eventType, "Text " + label + " after " + latencyMs + " ms", anchorId, timing);
+    }
+
+    private void emitAREvent(String eventType, String message, int anchorId, @Nullable WritableMap extras) {
       if (reactContext != null) {
         WritableMap params = Arguments.createMap();
         params.putString("type", eventType);
         params.putString("message", message);
         params.putBoolean("arSessionReady", arSessionReady);
         params.putBoolean("textRendererReady", textRendererReady);
-        params.putBoolean("planeDetected", planeDetected);
+        params.putBoolean("planeDetected", frameLoop.isPlaneDetected());
+        if (anchorId >= 0) {
+          params.putInt("anchorId", anchorId);
+        }
+        if (extras != null) {
+          params.merge(extras);
+        }
         
         reactContext
           .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
@@ -228,100 +313,169 @@ public class NativeARTextViewManager extends SimpleViewManager<GLSurfaceView> {
       }
     }
 
-    // Find which anchor/text is closest to the touch point
-    private int findClosestAnchor(float touchX, float touchY) {
-      if (anchors.isEmpty() || viewportWidth == 0 || viewportHeight == 0) {
-        return -1;
-      }
-      
-      // Ensure matrices are initialized before performing hit tests
-      if (!matricesInitialized) {
-        return -1;
+    public void setText(String text) {
+      this.displayText = text;
+      queueEvent(() -> {
+        if (textRenderer != null) {
+          emitAREvent("TEXT_UPDATING", "Updating text content");
+          uploadText(displayText);
+          emitAREvent("TEXT_UPDATED", "Text content updated");
+        }
+      });
+    }
+
+    // GL thread, with textRenderer created
+    private void uploadText(String text) {
+      Bitmap bitmap = renderTextBitmap(text);
+      textRenderer.updateTexture(bitmap.getWidth(), bitmap.getHeight(), AndroidGl.rgbaPixels(bitmap));
+      bitmap.recycle();
+    }
+
+    private static Bitmap renderTextBitmap(String text) {
+      if (text == null || text.isEmpty()) text = "Hello AR";
+
+      Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+      paint.setTextSize(120);
+      paint.setColor(Color.WHITE);
+      paint.setTypeface(Typeface.DEFAULT_BOLD);
+      paint.setTextAlign(Paint.Align.CENTER);
+      paint.setShadowLayer(10f, 0f, 0f, Color.BLACK);
+
+      float textWidth = paint.measureText(text);
+      int width = (int) Math.max(512, textWidth + 80);
+      int height = 256;
+
+      Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+      Canvas canvas = new Canvas(bitmap);
+      canvas.drawColor(Color.TRANSPARENT);
+      canvas.drawText(text, width / 2f, height / 2f + 40, paint);
+      return bitmap;
+    }
+
+    public void setSessionConfig(@Nullable ReadableMap sessionConfig) {
+      sessionProfile = SessionConfigProfile.fromReadableMap(sessionConfig);
+      queueEvent(this::reconfigureSession);
+    }
+
+    // Profile changes apply to the running session, it is never recreated
+    private void reconfigureSession() {
+      if (arSession == null || !sessionInitialized) return;
+      if (wantsDepthSensor() != cameraConfigPrefersDepth) {
+        // The camera config can only change while the session is paused
+        try {
+          arSession.pause();
+          selectCameraConfig();
+          configureSession();
+          arSession.resume();
+        } catch (CameraNotAvailableException e) {
+          e.printStackTrace();
+        }
+      } else {
+        configureSession();
       }
+      emitAREvent("SESSION_CONFIGURED", "Session profile " + sessionProfile.describe());
+    }
 
-      int closestIndex = -1;
-      float closestDistance = Float.MAX_VALUE;
+    private boolean wantsDepthSensor() {
+      return sessionProfile.depthMode != Config.DepthMode.DISABLED;
+    }
 
-      // Check each anchor
-      for (int i = 0; i < anchors.size(); i++) {
-        Anchor anchor = anchors.get(i);
-        if (anchor.getTrackingState() != TrackingState.TRACKING) continue;
+    // 30 fps, smallest acceptable CPU image, depth sensor only if the profile uses depth
+    private void selectCameraConfig() {
+      cameraConfigPrefersDepth = wantsDepthSensor();
+      CameraConfig selected = SessionCameraConfig.selectAndApply(arSession, cameraConfigPrefersDepth);
+      if (selected != null) {
+        emitAREvent("CAMERA_CONFIG_SELECTED", SessionCameraConfig.describe(selected));
+      }
+    }
 
-        // Get anchor position in 3D world space
-        float[] anchorMatrix = new float[16];
-        anchor.getPose().toMatrix(anchorMatrix, 0);
-        
-        // Extract world position
-        float[] worldPos = new float[4];
-        worldPos[0] = anchorMatrix[12];
-        worldPos[1] = anchorMatrix[13];
-        worldPos[2] = anchorMatrix[14];
-        worldPos[3] = 1.0f;
-
-        // Transform to clip space: projection * view * world
-        float[] viewPos = new float[4];
-        Matrix.multiplyMV(viewPos, 0, currentViewMatrix, 0, worldPos, 0);
-        
-        float[] clipPos = new float[4];
-        Matrix.multiplyMV(clipPos, 0, currentProjectionMatrix, 0, viewPos, 0);
+    // Builds the whole Config from the profile and props so one configure() call applies everything
+    private void configureSession() {
+      Config config = new Config(arSession);
+      sessionProfile.applyTo(arSession, config, Config.PlaneFindingMode.HORIZONTAL);
+      if (planeFinding.isSuspended()) {
+        config.setPlaneFindingMode(Config.PlaneFindingMode.DISABLED);
+      }
+      config.setInstantPlacementMode(frameLoop.isInstantPlacementEnabled()
+          ? Config.InstantPlacementMode.LOCAL_Y_UP
+          : Config.InstantPlacementMode.DISABLED);
+      arSession.configure(config);
+    }
 
-        // Perspective divide to get normalized device coordinates
-        // Skip if behind camera or w is too small
-        if (clipPos[3] <= 0.0001f) continue; // Behind camera or invalid
-        
-        float ndcX = clipPos[0] / clipPos[3];
-        float ndcY = clipPos[1] / clipPos[3];
-        
-        // Skip if outside normalized device coordinates range
-        if (Math.abs(ndcX) > 2.0f || Math.abs(ndcY) > 2.0f) continue;
-
-        // Convert to screen coordinates
-        float screenX = (ndcX + 1.0f) * 0.5f * viewportWidth;
-        float screenY = (1.0f - ndcY) * 0.5f * viewportHeight; // Flip Y
-
-        // Calculate distance from touch point
-        float dx = screenX - touchX;
-        float dy = screenY - touchY;
-        float distance = (float) Math.sqrt(dx * dx + dy * dy);
-
-        // Check if this is the closest anchor within hit radius
-        if (distance < closestDistance && distance < HIT_TEST_RADIUS) {
-          closestDistance = distance;
-          closestIndex = i;
+    // Called once the first batch of props is applied. The EGL options cannot change after
+    // the GL thread has started, so later changes to them are ignored.
+    void startRendering() {
+      if (rendererStarted) return;
+      eglSetup.applyTo(this);
+      setRenderer(this);
+      setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+      synchronized (pendingGlEvents) {
+        rendererStarted = true;
+        for (Runnable event : pendingGlEvents) {
+          super.queueEvent(event);
         }
+        pendingGlEvents.clear();
       }
+    }
 
-      return closestIndex;
+    // Props may queue GL work before startRendering(); hold it until the GL thread exists
+    @Override
+    public void queueEvent(Runnable event) {
+      synchronized (pendingGlEvents) {
+        if (!rendererStarted) {
+          pendingGlEvents.add(event);
+          return;
+        }
+      }
+      super.queueEvent(event);
     }
 
-    public void setText(String text) {
-      this.displayText = text;
+    public void enablePlaneFinding() {
+      planeFinding.requestResume(SystemClock.uptimeMillis());
+    }
+
+    private void reportMetrics(long nowMs, float updateMs) {
+      if (!metrics.isEnabled()) return;
+      metrics.put("sessionUpdateMs", updateMs);
+      metrics.put("planeFindingEnabled", planeFinding.isSuspended() ? 0 : 1);
+      metrics.put("planeFindingActiveUpdateMs", planeFinding.getActiveUpdateMs());
+      metrics.put("planeFindingSuspendedUpdateMs", planeFinding.getSuspendedUpdateMs());
+      metrics.put("planeFindingCpuSavedMs", planeFinding.getCpuSavedMs());
+      if (glBackend != null) {
+        metrics.put("glCallsIssued", glBackend.getState().getLastFrameIssued());
+        metrics.put("glCallsSkipped", glBackend.getState().getLastFrameSkipped());
+      }
+      Map<String, Double> snapshot = metrics.poll(nowMs);
+      if (snapshot == null) return;
+
+      WritableMap values = Arguments.createMap();
+      for (Map.Entry<String, Double> entry : snapshot.entrySet()) {
+        values.putDouble(entry.getKey(), entry.getValue());
+      }
+      WritableMap extras = Arguments.createMap();
+      extras.putMap("metrics", values);
+      emitAREvent("METRICS", "Performance metrics", -1, extras);
+    }
+
+    public void setInstantPlacementEnabled(boolean enabled) {
+      if (frameLoop.isInstantPlacementEnabled() == enabled) return;
+      frameLoop.setInstantPlacementEnabled(enabled);
+      queueEvent(this::reconfigureSession);
+    }
+
+    public void removeAnchor(int anchorId) {
       queueEvent(() -> {
-        if (textRenderer != null) {
-          emitAREvent("TEXT_UPDATING", "Updating text content");
-          textRenderer.updateText(displayText);
-          emitAREvent("TEXT_UPDATED", "Text content updated");
+        if (frameLoop.removeAnchor(anchorId)) {
+          emitAREvent("ANCHOR_REMOVED", "Text removed", anchorId);
         }
       });
     }
 
-    private void handleTapOnGlThread(Frame frame) {
-      if (frame == null) return;
-      List<HitResult> hitResults = frame.hitTest(pendingTapX, pendingTapY);
-      for (HitResult hit : hitResults) {
-        Trackable trackable = hit.getTrackable();
-        if (trackable instanceof Plane && ((Plane) trackable).isPoseInPolygon(hit.getHitPose())) {
-          Anchor anchor = hit.createAnchor();
-          anchors.add(anchor);
-          anchorRotations.add(0f); // Initialize with 0 rotation
-          break;
-        } else if (trackable instanceof Point && ((Point) trackable).getOrientationMode() == Point.OrientationMode.ESTIMATED_SURFACE_NORMAL) {
-          Anchor anchor = hit.createAnchor();
-          anchors.add(anchor);
-          anchorRotations.add(0f); // Initialize with 0 rotation
-          break;
-        }
-      }
+    public void clearAnchors() {
+      queueEvent(() -> {
+        frameLoop.clearAnchors();
+        emitAREvent("ANCHORS_CLEARED", "All text removed");
+      });
     }
 
     @Override
@@ -335,25 +489,18 @@ public class NativeARTextViewManager extends SimpleViewManager<GLSurfaceView> {
       
       emitAREvent("RENDERER_INITIALIZING", "Setting up AR renderer");
       
-      int[] textures = new int[1];
-      GLES20.glGenTextures(1, textures, 0);
-      cameraTextureId = textures[0];
-      GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, cameraTextureId);
-      GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
-      GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
-      GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
-      GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-      
-      backgroundRenderer = new BackgroundRenderer();
-      textRenderer = new TextBillboardRenderer();
-      planeRenderer = new PlaneRenderer();
+      glBackend = new GlBackend(new AndroidGl(), eglSetup.getGlesVersion());
+      backgroundRenderer = new BackgroundRenderer(glBackend);
+      textRenderer = new BillboardRenderer(glBackend);
+      planeRenderer = new PlaneRenderer(glBackend);
       
       if (arSession != null && sessionInitialized) {
-        arSession.setCameraTextureName(cameraTextureId);
+        backgroundRenderer.attachTo(arFrames);
       }
       
       // Initialize text texture
-      textRenderer.updateText(displayText);
+      uploadText(displayText);
+      frameLoop.attach(glBackend, backgroundRenderer, textRenderer, planeRenderer);
       textRendererReady = true;
       emitAREvent("TEXT_RENDERER_READY", "Text renderer initialized");
     }
@@ -361,92 +508,38 @@ public class NativeARTextViewManager extends SimpleViewManager<GLSurfaceView> {
     @Override
     public void onSurfaceChanged(GL10 gl, int width, int height) {
       GLES20.glViewport(0, 0, width, height);
-      viewportWidth = width;
-      viewportHeight = height;
-      if (arSession != null) {
-        arSession.setDisplayGeometry(getSurfaceRotation(), width, height);
-      }
+      frameLoop.setViewport(width, height);
+      displayRotationHelper.onSurfaceChanged(width, height);
     }
 
     @Override
     public void onDrawFrame(GL10 gl) {
-      GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+      if (glBackend != null) {
+        glBackend.clearFrame();
+      } else {
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+      }
       
-      if (arSession == null || !sessionInitialized || initializationError != null || cameraTextureId == -1) {
+      if (arSession == null || !sessionInitialized || initializationError != null || backgroundRenderer == null) {
         return;
       }
       
       try {
-        Frame frame = arSession.update();
-        Camera camera = frame.getCamera();
-        arSession.setDisplayGeometry(getSurfaceRotation(), viewportWidth, viewportHeight);
-
-        // Check for plane detection
-        for (Plane plane : frame.getUpdatedTrackables(Plane.class)) {
-          if (plane.getTrackingState() == TrackingState.TRACKING) {
-            if (!hasEmittedPlaneDetection) {
-              planeDetected = true;
-              hasEmittedPlaneDetection = true;
-              emitAREvent("PLANE_DETECTED", "Surface detected - tap to place text");
-            }
-            break;
-          }
+        displayRotationHelper.updateSessionIfNeeded(arSession);
+        long updateStartNs = System.nanoTime();
+        ArSession.Frame frame = arFrames.update();
+        float updateMs = (System.nanoTime() - updateStartNs) / 1_000_000f;
+        planeFinding.recordUpdateTime(updateMs);
+
+        long frameTimeMs = SystemClock.uptimeMillis();
+        if (planeFinding.update(frameTimeMs, frameLoop.getAnchorCount())) {
+          configureSession();
+          emitAREvent(planeFinding.isSuspended() ? "PLANE_FINDING_DISABLED" : "PLANE_FINDING_ENABLED",
+              planeFinding.isSuspended() ? "Plane finding paused" : "Plane finding resumed", -1);
         }
+        reportMetrics(frameTimeMs, updateMs);
 
-        // Handle touch interactions
-        if (pendingTap && camera.getTrackingState() == TrackingState.TRACKING) {
-          if (!textRendererReady) {
-            emitAREvent("PLACEMENT_BLOCKED", "Text renderer not ready, please wait");
-          } else if (!planeDetected) {
-            emitAREvent("PLACEMENT_BLOCKED", "No surface detected, keep scanning");
-          } else {
-            handleTapOnGlThread(frame);
-            emitAREvent("TEXT_PLACED", "Text placed successfully");
-          }
-          pendingTap = false;
-        }
-        
-        // Render camera background
-        if (backgroundRenderer != null && cameraTextureId != -1) {
-          backgroundRenderer.draw(frame, cameraTextureId);
-        }
-        
-        if (camera.getTrackingState() == TrackingState.TRACKING) {
-          float[] proj = new float[16];
-          float[] view = new float[16];
-          camera.getProjectionMatrix(proj, 0, 0.1f, 100.0f);
-          camera.getViewMatrix(view, 0);
-
-          // Store matrices for hit testing
-          System.arraycopy(view, 0, currentViewMatrix, 0, 16);
-          System.arraycopy(proj, 0, currentProjectionMatrix, 0, 16);
-          matricesInitialized = true;
-
-          // Draw detected planes (only before first placement)
-          if (planeRenderer != null && anchors.isEmpty()) {
-            for (Plane plane : frame.getUpdatedTrackables(Plane.class)) {
-              if (plane.getTrackingState() == TrackingState.TRACKING && plane.getSubsumedBy() == null) {
-                planeRenderer.drawPlane(plane, view, proj);
-              }
-            }
-          }
-
-          // Draw placed text
-          for (int i = 0; i < anchors.size(); i++) {
-            Anchor anchor = anchors.get(i);
-            if (anchor.getTrackingState() != TrackingState.TRACKING) continue;
-            
-            // Ensure rotation data exists for this anchor
-            if (i >= anchorRotations.size()) continue;
-            
-            float[] model = new float[16];
-            anchor.getPose().toMatrix(model, 0);
-            float rotation = anchorRotations.get(i);
-            if (textRenderer != null) {
-              textRenderer.drawBillboard(model, view, proj, rotation);
-            }
-          }
-        }
+        frameLoop.draw(frame, frameTimeMs);
       } catch (CameraNotAvailableException e) {
         e.printStackTrace();
       } catch (Exception e) {
@@ -455,10 +548,11 @@ public class NativeARTextViewManager extends SimpleViewManager<GLSurfaceView> {
     }
 
     public void onPause() {
+      displayRotationHelper.onPause();
       if (arSession != null && sessionInitialized) {
         try {
           arSession.pause();
-          matricesInitialized = false; // Reset matrix state on pause
+          frameLoop.invalidateCamera(); // Reset matrix state on pause
         } catch (Exception e) {
           e.printStackTrace();
         }
@@ -485,30 +579,21 @@ public class NativeARTextViewManager extends SimpleViewManager<GLSurfaceView> {
           }
 
           arSession = new Session(getContext());
-          Config config = new Config(arSession);
-          config.setPlaneFindingMode(Config.PlaneFindingMode.HORIZONTAL);
-          config.setFocusMode(Config.FocusMode.AUTO);
-          
-          if (arSession.isDepthModeSupported(Config.DepthMode.AUTOMATIC)) {
-            config.setDepthMode(Config.DepthMode.AUTOMATIC);
-          }
-          
-          arSession.configure(config);
+          arFrames = new ArCoreSession(arSession);
+          selectCameraConfig();
+          configureSession();
           sessionInitialized = true;
           arSessionReady = true;
 
           emitAREvent("AR_SESSION_READY", "AR session initialized - move phone to detect surfaces");
 
-          if (cameraTextureId != -1) {
-            arSession.setCameraTextureName(cameraTextureId);
-          }
-
-          if (viewportWidth > 0 && viewportHeight > 0) {
-            arSession.setDisplayGeometry(getSurfaceRotation(), viewportWidth, viewportHeight);
+          if (backgroundRenderer != null) {
+            backgroundRenderer.attachTo(arFrames);
           }
         }
 
         if (arSession != null) {
+          displayRotationHelper.onResume();
           arSession.resume();
         }
       } catch (UnavailableException | CameraNotAvailableException e) {
@@ -521,344 +606,5 @@ public class NativeARTextViewManager extends SimpleViewManager<GLSurfaceView> {
         emitAREvent("AR_ERROR", "Failed to initialize AR: " + e.getMessage());
       }
     }
-
-    private int getSurfaceRotation() {
-      WindowManager wm = (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
-      if (wm == null) return Surface.ROTATION_0;
-      Display display = wm.getDefaultDisplay();
-      if (display == null) return Surface.ROTATION_0;
-      return display.getRotation();
-    }
-  }
-
-  // Background renderer (same as before)
-  private static class BackgroundRenderer {
-    private static final String VERTEX_SHADER =
-        "attribute vec4 a_Position;\n"
-        + "attribute vec2 a_TexCoord;\n"
-        + "varying vec2 v_TexCoord;\n"
-        + "void main() {\n"
-        + "   gl_Position = a_Position;\n"
-        + "   v_TexCoord = a_TexCoord;\n"
-        + "}";
-
-    private static final String FRAGMENT_SHADER =
-        "#extension GL_OES_EGL_image_external : require\n"
-        + "precision highp float;\n"
-        + "varying vec2 v_TexCoord;\n"
-        + "uniform samplerExternalOES u_Texture;\n"
-        + "void main() {\n"
-        + "   gl_FragColor = texture2D(u_Texture, v_TexCoord);\n"
-        + "}";
-
-    private int program;
-    private int positionAttrib;
-    private int texCoordAttrib;
-    private int textureUniform;
-    private FloatBuffer quadVertices;
-    private FloatBuffer quadTexCoordsTransformed;
-
-    public BackgroundRenderer() {
-      int vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER);
-      int fragmentShader = loadShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
-      
-      program = GLES20.glCreateProgram();
-      GLES20.glAttachShader(program, vertexShader);
-      GLES20.glAttachShader(program, fragmentShader);
-      GLES20.glLinkProgram(program);
-      
-      positionAttrib = GLES20.glGetAttribLocation(program, "a_Position");
-      texCoordAttrib = GLES20.glGetAttribLocation(program, "a_TexCoord");
-      textureUniform = GLES20.glGetUniformLocation(program, "u_Texture");
-
-      float[] vertices = {-1.0f, -1.0f, 1.0f, -1.0f, -1.0f, 1.0f, 1.0f, 1.0f};
-      float[] viewNormalizedCoords = {0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 1.0f, 1.0f, 1.0f};
-
-      quadVertices = ByteBuffer.allocateDirect(vertices.length * 4)
-          .order(ByteOrder.nativeOrder()).asFloatBuffer();
-      quadVertices.put(vertices).position(0);
-
-      quadTexCoordsTransformed = ByteBuffer.allocateDirect(viewNormalizedCoords.length * 4)
-          .order(ByteOrder.nativeOrder()).asFloatBuffer();
-      quadTexCoordsTransformed.put(viewNormalizedCoords).position(0);
-    }
-
-    private int loadShader(int type, String shaderCode) {
-      int shader = GLES20.glCreateShader(type);
-      GLES20.glShaderSource(shader, shaderCode);
-      GLES20.glCompileShader(shader);
-      return shader;
-    }
-
-    public void draw(Frame frame, int textureId) {
-      if (frame.hasDisplayGeometryChanged()) {
-        quadVertices.position(0);
-        quadTexCoordsTransformed.position(0);
-        frame.transformCoordinates2d(
-            com.google.ar.core.Coordinates2d.OPENGL_NORMALIZED_DEVICE_COORDINATES,
-            quadVertices,
-            com.google.ar.core.Coordinates2d.TEXTURE_NORMALIZED,
-            quadTexCoordsTransformed);
-        quadTexCoordsTransformed.position(0);
-      }
-
-      GLES20.glUseProgram(program);
-      GLES20.glDepthMask(false);
-      GLES20.glDisable(GLES20.GL_DEPTH_TEST);
-
-      quadVertices.position(0);
-      quadTexCoordsTransformed.position(0);
-      GLES20.glVertexAttribPointer(positionAttrib, 2, GLES20.GL_FLOAT, false, 0, quadVertices);
-      GLES20.glVertexAttribPointer(texCoordAttrib, 2, GLES20.GL_FLOAT, false, 0, quadTexCoordsTransformed);
-      
-      GLES20.glEnableVertexAttribArray(positionAttrib);
-      GLES20.glEnableVertexAttribArray(texCoordAttrib);
-
-      GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-      GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
-      GLES20.glUniform1i(textureUniform, 0);
-
-      GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
-
-      GLES20.glDisableVertexAttribArray(positionAttrib);
-      GLES20.glDisableVertexAttribArray(texCoordAttrib);
-      
-      GLES20.glEnable(GLES20.GL_DEPTH_TEST);
-      GLES20.glDepthMask(true);
-    }
-  }
-
-  // Text billboard renderer
-  private static class TextBillboardRenderer {
-    private static final String VERTEX_SHADER =
-        "uniform mat4 u_MVP;\n" +
-        "attribute vec4 a_Position;\n" +
-        "attribute vec2 a_TexCoord;\n" +
-        "varying vec2 v_TexCoord;\n" +
-        "void main() {\n" +
-        "  gl_Position = u_MVP * a_Position;\n" +
-        "  v_TexCoord = a_TexCoord;\n" +
-        "}";
-
-    private static final String FRAGMENT_SHADER =
-        "precision mediump float;\n" +
-        "varying vec2 v_TexCoord;\n" +
-        "uniform sampler2D u_Texture;\n" +
-        "void main() {\n" +
-        "  gl_FragColor = texture2D(u_Texture, v_TexCoord);\n" +
-        "}";
-
-    private int program;
-    private int positionAttrib;
-    private int texCoordAttrib;
-    private int mvpUniform;
-    private int textureUniform;
-    private FloatBuffer quadVertices;
-    private FloatBuffer quadTexCoords;
-    private int textTextureId = -1;
-    private Bitmap currentBitmap = null;
-
-    public TextBillboardRenderer() {
-      int v = loadShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER);
-      int f = loadShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
-      program = GLES20.glCreateProgram();
-      GLES20.glAttachShader(program, v);
-      GLES20.glAttachShader(program, f);
-      GLES20.glLinkProgram(program);
-
-      positionAttrib = GLES20.glGetAttribLocation(program, "a_Position");
-      texCoordAttrib = GLES20.glGetAttribLocation(program, "a_TexCoord");
-      mvpUniform = GLES20.glGetUniformLocation(program, "u_MVP");
-      textureUniform = GLES20.glGetUniformLocation(program, "u_Texture");
-
-      float size = 0.3f;
-      float[] vertices = {-size, -size, 0f, size, -size, 0f, -size, size, 0f, size, size, 0f};
-      float[] uvs = {0f, 1f, 1f, 1f, 0f, 0f, 1f, 0f};
-      
-      quadVertices = ByteBuffer.allocateDirect(vertices.length * 4)
-          .order(ByteOrder.nativeOrder()).asFloatBuffer();
-      quadVertices.put(vertices).position(0);
-      
-      quadTexCoords = ByteBuffer.allocateDirect(uvs.length * 4)
-          .order(ByteOrder.nativeOrder()).asFloatBuffer();
-      quadTexCoords.put(uvs).position(0);
-    }
-
-    private int loadShader(int type, String code) {
-      int shader = GLES20.glCreateShader(type);
-      GLES20.glShaderSource(shader, code);
-      GLES20.glCompileShader(shader);
-      return shader;
-    }
-
-    public void updateText(String text) {
-      if (text == null || text.isEmpty()) text = "Hello AR";
-      
-      // Delete old texture
-      if (textTextureId != -1) {
-        int[] toDelete = {textTextureId};
-        GLES20.glDeleteTextures(1, toDelete, 0);
-      }
-      
-      // Create bitmap from text
-      Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-      paint.setTextSize(120);
-      paint.setColor(Color.WHITE);
-      paint.setTypeface(Typeface.DEFAULT_BOLD);
-      paint.setTextAlign(Paint.Align.CENTER);
-      paint.setShadowLayer(10f, 0f, 0f, Color.BLACK);
-      
-      float textWidth = paint.measureText(text);
-      int width = (int) Math.max(512, textWidth + 80);
-      int height = 256;
-      
-      currentBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-      Canvas canvas = new Canvas(currentBitmap);
-      canvas.drawColor(Color.TRANSPARENT);
-      canvas.drawText(text, width / 2f, height / 2f + 40, paint);
-      
-      // Create OpenGL texture
-      int[] textures = new int[1];
-      GLES20.glGenTextures(1, textures, 0);
-      textTextureId = textures[0];
-      GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textTextureId);
-      GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
-      GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-      GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
-      GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
-      GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, currentBitmap, 0);
-    }
-
-    public void drawBillboard(float[] model, float[] view, float[] proj, float rotationDegrees) {
-      if (textTextureId == -1 || currentBitmap == null) return;
-
-      float[] translation = new float[16];
-      Matrix.setIdentityM(translation, 0);
-      translation[12] = model[12];
-      translation[13] = model[13];
-      translation[14] = model[14];
-
-      // Apply rotation around Y-axis (vertical axis)
-      float[] rotationMatrix = new float[16];
-      Matrix.setIdentityM(rotationMatrix, 0);
-      Matrix.rotateM(rotationMatrix, 0, rotationDegrees, 0, 1, 0);
-
-      float[] scaleMatrix = new float[16];
-      Matrix.setIdentityM(scaleMatrix, 0);
-      float aspectRatio = (float) currentBitmap.getWidth() / (float) currentBitmap.getHeight();
-      float scale = 0.3f;
-      Matrix.scaleM(scaleMatrix, 0, scale * aspectRatio, scale, scale);
-
-      // Combine transformations: translation * rotation * scale
-      float[] tempMatrix = new float[16];
-      Matrix.multiplyMM(tempMatrix, 0, translation, 0, rotationMatrix, 0);
-      
-      float[] billboardModel = new float[16];
-      Matrix.multiplyMM(billboardModel, 0, tempMatrix, 0, scaleMatrix, 0);
-
-      float[] modelView = new float[16];
-      float[] modelViewProj = new float[16];
-      Matrix.multiplyMM(modelView, 0, view, 0, billboardModel, 0);
-      Matrix.multiplyMM(modelViewProj, 0, proj, 0, modelView, 0);
-
-      GLES20.glUseProgram(program);
-      GLES20.glDisable(GLES20.GL_DEPTH_TEST);
-      GLES20.glDepthMask(false);
-      GLES20.glEnable(GLES20.GL_BLEND);
-      GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
-
-      GLES20.glUniformMatrix4fv(mvpUniform, 1, false, modelViewProj, 0);
-
-      quadVertices.position(0);
-      quadTexCoords.position(0);
-      GLES20.glVertexAttribPointer(positionAttrib, 3, GLES20.GL_FLOAT, false, 0, quadVertices);
-      GLES20.glEnableVertexAttribArray(positionAttrib);
-      GLES20.glVertexAttribPointer(texCoordAttrib, 2, GLES20.GL_FLOAT, false, 0, quadTexCoords);
-      GLES20.glEnableVertexAttribArray(texCoordAttrib);
-
-      GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-      GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textTextureId);
-      GLES20.glUniform1i(textureUniform, 0);
-
-      GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
-
-      GLES20.glDisableVertexAttribArray(positionAttrib);
-      GLES20.glDisableVertexAttribArray(texCoordAttrib);
-      GLES20.glDisable(GLES20.GL_BLEND);
-      GLES20.glDepthMask(true);
-      GLES20.glEnable(GLES20.GL_DEPTH_TEST);
-    }
-  }
-
-  // Plane renderer for visualization
-  private static class PlaneRenderer {
-    private static final String VERTEX_SHADER =
-        "uniform mat4 u_MVP;\n" +
-        "attribute vec4 a_Position;\n" +
-        "void main() {\n" +
-        "  gl_Position = u_MVP * a_Position;\n" +
-        "  gl_PointSize = 8.0;\n" +
-        "}";
-
-    private static final String FRAGMENT_SHADER =
-        "precision mediump float;\n" +
-        "void main() {\n" +
-        "  float dist = length(gl_PointCoord - vec2(0.5));\n" +
-        "  if (dist > 0.5) discard;\n" +
-        "  gl_FragColor = vec4(1.0, 1.0, 1.0, 0.8);\n" +
-        "}";
-
-    private int program;
-    private int positionAttrib;
-    private int mvpUniform;
-
-    public PlaneRenderer() {
-      int v = loadShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER);
-      int f = loadShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
-      program = GLES20.glCreateProgram();
-      GLES20.glAttachShader(program, v);
-      GLES20.glAttachShader(program, f);
-      GLES20.glLinkProgram(program);
-
-      positionAttrib = GLES20.glGetAttribLocation(program, "a_Position");
-      mvpUniform = GLES20.glGetUniformLocation(program, "u_MVP");
-    }
-
-    private int loadShader(int type, String code) {
-      int shader = GLES20.glCreateShader(type);
-      GLES20.glShaderSource(shader, code);
-      GLES20.glCompileShader(shader);
-      return shader;
-    }
-
-    public void drawPlane(Plane plane, float[] view, float[] proj) {
-      if (plane.getTrackingState() != TrackingState.TRACKING) return;
-      
-      FloatBuffer vertices = plane.getPolygon();
-      if (vertices.remaining() < 3) return;
-
-      float[] model = new float[16];
-      plane.getCenterPose().toMatrix(model, 0);
-
-      float[] modelView = new float[16];
-      float[] modelViewProj = new float[16];
-      Matrix.multiplyMM(modelView, 0, view, 0, model, 0);
-      Matrix.multiplyMM(modelViewProj, 0, proj, 0, modelView, 0);
-
-      GLES20.glUseProgram(program);
-      GLES20.glEnable(GLES20.GL_BLEND);
-      GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
-
-      GLES20.glUniformMatrix4fv(mvpUniform, 1, false, modelViewProj, 0);
-      
-      vertices.position(0);
-      GLES20.glVertexAttribPointer(positionAttrib, 3, GLES20.GL_FLOAT, false, 0, vertices);
-      GLES20.glEnableVertexAttribArray(positionAttrib);
-
-      GLES20.glDrawArrays(GLES20.GL_POINTS, 0, vertices.remaining() / 3);
-
-      GLES20.glDisableVertexAttribArray(positionAttrib);
-      GLES20.glDisable(GLES20.GL_BLEND);
-    }
   }
 }
@@ -0,0 +1,156 @@
+package com.visionar;
+
+// Touches of the image and model views, recorded on the UI thread and consumed by their frame
+// loops on the GL thread. One finger taps and then drags the selected placement over surfaces;
+// two fingers rotate it, the twist about Z and the pan about X and Y at half a degree per pixel.
+// Taps and drag steps are raycast against the cached planes here, on the UI thread.
+final class PlacementGestures {
+  private static final float PAN_DEGREES_PER_PIXEL = 0.5f;
+
+  private final PlaneRaycaster<ArSession.Plane> raycaster;
+
+  private volatile boolean tapPending = false;
+  private volatile float tapX = 0f;
+  private volatile float tapY = 0f;
+  private volatile long tapTimeMs = 0L;
+  private volatile PlaneRaycaster.Hit<ArSession.Plane> tapHit = null;
+  private volatile boolean dragging = false;
+  private volatile boolean dragMoved = false;
+  private volatile float dragX = 0f;
+  private volatile float dragY = 0f;
+  private volatile PlaneRaycaster.Hit<ArSession.Plane> dragHit = null;
+  private volatile boolean rotating = false;
+  private volatile float rotationX = 0f;
+  private volatile float rotationY = 0f;
+  private volatile float rotationZ = 0f;
+  // UI thread only
+  private float lastAngle = 0f;
+  private float lastCenterX = 0f;
+  private float lastCenterY = 0f;
+
+  PlacementGestures(PlaneRaycaster<ArSession.Plane> raycaster) {
+    this.raycaster = raycaster;
+  }
+
+  // First finger down; timeMs is the MotionEvent time
+  void down(float x, float y, long timeMs) {
+    tapX = x;
+    tapY = y;
+    tapTimeMs = timeMs;
+    tapHit = raycaster.raycast(x, y);
+    tapPending = true;
+    dragging = true;
+    dragMoved = false;
+    dragX = x;
+    dragY = y;
+    rotating = false;
+  }
+
+  // Second finger down: the touch is a rotation from now on, not a tap or a drag
+  void startRotation(float x0, float y0, float x1, float y1) {
+    rotating = true;
+    dragging = false;
+    tapPending = false;
+    lastAngle = TouchMath.pointerAngle(x0, y0, x1, y1);
+    lastCenterX = (x0 + x1) / 2f;
+    lastCenterY = (y0 + y1) / 2f;
+  }
+
+  void moveRotation(float x0, float y0, float x1, float y1) {
+    if (!rotating) return;
+    float angle = TouchMath.pointerAngle(x0, y0, x1, y1);
+    float centerX = (x0 + x1) / 2f;
+    float centerY = (y0 + y1) / 2f;
+    rotationZ += TouchMath.angleDelta(lastAngle, angle);
+    rotationX += (centerY - lastCenterY) * PAN_DEGREES_PER_PIXEL;
+    rotationY += (centerX - lastCenterX) * PAN_DEGREES_PER_PIXEL;
+    lastAngle = angle;
+    lastCenterX = centerX;
+    lastCenterY = centerY;
+  }
+
+  void moveDrag(float x, float y) {
+    if (rotating) return;
+    dragging = true;
+    dragX = x;
+    dragY = y;
+    dragHit = raycaster.raycast(x, y);
+    dragMoved = true;
+  }
+
+  void endRotation() {
+    rotating = false;
+  }
+
+  // Last finger up or the touch cancelled
+  void up() {
+    dragging = false;
+    rotating = false;
+  }
+
+  // GL thread from here on
+
+  boolean isTapPending() {
+    return tapPending;
+  }
+
+  float getTapX() {
+    return tapX;
+  }
+
+  float getTapY() {
+    return tapY;
+  }
+
+  long getTapTimeMs() {
+    return tapTimeMs;
+  }
+
+  // The raycast hit of the pending tap, once; null if it missed
+  PlaneRaycaster.Hit<ArSession.Plane> takeTapHit() {
+    PlaneRaycaster.Hit<ArSession.Plane> hit = tapHit;
+    tapHit = null;
+    return hit;
+  }
+
+  void clearTap() {
+    tapPending = false;
+  }
+
+  // True once per drag step the finger made since the last call
+  boolean takeDragMove() {
+    if (!dragging || !dragMoved) return false;
+    dragMoved = false;
+    return true;
+  }
+
+  float getDragX() {
+    return dragX;
+  }
+
+  float getDragY() {
+    return dragY;
+  }
+
+  PlaneRaycaster.Hit<ArSession.Plane> getDragHit() {
+    return dragHit;
+  }
+
+  boolean isRotating() {
+    return rotating;
+  }
+
+  // The rotation in degrees the gestures have built up, as X, Y, Z at offset
+  void getRotation(float[] out, int offset) {
+    out[offset] = rotationX;
+    out[offset + 1] = rotationY;
+    out[offset + 2] = rotationZ;
+  }
+
+  // Gestures continue from here, e.g. the rotation of a newly selected placement
+  void setRotation(float x, float y, float z) {
+    rotationX = x;
+    rotationY = y;
+    rotationZ = z;
+  }
+}
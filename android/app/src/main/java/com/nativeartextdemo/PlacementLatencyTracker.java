@@ -0,0 +1,63 @@
+package com.visionar;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Measures tap-to-visible latency for new placements, and for instant placements the time
+// until ARCore promotes them to full tracking. Keyed by placement id so a drag that swaps
+// the Placement object does not lose the record. GL thread only.
+class PlacementLatencyTracker {
+  interface Listener {
+    void onPlacementTiming(String eventType, int anchorId, long latencyMs);
+  }
+
+  private final Map<Integer, Record> records = new HashMap<>();
+  private final Listener listener;
+
+  PlacementLatencyTracker(Listener listener) {
+    this.listener = listener;
+  }
+
+  // tapUptimeMs is the MotionEvent time (SystemClock.uptimeMillis base)
+  void track(AnchorGroupManager.Placement placement, long tapUptimeMs) {
+    records.put(placement.id, new Record(tapUptimeMs, placement.isInstant()));
+  }
+
+  // Call for every placement drawn this frame
+  void onDrawn(AnchorGroupManager.Placement placement, long nowMs) {
+    if (records.isEmpty()) return;
+    Record record = records.get(placement.id);
+    if (record == null) return;
+
+    if (!record.visible) {
+      record.visible = true;
+      listener.onPlacementTiming("PLACEMENT_VISIBLE", placement.id, nowMs - record.tapUptimeMs);
+    }
+    if (record.instant && !placement.isInstant()) {
+      record.instant = false;
+      listener.onPlacementTiming("PLACEMENT_PROMOTED", placement.id, nowMs - record.tapUptimeMs);
+    }
+    if (!record.instant) {
+      records.remove(placement.id);
+    }
+  }
+
+  void forget(int anchorId) {
+    records.remove(anchorId);
+  }
+
+  void clear() {
+    records.clear();
+  }
+
+  private static class Record {
+    final long tapUptimeMs;
+    boolean instant;
+    boolean visible = false;
+
+    Record(long tapUptimeMs, boolean instant) {
+      this.tapUptimeMs = tapUptimeMs;
+      this.instant = instant;
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.visionar;
+
+// Turns ARCore plane finding off once placed content has settled (or after a period without
+// touches) and back on with the next touch or an explicit request. Existing planes keep
+// tracking while it is off, so taps on them still place content.
+//
+// Touch methods are called from the UI thread, everything else from the GL thread.
+class PlaneFindingPolicy {
+  static final long DEFAULT_SETTLE_MS = 3000;
+  // Weight of the newest sample in the session.update() time averages
+  private static final float SMOOTHING = 0.05f;
+
+  private volatile boolean autoDisable = true;
+  private volatile long settleMs = DEFAULT_SETTLE_MS;
+  private volatile long idleTimeoutMs = 0;
+  private volatile long lastTouchMs = 0;
+  private volatile boolean resumeRequested = false;
+  private boolean suspended = false;
+
+  private float activeUpdateMs = -1f;
+  private float suspendedUpdateMs = -1f;
+  private double cpuSavedMs = 0;
+
+  void setAutoDisable(boolean autoDisable) {
+    this.autoDisable = autoDisable;
+  }
+
+  // 0 disables the idle timeout; placed content still suspends after settleMs
+  void setIdleTimeoutMs(long idleTimeoutMs) {
+    this.idleTimeoutMs = Math.max(0, idleTimeoutMs);
+  }
+
+  void onTouch(long uptimeMs) {
+    lastTouchMs = uptimeMs;
+    if (suspended) resumeRequested = true;
+  }
+
+  // Explicit request from JS, also restarts the idle timer
+  void requestResume(long uptimeMs) {
+    lastTouchMs = uptimeMs;
+    resumeRequested = true;
+  }
+
+  // Once per frame. Returns true when the suspended state changed and the session has to be
+  // reconfigured.
+  boolean update(long nowMs, int placementCount) {
+    if (lastTouchMs == 0) lastTouchMs = nowMs;
+
+    if (suspended) {
+      if (resumeRequested || !autoDisable) {
+        resumeRequested = false;
+        suspended = false;
+        return true;
+      }
+      return false;
+    }
+    resumeRequested = false;
+    if (!autoDisable) return false;
+
+    long idle = nowMs - lastTouchMs;
+    long timeout = idleTimeoutMs;
+    boolean settled = placementCount > 0 && idle >= settleMs;
+    boolean timedOut = timeout > 0 && idle >= timeout;
+    if (settled || timedOut) {
+      suspended = true;
+      return true;
+    }
+    return false;
+  }
+
+  boolean isSuspended() {
+    return suspended;
+  }
+
+  // Feeds the time spent in session.update(). While suspended, the difference to the average
+  // with plane finding on is counted as saved CPU time.
+  void recordUpdateTime(float updateMs) {
+    if (suspended) {
+      suspendedUpdateMs = suspendedUpdateMs < 0f ? updateMs : suspendedUpdateMs + (updateMs - suspendedUpdateMs) * SMOOTHING;
+      if (activeUpdateMs > 0f) {
+        cpuSavedMs += Math.max(0f, activeUpdateMs - updateMs);
+      }
+    } else {
+      activeUpdateMs = activeUpdateMs < 0f ? updateMs : activeUpdateMs + (updateMs - activeUpdateMs) * SMOOTHING;
+    }
+  }
+
+  float getActiveUpdateMs() {
+    return Math.max(0f, activeUpdateMs);
+  }
+
+  float getSuspendedUpdateMs() {
+    return Math.max(0f, suspendedUpdateMs);
+  }
+
+  double getCpuSavedMs() {
+    return cpuSavedMs;
+  }
+}
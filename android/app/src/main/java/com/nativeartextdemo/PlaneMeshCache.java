@@ -0,0 +1,192 @@
+package com.visionar;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// Keeps one triangulated mesh per detected plane. Only planes reported by
+// ArSession.Frame.getUpdatedPlanes are looked at, and a plane is only re-triangulated when its
+// polygon actually changed, so steady planes cost nothing but a draw call.
+class PlaneMeshCache {
+  // Width of the fade-out band at the polygon edge, in meters
+  private static final float FADE_WIDTH = 0.15f;
+
+  private final Map<ArSession.Plane, Entry> entries = new HashMap<>();
+  private final List<Entry> released = new ArrayList<>();
+  private float[] scratchPolygon = new float[64];
+  private final float[] scratchPose = new float[16];
+  // Bumped whenever a plane pose, polygon or the plane set itself changes
+  private int revision = 0;
+
+  // Single pass over the planes updated this frame. Returns true if any of them is tracking.
+  boolean update(Collection<ArSession.Plane> updatedPlanes) {
+    boolean anyTracking = false;
+    for (ArSession.Plane plane : updatedPlanes) {
+      ArSession.Tracking state = plane.getTrackingState();
+      if (state == ArSession.Tracking.STOPPED || plane.isSubsumed()) {
+        Entry stale = entries.remove(plane);
+        if (stale != null) {
+          released.add(stale);
+          revision++;
+        }
+        continue;
+      }
+
+      Entry entry = entries.get(plane);
+      if (entry == null) {
+        entry = new Entry(plane);
+        entries.put(plane, entry);
+      }
+      if (entry.trackingState != state) revision++;
+      entry.trackingState = state;
+      if (state != ArSession.Tracking.TRACKING) continue;
+      anyTracking = true;
+
+      // ARCore reports a plane as updated on most frames even when it has not moved
+      plane.getCenterMatrix(scratchPose, 0);
+      if (!Arrays.equals(scratchPose, entry.centerMatrix)) {
+        System.arraycopy(scratchPose, 0, entry.centerMatrix, 0, 16);
+        revision++;
+      }
+      FloatBuffer polygon = plane.getPolygon();
+      int floats = polygon.remaining();
+      if (scratchPolygon.length < floats) {
+        scratchPolygon = new float[floats * 2];
+      }
+      polygon.get(scratchPolygon, 0, floats);
+      if (!entry.polygonEquals(scratchPolygon, floats)) {
+        entry.rebuild(scratchPolygon, floats);
+        revision++;
+      }
+    }
+    return anyTracking;
+  }
+
+  Collection<Entry> getEntries() {
+    return entries.values();
+  }
+
+  int getRevision() {
+    return revision;
+  }
+
+  // Hands the tracking planes to the raycaster as an immutable snapshot
+  void publishTo(PlaneRaycaster<ArSession.Plane> raycaster) {
+    raycaster.beginPlanes();
+    for (Entry entry : entries.values()) {
+      if (entry.trackingState != ArSession.Tracking.TRACKING) continue;
+      raycaster.addPlane(entry.plane, entry.centerMatrix, entry.polygon, entry.polygonVertexCount);
+    }
+    raycaster.commitPlanes();
+  }
+
+  boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
+  // Entries dropped since the last call; the renderer frees their GL buffers
+  List<Entry> drainReleased() {
+    if (released.isEmpty()) return Collections.emptyList();
+    List<Entry> drained = new ArrayList<>(released);
+    released.clear();
+    return drained;
+  }
+
+  void clear() {
+    revision++;
+    for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+      released.add(it.next());
+      it.remove();
+    }
+  }
+
+  static class Entry {
+    final ArSession.Plane plane;
+    final float[] centerMatrix = new float[16];
+    ArSession.Tracking trackingState;
+
+    // Polygon boundary in plane-local x/z pairs, as reported by ARCore
+    float[] polygon = new float[0];
+    int polygonVertexCount = 0;
+
+    // Mesh: outer ring (alpha 0) followed by an inset ring (alpha 1), packed as x, z, alpha
+    float[] vertices = new float[0];
+    short[] indices = new short[0];
+    int indexCount = 0;
+    int version = 0;
+
+    // GL objects owned by PlaneRenderer
+    int vertexBufferId = 0;
+    int indexBufferId = 0;
+    int vertexArrayId = 0;
+    int uploadedVersion = -1;
+
+    Entry(ArSession.Plane plane) {
+      this.plane = plane;
+    }
+
+    boolean polygonEquals(float[] other, int floats) {
+      if (floats != polygonVertexCount * 2) return false;
+      for (int i = 0; i < floats; i++) {
+        if (polygon[i] != other[i]) return false;
+      }
+      return true;
+    }
+
+    void rebuild(float[] source, int floats) {
+      int n = floats / 2;
+      polygonVertexCount = n;
+      if (polygon.length < floats) polygon = new float[floats];
+      System.arraycopy(source, 0, polygon, 0, floats);
+      version++;
+
+      if (n < 3) {
+        indexCount = 0;
+        return;
+      }
+
+      if (vertices.length < n * 6) vertices = new float[n * 6];
+      for (int i = 0; i < n; i++) {
+        float x = polygon[i * 2];
+        float z = polygon[i * 2 + 1];
+        float radius = (float) Math.sqrt(x * x + z * z);
+        // The polygon is centered on the plane's center pose, so insetting toward the origin works
+        float inset = radius > 0f ? Math.max(0f, radius - FADE_WIDTH) / radius : 0f;
+
+        int outer = i * 3;
+        vertices[outer] = x;
+        vertices[outer + 1] = z;
+        vertices[outer + 2] = 0f;
+
+        int inner = (n + i) * 3;
+        vertices[inner] = x * inset;
+        vertices[inner + 1] = z * inset;
+        vertices[inner + 2] = 1f;
+      }
+
+      int needed = (n - 2) * 3 + n * 6;
+      if (indices.length < needed) indices = new short[needed];
+      // The inset ring has the same shape as the boundary, so triangulate the boundary
+      // polygon and point the indices at the inset vertices
+      int count = PolygonTriangulator.triangulate(polygon, n, indices, 0, n);
+
+      // Fade band between the outer boundary and the inset ring
+      for (int i = 0; i < n; i++) {
+        int j = (i + 1) % n;
+        indices[count++] = (short) i;
+        indices[count++] = (short) j;
+        indices[count++] = (short) (n + i);
+        indices[count++] = (short) j;
+        indices[count++] = (short) (n + j);
+        indices[count++] = (short) (n + i);
+      }
+      indexCount = count;
+    }
+  }
+}
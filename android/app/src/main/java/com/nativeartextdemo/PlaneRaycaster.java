@@ -0,0 +1,209 @@
+package com.visionar;
+
+import java.util.ArrayList;
+
+// CPU ray cast against the cached plane set, so a tap can be resolved on the UI thread the
+// moment it happens instead of waiting a frame for Frame.hitTest on the GL thread.
+//
+// The GL thread publishes immutable snapshots of the plane polygons, and the camera matrices
+// through two reused buffers; raycast() may then be called from any thread. The math is plain Java (no ARCore or
+// android.opengl types), T is just an opaque tag handed back with the hit.
+final class PlaneRaycaster<T> {
+  // Rays nearly parallel to a plane are ignored
+  private static final float PARALLEL_EPSILON = 1e-6f;
+
+  private volatile PlaneSet<T> planes = new PlaneSet<>(new Object[0], new float[0][], new float[0][], new int[0]);
+  private volatile CameraSnapshot camera;
+  // GL thread: setCamera() fills the buffer that is not published, then swaps
+  private final CameraSnapshot[] cameraBuffers = {new CameraSnapshot(), new CameraSnapshot()};
+  private int nextCamera = 0;
+  private final float[] viewProj = new float[16];
+  private final float[] inverse = new float[16];
+
+  // Pending plane set, filled by the GL thread between beginPlanes() and commitPlanes()
+  private final ArrayList<Object> pendingTags = new ArrayList<>();
+  private final ArrayList<float[]> pendingPoses = new ArrayList<>();
+  private final ArrayList<float[]> pendingPolygons = new ArrayList<>();
+  private final ArrayList<Integer> pendingCounts = new ArrayList<>();
+
+  void beginPlanes() {
+    pendingTags.clear();
+    pendingPoses.clear();
+    pendingPolygons.clear();
+    pendingCounts.clear();
+  }
+
+  // centerMatrix: plane-local to world, polygon: plane-local x/z pairs. Both are copied.
+  void addPlane(T tag, float[] centerMatrix, float[] polygon, int vertexCount) {
+    if (vertexCount < 3) return;
+    float[] poly = new float[vertexCount * 2];
+    System.arraycopy(polygon, 0, poly, 0, poly.length);
+    pendingTags.add(tag);
+    pendingPoses.add(centerMatrix.clone());
+    pendingPolygons.add(poly);
+    pendingCounts.add(vertexCount);
+  }
+
+  void commitPlanes() {
+    int n = pendingTags.size();
+    int[] counts = new int[n];
+    for (int i = 0; i < n; i++) counts[i] = pendingCounts.get(i);
+    planes = new PlaneSet<>(
+        pendingTags.toArray(), pendingPoses.toArray(new float[n][]), pendingPolygons.toArray(new float[n][]), counts);
+  }
+
+  // Called once per frame with the matrices the frame was drawn with
+  void setCamera(float[] view, float[] proj, int viewportWidth, int viewportHeight) {
+    if (viewportWidth <= 0 || viewportHeight <= 0) return;
+    MatrixMath.multiplyMM(viewProj, proj, view);
+    if (!MatrixMath.invert(inverse, viewProj)) return;
+    CameraSnapshot next = cameraBuffers[nextCamera];
+    next.write(inverse, viewportWidth, viewportHeight);
+    camera = next;
+    nextCamera ^= 1;
+  }
+
+  PlaneSet<T> getPlanes() {
+    return planes;
+  }
+
+  void clear() {
+    beginPlanes();
+    commitPlanes();
+  }
+
+  // Nearest plane hit under the given view coordinates, or null
+  Hit<T> raycast(float screenX, float screenY) {
+    CameraSnapshot cam = camera;
+    if (cam == null) return null;
+    float[] ray = new float[6];
+    boolean valid;
+    // The GL thread may be refilling this buffer if the caller took longer than a frame
+    synchronized (cam) {
+      valid = screenRay(cam.inverseViewProj, cam.width, cam.height, screenX, screenY, ray);
+    }
+    return valid ? intersect(planes, ray) : null;
+  }
+
+  // Builds a world space ray (origin xyz, unit direction xyz) through a pixel
+  static boolean screenRay(float[] inverseViewProj, int width, int height, float screenX, float screenY, float[] rayOut) {
+    float ndcX = 2f * screenX / width - 1f;
+    float ndcY = 1f - 2f * screenY / height;
+    float[] near = new float[4];
+    float[] far = new float[4];
+    MatrixMath.multiplyMV(near, inverseViewProj, ndcX, ndcY, -1f, 1f);
+    MatrixMath.multiplyMV(far, inverseViewProj, ndcX, ndcY, 1f, 1f);
+    if (near[3] == 0f || far[3] == 0f) return false;
+
+    float ox = near[0] / near[3];
+    float oy = near[1] / near[3];
+    float oz = near[2] / near[3];
+    float dx = far[0] / far[3] - ox;
+    float dy = far[1] / far[3] - oy;
+    float dz = far[2] / far[3] - oz;
+    float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    if (length == 0f) return false;
+
+    rayOut[0] = ox;
+    rayOut[1] = oy;
+    rayOut[2] = oz;
+    rayOut[3] = dx / length;
+    rayOut[4] = dy / length;
+    rayOut[5] = dz / length;
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <T> Hit<T> intersect(PlaneSet<T> set, float[] ray) {
+    float ox = ray[0], oy = ray[1], oz = ray[2];
+    float dx = ray[3], dy = ray[4], dz = ray[5];
+
+    int best = -1;
+    float bestT = Float.MAX_VALUE;
+    float bestX = 0f, bestY = 0f, bestZ = 0f;
+    for (int i = 0; i < set.tags.length; i++) {
+      float[] m = set.poses[i];
+      // Plane normal is the local +Y axis, the center pose translation lies on the plane
+      float nx = m[4], ny = m[5], nz = m[6];
+      float denom = nx * dx + ny * dy + nz * dz;
+      if (Math.abs(denom) < PARALLEL_EPSILON) continue;
+
+      float t = (nx * (m[12] - ox) + ny * (m[13] - oy) + nz * (m[14] - oz)) / denom;
+      if (t < 0f || t >= bestT) continue;
+
+      float hx = ox + dx * t;
+      float hy = oy + dy * t;
+      float hz = oz + dz * t;
+      // Project the hit into plane-local x/z (the rotation part is orthonormal)
+      float rx = hx - m[12], ry = hy - m[13], rz = hz - m[14];
+      float localX = rx * m[0] + ry * m[1] + rz * m[2];
+      float localZ = rx * m[8] + ry * m[9] + rz * m[10];
+      if (!containsPoint(set.polygons[i], set.vertexCounts[i], localX, localZ)) continue;
+
+      best = i;
+      bestT = t;
+      bestX = hx;
+      bestY = hy;
+      bestZ = hz;
+    }
+    if (best < 0) return null;
+    return new Hit<>((T) set.tags[best], bestX, bestY, bestZ, bestT);
+  }
+
+  // Even-odd crossing test on an x/z polygon
+  static boolean containsPoint(float[] xz, int vertexCount, float x, float z) {
+    boolean inside = false;
+    for (int i = 0, j = vertexCount - 1; i < vertexCount; j = i++) {
+      float xi = xz[i * 2], zi = xz[i * 2 + 1];
+      float xj = xz[j * 2], zj = xz[j * 2 + 1];
+      if ((zi > z) != (zj > z) && x < (xj - xi) * (z - zi) / (zj - zi) + xi) {
+        inside = !inside;
+      }
+    }
+    return inside;
+  }
+
+  static final class PlaneSet<T> {
+    final Object[] tags;
+    final float[][] poses;
+    final float[][] polygons;
+    final int[] vertexCounts;
+
+    PlaneSet(Object[] tags, float[][] poses, float[][] polygons, int[] vertexCounts) {
+      this.tags = tags;
+      this.poses = poses;
+      this.polygons = polygons;
+      this.vertexCounts = vertexCounts;
+    }
+  }
+
+  // Written and read under its own lock, which only contends when a raycast overlaps the
+  // frame that reuses the buffer
+  private static final class CameraSnapshot {
+    final float[] inverseViewProj = new float[16];
+    int width;
+    int height;
+
+    synchronized void write(float[] inverse, int newWidth, int newHeight) {
+      System.arraycopy(inverse, 0, inverseViewProj, 0, 16);
+      width = newWidth;
+      height = newHeight;
+    }
+  }
+
+  static final class Hit<T> {
+    final T plane;
+    final float x;
+    final float y;
+    final float z;
+    final float distance;
+
+    Hit(T plane, float x, float y, float z, float distance) {
+      this.plane = plane;
+      this.x = x;
+      this.y = y;
+      this.z = z;
+      this.distance = distance;
+    }
+  }
+}
@@ -0,0 +1,212 @@
+package com.visionar;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.List;
+
+// Draws the meshes held by PlaneMeshCache as filled grids that fade out toward the plane
+// edge. Vertex and index buffers are uploaded only when a plane's polygon changed. On GLES 3
+// each plane's buffers and attribute layout are recorded in its own VAO and the camera
+// matrices come from the frame uniform buffer, leaving one model uniform per plane.
+class PlaneRenderer {
+  private static final String VERTEX_SHADER =
+      "uniform mat4 u_MVP;\n" +
+      "attribute vec3 a_XZAlpha;\n" +
+      "varying vec3 v_XZAlpha;\n" +
+      "void main() {\n" +
+      "  v_XZAlpha = a_XZAlpha;\n" +
+      "  gl_Position = u_MVP * vec4(a_XZAlpha.x, 0.0, a_XZAlpha.y, 1.0);\n" +
+      "}";
+
+  private static final String FRAGMENT_SHADER =
+      "precision mediump float;\n" +
+      "uniform vec4 u_Color;\n" +
+      "uniform float u_GridSpacing;\n" +
+      "varying vec3 v_XZAlpha;\n" +
+      "void main() {\n" +
+      "  vec2 cell = fract(v_XZAlpha.xy / u_GridSpacing);\n" +
+      "  vec2 edge = min(cell, 1.0 - cell);\n" +
+      "  float line = 1.0 - smoothstep(0.0, 0.06, min(edge.x, edge.y));\n" +
+      "  float alpha = mix(0.12, 0.75, line) * v_XZAlpha.z;\n" +
+      "  gl_FragColor = vec4(u_Color.rgb, u_Color.a * alpha);\n" +
+      "}";
+
+  private static final String VERTEX_SHADER_ES3 =
+      "#version 300 es\n" +
+      GlBackend.FRAME_UNIFORMS_GLSL +
+      "uniform mat4 u_Model;\n" +
+      "layout(location = 0) in vec3 a_XZAlpha;\n" +
+      "out vec3 v_XZAlpha;\n" +
+      "void main() {\n" +
+      "  v_XZAlpha = a_XZAlpha;\n" +
+      "  gl_Position = u_ViewProj * u_Model * vec4(a_XZAlpha.x, 0.0, a_XZAlpha.y, 1.0);\n" +
+      "}";
+
+  private static final String FRAGMENT_SHADER_ES3 =
+      "#version 300 es\n" +
+      "precision mediump float;\n" +
+      "uniform vec4 u_Color;\n" +
+      "uniform float u_GridSpacing;\n" +
+      "in vec3 v_XZAlpha;\n" +
+      "out vec4 o_FragColor;\n" +
+      "void main() {\n" +
+      "  vec2 cell = fract(v_XZAlpha.xy / u_GridSpacing);\n" +
+      "  vec2 edge = min(cell, 1.0 - cell);\n" +
+      "  float line = 1.0 - smoothstep(0.0, 0.06, min(edge.x, edge.y));\n" +
+      "  float alpha = mix(0.12, 0.75, line) * v_XZAlpha.z;\n" +
+      "  o_FragColor = vec4(u_Color.rgb, u_Color.a * alpha);\n" +
+      "}";
+
+  private static final float GRID_SPACING = 0.1f; // meters
+
+  private final GlBackend backend;
+  private final GlApi gl;
+  private final GlStateCache state;
+  private final int program;
+  private final int xzAlphaAttrib;
+  // u_MVP on GLES 2, u_Model on GLES 3
+  private final int mvpUniform;
+  private final int colorUniform;
+  private final int gridSpacingUniform;
+  private final float[] modelViewProj = new float[16];
+
+  PlaneRenderer(GlBackend backend) {
+    this.backend = backend;
+    gl = backend.getGl();
+    state = backend.getState();
+    boolean gles3 = backend.isGles3();
+    int v = loadShader(GlApi.GL_VERTEX_SHADER, gles3 ? VERTEX_SHADER_ES3 : VERTEX_SHADER);
+    int f = loadShader(GlApi.GL_FRAGMENT_SHADER, gles3 ? FRAGMENT_SHADER_ES3 : FRAGMENT_SHADER);
+    program = gl.glCreateProgram();
+    gl.glAttachShader(program, v);
+    gl.glAttachShader(program, f);
+    gl.glLinkProgram(program);
+
+    xzAlphaAttrib = gl.glGetAttribLocation(program, "a_XZAlpha");
+    mvpUniform = gl.glGetUniformLocation(program, gles3 ? "u_Model" : "u_MVP");
+    colorUniform = gl.glGetUniformLocation(program, "u_Color");
+    gridSpacingUniform = gl.glGetUniformLocation(program, "u_GridSpacing");
+    if (gles3) backend.bindFrameUniforms(program);
+
+    // Constant for the program's lifetime, so set once instead of per draw
+    state.useProgram(program);
+    gl.glUniform4f(colorUniform, 1.0f, 1.0f, 1.0f, 1.0f);
+    gl.glUniform1f(gridSpacingUniform, GRID_SPACING);
+  }
+
+  private int loadShader(int type, String code) {
+    int shader = gl.glCreateShader(type);
+    gl.glShaderSource(shader, code);
+    gl.glCompileShader(shader);
+    return shader;
+  }
+
+  // Uses the camera matrices passed to GlBackend.beginFrame this frame
+  void draw(PlaneMeshCache cache) {
+    releaseBuffers(cache.drainReleased());
+    if (cache.isEmpty()) return;
+
+    if (backend.isGles3()) {
+      drawVertexArrays(cache);
+      return;
+    }
+    float[] viewProj = backend.getViewProj();
+
+    setDrawState();
+    state.enableVertexAttribArray(xzAlphaAttrib);
+
+    for (PlaneMeshCache.Entry entry : cache.getEntries()) {
+      if (entry.trackingState != ArSession.Tracking.TRACKING || entry.indexCount == 0) continue;
+      if (entry.uploadedVersion != entry.version) {
+        upload(entry);
+      }
+
+      MatrixMath.multiplyMM(modelViewProj, viewProj, entry.centerMatrix);
+      gl.glUniformMatrix4fv(mvpUniform, 1, false, modelViewProj, 0);
+
+      state.bindArrayBuffer(entry.vertexBufferId);
+      gl.glVertexAttribPointer(xzAlphaAttrib, 3, GlApi.GL_FLOAT, false, 0, 0);
+      gl.glBindBuffer(GlApi.GL_ELEMENT_ARRAY_BUFFER, entry.indexBufferId);
+      gl.glDrawElements(GlApi.GL_TRIANGLES, entry.indexCount, GlApi.GL_UNSIGNED_SHORT, 0);
+    }
+
+    gl.glBindBuffer(GlApi.GL_ELEMENT_ARRAY_BUFFER, 0);
+    state.disableVertexAttribArray(xzAlphaAttrib);
+  }
+
+  private void setDrawState() {
+    state.useProgram(program);
+    state.setDepthTest(false);
+    state.depthMask(false);
+    state.setBlend(true);
+    state.blendFunc(GlApi.GL_SRC_ALPHA, GlApi.GL_ONE_MINUS_SRC_ALPHA);
+  }
+
+  private void drawVertexArrays(PlaneMeshCache cache) {
+    setDrawState();
+
+    for (PlaneMeshCache.Entry entry : cache.getEntries()) {
+      if (entry.trackingState != ArSession.Tracking.TRACKING || entry.indexCount == 0) continue;
+      if (entry.uploadedVersion != entry.version) {
+        upload(entry);
+      }
+      gl.glUniformMatrix4fv(mvpUniform, 1, false, entry.centerMatrix, 0);
+      state.bindVertexArray(entry.vertexArrayId);
+      gl.glDrawElements(GlApi.GL_TRIANGLES, entry.indexCount, GlApi.GL_UNSIGNED_SHORT, 0);
+    }
+  }
+
+  private void upload(PlaneMeshCache.Entry entry) {
+    // Another plane's VAO may still be bound; the index binding below must not land in it
+    if (backend.isGles3()) state.bindVertexArray(0);
+    if (entry.vertexBufferId == 0) {
+      int[] buffers = new int[2];
+      gl.glGenBuffers(2, buffers, 0);
+      entry.vertexBufferId = buffers[0];
+      entry.indexBufferId = buffers[1];
+      if (backend.isGles3()) {
+        // The VAO captures the index buffer binding and the attribute layout once
+        entry.vertexArrayId = backend.createVertexArray();
+        state.bindVertexArray(entry.vertexArrayId);
+        state.bindArrayBuffer(entry.vertexBufferId);
+        gl.glVertexAttribPointer(xzAlphaAttrib, 3, GlApi.GL_FLOAT, false, 0, 0);
+        state.enableVertexAttribArray(xzAlphaAttrib);
+        gl.glBindBuffer(GlApi.GL_ELEMENT_ARRAY_BUFFER, entry.indexBufferId);
+        state.bindVertexArray(0);
+      }
+    }
+
+    int vertexFloats = entry.polygonVertexCount * 6;
+    FloatBuffer vertexData = ByteBuffer.allocateDirect(vertexFloats * 4)
+        .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    vertexData.put(entry.vertices, 0, vertexFloats).position(0);
+    state.bindArrayBuffer(entry.vertexBufferId);
+    gl.glBufferData(GlApi.GL_ARRAY_BUFFER, vertexFloats * 4, vertexData, GlApi.GL_DYNAMIC_DRAW);
+
+    ShortBuffer indexData = ByteBuffer.allocateDirect(entry.indexCount * 2)
+        .order(ByteOrder.nativeOrder()).asShortBuffer();
+    indexData.put(entry.indices, 0, entry.indexCount).position(0);
+    gl.glBindBuffer(GlApi.GL_ELEMENT_ARRAY_BUFFER, entry.indexBufferId);
+    gl.glBufferData(GlApi.GL_ELEMENT_ARRAY_BUFFER, entry.indexCount * 2, indexData, GlApi.GL_DYNAMIC_DRAW);
+    gl.glBindBuffer(GlApi.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+    entry.uploadedVersion = entry.version;
+  }
+
+  private void releaseBuffers(List<PlaneMeshCache.Entry> released) {
+    for (int i = 0; i < released.size(); i++) {
+      PlaneMeshCache.Entry entry = released.get(i);
+      if (entry.vertexBufferId != 0) {
+        int[] buffers = {entry.vertexBufferId, entry.indexBufferId};
+        state.deleteBuffers(buffers);
+        backend.deleteVertexArray(entry.vertexArrayId);
+        entry.vertexArrayId = 0;
+        entry.vertexBufferId = 0;
+        entry.indexBufferId = 0;
+        entry.uploadedVersion = -1;
+      }
+    }
+  }
+}
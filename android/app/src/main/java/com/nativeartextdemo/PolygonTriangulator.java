@@ -0,0 +1,87 @@
+package com.visionar;
+
+// Ear-clipping triangulation for the 2D (x, z) polygons ARCore reports for planes.
+// Pure Java so it can run (and be measured) off-device.
+final class PolygonTriangulator {
+  private static final float EPSILON = 1e-9f;
+
+  private PolygonTriangulator() {}
+
+  // Triangulates a simple polygon given as interleaved x/z pairs. Indices are written to
+  // out[outOffset...] offset by baseIndex. Returns the number of indices written, which is
+  // (vertexCount - 2) * 3 for any polygon with at least three vertices.
+  static int triangulate(float[] xz, int vertexCount, short[] out, int outOffset, int baseIndex) {
+    if (vertexCount < 3) return 0;
+
+    // Work on a counter-clockwise index ring so the convexity test has a fixed sign
+    int[] ring = new int[vertexCount];
+    boolean counterClockwise = signedArea(xz, vertexCount) >= 0f;
+    for (int i = 0; i < vertexCount; i++) {
+      ring[i] = counterClockwise ? i : vertexCount - 1 - i;
+    }
+
+    int remaining = vertexCount;
+    int written = 0;
+    int cursor = 0;
+    int misses = 0;
+    while (remaining > 3) {
+      int prevSlot = (cursor + remaining - 1) % remaining;
+      int nextSlot = (cursor + 1) % remaining;
+      int prev = ring[prevSlot];
+      int cur = ring[cursor];
+      int next = ring[nextSlot];
+
+      // If nothing qualifies for a full lap the polygon is degenerate (self-intersecting or
+      // collinear); clip anyway so we always terminate with n - 2 triangles.
+      if (misses >= remaining || isEar(xz, ring, remaining, prev, cur, next)) {
+        out[outOffset + written++] = (short) (baseIndex + prev);
+        out[outOffset + written++] = (short) (baseIndex + cur);
+        out[outOffset + written++] = (short) (baseIndex + next);
+        System.arraycopy(ring, cursor + 1, ring, cursor, remaining - cursor - 1);
+        remaining--;
+        if (cursor >= remaining) cursor = 0;
+        misses = 0;
+      } else {
+        cursor = nextSlot;
+        misses++;
+      }
+    }
+    out[outOffset + written++] = (short) (baseIndex + ring[0]);
+    out[outOffset + written++] = (short) (baseIndex + ring[1]);
+    out[outOffset + written++] = (short) (baseIndex + ring[2]);
+    return written;
+  }
+
+  static float signedArea(float[] xz, int vertexCount) {
+    float area = 0f;
+    for (int i = 0, j = vertexCount - 1; i < vertexCount; j = i++) {
+      area += xz[j * 2] * xz[i * 2 + 1] - xz[i * 2] * xz[j * 2 + 1];
+    }
+    return area * 0.5f;
+  }
+
+  private static boolean isEar(float[] xz, int[] ring, int remaining, int prev, int cur, int next) {
+    float ax = xz[prev * 2], az = xz[prev * 2 + 1];
+    float bx = xz[cur * 2], bz = xz[cur * 2 + 1];
+    float cx = xz[next * 2], cz = xz[next * 2 + 1];
+
+    // Reflex or collinear corners are not ears
+    if (cross(ax, az, bx, bz, cx, cz) <= EPSILON) return false;
+
+    for (int i = 0; i < remaining; i++) {
+      int v = ring[i];
+      if (v == prev || v == cur || v == next) continue;
+      float px = xz[v * 2], pz = xz[v * 2 + 1];
+      if (cross(ax, az, bx, bz, px, pz) >= 0f
+          && cross(bx, bz, cx, cz, px, pz) >= 0f
+          && cross(cx, cz, ax, az, px, pz) >= 0f) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static float cross(float ax, float az, float bx, float bz, float cx, float cz) {
+    return (bx - ax) * (cz - az) - (bz - az) * (cx - ax);
+  }
+}
@@ -0,0 +1,511 @@
+package com.visionar;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// GlApi without a GPU, for running the renderers on a plain JVM. Hands out object names and
+// attribute/uniform locations like a driver would, and counts per frame what the renderers
+// asked for: draws, instances, state changes, uniform updates and uploaded buffer and texture
+// bytes. endFrame() closes a frame and returns its counts, so a check can read like
+// "200 labels cost at most 3 draw calls". Once the objects exist, recording a frame allocates
+// nothing, so benchmarks measure only what the renderers allocate.
+class RecordingGl implements GlApi {
+  private static final Pattern ATTRIBUTE_LOCATION =
+      Pattern.compile("layout\\s*\\(\\s*location\\s*=\\s*(\\d+)\\s*\\)\\s*in\\s+\\w+\\s+(\\w+)");
+
+  static final class FrameStats {
+    int drawCalls;
+    int instances;
+    int vertices;
+    int stateChanges;
+    int uniformUpdates;
+    long bufferUploadBytes;
+    long textureUploadBytes;
+    int totalCalls;
+
+    private void reset() {
+      drawCalls = 0;
+      instances = 0;
+      vertices = 0;
+      stateChanges = 0;
+      uniformUpdates = 0;
+      bufferUploadBytes = 0;
+      textureUploadBytes = 0;
+      totalCalls = 0;
+    }
+
+    @Override
+    public String toString() {
+      return "draws " + drawCalls + ", instances " + instances + ", vertices " + vertices
+          + ", state changes " + stateChanges + ", uniforms " + uniformUpdates
+          + ", buffer bytes " + bufferUploadBytes + ", texture bytes " + textureUploadBytes
+          + ", calls " + totalCalls;
+    }
+  }
+
+  // Last image uploaded to a texture's level 0
+  static final class TextureImage {
+    final int width;
+    final int height;
+    final byte[] pixels;
+
+    TextureImage(int width, int height, byte[] pixels) {
+      this.width = width;
+      this.height = height;
+      this.pixels = pixels;
+    }
+  }
+
+  private FrameStats frame = new FrameStats();
+  private FrameStats finished = new FrameStats();
+  private int nextName = 1;
+  private final Map<Integer, String> shaderSources = new HashMap<>();
+  private final Map<Integer, List<Integer>> programShaders = new HashMap<>();
+  private final Map<Integer, Map<String, Integer>> attribLocations = new HashMap<>();
+  private final Map<Integer, Map<String, Integer>> uniformLocations = new HashMap<>();
+  private final Map<Integer, TextureImage> textures = new HashMap<>();
+  private final IntMap bufferSizes = new IntMap();
+  private final IntMap boundTextures = new IntMap();
+  private final IntMap boundBuffers = new IntMap();
+  private int activeTexture = GL_TEXTURE0;
+  private List<String> log = null;
+  private String extensions = "";
+
+  // Counts since the last endFrame(), then starts a new frame. The result is reused by the
+  // next endFrame().
+  FrameStats endFrame() {
+    FrameStats done = frame;
+    frame = finished;
+    frame.reset();
+    finished = done;
+    if (log != null) log.clear();
+    return done;
+  }
+
+  FrameStats current() {
+    return frame;
+  }
+
+  // What glGetString(GL_EXTENSIONS) reports, space separated; none by default
+  void setExtensions(String extensions) {
+    this.extensions = extensions;
+  }
+
+  // Keep a readable line per call for the current frame; off by default
+  void setLogging(boolean enabled) {
+    log = enabled ? new ArrayList<>() : null;
+  }
+
+  List<String> getLog() {
+    return log;
+  }
+
+  TextureImage getTexture(int texture) {
+    return textures.get(texture);
+  }
+
+  int getBufferSize(int buffer) {
+    return bufferSizes.get(buffer);
+  }
+
+  // Counts a call; true when the caller should log it. The description is only built when
+  // logging.
+  private boolean countCall() {
+    frame.totalCalls++;
+    return log != null;
+  }
+
+  private boolean countStateChange() {
+    frame.stateChanges++;
+    return countCall();
+  }
+
+  private void generate(int n, int[] names, int offset) {
+    for (int i = 0; i < n; i++) {
+      names[offset + i] = nextName++;
+    }
+  }
+
+  private static long bytesOf(Buffer buffer) {
+    if (buffer == null) return 0;
+    if (buffer instanceof ByteBuffer) return buffer.remaining();
+    if (buffer instanceof ShortBuffer || buffer instanceof CharBuffer) return buffer.remaining() * 2L;
+    // Float, int and the rest of the 4-byte element buffers the renderers use
+    return buffer.remaining() * 4L;
+  }
+
+  @Override
+  public void glClear(int mask) {
+    if (countCall()) log.add("glClear(" + mask + ")");
+  }
+
+  @Override
+  public String glGetString(int name) {
+    if (countCall()) log.add("glGetString(" + name + ")");
+    return name == GL_EXTENSIONS ? extensions : "";
+  }
+
+  @Override
+  public int glCreateShader(int type) {
+    if (countCall()) log.add("glCreateShader(" + type + ")");
+    return nextName++;
+  }
+
+  @Override
+  public void glShaderSource(int shader, String source) {
+    if (countCall()) log.add("glShaderSource(" + shader + ")");
+    shaderSources.put(shader, source);
+  }
+
+  @Override
+  public void glCompileShader(int shader) {
+    if (countCall()) log.add("glCompileShader(" + shader + ")");
+  }
+
+  @Override
+  public int glCreateProgram() {
+    if (countCall()) log.add("glCreateProgram()");
+    int program = nextName++;
+    programShaders.put(program, new ArrayList<>());
+    attribLocations.put(program, new HashMap<>());
+    uniformLocations.put(program, new HashMap<>());
+    return program;
+  }
+
+  @Override
+  public void glAttachShader(int program, int shader) {
+    if (countCall()) log.add("glAttachShader(" + program + ", " + shader + ")");
+    List<Integer> shaders = programShaders.get(program);
+    if (shaders != null) shaders.add(shader);
+  }
+
+  @Override
+  public void glLinkProgram(int program) {
+    if (countCall()) log.add("glLinkProgram(" + program + ")");
+    Map<String, Integer> locations = attribLocations.get(program);
+    List<Integer> shaders = programShaders.get(program);
+    if (locations == null || shaders == null) return;
+    // Explicit layout locations win, like a real linker
+    for (int shader : shaders) {
+      String source = shaderSources.get(shader);
+      if (source == null) continue;
+      Matcher matcher = ATTRIBUTE_LOCATION.matcher(source);
+      while (matcher.find()) {
+        locations.put(matcher.group(2), Integer.parseInt(matcher.group(1)));
+      }
+    }
+  }
+
+  @Override
+  public int glGetAttribLocation(int program, String name) {
+    if (countCall()) log.add("glGetAttribLocation(" + program + ", " + name + ")");
+    Map<String, Integer> locations = attribLocations.get(program);
+    if (locations == null) return -1;
+    Integer location = locations.get(name);
+    if (location == null) {
+      location = 0;
+      while (locations.containsValue(location)) location++;
+      locations.put(name, location);
+    }
+    return location;
+  }
+
+  @Override
+  public int glGetUniformLocation(int program, String name) {
+    if (countCall()) log.add("glGetUniformLocation(" + program + ", " + name + ")");
+    Map<String, Integer> locations = uniformLocations.get(program);
+    if (locations == null) return -1;
+    Integer location = locations.get(name);
+    if (location == null) {
+      location = locations.size();
+      locations.put(name, location);
+    }
+    return location;
+  }
+
+  @Override
+  public int glGetUniformBlockIndex(int program, String name) {
+    if (countCall()) log.add("glGetUniformBlockIndex(" + program + ", " + name + ")");
+    List<Integer> shaders = programShaders.get(program);
+    if (shaders == null) return GL_INVALID_INDEX;
+    for (int shader : shaders) {
+      String source = shaderSources.get(shader);
+      if (source != null && source.contains("uniform " + name)) return 0;
+    }
+    return GL_INVALID_INDEX;
+  }
+
+  @Override
+  public void glUniformBlockBinding(int program, int blockIndex, int binding) {
+    if (countCall()) log.add("glUniformBlockBinding(" + program + ", " + blockIndex + ", " + binding + ")");
+  }
+
+  @Override
+  public void glUseProgram(int program) {
+    if (countStateChange()) log.add("glUseProgram(" + program + ")");
+  }
+
+  @Override
+  public void glUniform1i(int location, int x) {
+    frame.uniformUpdates++;
+    if (countCall()) log.add("glUniform1i(" + location + ", " + x + ")");
+  }
+
+  @Override
+  public void glUniform1f(int location, float x) {
+    frame.uniformUpdates++;
+    if (countCall()) log.add("glUniform1f(" + location + ", " + x + ")");
+  }
+
+  @Override
+  public void glUniform4f(int location, float x, float y, float z, float w) {
+    frame.uniformUpdates++;
+    if (countCall()) log.add("glUniform4f(" + location + ")");
+  }
+
+  @Override
+  public void glUniform4fv(int location, int count, float[] value, int offset) {
+    frame.uniformUpdates++;
+    if (countCall()) log.add("glUniform4fv(" + location + ", " + count + ")");
+  }
+
+  @Override
+  public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+    frame.uniformUpdates++;
+    if (countCall()) log.add("glUniformMatrix4fv(" + location + ", " + count + ")");
+  }
+
+  @Override
+  public void glEnable(int cap) {
+    if (countStateChange()) log.add("glEnable(" + cap + ")");
+  }
+
+  @Override
+  public void glDisable(int cap) {
+    if (countStateChange()) log.add("glDisable(" + cap + ")");
+  }
+
+  @Override
+  public void glBlendFunc(int src, int dst) {
+    if (countStateChange()) log.add("glBlendFunc(" + src + ", " + dst + ")");
+  }
+
+  @Override
+  public void glDepthMask(boolean flag) {
+    if (countStateChange()) log.add("glDepthMask(" + flag + ")");
+  }
+
+  @Override
+  public void glGenTextures(int n, int[] textures, int offset) {
+    if (countCall()) log.add("glGenTextures(" + n + ")");
+    generate(n, textures, offset);
+  }
+
+  @Override
+  public void glDeleteTextures(int n, int[] names, int offset) {
+    if (countCall()) log.add("glDeleteTextures(" + n + ")");
+    for (int i = 0; i < n; i++) {
+      textures.remove(names[offset + i]);
+    }
+  }
+
+  @Override
+  public void glActiveTexture(int texture) {
+    if (countStateChange()) log.add("glActiveTexture(" + texture + ")");
+    activeTexture = texture;
+  }
+
+  @Override
+  public void glBindTexture(int target, int texture) {
+    if (countStateChange()) log.add("glBindTexture(" + target + ", " + texture + ")");
+    boundTextures.put(activeTexture * 31 + target, texture);
+  }
+
+  @Override
+  public void glTexParameteri(int target, int pname, int param) {
+    if (countCall()) log.add("glTexParameteri(" + pname + ", " + param + ")");
+  }
+
+  @Override
+  public void glTexImage2D(int target, int level, int internalFormat, int width, int height, int border,
+                           int format, int type, Buffer pixels) {
+    if (countCall()) log.add("glTexImage2D(" + width + "x" + height + ")");
+    frame.textureUploadBytes += bytesOf(pixels);
+    int texture = boundTextures.get(activeTexture * 31 + target);
+    if (texture == 0 || level != 0) return;
+    byte[] copy = new byte[0];
+    if (pixels instanceof ByteBuffer) {
+      ByteBuffer source = ((ByteBuffer) pixels).duplicate();
+      copy = new byte[source.remaining()];
+      source.get(copy);
+    }
+    textures.put(texture, new TextureImage(width, height, copy));
+  }
+
+  @Override
+  public void glGenerateMipmap(int target) {
+    if (countCall()) log.add("glGenerateMipmap(" + target + ")");
+  }
+
+  @Override
+  public void glGenBuffers(int n, int[] buffers, int offset) {
+    if (countCall()) log.add("glGenBuffers(" + n + ")");
+    generate(n, buffers, offset);
+  }
+
+  @Override
+  public void glDeleteBuffers(int n, int[] buffers, int offset) {
+    if (countCall()) log.add("glDeleteBuffers(" + n + ")");
+    for (int i = 0; i < n; i++) {
+      bufferSizes.remove(buffers[offset + i]);
+    }
+  }
+
+  @Override
+  public void glBindBuffer(int target, int buffer) {
+    if (countStateChange()) log.add("glBindBuffer(" + target + ", " + buffer + ")");
+    boundBuffers.put(target, buffer);
+  }
+
+  @Override
+  public void glBindBufferBase(int target, int index, int buffer) {
+    if (countStateChange()) log.add("glBindBufferBase(" + target + ", " + index + ", " + buffer + ")");
+  }
+
+  @Override
+  public void glBufferData(int target, int size, Buffer data, int usage) {
+    if (countCall()) log.add("glBufferData(" + target + ", " + size + ")");
+    if (data != null) frame.bufferUploadBytes += size;
+    int buffer = boundBuffers.get(target);
+    if (buffer != 0) bufferSizes.put(buffer, size);
+  }
+
+  @Override
+  public void glBufferSubData(int target, int offset, int size, Buffer data) {
+    if (countCall()) log.add("glBufferSubData(" + target + ", " + offset + ", " + size + ")");
+    frame.bufferUploadBytes += size;
+  }
+
+  @Override
+  public void glGenVertexArrays(int n, int[] arrays, int offset) {
+    if (countCall()) log.add("glGenVertexArrays(" + n + ")");
+    generate(n, arrays, offset);
+  }
+
+  @Override
+  public void glDeleteVertexArrays(int n, int[] arrays, int offset) {
+    if (countCall()) log.add("glDeleteVertexArrays(" + n + ")");
+  }
+
+  @Override
+  public void glBindVertexArray(int array) {
+    if (countStateChange()) log.add("glBindVertexArray(" + array + ")");
+  }
+
+  @Override
+  public void glEnableVertexAttribArray(int index) {
+    if (countStateChange()) log.add("glEnableVertexAttribArray(" + index + ")");
+  }
+
+  @Override
+  public void glDisableVertexAttribArray(int index) {
+    if (countStateChange()) log.add("glDisableVertexAttribArray(" + index + ")");
+  }
+
+  @Override
+  public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+    if (countStateChange()) log.add("glVertexAttribPointer(" + index + ", " + size + ", offset " + offset + ")");
+  }
+
+  @Override
+  public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer pointer) {
+    if (countStateChange()) log.add("glVertexAttribPointer(" + index + ", " + size + ", client)");
+  }
+
+  @Override
+  public void glVertexAttribDivisor(int index, int divisor) {
+    if (countStateChange()) log.add("glVertexAttribDivisor(" + index + ", " + divisor + ")");
+  }
+
+  @Override
+  public void glDrawArrays(int mode, int first, int count) {
+    frame.drawCalls++;
+    frame.instances++;
+    frame.vertices += count;
+    if (countCall()) log.add("glDrawArrays(" + mode + ", " + first + ", " + count + ")");
+  }
+
+  @Override
+  public void glDrawArraysInstanced(int mode, int first, int count, int instanceCount) {
+    frame.drawCalls++;
+    frame.instances += instanceCount;
+    frame.vertices += count * instanceCount;
+    if (countCall()) log.add("glDrawArraysInstanced(" + mode + ", " + first + ", " + count + ", " + instanceCount + ")");
+  }
+
+  @Override
+  public void glDrawElements(int mode, int count, int type, int offset) {
+    frame.drawCalls++;
+    frame.instances++;
+    frame.vertices += count;
+    if (countCall()) log.add("glDrawElements(" + mode + ", " + count + ")");
+  }
+
+  @Override
+  public void glDrawElementsInstanced(int mode, int count, int type, int offset, int instanceCount) {
+    frame.drawCalls++;
+    frame.instances += instanceCount;
+    frame.vertices += count * instanceCount;
+    if (countCall()) log.add("glDrawElementsInstanced(" + mode + ", " + count + ", " + instanceCount + ")");
+  }
+
+  // int to int without boxing; 0 stands for absent, which no GL object name is. Small enough to
+  // scan: a few bindings and one size per buffer.
+  private static final class IntMap {
+    private int[] keys = new int[16];
+    private int[] values = new int[16];
+    private int size = 0;
+
+    int get(int key) {
+      for (int i = 0; i < size; i++) {
+        if (keys[i] == key) return values[i];
+      }
+      return 0;
+    }
+
+    void put(int key, int value) {
+      for (int i = 0; i < size; i++) {
+        if (keys[i] == key) {
+          values[i] = value;
+          return;
+        }
+      }
+      if (size == keys.length) {
+        keys = Arrays.copyOf(keys, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+      }
+      keys[size] = key;
+      values[size++] = value;
+    }
+
+    void remove(int key) {
+      for (int i = 0; i < size; i++) {
+        if (keys[i] == key) {
+          size--;
+          keys[i] = keys[size];
+          values[i] = values[size];
+          return;
+        }
+      }
+    }
+  }
+}
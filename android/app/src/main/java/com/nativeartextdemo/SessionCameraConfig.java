@@ -0,0 +1,89 @@
+package com.visionar;
+
+import android.util.Range;
+import android.util.Size;
+
+import com.google.ar.core.CameraConfig;
+import com.google.ar.core.CameraConfigFilter;
+import com.google.ar.core.Session;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+// ARCore side of CameraConfigSelector. Must run while the session is paused, i.e. right
+// after creation and before the first resume().
+final class SessionCameraConfig implements CameraConfigSelector.Candidate {
+  final CameraConfig config;
+
+  private SessionCameraConfig(CameraConfig config) {
+    this.config = config;
+  }
+
+  // Applies and returns the selected config, or null if ARCore offered none
+  static CameraConfig selectAndApply(Session session, boolean preferDepthSensor) {
+    CameraConfigFilter filter = new CameraConfigFilter(session)
+        .setFacingDirection(CameraConfig.FacingDirection.BACK)
+        .setTargetFps(EnumSet.of(CameraConfig.TargetFps.TARGET_FPS_30));
+    List<CameraConfig> configs = session.getSupportedCameraConfigs(filter);
+    if (configs == null || configs.isEmpty()) {
+      // Some devices only list 60 fps configs; let the selector rank whatever exists
+      configs = session.getSupportedCameraConfigs(
+          new CameraConfigFilter(session).setFacingDirection(CameraConfig.FacingDirection.BACK));
+    }
+    if (configs == null || configs.isEmpty()) return null;
+
+    List<SessionCameraConfig> candidates = new ArrayList<>(configs.size());
+    for (CameraConfig config : configs) {
+      candidates.add(new SessionCameraConfig(config));
+    }
+    SessionCameraConfig selected = CameraConfigSelector.select(candidates, preferDepthSensor);
+    session.setCameraConfig(selected.config);
+    return selected.config;
+  }
+
+  static String describe(CameraConfig config) {
+    Size image = config.getImageSize();
+    Size texture = config.getTextureSize();
+    Range<Integer> fps = config.getFpsRange();
+    return "CPU image " + image.getWidth() + "x" + image.getHeight()
+        + ", texture " + texture.getWidth() + "x" + texture.getHeight()
+        + ", " + fps.getLower() + "-" + fps.getUpper() + " fps"
+        + (config.getDepthSensorUsage() == CameraConfig.DepthSensorUsage.REQUIRE_AND_USE ? ", depth sensor" : "");
+  }
+
+  @Override
+  public int getImageWidth() {
+    return config.getImageSize().getWidth();
+  }
+
+  @Override
+  public int getImageHeight() {
+    return config.getImageSize().getHeight();
+  }
+
+  @Override
+  public int getTextureWidth() {
+    return config.getTextureSize().getWidth();
+  }
+
+  @Override
+  public int getTextureHeight() {
+    return config.getTextureSize().getHeight();
+  }
+
+  @Override
+  public int getMinFps() {
+    return config.getFpsRange().getLower();
+  }
+
+  @Override
+  public int getMaxFps() {
+    return config.getFpsRange().getUpper();
+  }
+
+  @Override
+  public boolean usesDepthSensor() {
+    return config.getDepthSensorUsage() == CameraConfig.DepthSensorUsage.REQUIRE_AND_USE;
+  }
+}
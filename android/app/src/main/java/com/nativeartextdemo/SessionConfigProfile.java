@@ -0,0 +1,173 @@
+package com.visionar;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.google.ar.core.Config;
+import com.google.ar.core.Session;
+
+// Named ARCore session configurations plus per-field overrides from the sessionConfig prop.
+// Immutable; views swap the whole profile and rebuild their Config with a single configure().
+class SessionConfigProfile {
+  enum Preset {
+    // No depth or light estimation, fixed focus, planes horizontal only
+    LOW_POWER,
+    // The view's own plane finding, autofocus, ambient light; still no depth
+    BALANCED,
+    // Depth where supported, all planes, HDR light, render at display rate
+    QUALITY;
+
+    static Preset fromString(@Nullable String value) {
+      if (value == null) return BALANCED;
+      switch (value) {
+        case "lowPower":
+          return LOW_POWER;
+        case "quality":
+          return QUALITY;
+        default:
+          return BALANCED;
+      }
+    }
+  }
+
+  static final SessionConfigProfile DEFAULT = forPreset(Preset.BALANCED);
+
+  final Preset preset;
+  final Config.DepthMode depthMode;
+  // null keeps the view's default plane finding mode
+  @Nullable final Config.PlaneFindingMode planeFindingMode;
+  final Config.FocusMode focusMode;
+  final Config.LightEstimationMode lightEstimationMode;
+  final Config.UpdateMode updateMode;
+
+  private SessionConfigProfile(Preset preset, Config.DepthMode depthMode,
+                               @Nullable Config.PlaneFindingMode planeFindingMode, Config.FocusMode focusMode,
+                               Config.LightEstimationMode lightEstimationMode, Config.UpdateMode updateMode) {
+    this.preset = preset;
+    this.depthMode = depthMode;
+    this.planeFindingMode = planeFindingMode;
+    this.focusMode = focusMode;
+    this.lightEstimationMode = lightEstimationMode;
+    this.updateMode = updateMode;
+  }
+
+  static SessionConfigProfile forPreset(Preset preset) {
+    switch (preset) {
+      case LOW_POWER:
+        return new SessionConfigProfile(preset, Config.DepthMode.DISABLED, Config.PlaneFindingMode.HORIZONTAL,
+            Config.FocusMode.FIXED, Config.LightEstimationMode.DISABLED, Config.UpdateMode.BLOCKING);
+      case QUALITY:
+        return new SessionConfigProfile(preset, Config.DepthMode.AUTOMATIC, Config.PlaneFindingMode.HORIZONTAL_AND_VERTICAL,
+            Config.FocusMode.AUTO, Config.LightEstimationMode.ENVIRONMENTAL_HDR, Config.UpdateMode.LATEST_CAMERA_IMAGE);
+      default:
+        return new SessionConfigProfile(Preset.BALANCED, Config.DepthMode.DISABLED, null,
+            Config.FocusMode.AUTO, Config.LightEstimationMode.AMBIENT_INTENSITY, Config.UpdateMode.BLOCKING);
+    }
+  }
+
+  // { profile, depthMode, planeFindingMode, focusMode, lightEstimationMode, updateMode }.
+  // Unknown values fall back to the profile's setting.
+  static SessionConfigProfile fromReadableMap(@Nullable ReadableMap map) {
+    if (map == null) return DEFAULT;
+    SessionConfigProfile base = forPreset(Preset.fromString(stringOrNull(map, "profile")));
+    return new SessionConfigProfile(
+        base.preset,
+        parseDepthMode(stringOrNull(map, "depthMode"), base.depthMode),
+        parsePlaneFindingMode(stringOrNull(map, "planeFindingMode"), base.planeFindingMode),
+        parseFocusMode(stringOrNull(map, "focusMode"), base.focusMode),
+        parseLightEstimationMode(stringOrNull(map, "lightEstimationMode"), base.lightEstimationMode),
+        parseUpdateMode(stringOrNull(map, "updateMode"), base.updateMode));
+  }
+
+  // Writes every field this profile owns; depth silently degrades to DISABLED when unsupported
+  void applyTo(Session session, Config config, Config.PlaneFindingMode defaultPlaneFindingMode) {
+    config.setPlaneFindingMode(planeFindingMode != null ? planeFindingMode : defaultPlaneFindingMode);
+    config.setFocusMode(focusMode);
+    config.setLightEstimationMode(lightEstimationMode);
+    config.setUpdateMode(updateMode);
+    config.setDepthMode(depthMode != Config.DepthMode.DISABLED && session.isDepthModeSupported(depthMode)
+        ? depthMode
+        : Config.DepthMode.DISABLED);
+  }
+
+  String describe() {
+    return preset + " (depth " + depthMode + ", planes " + (planeFindingMode != null ? planeFindingMode : "default")
+        + ", focus " + focusMode + ", light " + lightEstimationMode + ", update " + updateMode + ")";
+  }
+
+  @Nullable
+  private static String stringOrNull(ReadableMap map, String key) {
+    return map.hasKey(key) && !map.isNull(key) ? map.getString(key) : null;
+  }
+
+  private static Config.DepthMode parseDepthMode(@Nullable String value, Config.DepthMode fallback) {
+    if (value == null) return fallback;
+    switch (value) {
+      case "disabled":
+        return Config.DepthMode.DISABLED;
+      case "automatic":
+        return Config.DepthMode.AUTOMATIC;
+      case "rawDepthOnly":
+        return Config.DepthMode.RAW_DEPTH_ONLY;
+      default:
+        return fallback;
+    }
+  }
+
+  @Nullable
+  private static Config.PlaneFindingMode parsePlaneFindingMode(@Nullable String value,
+                                                               @Nullable Config.PlaneFindingMode fallback) {
+    if (value == null) return fallback;
+    switch (value) {
+      case "disabled":
+        return Config.PlaneFindingMode.DISABLED;
+      case "horizontal":
+        return Config.PlaneFindingMode.HORIZONTAL;
+      case "vertical":
+        return Config.PlaneFindingMode.VERTICAL;
+      case "horizontalAndVertical":
+        return Config.PlaneFindingMode.HORIZONTAL_AND_VERTICAL;
+      default:
+        return fallback;
+    }
+  }
+
+  private static Config.FocusMode parseFocusMode(@Nullable String value, Config.FocusMode fallback) {
+    if (value == null) return fallback;
+    switch (value) {
+      case "fixed":
+        return Config.FocusMode.FIXED;
+      case "auto":
+        return Config.FocusMode.AUTO;
+      default:
+        return fallback;
+    }
+  }
+
+  private static Config.LightEstimationMode parseLightEstimationMode(@Nullable String value,
+                                                                     Config.LightEstimationMode fallback) {
+    if (value == null) return fallback;
+    switch (value) {
+      case "disabled":
+        return Config.LightEstimationMode.DISABLED;
+      case "ambientIntensity":
+        return Config.LightEstimationMode.AMBIENT_INTENSITY;
+      case "environmentalHdr":
+        return Config.LightEstimationMode.ENVIRONMENTAL_HDR;
+      default:
+        return fallback;
+    }
+  }
+
+  private static Config.UpdateMode parseUpdateMode(@Nullable String value, Config.UpdateMode fallback) {
+    if (value == null) return fallback;
+    switch (value) {
+      case "blocking":
+        return Config.UpdateMode.BLOCKING;
+      case "latestCameraImage":
+        return Config.UpdateMode.LATEST_CAMERA_IMAGE;
+      default:
+        return fallback;
+    }
+  }
+}
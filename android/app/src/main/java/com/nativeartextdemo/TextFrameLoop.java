@@ -0,0 +1,284 @@
+package com.visionar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The GL thread half of the text view: everything onDrawFrame does with a frame once the
+// session has been updated, plus the placed text and the touch interactions on it. Plain Java
+// so FakeArSession and RecordingGl can run the exact same loop on a JVM. Events the view
+// forwards to JS go through the listener.
+//
+// requestTap() may be called from the UI thread, everything else from the GL thread only.
+// The draw path allocates nothing once the placements exist.
+final class TextFrameLoop {
+  interface Listener {
+    void onTextEvent(String eventType, String message, int anchorId);
+  }
+
+  static final float NEAR = 0.1f;
+  static final float FAR = 100f;
+  // Pixels from the projected text origin that still select it
+  static final float HIT_TEST_RADIUS = 150f;
+
+  private final Listener listener;
+  private final AnchorGroupManager anchorGroups = new AnchorGroupManager();
+  private final AnchorBudget anchorBudget = new AnchorBudget();
+  private final PlacementLatencyTracker placementLatency;
+  private final PlaneMeshCache planeMeshCache = new PlaneMeshCache();
+  private final PlaneRaycaster<ArSession.Plane> planeRaycaster = new PlaneRaycaster<>();
+  private final List<AnchorGroupManager.Placement> anchors = new ArrayList<>();
+  // Y rotation in degrees, parallel to anchors
+  private float[] rotations = new float[16];
+  private int publishedPlaneRevision = -1;
+
+  private GlBackend backend;
+  private BackgroundRenderer background;
+  private BillboardRenderer labels;
+  private PlaneRenderer planeRenderer;
+  private int viewportWidth = 0;
+  private int viewportHeight = 0;
+
+  private final float[] view = new float[16];
+  private final float[] proj = new float[16];
+  private final float[] viewProj = new float[16];
+  private final float[] model = new float[16];
+  private final float[] cameraPose = new float[16];
+  private volatile boolean matricesInitialized = false;
+
+  private volatile boolean pendingTap = false;
+  private volatile float pendingTapX = 0f;
+  private volatile float pendingTapY = 0f;
+  private volatile long pendingTapTimeMs = 0L;
+  private volatile PlaneRaycaster.Hit<ArSession.Plane> pendingTapHit = null;
+  private volatile boolean instantPlacementEnabled = false;
+  private volatile boolean planeDetected = false;
+
+  private int rotatingAnchorId = -1;
+  private float rotationAtSelect = 0f;
+  private boolean rotationEmitted = false;
+
+  TextFrameLoop(Listener listener, PlacementLatencyTracker.Listener timingListener) {
+    this.listener = listener;
+    this.placementLatency = new PlacementLatencyTracker(timingListener);
+    MatrixMath.setIdentity(view);
+    MatrixMath.setIdentity(proj);
+  }
+
+  // On surface creation; the text texture should already be uploaded to labels
+  void attach(GlBackend backend, BackgroundRenderer background, BillboardRenderer labels, PlaneRenderer planeRenderer) {
+    this.backend = backend;
+    this.background = background;
+    this.labels = labels;
+    this.planeRenderer = planeRenderer;
+  }
+
+  void setViewport(int width, int height) {
+    viewportWidth = width;
+    viewportHeight = height;
+  }
+
+  AnchorGroupManager getAnchorGroups() {
+    return anchorGroups;
+  }
+
+  AnchorBudget getAnchorBudget() {
+    return anchorBudget;
+  }
+
+  void setInstantPlacementEnabled(boolean enabled) {
+    instantPlacementEnabled = enabled;
+  }
+
+  boolean isInstantPlacementEnabled() {
+    return instantPlacementEnabled;
+  }
+
+  boolean isPlaneDetected() {
+    return planeDetected;
+  }
+
+  int getAnchorCount() {
+    return anchors.size();
+  }
+
+  // The camera matrices are stale until the next tracked frame, e.g. after a pause
+  void invalidateCamera() {
+    matricesInitialized = false;
+  }
+
+  // UI thread: resolves the tap against the cached planes right away and leaves the
+  // placement to the next tracked frame. timeMs is the MotionEvent time.
+  void requestTap(float x, float y, long timeMs) {
+    pendingTapX = x;
+    pendingTapY = y;
+    pendingTapTimeMs = timeMs;
+    pendingTapHit = planeRaycaster.raycast(x, y);
+    pendingTap = true;
+  }
+
+  // Everything after session.update(): planes, tap placement, camera background, the anchor
+  // budget and the placed text. nowMs is on the same clock as the tap times.
+  void draw(ArSession.Frame frame, long nowMs) {
+    ArSession.Camera camera = frame.getCamera();
+    boolean tracking = camera.getTrackingState() == ArSession.Tracking.TRACKING;
+
+    // Single pass over updated planes: refresh cached meshes and check for detection
+    boolean planesTracking = planeMeshCache.update(frame.getUpdatedPlanes());
+    if (planesTracking && !planeDetected) {
+      planeDetected = true;
+      listener.onTextEvent("PLANE_DETECTED", "Surface detected - tap to place text", -1);
+    }
+    if (planeMeshCache.getRevision() != publishedPlaneRevision) {
+      planeMeshCache.publishTo(planeRaycaster);
+      publishedPlaneRevision = planeMeshCache.getRevision();
+    }
+
+    if (pendingTap && tracking) {
+      if (labels == null) {
+        listener.onTextEvent("PLACEMENT_BLOCKED", "Text renderer not ready, please wait", -1);
+      } else if (!planeDetected && !instantPlacementEnabled) {
+        listener.onTextEvent("PLACEMENT_BLOCKED", "No surface detected, keep scanning", -1);
+      } else {
+        AnchorGroupManager.Placement placed = placeTap(frame, nowMs);
+        listener.onTextEvent("TEXT_PLACED", "Text placed successfully", placed != null ? placed.id : -1);
+      }
+      pendingTap = false;
+    }
+
+    if (background != null) {
+      background.draw(frame);
+    }
+    if (!tracking || labels == null) return;
+
+    camera.getProjectionMatrix(proj, 0, NEAR, FAR);
+    camera.getViewMatrix(view, 0);
+    MatrixMath.multiplyMM(viewProj, proj, view);
+    matricesInitialized = true;
+    planeRaycaster.setCamera(view, proj, viewportWidth, viewportHeight);
+    backend.beginFrame(view, proj);
+
+    // Detected planes are only drawn until the first placement
+    if (planeRenderer != null && anchors.isEmpty()) {
+      planeRenderer.draw(planeMeshCache);
+    }
+
+    enforceAnchorBudget(camera);
+
+    anchorGroups.updateGroupPoses();
+    labels.begin();
+    for (int i = 0; i < anchors.size(); i++) {
+      AnchorGroupManager.Placement anchor = anchors.get(i);
+      if (anchor.getTrackingState() != ArSession.Tracking.TRACKING) continue;
+      anchor.getModelMatrix(model);
+      if (AnchorBudget.isInView(viewProj, model)) {
+        anchor.lastVisibleMs = nowMs;
+      }
+      labels.add(model, 0f, rotations[i], 0f);
+      placementLatency.onDrawn(anchor, nowMs);
+    }
+    // All placed text shares one texture, so this is a single batch
+    labels.draw();
+  }
+
+  // Touch down: the text under the finger, if any, becomes the rotation target
+  void selectAnchorAt(float touchX, float touchY) {
+    rotatingAnchorId = -1;
+    rotationEmitted = false;
+    int index = findClosestAnchor(touchX, touchY);
+    if (index < 0) return;
+    rotatingAnchorId = anchors.get(index).id;
+    rotationAtSelect = rotations[index];
+    listener.onTextEvent("TEXT_SELECTED", "Text selected for rotation (Index: " + index + ")", rotatingAnchorId);
+  }
+
+  // rotationDelta is relative to the rotation the text had at touch down
+  void rotateSelectedAnchor(float rotationDelta) {
+    int index = indexOfAnchor(rotatingAnchorId);
+    if (index < 0) return;
+    if (!rotationEmitted) {
+      rotationEmitted = true;
+      listener.onTextEvent("TEXT_ROTATING", "Rotating text #" + index, rotatingAnchorId);
+    }
+    rotations[index] = rotationAtSelect + rotationDelta;
+  }
+
+  void endAnchorRotation() {
+    if (rotationEmitted && indexOfAnchor(rotatingAnchorId) >= 0) {
+      listener.onTextEvent("TEXT_UPDATED", "Text rotation completed", rotatingAnchorId);
+    }
+    rotatingAnchorId = -1;
+    rotationEmitted = false;
+  }
+
+  // False if no such anchor is placed, e.g. it was evicted already
+  boolean removeAnchor(int anchorId) {
+    int index = indexOfAnchor(anchorId);
+    if (index < 0) return false;
+    removeAnchorAt(index);
+    return true;
+  }
+
+  void clearAnchors() {
+    anchors.clear();
+    anchorGroups.clear();
+    placementLatency.clear();
+    rotatingAnchorId = -1;
+  }
+
+  private AnchorGroupManager.Placement placeTap(ArSession.Frame frame, long nowMs) {
+    PlaneRaycaster.Hit<ArSession.Plane> planeHit = pendingTapHit;
+    pendingTapHit = null;
+    AnchorGroupManager.Placement placed =
+        anchorGroups.placeAt(frame, planeHit, pendingTapX, pendingTapY, instantPlacementEnabled, nowMs);
+    return placed == null ? null : addPlacement(placed);
+  }
+
+  private AnchorGroupManager.Placement addPlacement(AnchorGroupManager.Placement placement) {
+    int index = anchors.size();
+    anchors.add(placement);
+    if (index == rotations.length) {
+      float[] grown = new float[rotations.length * 2];
+      System.arraycopy(rotations, 0, grown, 0, index);
+      rotations = grown;
+    }
+    rotations[index] = 0f;
+    placementLatency.track(placement, pendingTapTimeMs);
+    return placement;
+  }
+
+  private int removeAnchorAt(int index) {
+    AnchorGroupManager.Placement placement = anchors.remove(index);
+    System.arraycopy(rotations, index + 1, rotations, index, anchors.size() - index);
+    anchorGroups.release(placement);
+    placementLatency.forget(placement.id);
+    return placement.id;
+  }
+
+  // Evict placements chosen by the budget policy until we are back under the limit
+  private void enforceAnchorBudget(ArSession.Camera camera) {
+    if (!anchorBudget.isOverBudget(anchors.size())) return;
+    camera.getPoseMatrix(cameraPose, 0);
+    while (anchorBudget.isOverBudget(anchors.size())) {
+      int victim = anchorBudget.selectVictim(anchors, model, cameraPose[12], cameraPose[13], cameraPose[14]);
+      if (victim < 0) break;
+      int anchorId = removeAnchorAt(victim);
+      listener.onTextEvent("ANCHOR_EVICTED", "Text evicted by anchor budget (" + anchorBudget.getPolicy() + ")", anchorId);
+    }
+  }
+
+  // -1 once the anchor was removed or evicted
+  private int indexOfAnchor(int anchorId) {
+    if (anchorId < 0) return -1;
+    for (int i = 0; i < anchors.size(); i++) {
+      if (anchors.get(i).id == anchorId) return i;
+    }
+    return -1;
+  }
+
+  private int findClosestAnchor(float touchX, float touchY) {
+    if (anchors.isEmpty() || viewportWidth == 0 || viewportHeight == 0 || !matricesInitialized) {
+      return -1;
+    }
+    return TouchMath.closestProjected(anchors, viewProj, viewportWidth, viewportHeight, touchX, touchY, HIT_TEST_RADIUS);
+  }
+}
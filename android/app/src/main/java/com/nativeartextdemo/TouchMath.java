@@ -0,0 +1,51 @@
+package com.visionar;
+
+import java.util.List;
+
+// Screen space math behind the touch handlers, kept free of MotionEvent so it runs on a JVM
+final class TouchMath {
+  private TouchMath() {}
+
+  // Index of the tracking placement whose origin projects closest to (x, y) within radius
+  // pixels, or -1. Placements behind the camera or far outside the viewport are skipped.
+  static int closestProjected(List<AnchorGroupManager.Placement> placements, float[] viewProj,
+                              int width, int height, float x, float y, float radius) {
+    int closestIndex = -1;
+    float closestDistSq = radius * radius;
+    float[] model = new float[16];
+    for (int i = 0; i < placements.size(); i++) {
+      AnchorGroupManager.Placement placement = placements.get(i);
+      if (placement.getTrackingState() != ArSession.Tracking.TRACKING) continue;
+      placement.getModelMatrix(model);
+
+      float wx = model[12], wy = model[13], wz = model[14];
+      float clipW = viewProj[3] * wx + viewProj[7] * wy + viewProj[11] * wz + viewProj[15];
+      if (clipW <= 0.0001f) continue;
+      float ndcX = (viewProj[0] * wx + viewProj[4] * wy + viewProj[8] * wz + viewProj[12]) / clipW;
+      float ndcY = (viewProj[1] * wx + viewProj[5] * wy + viewProj[9] * wz + viewProj[13]) / clipW;
+      if (Math.abs(ndcX) > 2.0f || Math.abs(ndcY) > 2.0f) continue;
+
+      float dx = (ndcX + 1.0f) * 0.5f * width - x;
+      float dy = (1.0f - ndcY) * 0.5f * height - y;
+      float distSq = dx * dx + dy * dy;
+      if (distSq < closestDistSq) {
+        closestDistSq = distSq;
+        closestIndex = i;
+      }
+    }
+    return closestIndex;
+  }
+
+  // Angle of the line from the first pointer to the second, in degrees
+  static float pointerAngle(float x0, float y0, float x1, float y1) {
+    return (float) Math.toDegrees(Math.atan2(y1 - y0, x1 - x0));
+  }
+
+  // Change from one pointer angle to the next, taking the short way around
+  static float angleDelta(float fromDegrees, float toDegrees) {
+    float delta = toDegrees - fromDegrees;
+    if (delta > 180) delta -= 360;
+    if (delta < -180) delta += 360;
+    return delta;
+  }
+}
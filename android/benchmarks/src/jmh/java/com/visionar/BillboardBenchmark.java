@@ -0,0 +1,58 @@
+package com.visionar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+
+// Per-frame cost of the placed labels: the whole begin/add/draw batch against RecordingGl on
+// both render paths
+@State(Scope.Thread)
+public class BillboardBenchmark {
+  @Param({"16", "128"})
+  public int labels;
+
+  @Param({"2", "3"})
+  public int glesVersion;
+
+  private RecordingGl gl;
+  private BillboardRenderer renderer;
+  private float[][] anchors;
+  private float[] rotations;
+
+  @Setup
+  public void setUp() {
+    gl = new RecordingGl();
+    GlBackend backend = new GlBackend(gl, glesVersion);
+    renderer = new BillboardRenderer(backend);
+    renderer.updateTexture(512, 256, ByteBuffer.allocateDirect(512 * 256 * 4));
+
+    anchors = new float[labels][16];
+    rotations = new float[labels];
+    for (int i = 0; i < labels; i++) {
+      MatrixMath.setTranslateRotateScale(anchors[i], 0,
+          (i % 8) * 0.3f - 1f, 0f, -1f - (i / 8) * 0.3f, 0f, i * 15f, 0f, 1f, 1f, 1f);
+      rotations[i] = i * 7f;
+    }
+
+    float[] view = new float[16];
+    float[] proj = new float[16];
+    MatrixMath.setTranslateRotateScale(view, 0, 0f, -1.4f, 0f, 30f, 0f, 0f, 1f, 1f, 1f);
+    MatrixMath.perspective(proj, 60f, 9f / 16f, 0.1f, 100f);
+    backend.beginFrame(view, proj);
+    gl.endFrame();
+  }
+
+  @Benchmark
+  public RecordingGl.FrameStats drawBatch() {
+    renderer.begin();
+    for (int i = 0; i < labels; i++) {
+      renderer.add(anchors[i], 0f, rotations[i], 0f);
+    }
+    renderer.draw();
+    return gl.endFrame();
+  }
+}
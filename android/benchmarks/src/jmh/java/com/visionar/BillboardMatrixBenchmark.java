@@ -0,0 +1,48 @@
+package com.visionar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Billboard matrix composition on its own: translate/rotate/scale per label followed by the
+// view-projection multiply, the CPU part of BillboardRenderer.add on the GLES 2 path
+@State(Scope.Thread)
+public class BillboardMatrixBenchmark {
+  @Param({"16", "128"})
+  public int labels;
+
+  private float[] positions;
+  private float[] rotations;
+  private final float[] viewProj = new float[16];
+  private final float[] model = new float[16];
+  private final float[] mvp = new float[16];
+
+  @Setup
+  public void setUp() {
+    positions = new float[labels * 3];
+    rotations = new float[labels];
+    for (int i = 0; i < labels; i++) {
+      positions[i * 3] = (i % 8) * 0.3f - 1f;
+      positions[i * 3 + 2] = -1f - (i / 8) * 0.3f;
+      rotations[i] = i * 7f;
+    }
+    float[] view = new float[16];
+    float[] proj = new float[16];
+    MatrixMath.setTranslateRotateScale(view, 0, 0f, -1.4f, 0f, 30f, 0f, 0f, 1f, 1f, 1f);
+    MatrixMath.perspective(proj, 60f, 9f / 16f, 0.1f, 100f);
+    MatrixMath.multiplyMM(viewProj, proj, view);
+  }
+
+  @Benchmark
+  public void compose(Blackhole bh) {
+    for (int i = 0; i < labels; i++) {
+      MatrixMath.setTranslateRotateScale(model, 0, positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2],
+          0f, rotations[i], 0f, 0.3f, 0.3f, 0.3f);
+      MatrixMath.multiplyMM(mvp, viewProj, model);
+      bh.consume(mvp[15]);
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package com.visionar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+
+// The text view's onDrawFrame, minus the Android clock and event plumbing: TextFrameLoop fed by
+// FakeArSession and drawn into RecordingGl. Besides the plain frame there is a frame per
+// interaction the view handles on the GL thread: a touch down that picks a label, a rotation
+// drag step, and a tap that places a new label (and evicts the oldest to stay at the budget).
+@State(Scope.Thread)
+public class FrameLoopBenchmark {
+  private static final int WIDTH = 1080;
+  private static final int HEIGHT = 1920;
+
+  @Param({"16", "64"})
+  public int labels;
+
+  @Param({"2", "3"})
+  public int glesVersion;
+
+  private FakeArSession session;
+  private RecordingGl gl;
+  private GlBackend backend;
+  private TextFrameLoop loop;
+  private long nowMs = 0;
+  private float dragDelta = 0f;
+
+  @Setup
+  public void setUp() throws Exception {
+    session = new FakeArSession(WIDTH, HEIGHT);
+    // Slow orbit that keeps going for the whole run
+    session.addCameraKeyframe(0, 0f, 1.4f, 0f, 0f, -30f);
+    session.addCameraKeyframe(1_000_000, 2f, 1.4f, 0f, 90f, -30f);
+    session.addPlane(0, 0f, 0f, -1.5f, FakeArSession.rectangle(3f, 3f));
+    session.addPlane(0, 0.8f, 0.7f, -1.2f, FakeArSession.rectangle(0.8f, 0.5f));
+
+    gl = new RecordingGl();
+    backend = new GlBackend(gl, glesVersion);
+    BackgroundRenderer background = new BackgroundRenderer(backend);
+    background.attachTo(session);
+    BillboardRenderer labelRenderer = new BillboardRenderer(backend);
+    labelRenderer.updateTexture(512, 256, ByteBuffer.allocateDirect(512 * 256 * 4));
+    PlaneRenderer planeRenderer = new PlaneRenderer(backend);
+
+    loop = new TextFrameLoop((type, message, anchorId) -> { }, (type, anchorId, latencyMs) -> { });
+    loop.attach(backend, background, labelRenderer, planeRenderer);
+    loop.setViewport(WIDTH, HEIGHT);
+    loop.getAnchorBudget().setMaxAnchors(labels);
+
+    // Place the labels the way a user would, one tap per frame across the lower screen
+    frame();
+    for (int i = 0; i < labels; i++) {
+      loop.requestTap(WIDTH * (0.1f + 0.8f * (i % 8) / 7f), HEIGHT * (0.55f + 0.4f * (i / 8) / 8f), nowMs);
+      frame();
+    }
+    if (loop.getAnchorCount() != labels) {
+      throw new IllegalStateException("placed " + loop.getAnchorCount() + " of " + labels + " labels");
+    }
+  }
+
+  @Benchmark
+  public RecordingGl.FrameStats drawFrame() throws Exception {
+    return frame();
+  }
+
+  // Touch down on the screen center, which selects the label nearest to it
+  @Benchmark
+  public RecordingGl.FrameStats tapFrame() throws Exception {
+    loop.selectAnchorAt(WIDTH / 2f, HEIGHT * 0.75f);
+    RecordingGl.FrameStats stats = frame();
+    loop.endAnchorRotation();
+    return stats;
+  }
+
+  // One move event of a rotation drag on the selected label
+  @Benchmark
+  public RecordingGl.FrameStats dragFrame() throws Exception {
+    if (dragDelta == 0f) loop.selectAnchorAt(WIDTH / 2f, HEIGHT * 0.75f);
+    dragDelta = (dragDelta + 4f) % 360f;
+    loop.rotateSelectedAnchor(dragDelta);
+    return frame();
+  }
+
+  // A tap on the floor: raycast, anchor, budget eviction and the new label drawn
+  @Benchmark
+  public RecordingGl.FrameStats placeFrame() throws Exception {
+    loop.requestTap(WIDTH / 2f, HEIGHT * 0.75f, nowMs);
+    return frame();
+  }
+
+  private RecordingGl.FrameStats frame() throws Exception {
+    backend.clearFrame();
+    nowMs += 33;
+    loop.draw(session.update(), nowMs);
+    return gl.endFrame();
+  }
+}
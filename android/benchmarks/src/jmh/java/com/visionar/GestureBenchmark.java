@@ -0,0 +1,41 @@
+package com.visionar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Two-finger rotate as the touch handlers run it: one pointer angle and one wrapped delta
+// per move event, over a recorded twist that crosses the +/-180 degree seam
+@State(Scope.Thread)
+public class GestureBenchmark {
+  private static final int EVENTS = 256;
+
+  private final float[] pointers = new float[EVENTS * 4];
+
+  @Setup
+  public void setUp() {
+    for (int i = 0; i < EVENTS; i++) {
+      double angle = Math.PI * 0.75 + i * (Math.PI / EVENTS);
+      float cx = 540f + i * 0.5f;
+      float cy = 960f - i * 0.25f;
+      pointers[i * 4] = cx - (float) Math.cos(angle) * 200f;
+      pointers[i * 4 + 1] = cy - (float) Math.sin(angle) * 200f;
+      pointers[i * 4 + 2] = cx + (float) Math.cos(angle) * 200f;
+      pointers[i * 4 + 3] = cy + (float) Math.sin(angle) * 200f;
+    }
+  }
+
+  @Benchmark
+  public float twoFingerRotate() {
+    float rotation = 0f;
+    float last = TouchMath.pointerAngle(pointers[0], pointers[1], pointers[2], pointers[3]);
+    for (int i = 1; i < EVENTS; i++) {
+      int p = i * 4;
+      float angle = TouchMath.pointerAngle(pointers[p], pointers[p + 1], pointers[p + 2], pointers[p + 3]);
+      rotation += TouchMath.angleDelta(last, angle);
+      last = angle;
+    }
+    return rotation;
+  }
+}
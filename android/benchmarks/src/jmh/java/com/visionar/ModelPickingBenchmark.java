@@ -0,0 +1,109 @@
+package com.visionar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Tap on placed models: the ray against every placement's bounds and through the mesh BVH to the
+// nearest triangle, and building that BVH when a model is converted
+@State(Scope.Thread)
+public class ModelPickingBenchmark {
+  private static final int WIDTH = 1080;
+  private static final int HEIGHT = 1920;
+
+  // Rings and segments of a UV sphere: 2 * n * n triangles, about 10k and 100k
+  @Param({"72", "224"})
+  public int sphere;
+
+  @Param({"8", "32"})
+  public int placements;
+
+  private GlbModel model;
+  private final ModelPicker picker = new ModelPicker();
+  private final float[] taps = {540f, 1100f, 300f, 1300f, 800f, 900f, 100f, 100f};
+  private int nextTap = 0;
+
+  @Setup
+  public void setUp() {
+    model = sphereModel(sphere, 0.15f);
+    picker.setModel(model);
+
+    float[] view = new float[16];
+    float[] proj = new float[16];
+    float[] camera = new float[16];
+    MatrixMath.setTranslateRotateScale(camera, 0, 0f, 1.4f, 0f, -35f, 0f, 0f, 1f, 1f, 1f);
+    MatrixMath.invert(view, camera);
+    MatrixMath.perspective(proj, 60f, (float) WIDTH / HEIGHT, 0.1f, 100f);
+    picker.setCamera(view, proj, WIDTH, HEIGHT);
+
+    // Spread over the floor in front of the camera like PickingBenchmark's anchors
+    float[] anchor = new float[16];
+    picker.begin();
+    for (int i = 0; i < placements; i++) {
+      MatrixMath.setIdentity(anchor);
+      anchor[12] = (i % 6) * 0.25f - 0.6f;
+      anchor[14] = -1.4f - (i / 6) * 0.25f;
+      picker.add(i, anchor, 0f, i * 30f, 0f, 1f);
+    }
+  }
+
+  @Benchmark
+  public int pick() {
+    int tap = nextTap;
+    nextTap = (tap + 2) % taps.length;
+    return picker.pick(taps[tap], taps[tap + 1]);
+  }
+
+  @Benchmark
+  public MeshBvh buildBvh() {
+    return MeshBvh.build(model.vertices, model.indices, model.meshes.get(0));
+  }
+
+  private static GlbModel sphereModel(int n, float radius) {
+    int vertexCount = (n + 1) * (n + 1);
+    ByteBuffer vertices = ByteBuffer.allocateDirect(vertexCount * GlbModel.VERTEX_STRIDE).order(ByteOrder.nativeOrder());
+    for (int ring = 0; ring <= n; ring++) {
+      double theta = Math.PI * ring / n;
+      for (int segment = 0; segment <= n; segment++) {
+        double phi = 2 * Math.PI * segment / n;
+        float x = (float) (Math.sin(theta) * Math.cos(phi));
+        float y = (float) Math.cos(theta);
+        float z = (float) (Math.sin(theta) * Math.sin(phi));
+        int at = (ring * (n + 1) + segment) * GlbModel.VERTEX_STRIDE;
+        vertices.putFloat(at, x * radius).putFloat(at + 4, y * radius + radius).putFloat(at + 8, z * radius);
+        vertices.putFloat(at + GlbModel.NORMAL_OFFSET, x).putFloat(at + GlbModel.NORMAL_OFFSET + 4, y)
+            .putFloat(at + GlbModel.NORMAL_OFFSET + 8, z);
+      }
+    }
+    int indexCount = n * n * 6;
+    ByteBuffer indices = ByteBuffer.allocateDirect(indexCount * 4).order(ByteOrder.nativeOrder());
+    for (int ring = 0; ring < n; ring++) {
+      for (int segment = 0; segment < n; segment++) {
+        int a = ring * (n + 1) + segment;
+        int b = a + n + 1;
+        indices.putInt(a).putInt(b).putInt(a + 1).putInt(a + 1).putInt(b).putInt(b + 1);
+      }
+    }
+    indices.clear();
+
+    GlbModel.Material material = new GlbModel.Material(new float[]{1f, 1f, 1f, 1f}, -1, 0f, 1f,
+        new float[]{0f, 0f, 0f}, false);
+    List<GlbModel.Primitive> primitives = new ArrayList<>();
+    primitives.add(new GlbModel.Primitive(0, vertexCount, 0, indexCount, GlApi.GL_UNSIGNED_INT, material));
+    GlbModel.Mesh bare = new GlbModel.Mesh(primitives);
+    GlbModel.Mesh mesh = new GlbModel.Mesh(primitives, MeshBvh.build(vertices, indices, bare));
+    float[] identity = new float[16];
+    MatrixMath.setIdentity(identity);
+    return new GlbModel(vertices, indices, Collections.singletonList(mesh),
+        Collections.singletonList(new GlbModel.Node(mesh, identity)), new ArrayList<>(),
+        new float[]{-radius, 0f, -radius}, new float[]{radius, 2 * radius, radius}, null);
+  }
+}
@@ -0,0 +1,81 @@
+package com.visionar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Touch-time work on the UI thread: finding the placed item under a finger, and the CPU
+// plane raycast that resolves taps and drags without waiting for the GL thread
+@State(Scope.Thread)
+public class PickingBenchmark {
+  private static final int WIDTH = 1080;
+  private static final int HEIGHT = 1920;
+  private static final float HIT_RADIUS = 150f;
+
+  @Param({"8", "32"})
+  public int anchors;
+
+  @Param({"1", "8"})
+  public int planes;
+
+  private final List<AnchorGroupManager.Placement> placements = new ArrayList<>();
+  private final PlaneRaycaster<ArSession.Plane> raycaster = new PlaneRaycaster<>();
+  private final float[] viewProj = new float[16];
+  private final float[] taps = {540f, 1200f, 300f, 1500f, 800f, 900f, 100f, 100f};
+  private int nextTap = 0;
+
+  @Setup
+  public void setUp() throws Exception {
+    FakeArSession session = new FakeArSession(WIDTH, HEIGHT);
+    session.addCameraKeyframe(0, 0f, 1.4f, 0f, 0f, -35f);
+    List<FakeArSession.FakePlane> fakePlanes = new ArrayList<>();
+    for (int i = 0; i < planes; i++) {
+      // Stacked like floor, table tops and shelves, all under the camera
+      fakePlanes.add(session.addPlane(0, (i % 3) - 1f, i * 0.2f, -2f - (i / 3) * 0.8f, FakeArSession.rectangle(1.5f, 1.5f)));
+    }
+    ArSession.Frame frame = session.update();
+
+    PlaneMeshCache cache = new PlaneMeshCache();
+    cache.update(frame.getUpdatedPlanes());
+    cache.publishTo(raycaster);
+
+    float[] view = new float[16];
+    float[] proj = new float[16];
+    frame.getCamera().getViewMatrix(view, 0);
+    frame.getCamera().getProjectionMatrix(proj, 0, 0.1f, 100f);
+    MatrixMath.multiplyMM(viewProj, proj, view);
+    raycaster.setCamera(view, proj, WIDTH, HEIGHT);
+
+    // One anchor per item, spread over the floor plane
+    AnchorGroupManager groups = new AnchorGroupManager();
+    groups.setGroupRadius(0f);
+    float[] pose = new float[16];
+    for (int i = 0; i < anchors; i++) {
+      MatrixMath.setIdentity(pose);
+      pose[12] = (i % 6) * 0.25f - 0.6f;
+      pose[13] = 0f;
+      pose[14] = -1.4f - (i / 6) * 0.25f;
+      placements.add(groups.place(fakePlanes.get(0), pose, i));
+    }
+    groups.updateGroupPoses();
+  }
+
+  @Benchmark
+  public int closestAnchor() {
+    int tap = nextTap;
+    nextTap = (tap + 2) % taps.length;
+    return TouchMath.closestProjected(placements, viewProj, WIDTH, HEIGHT, taps[tap], taps[tap + 1], HIT_RADIUS);
+  }
+
+  @Benchmark
+  public PlaneRaycaster.Hit<ArSession.Plane> planeRaycast() {
+    int tap = nextTap;
+    nextTap = (tap + 2) % taps.length;
+    return raycaster.raycast(taps[tap], taps[tap + 1]);
+  }
+}
@@ -0,0 +1,59 @@
+package com.visionar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collection;
+
+// Plane polygon processing: ear clipping alone, the full fade-band mesh rebuild that runs
+// when ARCore reports a changed boundary, and the per-frame pass over an unchanged plane
+@State(Scope.Thread)
+public class PlanePolygonBenchmark {
+  @Param({"8", "32", "128"})
+  public int vertices;
+
+  private float[] polygon;
+  private short[] indices;
+  private PlaneMeshCache.Entry entry;
+  private PlaneMeshCache cache;
+  private Collection<ArSession.Plane> updatedPlanes;
+
+  @Setup
+  public void setUp() throws Exception {
+    // Star-ish but simple outline, like a plane grown from several observations
+    polygon = new float[vertices * 2];
+    for (int i = 0; i < vertices; i++) {
+      double angle = -2.0 * Math.PI * i / vertices;
+      double radius = 1.0 + 0.25 * Math.sin(i * 2.3);
+      polygon[i * 2] = (float) (Math.cos(angle) * radius);
+      polygon[i * 2 + 1] = (float) (Math.sin(angle) * radius);
+    }
+    indices = new short[(vertices - 2) * 3];
+    entry = new PlaneMeshCache.Entry(null);
+
+    FakeArSession session = new FakeArSession(1080, 1920);
+    session.addPlane(0, 0f, 0f, -1.5f, polygon);
+    updatedPlanes = session.update().getUpdatedPlanes();
+    cache = new PlaneMeshCache();
+    cache.update(updatedPlanes);
+  }
+
+  @Benchmark
+  public int triangulate() {
+    return PolygonTriangulator.triangulate(polygon, vertices, indices, 0, 0);
+  }
+
+  @Benchmark
+  public int rebuildMesh() {
+    entry.rebuild(polygon, vertices * 2);
+    return entry.indexCount;
+  }
+
+  @Benchmark
+  public boolean updateUnchanged() {
+    return cache.update(updatedPlanes);
+  }
+}
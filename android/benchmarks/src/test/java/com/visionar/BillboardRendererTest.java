@@ -0,0 +1,66 @@
+package com.visionar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+// Draw call budgets for placed labels, counted by RecordingGl without a GPU
+public class BillboardRendererTest {
+  private static final int LABELS = 200;
+  // What 200 labels may cost on GLES 3, where they are one instanced batch
+  private static final int GLES3_DRAW_BUDGET = 3;
+
+  @Test
+  public void gles3DrawsTwoHundredLabelsWithinBudget() {
+    RecordingGl.FrameStats frame = steadyFrame(3, LABELS);
+    assertTrue("draws " + frame.drawCalls, frame.drawCalls <= GLES3_DRAW_BUDGET);
+    assertEquals(LABELS, frame.instances);
+    assertEquals(0, frame.textureUploadBytes);
+  }
+
+  @Test
+  public void gles3DrawCountDoesNotGrowWithLabels() {
+    assertEquals(steadyFrame(3, 1).drawCalls, steadyFrame(3, LABELS).drawCalls);
+  }
+
+  @Test
+  public void gles2DrawsOneQuadPerLabel() {
+    RecordingGl.FrameStats frame = steadyFrame(2, LABELS);
+    assertEquals(LABELS, frame.drawCalls);
+    assertEquals(LABELS, frame.instances);
+    assertEquals(0, frame.textureUploadBytes);
+    assertEquals(0, frame.bufferUploadBytes);
+  }
+
+  @Test
+  public void emptyBatchDrawsNothing() {
+    assertEquals(0, steadyFrame(2, 0).drawCalls);
+    assertEquals(0, steadyFrame(3, 0).drawCalls);
+  }
+
+  // The second frame of a batch of labels, after the texture upload and program setup
+  private static RecordingGl.FrameStats steadyFrame(int glesVersion, int labels) {
+    RecordingGl gl = new RecordingGl();
+    GlBackend backend = new GlBackend(gl, glesVersion);
+    BillboardRenderer renderer = new BillboardRenderer(backend);
+    renderer.updateTexture(512, 256, ByteBuffer.allocateDirect(512 * 256 * 4));
+
+    float[] view = new float[16];
+    float[] proj = new float[16];
+    MatrixMath.setTranslateRotateScale(view, 0, 0f, -1.4f, 0f, 30f, 0f, 0f, 1f, 1f, 1f);
+    MatrixMath.perspective(proj, 60f, 9f / 16f, 0.1f, 100f);
+    float[] anchor = new float[16];
+    return SteadyFrame.record(gl, backend, view, proj, () -> {
+      renderer.begin();
+      for (int i = 0; i < labels; i++) {
+        MatrixMath.setTranslateRotateScale(anchor, 0,
+            (i % 8) * 0.3f - 1f, 0f, -1f - (i / 8) * 0.3f, 0f, i * 15f, 0f, 1f, 1f, 1f);
+        renderer.add(anchor, 0f, i * 7f, 0f);
+      }
+      renderer.draw();
+    });
+  }
+}
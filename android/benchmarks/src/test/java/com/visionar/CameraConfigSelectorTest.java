@@ -0,0 +1,159 @@
+package com.visionar;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// The selection policy against fake configs shaped like what ARCore lists on phones
+public class CameraConfigSelectorTest {
+
+  @Test
+  public void emptyListSelectsNothing() {
+    assertNull(CameraConfigSelector.select(Collections.<Config>emptyList(), false));
+  }
+
+  @Test
+  public void lockedThirtyFpsBeatsRangesAndSixty() {
+    Config sixty = new Config(640, 480, 60, 60, false);
+    Config range = new Config(640, 480, 15, 30, false);
+    Config locked = new Config(1920, 1080, 30, 30, false);
+    assertSame(locked, select(false, sixty, range, locked));
+    assertSame(range, select(false, sixty, range));
+  }
+
+  @Test
+  public void depthSensorFollowsTheProfile() {
+    Config depth = new Config(640, 480, 30, 30, true);
+    Config plain = new Config(640, 480, 30, 30, false);
+    assertSame(plain, select(false, depth, plain));
+    assertSame(depth, select(true, plain, depth));
+  }
+
+  @Test
+  public void frameRateOutranksDepthSensor() {
+    Config depthAtSixty = new Config(640, 480, 60, 60, true);
+    Config plainAtThirty = new Config(640, 480, 30, 30, false);
+    assertSame(plainAtThirty, select(true, depthAtSixty, plainAtThirty));
+  }
+
+  @Test
+  public void smallestAcceptableImageWins() {
+    Config small = new Config(320, 240, 30, 30, false);
+    Config vga = new Config(640, 480, 30, 30, false);
+    Config hd = new Config(1280, 720, 30, 30, false);
+    Config fullHd = new Config(1920, 1080, 30, 30, false);
+    assertSame(vga, select(false, fullHd, small, hd, vga));
+    // Portrait sizes count by their long and short sides
+    assertTrue(CameraConfigSelector.isImageAcceptable(new Config(480, 640, 30, 30, false)));
+    assertFalse(CameraConfigSelector.isImageAcceptable(small));
+  }
+
+  @Test
+  public void fallsBackToTheLargestImageWhenNoneIsAcceptable() {
+    Config tiny = new Config(176, 144, 30, 30, false);
+    Config small = new Config(320, 240, 30, 30, false);
+    assertSame(small, select(false, tiny, small));
+  }
+
+  @Test
+  public void fallsBackToAnyFrameRateWhenNothingRunsAtThirty() {
+    Config sixtyHd = new Config(1280, 720, 60, 60, false);
+    Config sixtyVga = new Config(640, 480, 60, 60, false);
+    assertSame(sixtyVga, select(false, sixtyHd, sixtyVga));
+  }
+
+  @Test
+  public void equalImagesPreferTheLargerTexture() {
+    Config sharp = new Config(640, 480, 30, 30, false, 1920, 1080);
+    Config soft = new Config(640, 480, 30, 30, false, 1280, 720);
+    assertSame(sharp, select(false, soft, sharp));
+    assertSame(sharp, select(false, sharp, soft));
+  }
+
+  @Test
+  public void orderOfTheListDoesNotMatter() {
+    List<Config> configs = new ArrayList<>(Arrays.asList(
+        new Config(1920, 1080, 30, 30, false),
+        new Config(640, 480, 60, 60, false),
+        new Config(640, 480, 30, 30, true),
+        new Config(640, 480, 30, 30, false),
+        new Config(320, 240, 30, 30, false)));
+    Config expected = configs.get(3);
+    for (int i = 0; i < configs.size(); i++) {
+      Collections.rotate(configs, 1);
+      assertSame(expected, CameraConfigSelector.select(configs, false));
+    }
+  }
+
+  private static Config select(boolean preferDepthSensor, Config... configs) {
+    return CameraConfigSelector.select(Arrays.asList(configs), preferDepthSensor);
+  }
+
+  private static final class Config implements CameraConfigSelector.Candidate {
+    final int imageWidth;
+    final int imageHeight;
+    final int minFps;
+    final int maxFps;
+    final boolean depthSensor;
+    final int textureWidth;
+    final int textureHeight;
+
+    Config(int imageWidth, int imageHeight, int minFps, int maxFps, boolean depthSensor) {
+      this(imageWidth, imageHeight, minFps, maxFps, depthSensor, 1920, 1080);
+    }
+
+    Config(int imageWidth, int imageHeight, int minFps, int maxFps, boolean depthSensor,
+           int textureWidth, int textureHeight) {
+      this.imageWidth = imageWidth;
+      this.imageHeight = imageHeight;
+      this.minFps = minFps;
+      this.maxFps = maxFps;
+      this.depthSensor = depthSensor;
+      this.textureWidth = textureWidth;
+      this.textureHeight = textureHeight;
+    }
+
+    @Override
+    public int getImageWidth() {
+      return imageWidth;
+    }
+
+    @Override
+    public int getImageHeight() {
+      return imageHeight;
+    }
+
+    @Override
+    public int getTextureWidth() {
+      return textureWidth;
+    }
+
+    @Override
+    public int getTextureHeight() {
+      return textureHeight;
+    }
+
+    @Override
+    public int getMinFps() {
+      return minFps;
+    }
+
+    @Override
+    public int getMaxFps() {
+      return maxFps;
+    }
+
+    @Override
+    public boolean usesDepthSensor() {
+      return depthSensor;
+    }
+  }
+}
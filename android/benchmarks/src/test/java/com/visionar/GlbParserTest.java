@@ -0,0 +1,62 @@
+package com.visionar;
+
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+// Hostile glTF documents: each must fail with an IOException, quickly and without blowing the stack
+public class GlbParserTest {
+
+  @Test
+  public void deeplyNestedJsonIsRejected() {
+    StringBuilder json = new StringBuilder();
+    for (int i = 0; i < 200_000; i++) json.append('[');
+    assertThrows(IOException.class, () -> MiniJson.parse(json.toString()));
+    assertThrows(IOException.class, () -> GlbParser.parse(glb("{\"extras\":" + json + "}")));
+  }
+
+  @Test
+  public void nestingWithinTheLimitParses() throws IOException {
+    StringBuilder json = new StringBuilder();
+    for (int i = 0; i < MiniJson.MAX_DEPTH; i++) json.append('[');
+    for (int i = 0; i < MiniJson.MAX_DEPTH; i++) json.append(']');
+    MiniJson.parse(json.toString());
+  }
+
+  // Every node lists the next one twice: walked as a tree that is 2^40 visits
+  @Test
+  public void nodeWithTwoParentsIsRejected() {
+    StringBuilder nodes = new StringBuilder();
+    for (int i = 0; i < 40; i++) {
+      if (i > 0) nodes.append(',');
+      nodes.append(i < 39 ? "{\"children\":[" + (i + 1) + "," + (i + 1) + "]}" : "{}");
+    }
+    String json = "{\"asset\":{\"version\":\"2.0\"},\"scene\":0,\"scenes\":[{\"nodes\":[0]}],"
+        + "\"nodes\":[" + nodes + "]}";
+    assertThrows(IOException.class, () -> GlbParser.parse(glb(json)));
+  }
+
+  @Test
+  public void nodeCycleIsRejected() {
+    String json = "{\"asset\":{\"version\":\"2.0\"},\"scene\":0,\"scenes\":[{\"nodes\":[0]}],"
+        + "\"nodes\":[{\"children\":[1]},{\"children\":[0]}]}";
+    assertThrows(IOException.class, () -> GlbParser.parse(glb(json)));
+  }
+
+  // A GLB holding just a JSON chunk
+  private static ByteBuffer glb(String json) {
+    byte[] text = json.getBytes(StandardCharsets.UTF_8);
+    int padded = (text.length + 3) & ~3;
+    ByteBuffer file = ByteBuffer.allocate(12 + 8 + padded).order(ByteOrder.LITTLE_ENDIAN);
+    file.putInt(0x46546C67).putInt(2).putInt(file.capacity());
+    file.putInt(padded).putInt(0x4E4F534A).put(text);
+    while (file.hasRemaining()) file.put((byte) ' ');
+    file.flip();
+    return file;
+  }
+}
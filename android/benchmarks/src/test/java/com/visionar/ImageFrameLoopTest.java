@@ -0,0 +1,165 @@
+package com.visionar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+// Tap, drag and two finger rotation of the image view, as ImageFrameLoop runs them on the GL
+// thread, against a FakeArSession looking down at a floor
+public class ImageFrameLoopTest {
+  private static final int WIDTH = 1080;
+  private static final int HEIGHT = 1920;
+  private static final float EPSILON = 1e-4f;
+
+  private final FakeArSession session = new FakeArSession(WIDTH, HEIGHT);
+  private final List<String> events = new ArrayList<>();
+  private final List<Integer> eventAnchors = new ArrayList<>();
+  private final GlBackend backend = new GlBackend(new RecordingGl(), 3);
+  private final ImageFrameLoop loop = new ImageFrameLoop((type, message, anchorId) -> {
+    events.add(type);
+    eventAnchors.add(anchorId);
+  }, (type, anchorId, latencyMs) -> { });
+  private final PlacementGestures gestures = loop.getGestures();
+  private long nowMs = 0;
+
+  public ImageFrameLoopTest() {
+    session.addCameraKeyframe(0, 0f, 1.4f, 0f, 0f, -30f);
+    session.addPlane(0, 0f, 0f, -1.5f, FakeArSession.rectangle(3f, 3f));
+    BackgroundRenderer background = new BackgroundRenderer(backend);
+    background.attachTo(session);
+    BillboardRenderer images = new BillboardRenderer(backend);
+    images.updateTexture(64, 64, ByteBuffer.allocateDirect(64 * 64 * 4));
+    loop.attach(backend, background, images, new PlaneRenderer(backend));
+    loop.setViewport(WIDTH, HEIGHT);
+  }
+
+  @Test
+  public void tapBeforeTheImageIsReadyIsBlocked() {
+    frame();
+    tap(WIDTH / 2f, HEIGHT * 0.75f);
+
+    assertEquals("PLACEMENT_BLOCKED", lastEvent());
+    assertEquals(0, loop.getAnchorCount());
+  }
+
+  @Test
+  public void tapPlacesAnImageOnTheFloor() {
+    loop.setImageReady(true);
+    frame();
+    assertEquals("PLANE_DETECTED", lastEvent());
+    tap(WIDTH / 2f, HEIGHT * 0.75f);
+
+    assertEquals("IMAGE_PLACED", lastEvent());
+    assertEquals(1, loop.getAnchorCount());
+    assertEquals(loop.getAnchor(0).id, (int) eventAnchors.get(eventAnchors.size() - 1));
+    assertEquals(0f, position(0)[1], EPSILON);
+  }
+
+  @Test
+  public void dragMovesTheNewestImageAndKeepsItsId() {
+    loop.setImageReady(true);
+    frame();
+    tap(WIDTH / 2f, HEIGHT * 0.75f);
+    tap(WIDTH * 0.3f, HEIGHT * 0.75f);
+    int first = loop.getAnchor(0).id;
+    int newest = loop.getAnchor(1).id;
+    float[] firstBefore = position(0);
+    float[] newestBefore = position(1);
+
+    gestures.moveDrag(WIDTH * 0.7f, HEIGHT * 0.8f);
+    frame();
+
+    assertEquals(first, loop.getAnchor(0).id);
+    assertEquals(newest, loop.getAnchor(1).id);
+    assertArrayEquals(firstBefore, position(0), EPSILON);
+    assertNotEquals(newestBefore[0], position(1)[0], 0.1f);
+    assertEquals(0f, position(1)[1], EPSILON);
+
+    // Lifting the finger ends the drag
+    gestures.up();
+    float[] dropped = position(1);
+    gestures.moveDrag(WIDTH * 0.2f, HEIGHT * 0.8f);
+    gestures.up();
+    frame();
+    assertArrayEquals(dropped, position(1), EPSILON);
+  }
+
+  @Test
+  public void twoFingersRotateTheNewestImage() {
+    loop.setImageReady(true);
+    frame();
+    tap(WIDTH / 2f, HEIGHT * 0.75f);
+
+    // Twist a quarter turn about the midpoint, and move the midpoint 20 px right and 40 px down
+    gestures.down(500f, 1000f, nowMs);
+    gestures.startRotation(500f, 1000f, 700f, 1000f);
+    gestures.moveRotation(620f, 940f, 620f, 1140f);
+    frame();
+    gestures.up();
+
+    float[] rotation = new float[3];
+    loop.getRotation(0, rotation);
+    assertEquals(40f * 0.5f, rotation[0], EPSILON);
+    assertEquals(20f * 0.5f, rotation[1], EPSILON);
+    assertEquals(90f, Math.abs(rotation[2]), EPSILON);
+    // The second finger turned the touch into a rotation, it placed nothing
+    assertEquals(1, loop.getAnchorCount());
+
+    // A new image starts unrotated and the first keeps its rotation
+    tap(WIDTH * 0.3f, HEIGHT * 0.75f);
+    float[] fresh = new float[3];
+    loop.getRotation(1, fresh);
+    assertArrayEquals(new float[3], fresh, 0f);
+    float[] kept = new float[3];
+    loop.getRotation(0, kept);
+    assertArrayEquals(rotation, kept, 0f);
+  }
+
+  @Test
+  public void removedImageTakesItsRotationWithIt() {
+    loop.setImageReady(true);
+    frame();
+    tap(WIDTH / 2f, HEIGHT * 0.75f);
+    gestures.startRotation(500f, 1000f, 700f, 1000f);
+    gestures.moveRotation(500f, 1100f, 700f, 1100f);
+    frame();
+    gestures.up();
+    tap(WIDTH * 0.3f, HEIGHT * 0.75f);
+    int second = loop.getAnchor(1).id;
+
+    assertTrue(loop.removeAnchor(loop.getAnchor(0).id));
+    assertEquals(second, loop.getAnchor(0).id);
+    float[] rotation = new float[3];
+    loop.getRotation(0, rotation);
+    assertArrayEquals(new float[3], rotation, 0f);
+  }
+
+  private void tap(float x, float y) {
+    gestures.down(x, y, nowMs);
+    gestures.up();
+    frame();
+  }
+
+  private void frame() {
+    backend.clearFrame();
+    nowMs += 33;
+    loop.draw(session.update(), nowMs);
+  }
+
+  private String lastEvent() {
+    return events.get(events.size() - 1);
+  }
+
+  private float[] position(int index) {
+    float[] model = new float[16];
+    loop.getAnchor(index).getModelMatrix(model);
+    return new float[]{model[12], model[13], model[14]};
+  }
+}
@@ -0,0 +1,173 @@
+package com.visionar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+// The lower detail index sets MeshSimplifier adds to each primitive of a mesh
+public class MeshSimplifierTest {
+  // Quads per side of the grid primitive
+  private static final int GRID = 24;
+
+  @Test
+  public void everyLevelOfASmoothSurfaceIsSmaller() {
+    int vertexCount = (GRID + 1) * (GRID + 1);
+    ByteBuffer vertices = vertexBuffer(vertexCount);
+    for (int row = 0; row <= GRID; row++) {
+      for (int column = 0; column <= GRID; column++) {
+        float u = (float) column / GRID;
+        float v = (float) row / GRID;
+        // A gentle dome, so collapses cost something but stay within the error bounds
+        float height = 0.02f * (float) (Math.sin(Math.PI * u) * Math.sin(Math.PI * v));
+        putVertex(vertices, row * (GRID + 1) + column, u, height, v, u, v);
+      }
+    }
+    int[] grid = new int[GRID * GRID * 6];
+    int next = 0;
+    for (int row = 0; row < GRID; row++) {
+      for (int column = 0; column < GRID; column++) {
+        int a = row * (GRID + 1) + column;
+        int b = a + GRID + 1;
+        int[] quad = {a, b, a + 1, a + 1, b, b + 1};
+        for (int index : quad) {
+          grid[next++] = index;
+        }
+      }
+    }
+    GlbModel.Primitive full = primitive(0, vertexCount, grid, GlApi.GL_UNSIGNED_SHORT);
+    ByteBuffer indices = indexBuffer(grid, GlApi.GL_UNSIGNED_SHORT);
+
+    GlbModel.Primitive primitive = simplify(vertices, indices, full).primitives.get(0);
+
+    for (int level = 1; level < GlbModel.LOD_LEVELS; level++) {
+      assertTrue("level " + level, primitive.levelCount(level) < primitive.levelCount(level - 1));
+      assertEquals(0, primitive.levelCount(level) % 3);
+    }
+    assertEquals(grid.length, primitive.levelCount(0));
+  }
+
+  @Test
+  public void simplifiedIndicesStayWithinTheirPrimitivesVertices() {
+    // A second primitive after the first in the same buffers, indexed from its own first vertex
+    int sphere = 16;
+    int sphereVertices = (sphere + 1) * (sphere + 1);
+    int offset = 3;
+    ByteBuffer vertices = vertexBuffer(offset + sphereVertices);
+    putVertex(vertices, 0, 0f, 0f, 0f, 0f, 0f);
+    putVertex(vertices, 1, 1f, 0f, 0f, 1f, 0f);
+    putVertex(vertices, 2, 0f, 1f, 0f, 0f, 1f);
+    for (int ring = 0; ring <= sphere; ring++) {
+      double theta = Math.PI * ring / sphere;
+      for (int segment = 0; segment <= sphere; segment++) {
+        double phi = 2 * Math.PI * segment / sphere;
+        putVertex(vertices, offset + ring * (sphere + 1) + segment, (float) (Math.sin(theta) * Math.cos(phi)),
+            (float) Math.cos(theta), (float) (Math.sin(theta) * Math.sin(phi)), (float) segment / sphere,
+            (float) ring / sphere);
+      }
+    }
+    int[] triangle = {0, 1, 2};
+    int[] sphereIndices = new int[sphere * sphere * 6];
+    int next = 0;
+    for (int ring = 0; ring < sphere; ring++) {
+      for (int segment = 0; segment < sphere; segment++) {
+        int a = ring * (sphere + 1) + segment;
+        int b = a + sphere + 1;
+        int[] quad = {a, b, a + 1, a + 1, b, b + 1};
+        for (int index : quad) {
+          sphereIndices[next++] = index;
+        }
+      }
+    }
+    int[] all = new int[triangle.length + sphereIndices.length];
+    System.arraycopy(triangle, 0, all, 0, triangle.length);
+    System.arraycopy(sphereIndices, 0, all, triangle.length, sphereIndices.length);
+    ByteBuffer indices = indexBuffer(all, GlApi.GL_UNSIGNED_INT);
+    GlbModel.Mesh mesh = new GlbModel.Mesh(new ArrayList<>(List.of(
+        new GlbModel.Primitive(0, offset, 0, triangle.length, GlApi.GL_UNSIGNED_INT, null),
+        new GlbModel.Primitive(offset * GlbModel.VERTEX_STRIDE, sphereVertices, triangle.length * 4,
+            sphereIndices.length, GlApi.GL_UNSIGNED_INT, null))));
+    List<GlbModel.Mesh> meshes = new ArrayList<>(List.of(mesh));
+
+    ByteBuffer out = MeshSimplifier.addLevels(vertices, indices, meshes, null);
+
+    for (GlbModel.Primitive primitive : meshes.get(0).primitives) {
+      for (int level = 0; level < GlbModel.LOD_LEVELS; level++) {
+        for (int i = 0; i < primitive.levelCount(level); i++) {
+          int index = out.getInt(primitive.levelOffset(level) + i * 4);
+          assertTrue("level " + level + " index " + index, index >= 0 && index < primitive.vertexCount);
+        }
+      }
+    }
+    assertTrue(meshes.get(0).primitives.get(1).levelCount(GlbModel.LOD_LEVELS - 1) < sphereIndices.length);
+  }
+
+  @Test
+  public void meshesThatCannotBeSimplifiedKeepTheirFullDetail() {
+    // A lone triangle is all border, and a tetrahedron cannot lose a vertex within the error
+    // bound; neither adds any indices
+    ByteBuffer vertices = vertexBuffer(4);
+    putVertex(vertices, 0, 0f, 0f, 0f, 0f, 0f);
+    putVertex(vertices, 1, 1f, 0f, 0f, 1f, 0f);
+    putVertex(vertices, 2, 0f, 1f, 0f, 0f, 1f);
+    putVertex(vertices, 3, 0f, 0f, 1f, 1f, 1f);
+    int[][] shapes = {{0, 1, 2}, {0, 2, 1, 0, 1, 3, 1, 2, 3, 2, 0, 3}};
+    for (int[] shape : shapes) {
+      ByteBuffer indices = indexBuffer(shape, GlApi.GL_UNSIGNED_SHORT);
+      GlbModel.Mesh mesh = new GlbModel.Mesh(new ArrayList<>(List.of(
+          primitive(0, 4, shape, GlApi.GL_UNSIGNED_SHORT))));
+      List<GlbModel.Mesh> meshes = new ArrayList<>(List.of(mesh));
+
+      ByteBuffer out = MeshSimplifier.addLevels(vertices, indices, meshes, null);
+
+      assertEquals(indices.capacity(), out.capacity());
+      GlbModel.Primitive primitive = meshes.get(0).primitives.get(0);
+      for (int level = 0; level < GlbModel.LOD_LEVELS; level++) {
+        assertEquals(shape.length, primitive.levelCount(level));
+        assertEquals(0, primitive.levelOffset(level));
+      }
+    }
+  }
+
+  private static GlbModel.Mesh simplify(ByteBuffer vertices, ByteBuffer indices, GlbModel.Primitive primitive) {
+    List<GlbModel.Mesh> meshes = new ArrayList<>(List.of(new GlbModel.Mesh(new ArrayList<>(List.of(primitive)))));
+    MeshSimplifier.addLevels(vertices, indices, meshes, null);
+    return meshes.get(0);
+  }
+
+  private static GlbModel.Primitive primitive(int vertexOffset, int vertexCount, int[] indices, int indexType) {
+    return new GlbModel.Primitive(vertexOffset, vertexCount, 0, indices.length, indexType, null);
+  }
+
+  private static ByteBuffer vertexBuffer(int vertexCount) {
+    return ByteBuffer.allocateDirect(vertexCount * GlbModel.VERTEX_STRIDE).order(ByteOrder.nativeOrder());
+  }
+
+  // Normals all face up; simplification only compares them between vertices at one position
+  private static void putVertex(ByteBuffer vertices, int vertex, float x, float y, float z, float u, float v) {
+    int at = vertex * GlbModel.VERTEX_STRIDE;
+    vertices.putFloat(at, x).putFloat(at + 4, y).putFloat(at + 8, z);
+    vertices.putFloat(at + GlbModel.NORMAL_OFFSET + 4, 1f);
+    vertices.putFloat(at + GlbModel.TEXCOORD_OFFSET, u).putFloat(at + GlbModel.TEXCOORD_OFFSET + 4, v);
+  }
+
+  private static ByteBuffer indexBuffer(int[] indices, int indexType) {
+    boolean wide = indexType == GlApi.GL_UNSIGNED_INT;
+    ByteBuffer buffer = ByteBuffer.allocateDirect((indices.length * (wide ? 4 : 2) + 3) & ~3)
+        .order(ByteOrder.nativeOrder());
+    for (int index : indices) {
+      if (wide) {
+        buffer.putInt(index);
+      } else {
+        buffer.putShort((short) index);
+      }
+    }
+    buffer.clear();
+    return buffer;
+  }
+}
@@ -0,0 +1,310 @@
+package com.visionar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+// EXT_meshopt_compression decoding: the reference encoder's index vector, round trips through a
+// minimal encoder written from the format description, and malformed input, which may only
+// ever surface as an IOException
+public class MeshoptDecoderTest {
+  // The index buffer test vector of meshoptimizer's own tests, version 0 of the codec
+  private static final byte[] INDEX_V0 = bytes(
+      0xe0, 0xf0, 0x10, 0xfe, 0xff, 0xf0, 0x0c, 0xff, 0x02, 0x02, 0x02, 0x00, 0x76, 0x87, 0x56, 0x67,
+      0x78, 0xa9, 0x86, 0x65, 0x89, 0x68, 0x98, 0x01, 0x69, 0x00, 0x00);
+  private static final int[] INDEX_V0_DECODED = {0, 1, 2, 2, 1, 3, 4, 6, 5, 7, 8, 9};
+
+  @Test
+  public void referenceIndexBufferDecodes() throws IOException {
+    for (int indexSize : new int[]{2, 4}) {
+      ByteBuffer out = ByteBuffer.allocate(12 * indexSize).order(ByteOrder.LITTLE_ENDIAN);
+      MeshoptDecoder.decode(out, 0, 12, indexSize, "TRIANGLES", null, INDEX_V0);
+      assertArrayEquals(INDEX_V0_DECODED, indices(out, 0, 12, indexSize));
+    }
+  }
+
+  @Test
+  public void vertexBuffersRoundTrip() throws IOException {
+    Random random = new Random(7);
+    for (int stride : new int[]{4, 8, 12, 16, 20, 40, 64, 256}) {
+      for (int count : new int[]{0, 1, 15, 16, 17, 300, 1000, 5000}) {
+        // Noise, ramps and small values, so every group packing shows up
+        byte[] vertices = new byte[count * stride];
+        for (int i = 0; i < count; i++) {
+          for (int k = 0; k < stride; k++) {
+            int value = k % 3 == 0 ? random.nextInt(256) : k % 3 == 1 ? i * (k + 1) : random.nextInt(5);
+            vertices[i * stride + k] = (byte) value;
+          }
+        }
+        ByteBuffer out = ByteBuffer.allocate(8 + vertices.length);
+        MeshoptDecoder.decode(out, 8, count, stride, "ATTRIBUTES", null, encodeVertices(vertices, count, stride));
+        assertArrayEquals("stride " + stride + " count " + count,
+            vertices, Arrays.copyOfRange(out.array(), 8, out.capacity()));
+      }
+    }
+  }
+
+  @Test
+  public void indexSequencesRoundTrip() throws IOException {
+    Random random = new Random(7);
+    for (int count : new int[]{0, 1, 7, 3000}) {
+      // Two interleaved runs, one of them past 16 bits, so both baselines and long varints are used
+      int[] indices = new int[count];
+      for (int i = 0; i < count; i++) {
+        indices[i] = i % 2 == 0 ? i / 2 + random.nextInt(3) : 70_000 - i + random.nextInt(9);
+      }
+      ByteBuffer out = ByteBuffer.allocate(count * 4).order(ByteOrder.LITTLE_ENDIAN);
+      MeshoptDecoder.decode(out, 0, count, 4, "INDICES", null, encodeSequence(indices));
+      assertArrayEquals(indices, indices(out, 0, count, 4));
+    }
+  }
+
+  @Test
+  public void truncatedVertexDataIsRejected() {
+    byte[] vertices = new byte[300 * 12];
+    new Random(7).nextBytes(vertices);
+    byte[] encoded = encodeVertices(vertices, 300, 12);
+    for (int length = 0; length < encoded.length; length++) {
+      byte[] truncated = Arrays.copyOf(encoded, length);
+      assertThrows("length " + length, IOException.class, () ->
+          MeshoptDecoder.decode(ByteBuffer.allocate(300 * 12), 0, 300, 12, "ATTRIBUTES", null, truncated));
+    }
+  }
+
+  @Test
+  public void truncatedIndexDataIsRejected() {
+    for (int length = 0; length < INDEX_V0.length; length++) {
+      byte[] truncated = Arrays.copyOf(INDEX_V0, length);
+      assertThrows("length " + length, IOException.class, () ->
+          MeshoptDecoder.decode(ByteBuffer.allocate(48), 0, 12, 4, "TRIANGLES", null, truncated));
+    }
+  }
+
+  @Test
+  public void outputPastTheTargetIsRejected() {
+    assertThrows(IOException.class, () ->
+        MeshoptDecoder.decode(ByteBuffer.allocate(44), 0, 12, 4, "TRIANGLES", null, INDEX_V0));
+    assertThrows(IOException.class, () ->
+        MeshoptDecoder.decode(ByteBuffer.allocate(48), 4, 12, 4, "TRIANGLES", null, INDEX_V0));
+  }
+
+  // Random bytes behind each valid header; anything but an IOException fails the test
+  @Test
+  public void garbageOnlyThrowsIOException() {
+    Random random = new Random(7);
+    for (int round = 0; round < 2000; round++) {
+      byte[] garbage = new byte[1 + random.nextInt(200)];
+      random.nextBytes(garbage);
+      garbage[0] = (byte) (0xe0 | random.nextInt(2));
+      decodeIgnoringIOException(ByteBuffer.allocate(60 * 4), 60, 4, "TRIANGLES", null, garbage);
+      garbage[0] = (byte) (0xd0 | random.nextInt(2));
+      decodeIgnoringIOException(ByteBuffer.allocate(60 * 4), 60, 4, "INDICES", null, garbage);
+      garbage[0] = (byte) 0xa0;
+      decodeIgnoringIOException(ByteBuffer.allocate(60 * 8), 60, 8, "ATTRIBUTES", "OCTAHEDRAL", garbage);
+      decodeIgnoringIOException(ByteBuffer.allocate(60 * 8), 60, 8, "ATTRIBUTES", "QUATERNION", garbage);
+      decodeIgnoringIOException(ByteBuffer.allocate(60 * 8), 60, 8, "ATTRIBUTES", "EXPONENTIAL", garbage);
+    }
+  }
+
+  @Test
+  public void octahedralFilterRestoresUnitNormals() throws IOException {
+    Random random = new Random(7);
+    int count = 100;
+    ByteBuffer data = ByteBuffer.allocate(count * 8).order(ByteOrder.LITTLE_ENDIAN);
+    float[] normals = new float[count * 3];
+    for (int i = 0; i < count; i++) {
+      double[] n = unit(random, 3);
+      for (int c = 0; c < 3; c++) normals[i * 3 + c] = (float) n[c];
+      // Octahedral encoding at 16 bits, the way the reference encoder writes it
+      double length = Math.abs(n[0]) + Math.abs(n[1]) + Math.abs(n[2]);
+      double x = n[0] / length;
+      double y = n[1] / length;
+      if (n[2] < 0) {
+        double folded = (1 - Math.abs(y)) * (x >= 0 ? 1 : -1);
+        y = (1 - Math.abs(x)) * (y >= 0 ? 1 : -1);
+        x = folded;
+      }
+      data.putShort(i * 8, (short) Math.round(x * 32767)).putShort(i * 8 + 2, (short) Math.round(y * 32767))
+          .putShort(i * 8 + 4, (short) 32767).putShort(i * 8 + 6, (short) 1234);
+    }
+    MeshoptDecoder.filterOctahedral(data, 0, count, 8);
+    for (int i = 0; i < count; i++) {
+      for (int c = 0; c < 3; c++) {
+        assertEquals(normals[i * 3 + c], data.getShort(i * 8 + c * 2) / 32767f, 1e-4f);
+      }
+      // The fourth component passes through
+      assertEquals(1234, data.getShort(i * 8 + 6));
+    }
+  }
+
+  @Test
+  public void quaternionFilterRestoresUnitQuaternions() throws IOException {
+    Random random = new Random(7);
+    int count = 100;
+    ByteBuffer data = ByteBuffer.allocate(count * 8).order(ByteOrder.LITTLE_ENDIAN);
+    float[] quaternions = new float[count * 4];
+    for (int i = 0; i < count; i++) {
+      double[] q = unit(random, 4);
+      // The largest component is dropped and comes back positive, at 12 bits
+      int largest = 0;
+      for (int c = 1; c < 4; c++) {
+        if (Math.abs(q[c]) > Math.abs(q[largest])) largest = c;
+      }
+      double sign = q[largest] < 0 ? -1 : 1;
+      int scale = (1 << 11) - 1;
+      double s = Math.sqrt(2.0) * scale * sign;
+      for (int c = 0; c < 3; c++) {
+        data.putShort(i * 8 + c * 2, (short) Math.round(q[(largest + 1 + c) & 3] * s));
+      }
+      data.putShort(i * 8 + 6, (short) ((scale & ~3) | largest));
+      for (int c = 0; c < 4; c++) quaternions[i * 4 + c] = (float) (q[c] * sign);
+    }
+    MeshoptDecoder.filterQuaternion(data, 0, count, 8);
+    for (int i = 0; i < count; i++) {
+      for (int c = 0; c < 4; c++) {
+        assertEquals(quaternions[i * 4 + c], data.getShort(i * 8 + c * 2) / 32767f, 5e-4f);
+      }
+    }
+  }
+
+  @Test
+  public void exponentialFilterScalesMantissas() throws IOException {
+    ByteBuffer data = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+    data.putInt(0, (-3 << 24) | 12).putInt(4, 0xffffff & -5).putInt(8, (5 << 24) | 1000);
+    MeshoptDecoder.filterExponential(data, 0, 1, 12);
+    assertEquals(1.5f, data.getFloat(0), 0f);
+    assertEquals(-5f, data.getFloat(4), 0f);
+    assertEquals(32000f, data.getFloat(8), 0f);
+  }
+
+  private static void decodeIgnoringIOException(ByteBuffer target, int count, int stride, String mode,
+                                                String filter, byte[] source) {
+    try {
+      MeshoptDecoder.decode(target, 0, count, stride, mode, filter, source);
+    } catch (IOException rejected) {
+      // The only acceptable failure
+    }
+  }
+
+  private static int[] indices(ByteBuffer buffer, int offset, int count, int indexSize) {
+    int[] indices = new int[count];
+    for (int i = 0; i < count; i++) {
+      int at = offset + i * indexSize;
+      indices[i] = indexSize == 2 ? buffer.getShort(at) & 0xFFFF : buffer.getInt(at);
+    }
+    return indices;
+  }
+
+  private static double[] unit(Random random, int size) {
+    double[] v = new double[size];
+    double length = 0;
+    for (int c = 0; c < size; c++) {
+      v[c] = random.nextGaussian();
+      length += v[c] * v[c];
+    }
+    length = Math.sqrt(length);
+    for (int c = 0; c < size; c++) v[c] /= length;
+    return v;
+  }
+
+  private static byte[] bytes(int... values) {
+    byte[] bytes = new byte[values.length];
+    for (int i = 0; i < values.length; i++) bytes[i] = (byte) values[i];
+    return bytes;
+  }
+
+  // Version 0 vertex codec: per block and byte lane, zigzag deltas against the previous vertex
+  // in groups of 16, then a tail holding the first vertex
+  private static byte[] encodeVertices(byte[] vertices, int count, int stride) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(0xa0);
+    int blockSize = Math.min((8192 / stride) & ~15, 256);
+    byte[] last = Arrays.copyOf(vertices, stride);
+    for (int first = 0; first < count; first += blockSize) {
+      int size = Math.min(blockSize, count - first);
+      for (int k = 0; k < stride; k++) {
+        int[] lane = new int[(size + 15) & ~15];
+        int previous = last[k] & 0xFF;
+        for (int i = 0; i < size; i++) {
+          int value = vertices[(first + i) * stride + k] & 0xFF;
+          int delta = (byte) (value - previous);
+          lane[i] = ((delta << 1) ^ (delta >> 7)) & 0xFF;
+          previous = value;
+        }
+        encodeLane(out, lane);
+      }
+      System.arraycopy(vertices, (first + size - 1) * stride, last, 0, stride);
+    }
+    for (int i = stride; i < Math.max(32, stride); i++) out.write(0);
+    out.write(Arrays.copyOf(vertices, stride), 0, stride);
+    return out.toByteArray();
+  }
+
+  // Each group of 16 at the cheapest of 0, 2, 4 or 8 bits, with escapes after the packed bits
+  private static void encodeLane(ByteArrayOutputStream out, int[] lane) {
+    int groups = lane.length / 16;
+    byte[] header = new byte[(groups + 3) / 4];
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    for (int g = 0; g < groups; g++) {
+      int nonZero = 0;
+      int over2 = 0;
+      int over14 = 0;
+      for (int j = 0; j < 16; j++) {
+        int value = lane[g * 16 + j];
+        if (value != 0) nonZero++;
+        if (value >= 3) over2++;
+        if (value >= 15) over14++;
+      }
+      int mode = nonZero == 0 ? 0 : 4 + over2 <= 8 + over14 && 4 + over2 <= 16 ? 1 : 8 + over14 <= 16 ? 2 : 3;
+      header[g / 4] |= mode << ((g % 4) * 2);
+      if (mode == 3) {
+        for (int j = 0; j < 16; j++) body.write(lane[g * 16 + j]);
+      } else if (mode != 0) {
+        int bits = mode == 1 ? 2 : 4;
+        int escape = (1 << bits) - 1;
+        int perByte = 8 / bits;
+        ByteArrayOutputStream escaped = new ByteArrayOutputStream();
+        for (int b = 0; b < 16 / perByte; b++) {
+          int packed = 0;
+          for (int q = 0; q < perByte; q++) {
+            int value = lane[g * 16 + b * perByte + q];
+            if (value >= escape) escaped.write(value);
+            packed = (packed << bits) | Math.min(value, escape);
+          }
+          body.write(packed);
+        }
+        body.write(escaped.toByteArray(), 0, escaped.size());
+      }
+    }
+    out.write(header, 0, header.length);
+    out.write(body.toByteArray(), 0, body.size());
+  }
+
+  // Version 1 index sequence codec: zigzag deltas against the closer of two baselines as varints
+  private static byte[] encodeSequence(int[] indices) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(0xd1);
+    int[] last = {0, 0};
+    for (int index : indices) {
+      int baseline = Math.abs(index - last[0]) <= Math.abs(index - last[1]) ? 0 : 1;
+      int delta = index - last[baseline];
+      int value = (((delta << 1) ^ (delta >> 31)) << 1) | baseline;
+      do {
+        out.write((value & 127) | (Integer.compareUnsigned(value, 127) > 0 ? 128 : 0));
+        value >>>= 7;
+      } while (value != 0);
+      last[baseline] = index;
+    }
+    out.write(new byte[4], 0, 4);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,173 @@
+package com.visionar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Sampling hand built two key channels on a two node rig: a root that moves and a child one
+// metre above it that turns
+public class ModelAnimatorTest {
+  private static final float EPSILON = 1e-5f;
+  private static final float DURATION = 2f;
+  // A quarter turn about Y
+  private static final float[] QUARTER_TURN = {0f, (float) Math.sin(Math.PI / 4), 0f, (float) Math.cos(Math.PI / 4)};
+
+  @Test
+  public void linearKeysInterpolateAndHoldAtTheEnds() {
+    ModelAnimator animator = animator(new GlbModel.Channel(0, GlbModel.Channel.TRANSLATION, GlbModel.Channel.LINEAR,
+        new float[]{0.5f, 1.5f}, new float[]{0f, 0f, 0f, 2f, 4f, 6f}));
+
+    animator.update(0.25f);
+    assertArrayEquals(new float[]{0f, 0f, 0f}, rootPosition(animator), EPSILON);
+    animator.update(1f);
+    assertArrayEquals(new float[]{1f, 2f, 3f}, rootPosition(animator), EPSILON);
+    animator.update(1.5f);
+    assertArrayEquals(new float[]{2f, 4f, 6f}, rootPosition(animator), EPSILON);
+    animator.update(1.9f);
+    assertArrayEquals(new float[]{2f, 4f, 6f}, rootPosition(animator), EPSILON);
+  }
+
+  @Test
+  public void stepKeysJump() {
+    ModelAnimator animator = animator(new GlbModel.Channel(0, GlbModel.Channel.TRANSLATION, GlbModel.Channel.STEP,
+        new float[]{0f, 1f}, new float[]{0f, 0f, 0f, 2f, 4f, 6f}));
+
+    animator.update(0.99f);
+    assertArrayEquals(new float[]{0f, 0f, 0f}, rootPosition(animator), EPSILON);
+    animator.update(1f);
+    assertArrayEquals(new float[]{2f, 4f, 6f}, rootPosition(animator), EPSILON);
+  }
+
+  @Test
+  public void cubicSplineFollowsTheTangentsScaledByTheKeySpan() {
+    // In-tangent, value, out-tangent per key; x leaves at 3 units per second and arrives flat,
+    // y has flat tangents at both keys
+    float[] values = {
+        0f, 0f, 0f, 0f, 0f, 0f, 3f, 0f, 0f,
+        0f, 0f, 0f, 1f, 1f, 0f, 0f, 0f, 0f};
+    ModelAnimator animator = animator(new GlbModel.Channel(0, GlbModel.Channel.TRANSLATION,
+        GlbModel.Channel.CUBIC_SPLINE, new float[]{0f, DURATION}, values));
+
+    // Halfway the Hermite basis weighs both values by 1/2, the out-tangent by span / 8 and the
+    // in-tangent by -span / 8
+    animator.update(1f);
+    float[] position = rootPosition(animator);
+    assertEquals(0.5f + 3f * DURATION / 8f, position[0], EPSILON);
+    assertEquals(0.5f, position[1], EPSILON);
+    // A quarter of the way: 3s^2 - 2s^3 of the second value
+    animator.update(0.5f);
+    assertEquals(3f * 0.0625f - 2f * 0.015625f, rootPosition(animator)[1], EPSILON);
+    // The in-tangent is never read on the first key
+    animator.update(0f);
+    assertArrayEquals(new float[]{0f, 0f, 0f}, rootPosition(animator), EPSILON);
+  }
+
+  @Test
+  public void rotationTakesTheShortestArc() {
+    ModelAnimator animator = animator(rotation(QUARTER_TURN));
+    animator.update(1f);
+    float[] halfway = childWorld(animator);
+    assertArrayEquals(childAt((float) Math.PI / 4), halfway, EPSILON);
+
+    // The same end orientation given as the negated quaternion takes the same eighth turn,
+    // not the long way round
+    float[] negated = new float[4];
+    for (int c = 0; c < 4; c++) {
+      negated[c] = -QUARTER_TURN[c];
+    }
+    ModelAnimator other = animator(rotation(negated));
+    other.update(1f);
+    assertArrayEquals(halfway, childWorld(other), EPSILON);
+  }
+
+  @Test
+  public void timeLoopsOverTheDuration() {
+    ModelAnimator animator = animator(rotation(QUARTER_TURN));
+    animator.update(0.5f);
+    float[] first = childWorld(animator);
+    animator.update(0.5f + 3 * DURATION);
+    assertArrayEquals(first, childWorld(animator), EPSILON);
+    animator.update(0.5f - DURATION);
+    assertArrayEquals(first, childWorld(animator), EPSILON);
+  }
+
+  @Test
+  public void cursorRestartsWhenTimeGoesBack() {
+    float[] times = {0f, 0.5f, 1f, 1.5f, DURATION};
+    float[] values = new float[times.length * 3];
+    for (int key = 0; key < times.length; key++) {
+      values[key * 3] = key * key;
+    }
+    GlbModel.Channel channel = new GlbModel.Channel(0, GlbModel.Channel.TRANSLATION, GlbModel.Channel.LINEAR,
+        times, values);
+    GlbModel.Channel twoKeys = new GlbModel.Channel(0, GlbModel.Channel.TRANSLATION, GlbModel.Channel.LINEAR,
+        new float[]{0f, DURATION}, new float[]{0f, 0f, 0f, 0f, 2f, 0f});
+    ModelAnimator animator = animator(channel, twoKeys);
+    animator.update(1.9f);
+    // Looping round finds the cursor past the time
+    animator.update(0.25f);
+    assertEquals(0.5f, rootPosition(animator)[0], EPSILON);
+    animator.update(1.25f);
+    assertEquals(6.5f, rootPosition(animator)[0], EPSILON);
+
+    // A cursor left on the fourth key is past the end of the next animation's channel
+    animator.update(1.75f);
+    animator.setAnimation(1);
+    animator.update(1f);
+    assertArrayEquals(new float[]{0f, 1f, 0f}, rootPosition(animator), EPSILON);
+    // Back to the first, from its start
+    animator.setAnimation(0);
+    animator.update(0.75f);
+    assertArrayEquals(new float[]{2.5f, 0f, 0f}, rootPosition(animator), EPSILON);
+    animator.setAnimation(-1);
+    animator.update(0.75f);
+    assertArrayEquals(new float[]{0f, 0f, 0f}, rootPosition(animator), EPSILON);
+  }
+
+  private static GlbModel.Channel rotation(float[] to) {
+    float[] values = Arrays.copyOf(new float[]{0f, 0f, 0f, 1f}, 8);
+    System.arraycopy(to, 0, values, 4, 4);
+    return new GlbModel.Channel(1, GlbModel.Channel.ROTATION, GlbModel.Channel.LINEAR,
+        new float[]{0f, DURATION}, values);
+  }
+
+  // One single channel animation per clip
+  private static ModelAnimator animator(GlbModel.Channel... clips) {
+    float[] restTrs = {
+        0f, 0f, 0f, 0f, 0f, 0f, 1f, 1f, 1f, 1f,
+        0f, 1f, 0f, 0f, 0f, 0f, 1f, 1f, 1f, 1f};
+    float[] restMatrices = new float[32];
+    MatrixMath.setFromTrs(restMatrices, 0, restTrs, 0);
+    MatrixMath.setFromTrs(restMatrices, 16, restTrs, 10);
+    List<GlbModel.Animation> animations = new ArrayList<>();
+    for (GlbModel.Channel channel : clips) {
+      animations.add(new GlbModel.Animation("clip " + animations.size(), DURATION,
+          Collections.singletonList(channel)));
+    }
+    return new ModelAnimator(new GlbModel.Rig(new int[]{-1, 0}, restMatrices, restTrs,
+        new ArrayList<>(), animations));
+  }
+
+  private static float[] rootPosition(ModelAnimator animator) {
+    float[] worlds = animator.getWorldMatrices();
+    return new float[]{worlds[12], worlds[13], worlds[14]};
+  }
+
+  private static float[] childWorld(ModelAnimator animator) {
+    return Arrays.copyOfRange(animator.getWorldMatrices(), 16, 32);
+  }
+
+  // The child's model space matrix turned by angle radians about Y
+  private static float[] childAt(float angle) {
+    float[] trs = {0f, 1f, 0f, 0f, (float) Math.sin(angle / 2), 0f, (float) Math.cos(angle / 2), 1f, 1f, 1f};
+    float[] m = new float[16];
+    MatrixMath.setFromTrs(m, 0, trs, 0);
+    return m;
+  }
+}
@@ -0,0 +1,326 @@
+package com.visionar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// GLB -> cache file -> mapped model gives what the parser gave, and files the cache cannot
+// trust are converted again instead of being read
+public class ModelCacheTest {
+  private static final File HORNET = new File("../app/src/main/assets/models/HORNET.glb");
+  private static final int INDEX_BYTES = 4 * 9;
+  // Byte offsets in the cache file of grid()'s only primitive: after the 17 header ints, one
+  // material of 12 ints and one mesh of 3
+  private static final int PRIMITIVE = 4 * (17 + 12 + 3);
+  private static final int VERTEX_OFFSET = PRIMITIVE;
+  private static final int VERTEX_COUNT = PRIMITIVE + 4;
+  private static final int INDEX_TYPE = PRIMITIVE + 8;
+  private static final int LEVEL_OFFSET = PRIMITIVE + 20;
+  private static final int LEVEL_COUNT = PRIMITIVE + 24;
+
+  private File directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("model-cache").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) file.delete();
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void roundTripMatchesTheParser() throws IOException {
+    ByteBuffer glb = grid(20, true);
+    GlbModel parsed = GlbParser.parse(glb);
+    ModelCache cache = new ModelCache(directory, 64L << 20);
+    assertSameGeometry(parsed, cache.load(glb));
+    // The second load reads the cache file
+    assertSameGeometry(parsed, cache.load(glb));
+    assertEquals(1, cacheFiles().length);
+  }
+
+  @Test
+  public void thirtyTwoBitSourceIndicesAreStoredAsShortsWhenTheyFit() throws IOException {
+    GlbModel cached = new ModelCache(directory, 64L << 20).load(grid(20, true));
+    GlbModel.Primitive primitive = cached.meshes.get(0).primitives.get(0);
+    assertEquals(GlApi.GL_UNSIGNED_SHORT, primitive.indexType);
+    assertEquals(19 * 19 * 6, primitive.indexCount);
+  }
+
+  @Test
+  public void primitivesPastSixtyFiveThousandVerticesKeepIntIndices() throws IOException {
+    ByteBuffer glb = grid(260, true);
+    GlbModel parsed = GlbParser.parse(glb);
+    GlbModel cached = new ModelCache(directory, 64L << 20).load(glb);
+    assertEquals(GlApi.GL_UNSIGNED_INT, cached.meshes.get(0).primitives.get(0).indexType);
+    assertSameGeometry(parsed, cached);
+  }
+
+  @Test
+  public void hornetRoundTrips() throws IOException {
+    ByteBuffer glb = ByteBuffer.wrap(Files.readAllBytes(HORNET.toPath()));
+    GlbModel parsed = GlbParser.parse(glb);
+    ModelCache cache = new ModelCache(directory, 64L << 20);
+    cache.load(glb);
+    assertSameGeometry(parsed, cache.load(glb));
+  }
+
+  @Test
+  public void staleVersionIsRejected() throws IOException {
+    ByteBuffer glb = grid(8, false);
+    ModelCache cache = new ModelCache(directory, 64L << 20);
+    cache.load(glb);
+    File file = cacheFiles()[0];
+    patchInt(file, 4, ModelCache.VERSION - 1);
+
+    assertThrows(IOException.class, () -> ModelCache.read(map(file)));
+    // load() converts again and replaces the entry
+    assertSameGeometry(GlbParser.parse(glb), cache.load(glb));
+    assertEquals(ModelCache.VERSION, readInt(file, 4));
+  }
+
+  @Test
+  public void truncatedFileIsRejected() throws IOException {
+    ByteBuffer glb = grid(8, false);
+    ModelCache cache = new ModelCache(directory, 64L << 20);
+    cache.load(glb);
+    File file = cacheFiles()[0];
+    long length = file.length();
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(length / 2);
+    }
+
+    assertThrows(IOException.class, () -> ModelCache.read(map(file)));
+    assertSameGeometry(GlbParser.parse(glb), cache.load(glb));
+    assertEquals(length, file.length());
+  }
+
+  @Test
+  public void corruptCountsAreRejected() throws IOException {
+    ByteBuffer glb = grid(8, false);
+    new ModelCache(directory, 64L << 20).load(glb);
+    File file = cacheFiles()[0];
+    // Header ints: magic, version, byte order mark, material count, then the mesh count at 16
+    patchInt(file, 16, 1_000_000);
+    assertThrows(IOException.class, () -> ModelCache.read(map(file)));
+    patchInt(file, 16, -1);
+    assertThrows(IOException.class, () -> ModelCache.read(map(file)));
+  }
+
+  @Test
+  public void primitiveRangesAreChecked() throws IOException {
+    ByteBuffer glb = grid(8, false);
+    new ModelCache(directory, 64L << 20).load(glb);
+    File file = cacheFiles()[0];
+    assertEquals(GlApi.GL_UNSIGNED_SHORT, readInt(file, INDEX_TYPE));
+    assertEquals(64, readInt(file, VERTEX_COUNT));
+    assertEquals(7 * 7 * 6, readInt(file, LEVEL_COUNT));
+
+    assertRejectedWith(file, INDEX_TYPE, GlApi.GL_FLOAT);
+    assertRejectedWith(file, VERTEX_COUNT, 65);
+    assertRejectedWith(file, VERTEX_OFFSET, GlbModel.VERTEX_STRIDE);
+    assertRejectedWith(file, VERTEX_OFFSET, 2);
+    // The index section also holds the simpler levels, so only running off its end is caught
+    assertRejectedWith(file, LEVEL_COUNT, readInt(file, INDEX_BYTES) / 2 + 1);
+    assertRejectedWith(file, LEVEL_COUNT, -3);
+    assertRejectedWith(file, LEVEL_OFFSET, readInt(file, INDEX_BYTES));
+    assertRejectedWith(file, LEVEL_OFFSET, 1);
+    // A rejected entry is converted again
+    assertSameGeometry(GlbParser.parse(glb), new ModelCache(directory, 64L << 20).load(glb));
+  }
+
+  @Test
+  public void channelValuesMustMatchTheirKeys() throws IOException {
+    GlbModel grid = GlbParser.parse(grid(8, false));
+    // Two linear translation keys take 6 values, as cubic splines 18
+    ModelCache.read(writeTo(withChannel(grid, GlbModel.Channel.LINEAR, 6), "linear"));
+    ModelCache.read(writeTo(withChannel(grid, GlbModel.Channel.CUBIC_SPLINE, 18), "cubic"));
+    assertThrows(IOException.class, () ->
+        ModelCache.read(writeTo(withChannel(grid, GlbModel.Channel.LINEAR, 5), "short")));
+    assertThrows(IOException.class, () ->
+        ModelCache.read(writeTo(withChannel(grid, GlbModel.Channel.CUBIC_SPLINE, 6), "unsplined")));
+  }
+
+  @Test
+  public void entryLargerThanTheCacheIsStillLoaded() throws IOException {
+    ByteBuffer glb = grid(20, true);
+    ModelCache cache = new ModelCache(directory, 1);
+    assertSameGeometry(GlbParser.parse(glb), cache.load(glb));
+    // Kept until the next entry is written
+    assertEquals(1, cacheFiles().length);
+    assertSameGeometry(GlbParser.parse(glb), cache.load(glb));
+  }
+
+  @Test
+  public void writeFailureReturnsTheConvertedModel() throws IOException {
+    ByteBuffer glb = grid(8, false);
+    // A directory where the temporary file should go makes the write fail
+    File blocked = new File(directory, ModelCache.sha256(glb) + ".v" + ModelCache.VERSION + ".model.tmp");
+    assertTrue(blocked.mkdir());
+    List<File> failed = new ArrayList<>();
+    ModelCache cache = new ModelCache(directory, 64L << 20, (file, e) -> failed.add(file));
+
+    assertSameGeometry(GlbParser.parse(glb), cache.load(glb));
+    assertEquals(1, failed.size());
+    assertFalse(failed.get(0).exists());
+  }
+
+  private static void assertRejectedWith(File file, int offset, int value) throws IOException {
+    int original = readInt(file, offset);
+    patchInt(file, offset, value);
+    assertThrows("value " + value + " at " + offset, IOException.class, () -> ModelCache.read(map(file)));
+    patchInt(file, offset, original);
+    ModelCache.read(map(file));
+  }
+
+  // The model with a rig of one node whose translation has two keys with valueCount values
+  private static GlbModel withChannel(GlbModel model, int interpolation, int valueCount) {
+    float[] rest = new float[16];
+    MatrixMath.setIdentity(rest);
+    float[] restTrs = {0f, 0f, 0f, 0f, 0f, 0f, 1f, 1f, 1f, 1f};
+    GlbModel.Channel channel = new GlbModel.Channel(0, GlbModel.Channel.TRANSLATION, interpolation,
+        new float[]{0f, 1f}, new float[valueCount]);
+    GlbModel.Animation animation = new GlbModel.Animation("move", 1f, Collections.singletonList(channel));
+    GlbModel.Rig rig = new GlbModel.Rig(new int[]{-1}, rest, restTrs, Collections.<GlbModel.Skin>emptyList(),
+        Collections.singletonList(animation));
+    return new GlbModel(model.vertices, model.indices, model.meshes, model.nodes, model.images, model.min, model.max,
+        rig);
+  }
+
+  private ByteBuffer writeTo(GlbModel model, String name) throws IOException {
+    File file = new File(directory, name);
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      ModelCache.write(model, channel);
+    }
+    return map(file);
+  }
+
+  private File[] cacheFiles() {
+    File[] files = directory.listFiles();
+    assertNotNull(files);
+    return files;
+  }
+
+  private static void assertSameGeometry(GlbModel expected, GlbModel actual) {
+    assertTrue("vertices differ", expected.vertices.duplicate().clear().equals(actual.vertices.duplicate().clear()));
+    assertTrue("indices differ", expected.indices.duplicate().clear().equals(actual.indices.duplicate().clear()));
+    assertArrayEquals(expected.min, actual.min, 0f);
+    assertArrayEquals(expected.max, actual.max, 0f);
+    assertEquals(expected.meshes.size(), actual.meshes.size());
+    for (int m = 0; m < expected.meshes.size(); m++) {
+      assertEquals(expected.meshes.get(m).primitives.size(), actual.meshes.get(m).primitives.size());
+      for (int p = 0; p < expected.meshes.get(m).primitives.size(); p++) {
+        GlbModel.Primitive a = expected.meshes.get(m).primitives.get(p);
+        GlbModel.Primitive b = actual.meshes.get(m).primitives.get(p);
+        assertEquals(a.vertexOffset, b.vertexOffset);
+        assertEquals(a.vertexCount, b.vertexCount);
+        assertEquals(a.indexType, b.indexType);
+        assertArrayEquals(a.levelOffsets, b.levelOffsets);
+        assertArrayEquals(a.levelCounts, b.levelCounts);
+      }
+    }
+    assertEquals(expected.nodes.size(), actual.nodes.size());
+    for (int n = 0; n < expected.nodes.size(); n++) {
+      assertArrayEquals(expected.nodes.get(n).matrix, actual.nodes.get(n).matrix, 0f);
+    }
+  }
+
+  private static ByteBuffer map(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  // Cache files are written in native order
+  private static void patchInt(File file, int offset, int value) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+      ByteBuffer bytes = ByteBuffer.allocate(4).order(ByteOrder.nativeOrder()).putInt(0, value);
+      channel.write(bytes, offset);
+    }
+  }
+
+  private static int readInt(File file, int offset) throws IOException {
+    return map(file).order(ByteOrder.nativeOrder()).getInt(offset);
+  }
+
+  // A flat size x size vertex grid on y = 0 with normals and one triangle list primitive
+  private static ByteBuffer grid(int size, boolean intIndices) {
+    int vertexCount = size * size;
+    int indexCount = (size - 1) * (size - 1) * 6;
+    int indexBytes = indexCount * (intIndices ? 4 : 2);
+    int positionBytes = vertexCount * 12;
+    int indexPadded = (indexBytes + 3) & ~3;
+    ByteBuffer bin = ByteBuffer.allocate(positionBytes * 2 + indexPadded).order(ByteOrder.LITTLE_ENDIAN);
+    for (int z = 0; z < size; z++) {
+      for (int x = 0; x < size; x++) {
+        bin.putFloat(x * 0.01f).putFloat(0f).putFloat(z * 0.01f);
+      }
+    }
+    for (int v = 0; v < vertexCount; v++) {
+      bin.putFloat(0f).putFloat(1f).putFloat(0f);
+    }
+    for (int z = 0; z + 1 < size; z++) {
+      for (int x = 0; x + 1 < size; x++) {
+        int a = z * size + x;
+        int[] quad = {a, a + size, a + 1, a + 1, a + size, a + size + 1};
+        for (int index : quad) {
+          if (intIndices) bin.putInt(index); else bin.putShort((short) index);
+        }
+      }
+    }
+    float extent = (size - 1) * 0.01f;
+    String json = "{\"asset\":{\"version\":\"2.0\"},\"scene\":0,\"scenes\":[{\"nodes\":[0]}],"
+        + "\"nodes\":[{\"mesh\":0,\"translation\":[0.5,0,0]}],"
+        + "\"meshes\":[{\"primitives\":[{\"attributes\":{\"POSITION\":0,\"NORMAL\":1},\"indices\":2}]}],"
+        + "\"accessors\":["
+        + "{\"bufferView\":0,\"componentType\":5126,\"count\":" + vertexCount + ",\"type\":\"VEC3\","
+        + "\"min\":[0,0,0],\"max\":[" + extent + ",0," + extent + "]},"
+        + "{\"bufferView\":1,\"componentType\":5126,\"count\":" + vertexCount + ",\"type\":\"VEC3\"},"
+        + "{\"bufferView\":2,\"componentType\":" + (intIndices ? 5125 : 5123) + ",\"count\":" + indexCount
+        + ",\"type\":\"SCALAR\"}],"
+        + "\"bufferViews\":["
+        + "{\"buffer\":0,\"byteOffset\":0,\"byteLength\":" + positionBytes + "},"
+        + "{\"buffer\":0,\"byteOffset\":" + positionBytes + ",\"byteLength\":" + positionBytes + "},"
+        + "{\"buffer\":0,\"byteOffset\":" + positionBytes * 2 + ",\"byteLength\":" + indexBytes + "}],"
+        + "\"buffers\":[{\"byteLength\":" + bin.capacity() + "}]}";
+    return glb(json, bin.array());
+  }
+
+  private static ByteBuffer glb(String json, byte[] bin) {
+    byte[] text = json.getBytes(StandardCharsets.UTF_8);
+    int textPadded = (text.length + 3) & ~3;
+    ByteBuffer file = ByteBuffer.allocate(12 + 8 + textPadded + 8 + bin.length).order(ByteOrder.LITTLE_ENDIAN);
+    file.putInt(0x46546C67).putInt(2).putInt(file.capacity());
+    file.putInt(textPadded).putInt(0x4E4F534A).put(text);
+    for (int i = text.length; i < textPadded; i++) file.put((byte) ' ');
+    file.putInt(bin.length).putInt(0x004E4942).put(bin);
+    file.flip();
+    return file;
+  }
+}
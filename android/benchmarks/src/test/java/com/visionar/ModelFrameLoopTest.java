@@ -0,0 +1,176 @@
+package com.visionar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+// Placing, picking, dragging and rotating models as ModelFrameLoop runs them on the GL thread,
+// with the bundled model on a FakeArSession floor
+public class ModelFrameLoopTest {
+  private static final File HORNET = new File("../app/src/main/assets/models/HORNET.glb");
+  private static final int WIDTH = 1080;
+  private static final int HEIGHT = 1920;
+  private static final float EPSILON = 1e-4f;
+  private static final float LEFT_X = WIDTH * 0.25f;
+  private static final float RIGHT_X = WIDTH * 0.75f;
+  private static final float FLOOR_Y = HEIGHT * 0.75f;
+
+  private final FakeArSession session = new FakeArSession(WIDTH, HEIGHT);
+  private final List<String> events = new ArrayList<>();
+  private final List<Integer> eventAnchors = new ArrayList<>();
+  private final GlBackend backend = new GlBackend(new RecordingGl(), 3);
+  private final ModelRenderer renderer = new ModelRenderer(backend);
+  private final ModelFrameLoop loop = new ModelFrameLoop((type, message, anchorId) -> {
+    events.add(type);
+    eventAnchors.add(anchorId);
+  }, (type, anchorId, latencyMs) -> { });
+  private final PlacementGestures gestures = loop.getGestures();
+  private long nowMs = 0;
+
+  public ModelFrameLoopTest() {
+    session.addCameraKeyframe(0, 0f, 1.4f, 0f, 0f, -30f);
+    session.addPlane(0, 0f, 0f, -1.5f, FakeArSession.rectangle(3f, 3f));
+    BackgroundRenderer background = new BackgroundRenderer(backend);
+    background.attachTo(session);
+    loop.attach(backend, background, renderer);
+    loop.setViewport(WIDTH, HEIGHT);
+  }
+
+  @Test
+  public void tapBeforeTheModelIsLoadedPlacesNothing() {
+    frame();
+    tap(LEFT_X, FLOOR_Y);
+
+    assertEquals(0, loop.getAnchorCount());
+    assertEquals(0, events.size());
+  }
+
+  @Test
+  public void tapPlacesAndSelectsAtTheCurrentScale() throws IOException {
+    loadModel();
+    frame();
+    loop.setModelScale(0.5f);
+    tap(LEFT_X, FLOOR_Y);
+    loop.setModelScale(2f);
+    tap(RIGHT_X, FLOOR_Y);
+
+    assertEquals(2, loop.getAnchorCount());
+    assertEquals("MODEL_PLACED", lastEvent());
+    assertEquals(loop.getAnchor(1).id, loop.getSelectedAnchorId());
+    assertEquals(0.5f, loop.getScale(0), 0f);
+    assertEquals(2f, loop.getScale(1), 0f);
+  }
+
+  @Test
+  public void tapOnAPlacedModelSelectsItAndDragMovesIt() throws IOException {
+    loadModel();
+    frame();
+    tap(LEFT_X, FLOOR_Y);
+    tap(RIGHT_X, FLOOR_Y);
+    int left = loop.getAnchor(0).id;
+    float[] rightBefore = position(1);
+
+    tap(LEFT_X, FLOOR_Y);
+    assertEquals("MODEL_SELECTED", lastEvent());
+    assertEquals(left, (int) eventAnchors.get(eventAnchors.size() - 1));
+    assertEquals(2, loop.getAnchorCount());
+    assertEquals(left, loop.getSelectedAnchorId());
+
+    float[] leftBefore = position(0);
+    gestures.down(LEFT_X, FLOOR_Y, nowMs);
+    gestures.moveDrag(WIDTH * 0.5f, HEIGHT * 0.9f);
+    frame();
+    gestures.up();
+
+    assertEquals(left, loop.getAnchor(0).id);
+    assertNotEquals(leftBefore[0], position(0)[0], 0.05f);
+    assertArrayEquals(rightBefore, position(1), EPSILON);
+  }
+
+  @Test
+  public void rotationTurnsTheSelectedModelAndContinuesFromIt() throws IOException {
+    loadModel();
+    frame();
+    tap(LEFT_X, FLOOR_Y);
+    twist(500f, 1000f, 700f, 1000f, 600f, 900f, 600f, 1100f);
+    tap(RIGHT_X, FLOOR_Y);
+    float[] left = new float[3];
+    loop.getRotation(0, left);
+    assertEquals(90f, Math.abs(left[2]), EPSILON);
+    float[] right = new float[3];
+    loop.getRotation(1, right);
+    assertArrayEquals(new float[3], right, 0f);
+
+    // Selecting the left model again: the next twist adds to its quarter turn
+    tap(LEFT_X, FLOOR_Y);
+    twist(500f, 1000f, 700f, 1000f, 600f, 900f, 600f, 1100f);
+    loop.getRotation(0, left);
+    assertEquals(180f, Math.abs(left[2]), EPSILON);
+    loop.getRotation(1, right);
+    assertArrayEquals(new float[3], right, 0f);
+  }
+
+  @Test
+  public void removingTheSelectedModelSelectsTheNewest() throws IOException {
+    loadModel();
+    frame();
+    tap(LEFT_X, FLOOR_Y);
+    tap(RIGHT_X, FLOOR_Y);
+    tap(LEFT_X, FLOOR_Y);
+    int left = loop.getAnchor(0).id;
+    int right = loop.getAnchor(1).id;
+    assertEquals(left, loop.getSelectedAnchorId());
+
+    assertTrue(loop.removeAnchor(left));
+    assertFalse(loop.removeAnchor(left));
+    assertEquals(1, loop.getAnchorCount());
+    assertEquals(right, loop.getSelectedAnchorId());
+  }
+
+  private void loadModel() throws IOException {
+    GlbModel model = GlbParser.parse(ByteBuffer.wrap(Files.readAllBytes(HORNET.toPath())));
+    renderer.setModel(model);
+    loop.setModel(model, null);
+  }
+
+  private void twist(float x0, float y0, float x1, float y1, float toX0, float toY0, float toX1, float toY1) {
+    gestures.down(x0, y0, nowMs);
+    gestures.startRotation(x0, y0, x1, y1);
+    gestures.moveRotation(toX0, toY0, toX1, toY1);
+    frame();
+    gestures.up();
+  }
+
+  private void tap(float x, float y) {
+    gestures.down(x, y, nowMs);
+    gestures.up();
+    frame();
+  }
+
+  private void frame() {
+    backend.clearFrame();
+    nowMs += 33;
+    loop.draw(session.update(), nowMs);
+  }
+
+  private String lastEvent() {
+    return events.get(events.size() - 1);
+  }
+
+  private float[] position(int index) {
+    float[] model = new float[16];
+    loop.getAnchor(index).getModelMatrix(model);
+    return new float[]{model[12], model[13], model[14]};
+  }
+}
@@ -0,0 +1,186 @@
+package com.visionar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+// ModelPicker and MeshBvh against a scan of every triangle of every placement in world space,
+// with the bundled model placed on the floor in front of the camera
+public class ModelPickerTest {
+  private static final File HORNET = new File("../app/src/main/assets/models/HORNET.glb");
+  private static final int WIDTH = 1080;
+  private static final int HEIGHT = 1920;
+  private static final int GRID_STEP = 20;
+
+  private final float[] view = new float[16];
+  private final float[] proj = new float[16];
+  private final float[] inverseViewProj = new float[16];
+  private final ModelPicker picker = new ModelPicker();
+  private final GlbModel model;
+  // Makes the model about 30 cm across, whatever units it was authored in
+  private final float scale;
+  private float[] placements = new float[0];
+  private int[] ids = new int[0];
+
+  public ModelPickerTest() throws IOException {
+    model = GlbParser.parse(ByteBuffer.wrap(Files.readAllBytes(HORNET.toPath())));
+    picker.setModel(model);
+    float extent = 0f;
+    for (int c = 0; c < 3; c++) {
+      extent = Math.max(extent, model.max[c] - model.min[c]);
+    }
+    scale = 0.3f / extent;
+
+    float[] camera = new float[16];
+    MatrixMath.setTranslateRotateScale(camera, 0, 0f, 1.4f, 0f, -35f, 0f, 0f, 1f, 1f, 1f);
+    MatrixMath.invert(view, camera);
+    MatrixMath.perspective(proj, 60f, (float) WIDTH / HEIGHT, 0.1f, 100f);
+    picker.setCamera(view, proj, WIDTH, HEIGHT);
+    float[] viewProj = new float[16];
+    MatrixMath.multiplyMM(viewProj, proj, view);
+    MatrixMath.invert(inverseViewProj, viewProj);
+    picker.begin();
+  }
+
+  @Test
+  public void picksWhatAScanOfEveryTriangleFinds() {
+    place(7, -0.4f, -1.6f, 0f);
+    place(8, 0f, -1.4f, 45f);
+    place(9, 0.4f, -2.2f, 120f);
+
+    // Hits per placement, then misses
+    int[] counts = new int[4];
+    for (int y = GRID_STEP / 2; y < HEIGHT; y += GRID_STEP) {
+      for (int x = GRID_STEP / 2; x < WIDTH; x += GRID_STEP) {
+        int expected = scan(x, y);
+        assertEquals("at " + x + ", " + y, expected, picker.pick(x, y));
+        counts[expected < 0 ? 3 : expected - 7]++;
+      }
+    }
+    // The grid has to cross every placement for the comparison to mean anything
+    for (int count : counts) {
+      assertTrue(count > 10);
+    }
+  }
+
+  @Test
+  public void tapOffEveryModelPicksNothing() {
+    place(7, 0f, -1.4f, 0f);
+
+    assertEquals(-1, scan(40f, 40f));
+    assertEquals(-1, picker.pick(40f, 40f));
+  }
+
+  @Test
+  public void overlappingPlacementsPickTheNearest() {
+    // The far one is added first, so the first hit found is not the answer
+    place(1, 0f, -1.7f, 0f);
+    place(2, 0f, -1.5f, 0f);
+
+    float[] near = screenPosition(1);
+    assertEquals(2, scan(near[0], near[1]));
+    assertEquals(2, picker.pick(near[0], near[1]));
+    // The near model also covers the middle of the far one
+    float[] far = screenPosition(0);
+    assertEquals(2, scan(far[0], far[1]));
+    assertEquals(2, picker.pick(far[0], far[1]));
+  }
+
+  private void place(int id, float x, float z, float rotationY) {
+    float[] anchor = new float[16];
+    MatrixMath.setIdentity(anchor);
+    anchor[12] = x;
+    anchor[14] = z;
+    picker.add(id, anchor, 0f, rotationY, 0f, scale);
+    int index = ids.length;
+    ids = Arrays.copyOf(ids, index + 1);
+    placements = Arrays.copyOf(placements, (index + 1) * 16);
+    ids[index] = id;
+    ModelRenderer.setPlacement(placements, index * 16, anchor, 0f, rotationY, 0f, scale);
+  }
+
+  // Id of the placement with the nearest world space triangle under the view coordinates, or -1
+  private int scan(float screenX, float screenY) {
+    float[] ray = new float[6];
+    assertTrue(PlaneRaycaster.screenRay(inverseViewProj, WIDTH, HEIGHT, screenX, screenY, ray));
+    double nearest = Double.MAX_VALUE;
+    int picked = -1;
+    float[] world = new float[16];
+    double[] corners = new double[9];
+    for (int i = 0; i < ids.length; i++) {
+      for (GlbModel.Node node : model.nodes) {
+        MatrixMath.multiplyMM(world, 0, placements, i * 16, node.matrix, 0);
+        for (GlbModel.Primitive primitive : node.mesh.primitives) {
+          int base = primitive.vertexOffset / GlbModel.VERTEX_STRIDE;
+          int size = primitive.indexType == GlApi.GL_UNSIGNED_INT ? 4 : 2;
+          for (int t = 0; t + 3 <= primitive.indexCount; t += 3) {
+            for (int k = 0; k < 3; k++) {
+              int at = primitive.indexOffset + (t + k) * size;
+              int index = size == 4 ? model.indices.getInt(at) : model.indices.getShort(at) & 0xFFFF;
+              transformVertex(world, (base + index) * GlbModel.VERTEX_STRIDE, corners, k * 3);
+            }
+            double hit = intersect(ray, corners);
+            if (hit < nearest) {
+              nearest = hit;
+              picked = ids[i];
+            }
+          }
+        }
+      }
+    }
+    return picked;
+  }
+
+  private void transformVertex(float[] m, int at, double[] out, int offset) {
+    double x = model.vertices.getFloat(at);
+    double y = model.vertices.getFloat(at + 4);
+    double z = model.vertices.getFloat(at + 8);
+    for (int r = 0; r < 3; r++) {
+      out[offset + r] = m[r] * x + m[4 + r] * y + m[8 + r] * z + m[12 + r];
+    }
+  }
+
+  // Distance along the ray to the triangle from either side, or MAX_VALUE, in doubles
+  private static double intersect(float[] ray, double[] c) {
+    double e1x = c[3] - c[0], e1y = c[4] - c[1], e1z = c[5] - c[2];
+    double e2x = c[6] - c[0], e2y = c[7] - c[1], e2z = c[8] - c[2];
+    double px = ray[4] * e2z - ray[5] * e2y;
+    double py = ray[5] * e2x - ray[3] * e2z;
+    double pz = ray[3] * e2y - ray[4] * e2x;
+    double det = e1x * px + e1y * py + e1z * pz;
+    if (det == 0.0) return Double.MAX_VALUE;
+    double sx = ray[0] - c[0], sy = ray[1] - c[1], sz = ray[2] - c[2];
+    double u = (sx * px + sy * py + sz * pz) / det;
+    if (u < 0.0 || u > 1.0) return Double.MAX_VALUE;
+    double qx = sy * e1z - sz * e1y;
+    double qy = sz * e1x - sx * e1z;
+    double qz = sx * e1y - sy * e1x;
+    double v = (ray[3] * qx + ray[4] * qy + ray[5] * qz) / det;
+    if (v < 0.0 || u + v > 1.0) return Double.MAX_VALUE;
+    double t = (e2x * qx + e2y * qy + e2z * qz) / det;
+    return t > 0.0 ? t : Double.MAX_VALUE;
+  }
+
+  // Where the middle of the model's bounds in the placement at index lands on screen
+  private float[] screenPosition(int index) {
+    float[] viewProj = new float[16];
+    float[] cameraProj = new float[16];
+    MatrixMath.multiplyMM(cameraProj, proj, view);
+    MatrixMath.multiplyMM(viewProj, 0, cameraProj, 0, placements, index * 16);
+    float[] clip = new float[4];
+    for (int r = 0; r < 4; r++) {
+      clip[r] = viewProj[12 + r];
+      for (int c = 0; c < 3; c++) {
+        clip[r] += viewProj[c * 4 + r] * (model.min[c] + model.max[c]) * 0.5f;
+      }
+    }
+    return new float[]{(clip[0] / clip[3] + 1f) * 0.5f * WIDTH, (1f - clip[1] / clip[3]) * 0.5f * HEIGHT};
+  }
+}
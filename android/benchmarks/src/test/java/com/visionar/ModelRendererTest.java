@@ -0,0 +1,161 @@
+package com.visionar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Collections;
+
+// Placement matrices, GPU capability checks and draw call counts of the model renderer, against
+// RecordingGl
+public class ModelRendererTest {
+  private static final File HORNET = new File("../app/src/main/assets/models/HORNET.glb");
+  private static final float EPSILON = 1e-5f;
+  private static final int PLACEMENTS = 100;
+  // Metres from the camera of each row of ten placements when they recede
+  private static final float[] RECEDING_DISTANCES = {0.5f, 1f, 2f, 3f, 4f, 6f, 8f, 10f, 12f, 15f};
+
+  @Test
+  public void placementFollowsTheWholeAnchorPose() {
+    // A wall facing +Z: the anchor's +Y (the plane normal) points at the viewer
+    float[] anchor = new float[16];
+    MatrixMath.setTranslateRotateScale(anchor, 0, 1f, 2f, 3f, 90f, 0f, 0f, 1f, 1f, 1f);
+    float[] m = new float[16];
+    ModelRenderer.setPlacement(m, 0, anchor, 0f, 0f, 0f, 2f);
+
+    float[] up = new float[4];
+    MatrixMath.multiplyMV(up, m, 0f, 1f, 0f, 0f);
+    assertArrayEquals(new float[]{0f, 0f, 2f, 0f}, up, EPSILON);
+    float[] origin = new float[4];
+    MatrixMath.multiplyMV(origin, m, 0f, 0f, 0f, 1f);
+    assertArrayEquals(new float[]{1f, 2f, 3f, 1f}, origin, EPSILON);
+  }
+
+  @Test
+  public void userRotationIsAboutTheAnchorNormal() {
+    float[] anchor = new float[16];
+    MatrixMath.setTranslateRotateScale(anchor, 0, 0f, 0f, 0f, 90f, 0f, 0f, 1f, 1f, 1f);
+    float[] m = new float[16];
+    ModelRenderer.setPlacement(m, 0, anchor, 0f, 90f, 0f, 1f);
+
+    // Spinning about the normal keeps it where it was
+    float[] up = new float[4];
+    MatrixMath.multiplyMV(up, m, 0f, 1f, 0f, 0f);
+    assertArrayEquals(new float[]{0f, 0f, 1f, 0f}, up, EPSILON);
+  }
+
+  @Test
+  public void gles2WithoutUintIndicesRejectsLargePrimitives() {
+    GlbModel large = model(70_000, GlApi.GL_UNSIGNED_INT);
+    GlbModel small = model(60_000, GlApi.GL_UNSIGNED_SHORT);
+
+    ModelRenderer gles2 = renderer(2, "");
+    assertFalse(gles2.canDraw(large));
+    assertTrue(gles2.canDraw(small));
+    assertThrows(IllegalArgumentException.class, () -> gles2.setModel(large));
+
+    assertTrue(renderer(2, "GL_OES_standard_derivatives GL_OES_element_index_uint").canDraw(large));
+    assertTrue(renderer(3, "").canDraw(large));
+  }
+
+  @Test
+  public void gles3DrawCountDoesNotGrowWithPlacements() throws IOException {
+    GlbModel hornet = hornet();
+    int primitives = primitiveDraws(hornet);
+    RecordingGl.FrameStats one = drawPlacements(3, hornet, 1, false);
+    RecordingGl.FrameStats many = drawPlacements(3, hornet, PLACEMENTS, false);
+    assertEquals(primitives, one.drawCalls);
+    assertEquals(primitives, many.drawCalls);
+    assertEquals(primitives * PLACEMENTS, many.instances);
+  }
+
+  @Test
+  public void gles3DrawsEachLevelInUseOncePerPrimitive() throws IOException {
+    GlbModel hornet = hornet();
+    int primitives = primitiveDraws(hornet);
+    RecordingGl.FrameStats frame = drawPlacements(3, hornet, PLACEMENTS, true);
+    assertEquals(primitives * GlbModel.LOD_LEVELS, frame.drawCalls);
+    assertEquals(primitives * PLACEMENTS, frame.instances);
+  }
+
+  @Test
+  public void gles2DrawsEveryPrimitiveOncePerPlacement() throws IOException {
+    GlbModel hornet = hornet();
+    RecordingGl.FrameStats frame = drawPlacements(2, hornet, PLACEMENTS, true);
+    assertEquals(primitiveDraws(hornet) * PLACEMENTS, frame.drawCalls);
+    assertEquals(frame.drawCalls, frame.instances);
+  }
+
+  @Test
+  public void nothingQueuedDrawsNothing() throws IOException {
+    GlbModel hornet = hornet();
+    assertEquals(0, drawPlacements(2, hornet, 0, false).drawCalls);
+    assertEquals(0, drawPlacements(3, hornet, 0, false).drawCalls);
+  }
+
+  private static GlbModel hornet() throws IOException {
+    return GlbParser.parse(ByteBuffer.wrap(Files.readAllBytes(HORNET.toPath())));
+  }
+
+  // Draws per placement without instancing: one per primitive with indices per node using its mesh
+  private static int primitiveDraws(GlbModel model) {
+    int draws = 0;
+    for (GlbModel.Node node : model.nodes) {
+      if (node.mesh == null) continue;
+      for (GlbModel.Primitive primitive : node.mesh.primitives) {
+        if (primitive.indexCount > 0) draws++;
+      }
+    }
+    return draws;
+  }
+
+  // `placements` copies of the model in rows of ten, all a metre from the camera, or receding a
+  // row at a time so that they spread over every level of detail
+  private static RecordingGl.FrameStats drawPlacements(int glesVersion, GlbModel model, int placements,
+                                                       boolean receding) {
+    RecordingGl gl = new RecordingGl();
+    GlBackend backend = new GlBackend(gl, glesVersion);
+    ModelRenderer renderer = new ModelRenderer(backend);
+    renderer.setModel(model);
+    float[] view = new float[16];
+    float[] proj = new float[16];
+    MatrixMath.setIdentity(view);
+    MatrixMath.perspective(proj, 60f, 9f / 16f, 0.1f, 100f);
+    float[] anchor = new float[16];
+    return SteadyFrame.record(gl, backend, view, proj, () -> {
+      renderer.begin();
+      for (int i = 0; i < placements; i++) {
+        float distance = receding ? RECEDING_DISTANCES[Math.min(i / 10, RECEDING_DISTANCES.length - 1)] : 1f;
+        MatrixMath.setTranslateRotateScale(anchor, 0, (i % 10) * 0.2f - 1f, -0.5f, -distance,
+            0f, 0f, 0f, 1f, 1f, 1f);
+        renderer.add(anchor, 0f, i * 15f, 0f, 0.3f);
+      }
+      renderer.draw();
+    });
+  }
+
+  private static ModelRenderer renderer(int glesVersion, String extensions) {
+    RecordingGl gl = new RecordingGl();
+    gl.setExtensions(extensions);
+    return new ModelRenderer(new GlBackend(gl, glesVersion));
+  }
+
+  // One primitive with the given vertex count; only the layout, the buffers are empty
+  private static GlbModel model(int vertexCount, int indexType) {
+    GlbModel.Material material = new GlbModel.Material(
+        new float[]{1f, 1f, 1f, 1f}, -1, 0f, 1f, new float[]{0f, 0f, 0f}, false);
+    GlbModel.Primitive primitive = new GlbModel.Primitive(0, vertexCount, 0, 3, indexType, material);
+    GlbModel.Mesh mesh = new GlbModel.Mesh(Collections.singletonList(primitive));
+    return new GlbModel(ByteBuffer.allocateDirect(0), ByteBuffer.allocateDirect(0),
+        Collections.singletonList(mesh), Collections.<GlbModel.Node>emptyList(),
+        Collections.<GlbModel.Image>emptyList(), new float[3], new float[3], null);
+  }
+}
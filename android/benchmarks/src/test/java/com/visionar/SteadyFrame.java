@@ -0,0 +1,18 @@
+package com.visionar;
+
+// Renderer tests count the GL calls of a frame once uploads and program setup are out of the way:
+// the frame is drawn twice and the second one's stats returned
+final class SteadyFrame {
+  private SteadyFrame() {}
+
+  static RecordingGl.FrameStats record(RecordingGl gl, GlBackend backend, float[] view, float[] proj,
+                                       Runnable drawFrame) {
+    RecordingGl.FrameStats frame = null;
+    for (int f = 0; f < 2; f++) {
+      backend.beginFrame(view, proj);
+      drawFrame.run();
+      frame = gl.endFrame();
+    }
+    return frame;
+  }
+}